@@ -0,0 +1,52 @@
+CREATE TABLE `li_s_order_statistics_data` (
+  `id` varchar(255) NOT NULL COMMENT 'ID',
+  `store_id` varchar(255) NOT NULL COMMENT '店铺ID',
+  `store_name` varchar(255) DEFAULT NULL COMMENT '店铺名称',
+  `statistics_time` datetime NOT NULL COMMENT '统计小时，为该小时的开始时间',
+  `payment_method` varchar(64) NOT NULL DEFAULT '' COMMENT '支付方式',
+  `order_num` bigint NOT NULL DEFAULT '0' COMMENT '下单数量',
+  `order_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '下单金额',
+  `paid_order_num` bigint NOT NULL DEFAULT '0' COMMENT '已付款订单数量',
+  `paid_order_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '已付款订单金额',
+  `freight_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '已付款订单运费',
+  `discount_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '已付款订单优惠金额',
+  `pay_num` bigint NOT NULL DEFAULT '0' COMMENT '付款流水数量',
+  `pay_goods_num` bigint NOT NULL DEFAULT '0' COMMENT '付款商品数量',
+  `pay_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '付款金额',
+  `refund_num` bigint NOT NULL DEFAULT '0' COMMENT '退款流水数量',
+  `refund_price` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '退款金额',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_store_time_payment` (`store_id`,`statistics_time`,`payment_method`),
+  KEY `idx_statistics_time` (`statistics_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单小时统计';
+
+-- 历史数据初始化，按订单创建时间及流水时间汇总到小时
+INSERT INTO `li_s_order_statistics_data` (`id`, `store_id`, `store_name`, `statistics_time`, `payment_method`,
+  `order_num`, `order_price`, `paid_order_num`, `paid_order_price`, `freight_price`, `discount_price`)
+SELECT REPLACE(UUID(), '-', ''), store_id, MAX(store_name), DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00'), IFNULL(payment_method, ''),
+  COUNT(0), IFNULL(SUM(flow_price), 0),
+  SUM(CASE WHEN pay_status = 'PAID' THEN 1 ELSE 0 END),
+  IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN flow_price ELSE 0 END), 0),
+  IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN freight_price ELSE 0 END), 0),
+  IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN discount_price ELSE 0 END), 0)
+FROM li_order
+WHERE store_id IS NOT NULL AND create_time IS NOT NULL
+GROUP BY store_id, DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00'), IFNULL(payment_method, '');
+
+INSERT INTO `li_s_order_statistics_data` (`id`, `store_id`, `store_name`, `statistics_time`, `payment_method`,
+  `pay_num`, `pay_goods_num`, `pay_price`, `refund_num`, `refund_price`)
+SELECT REPLACE(UUID(), '-', ''), store_id, MAX(store_name), DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00'), IFNULL(payment_name, ''),
+  SUM(CASE WHEN flow_type = 'PAY' THEN 1 ELSE 0 END),
+  IFNULL(SUM(CASE WHEN flow_type = 'PAY' THEN num ELSE 0 END), 0),
+  IFNULL(SUM(CASE WHEN flow_type = 'PAY' THEN final_price ELSE 0 END), 0),
+  SUM(CASE WHEN flow_type = 'REFUND' THEN 1 ELSE 0 END),
+  IFNULL(SUM(CASE WHEN flow_type = 'REFUND' THEN final_price ELSE 0 END), 0)
+FROM li_store_flow
+WHERE store_id IS NOT NULL AND create_time IS NOT NULL
+GROUP BY store_id, DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00'), IFNULL(payment_name, '')
+ON DUPLICATE KEY UPDATE
+  `pay_num` = VALUES(`pay_num`),
+  `pay_goods_num` = VALUES(`pay_goods_num`),
+  `pay_price` = VALUES(`pay_price`),
+  `refund_num` = VALUES(`refund_num`),
+  `refund_price` = VALUES(`refund_price`);
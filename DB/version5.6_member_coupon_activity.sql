@@ -0,0 +1,3 @@
+ALTER TABLE `li_member_coupon`
+  ADD COLUMN `coupon_activity_id` varchar(255) DEFAULT NULL COMMENT '定向发放的优惠券活动ID，领取的优惠券为空',
+  ADD KEY `idx_coupon_activity_member` (`coupon_activity_id`, `member_id`);
@@ -1,6 +1,7 @@
 package cn.lili.controller.passport;
 
 import cn.lili.cache.limit.annotation.LimitPoint;
+import cn.lili.cache.limit.enums.LimitAlgorithmEnums;
 import cn.lili.cache.limit.service.RateLimitService;
 import cn.lili.common.enums.ResultCode;
 import cn.lili.common.enums.ResultUtil;
@@ -8,6 +9,8 @@ import cn.lili.common.exception.ServiceException;
 import cn.lili.common.security.AuthUser;
 import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.UserEnums;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.common.vo.ResultMessage;
 import cn.lili.modules.member.entity.dos.Member;
 import cn.lili.modules.member.entity.dto.MemberEditDTO;
@@ -61,6 +64,9 @@ public class MemberBuyerController {
     @Autowired
     private RateLimitService rateLimitService;
 
+    @Autowired
+    private ExecutorManager executorManager;
+
 
     @ApiOperation(value = "web-获取登录二维码")
     @PostMapping(value = "/pc_session", produces = "application/json;charset=UTF-8")
@@ -118,7 +124,7 @@ public class MemberBuyerController {
                 deferredResult.setResult(new ResponseEntity<>(ResultUtil.error(ResultCode.ERROR), HttpStatus.OK));
                 Thread.currentThread().interrupt();
             }
-        });
+        }, executorManager.get(ExecutorEnum.NOTIFICATION));
         return deferredResult;
     }
 
@@ -146,7 +152,8 @@ public class MemberBuyerController {
             @ApiImplicitParam(name = "username", value = "用户名", required = true, paramType = "query"),
             @ApiImplicitParam(name = "password", value = "密码", required = true, paramType = "query")
     })
-    @LimitPoint(name = "buyer_user_login_ip", prefix = "limit:", key = "buyer:userLogin:", period = 60, limit = 30)
+    @LimitPoint(name = "buyer_user_login_ip", prefix = "limit:", key = "buyer:userLogin:", period = 60, limit = 30,
+            algorithm = LimitAlgorithmEnums.SLIDING_WINDOW)
     @PostMapping("/userLogin")
     public ResultMessage<Object> userLogin(@NotNull(message = "用户名不能为空") @RequestParam String username,
                                            @NotNull(message = "密码不能为空") @RequestParam String password,
@@ -216,7 +223,8 @@ public class MemberBuyerController {
             @ApiImplicitParam(name = "email", value = "邮箱", required = true, paramType = "query"),
             @ApiImplicitParam(name = "code", value = "邮箱验证码", required = true, paramType = "query")
     })
-    @LimitPoint(name = "buyer_register_ip", prefix = "limit:", key = "buyer:register:", period = 3600, limit = 10)
+    @LimitPoint(name = "buyer_register_ip", prefix = "limit:", key = "buyer:register:", period = 3600, limit = 10,
+            algorithm = LimitAlgorithmEnums.SLIDING_WINDOW)
     @PostMapping("/register")
     public ResultMessage<Object> register(@RequestParam(required = false) String username,
                                           @NotNull(message = "密码不能为空") @RequestParam String password,
@@ -4,14 +4,12 @@ import cn.hutool.core.util.StrUtil;
 import cn.lili.cache.Cache;
 import cn.lili.cache.CachePrefix;
 import cn.lili.common.security.AuthUser;
+import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.SecurityEnum;
 import cn.lili.common.security.enums.UserEnums;
-import cn.lili.common.security.token.SecretKeyUtil;
 import cn.lili.common.utils.ResponseUtil;
-import com.google.gson.Gson;
-import io.jsonwebtoken.Claims;
+import cn.lili.modules.statistics.service.TrafficCounterService;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.Jwts;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -46,16 +44,23 @@ public class BuyerAuthenticationFilter extends BasicAuthenticationFilter {
     @Autowired
     private Cache cache;
 
+    /**
+     * 流量计数，记录会员活跃用于在线人数统计
+     */
+    private TrafficCounterService trafficCounterService;
+
     /**
      * 自定义构造器
      *
      * @param authenticationManager
      * @param cache
+     * @param trafficCounterService
      */
     public BuyerAuthenticationFilter(AuthenticationManager authenticationManager,
-            Cache cache) {
+            Cache cache, TrafficCounterService trafficCounterService) {
         super(authenticationManager);
         this.cache = cache;
+        this.trafficCounterService = trafficCounterService;
     }
 
     @Override
@@ -85,6 +90,9 @@ public class BuyerAuthenticationFilter extends BasicAuthenticationFilter {
         // 获取用户信息，存入context
         UsernamePasswordAuthenticationToken authentication = getAuthentication(jwt, response);
         SecurityContextHolder.getContext().setAuthentication(authentication);
+        if (authentication != null) {
+            request.setAttribute(UserContext.AUTH_USER_ATTRIBUTE, authentication.getDetails());
+        }
     }catch(
     Exception e)
     {
@@ -102,14 +110,8 @@ public class BuyerAuthenticationFilter extends BasicAuthenticationFilter {
     private UsernamePasswordAuthenticationToken getAuthentication(String jwt, HttpServletResponse response) {
 
         try {
-            Claims claims
-                    = Jwts.parserBuilder()
-                    .setSigningKey(SecretKeyUtil.generalKeyByDecoders())
-                    .build()
-                    .parseClaimsJws(jwt).getBody();
-            // 获取存储在claims中的用户信息
-            String json = claims.get(SecurityEnum.USER_CONTEXT.getValue()).toString();
-            AuthUser authUser = new Gson().fromJson(json, AuthUser.class);
+            //解析token中的用户信息，已验证过签名的token不重复验签
+            AuthUser authUser = UserContext.parseAuthUser(jwt);
 
             //校验redis中是否有权限
             if (cache.hasKey(CachePrefix.ACCESS_TOKEN.getPrefix(UserEnums.MEMBER, authUser.getId()) + jwt)) {
@@ -118,6 +120,7 @@ public class BuyerAuthenticationFilter extends BasicAuthenticationFilter {
                 auths.add(new SimpleGrantedAuthority("ROLE_" + authUser.getRole().name()));
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(authUser.getUsername(), null, auths);
                 authentication.setDetails(authUser);
+                trafficCounterService.memberActive(authUser.getId());
                 return authentication;
             }
             ResponseUtil.output(response, 403, ResponseUtil.resultMap(false, 403, "登录已失效，请重新登录"));
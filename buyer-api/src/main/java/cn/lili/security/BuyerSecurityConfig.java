@@ -4,6 +4,7 @@ import cn.lili.cache.Cache;
 import cn.lili.common.security.CustomAccessDeniedHandler;
 import cn.lili.common.utils.SpringContextUtil;
 import cn.lili.common.properties.IgnoredUrlsProperties;
+import cn.lili.modules.statistics.service.TrafficCounterService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -47,6 +48,12 @@ public class BuyerSecurityConfig {
     @Autowired
     private Cache<String> cache;
 
+    /**
+     * 流量计数
+     */
+    @Autowired
+    private TrafficCounterService trafficCounterService;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationManager authenticationManager)
             throws Exception {
@@ -76,7 +83,7 @@ public class BuyerSecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .exceptionHandling(exception -> exception.accessDeniedHandler(accessDeniedHandler))
-                .addFilterAt(new BuyerAuthenticationFilter(authenticationManager, cache),
+                .addFilterAt(new BuyerAuthenticationFilter(authenticationManager, cache, trafficCounterService),
                         UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -1,15 +1,23 @@
 package cn.lili.buyer.test.cart;
 
+import cn.lili.modules.goods.entity.dos.GoodsSku;
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
+import cn.lili.modules.member.entity.dos.MemberAddress;
 import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
+import cn.lili.modules.order.cart.entity.enums.RenderStepEnums;
+import cn.lili.modules.order.cart.entity.vo.CartSkuVO;
+import cn.lili.modules.order.cart.render.CartRenderMemo;
 import cn.lili.modules.order.cart.render.CartRenderStep;
 import cn.lili.modules.order.cart.render.TradeBuilder;
 import cn.lili.modules.order.cart.service.CartPersistenceService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -66,6 +74,67 @@ class TradeBuilderRegressionTest {
         Assertions.assertEquals(CartTypeEnum.BUY_NOW, result.getCartTypeEnum());
     }
 
+    @Test
+    void testBuildCheckedReusesUnchangedSteps() {
+        TradeBuilder tradeBuilder = new TradeBuilder();
+        AtomicReference<TradeDTO> next = new AtomicReference<>();
+        Map<RenderStepEnums, Integer> counter = new EnumMap<>(RenderStepEnums.class);
+        List<CartRenderStep> steps = new ArrayList<>();
+        for (RenderStepEnums step : RenderStepEnums.values()) {
+            steps.add(new CountingRenderStep(step, counter));
+        }
+        CartRenderMemo memo = new CartRenderMemo();
+        setField(memo, "expireSeconds", 60);
+        setField(memo, "capacity", 16);
+        setField(tradeBuilder, "cartRenderSteps", steps);
+        setField(tradeBuilder, "cartPersistenceService", new TestCartPersistenceService(next));
+        setField(tradeBuilder, "cartRenderMemo", memo);
+
+        next.set(checkedTrade("address-1", 10));
+        tradeBuilder.buildChecked(CartTypeEnum.CART);
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.CHECK_DATA));
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.SKU_PROMOTION));
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.SKU_FREIGHT));
+
+        // Nothing changed: data is checked again, promotions are reused
+        next.set(checkedTrade("address-1", 10));
+        TradeDTO result = tradeBuilder.buildChecked(CartTypeEnum.CART);
+        Assertions.assertEquals(2, counter.get(RenderStepEnums.CHECK_DATA));
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.SKU_PROMOTION));
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.FULL_DISCOUNT));
+        Assertions.assertEquals(2, counter.get(RenderStepEnums.CART_PRICE));
+        Assertions.assertEquals("address-1", result.getMemberAddress().getId());
+
+        // Only the address changed: promotions are still reused
+        next.set(checkedTrade("address-2", 10));
+        result = tradeBuilder.buildChecked(CartTypeEnum.CART);
+        Assertions.assertEquals(3, counter.get(RenderStepEnums.CHECK_DATA));
+        Assertions.assertEquals(1, counter.get(RenderStepEnums.SKU_PROMOTION));
+        Assertions.assertEquals(3, counter.get(RenderStepEnums.SKU_FREIGHT));
+        Assertions.assertEquals("address-2", result.getMemberAddress().getId());
+
+        // Stock changed: promotions are rendered again
+        next.set(checkedTrade("address-2", 1));
+        tradeBuilder.buildChecked(CartTypeEnum.CART);
+        Assertions.assertEquals(4, counter.get(RenderStepEnums.CHECK_DATA));
+        Assertions.assertEquals(2, counter.get(RenderStepEnums.SKU_PROMOTION));
+    }
+
+    private static TradeDTO checkedTrade(String addressId, int quantity) {
+        TradeDTO tradeDTO = new TradeDTO(CartTypeEnum.CART);
+        tradeDTO.setMemberId("test-member-id");
+        GoodsSku goodsSku = new GoodsSku();
+        goodsSku.setId("sku-1");
+        goodsSku.setQuantity(quantity);
+        CartSkuVO cartSkuVO = new CartSkuVO(goodsSku);
+        cartSkuVO.setNum(1);
+        tradeDTO.getSkuList().add(cartSkuVO);
+        MemberAddress memberAddress = new MemberAddress();
+        memberAddress.setId(addressId);
+        tradeDTO.setMemberAddress(memberAddress);
+        return tradeDTO;
+    }
+
     private static void setField(Object target, String fieldName, Object value) {
         try {
             var field = target.getClass().getDeclaredField(fieldName);
@@ -98,4 +167,24 @@ class TradeBuilderRegressionTest {
             // No-op for regression tests.
         }
     }
+
+    static class CountingRenderStep implements CartRenderStep {
+        private final RenderStepEnums step;
+        private final Map<RenderStepEnums, Integer> counter;
+
+        CountingRenderStep(RenderStepEnums step, Map<RenderStepEnums, Integer> counter) {
+            this.step = step;
+            this.counter = counter;
+        }
+
+        @Override
+        public RenderStepEnums step() {
+            return step;
+        }
+
+        @Override
+        public void render(TradeDTO tradeDTO) {
+            counter.merge(step, 1, Integer::sum);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package cn.lili.buyer.test.wallet;
+
+import cn.lili.modules.wallet.entity.dos.WalletLog;
+import cn.lili.modules.wallet.entity.dto.MemberWalletUpdateDTO;
+import cn.lili.modules.wallet.entity.enums.DepositServiceTypeEnum;
+import cn.lili.modules.wallet.entity.vo.MemberWalletVO;
+import cn.lili.modules.wallet.service.MemberWalletService;
+import cn.lili.modules.wallet.service.WalletLogService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 单个钱包并发变动吞吐测试
+ * <p>
+ * 多线程对同一会员钱包交替充值、扣减，输出每秒处理次数，并校验最终余额与成功次数、日志条数一致。
+ * 会员id通过 -Dwallet.memberId 指定，线程数、每线程次数分别通过 -Dwallet.threads、-Dwallet.operations 指定
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Tag("manual")
+class MemberWalletConcurrencyTest {
+
+    private static final double MONEY = 1D;
+
+    @Autowired
+    private MemberWalletService memberWalletService;
+
+    @Autowired
+    private WalletLogService walletLogService;
+
+    @Test
+    void concurrentIncreaseAndReduce() throws Exception {
+        String memberId = System.getProperty("wallet.memberId", "1376417684140326912");
+        int threads = Integer.getInteger("wallet.threads", 32);
+        int operations = Integer.getInteger("wallet.operations", 200);
+
+        double before = memberWalletService.getMemberWallet(memberId).getMemberWallet();
+        Date startTime = new Date((System.currentTimeMillis() / 1000 - 1) * 1000);
+        AtomicInteger increased = new AtomicInteger();
+        AtomicInteger reduced = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                boolean increase = i % 2 == 0;
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < operations; j++) {
+                        if (increase) {
+                            if (memberWalletService.increase(new MemberWalletUpdateDTO(MONEY, memberId, "并发测试充值",
+                                    DepositServiceTypeEnum.WALLET_RECHARGE.name()))) {
+                                increased.incrementAndGet();
+                            }
+                        } else if (memberWalletService.reduce(new MemberWalletUpdateDTO(MONEY, memberId, "并发测试扣减",
+                                DepositServiceTypeEnum.WALLET_PAY.name()))) {
+                            reduced.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int succeeded = increased.get() + reduced.get();
+        log.info("钱包并发变动：线程{}，总次数{}，成功{}，耗时{}ms，吞吐{}次/秒", threads, threads * operations, succeeded,
+                elapsed / 1_000_000, Math.round(threads * operations * 1_000_000_000D / elapsed));
+
+        MemberWalletVO after = memberWalletService.getMemberWallet(memberId);
+        assertEquals(before + (increased.get() - reduced.get()) * MONEY, after.getMemberWallet(), 0.001);
+        long logs = walletLogService.count(new LambdaQueryWrapper<WalletLog>()
+                .eq(WalletLog::getMemberId, memberId)
+                .in(WalletLog::getDetail, "并发测试充值", "并发测试扣减")
+                .ge(WalletLog::getCreateTime, startTime));
+        assertEquals(succeeded, logs);
+    }
+}
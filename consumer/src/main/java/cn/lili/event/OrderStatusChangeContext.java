@@ -0,0 +1,67 @@
+package cn.lili.event;
+
+import cn.lili.modules.order.order.entity.dos.Order;
+import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import cn.lili.modules.order.order.entity.vo.OrderDetailVO;
+import cn.lili.modules.order.order.service.OrderService;
+
+/**
+ * 订单状态变更上下文
+ * <p>
+ * 同一条订单状态变更消息的各处理器共用，订单及订单详情首次使用时加载一次，之后直接复用。
+ * 订单数据为消息处理开始时的快照，处理器只读不改；需要其他处理器修改后的最新数据时自行查询
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public class OrderStatusChangeContext {
+
+    private final OrderMessage orderMessage;
+
+    private final OrderService orderService;
+
+    private Order order;
+
+    private OrderDetailVO orderDetail;
+
+    public OrderStatusChangeContext(OrderMessage orderMessage, OrderService orderService) {
+        this.orderMessage = new OrderMessage(orderMessage.getOrderSn(), orderMessage.getNewStatus(), orderMessage.getPaymentMethod());
+        this.orderService = orderService;
+    }
+
+    /**
+     * 订单消息副本
+     *
+     * @return 订单消息
+     */
+    public OrderMessage getOrderMessage() {
+        return new OrderMessage(orderMessage.getOrderSn(), orderMessage.getNewStatus(), orderMessage.getPaymentMethod());
+    }
+
+    /**
+     * 订单，已加载订单详情时直接取详情中的订单
+     *
+     * @return 订单，不存在时返回null
+     */
+    public synchronized Order getOrder() {
+        if (orderDetail != null) {
+            return orderDetail.getOrder();
+        }
+        if (order == null) {
+            order = orderService.getBySn(orderMessage.getOrderSn());
+        }
+        return order;
+    }
+
+    /**
+     * 订单详情，包含订单项、订单日志及发票
+     *
+     * @return 订单详情
+     */
+    public synchronized OrderDetailVO getOrderDetail() {
+        if (orderDetail == null) {
+            orderDetail = orderService.queryDetail(orderMessage.getOrderSn());
+        }
+        return orderDetail;
+    }
+}
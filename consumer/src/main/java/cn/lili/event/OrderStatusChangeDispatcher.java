@@ -0,0 +1,269 @@
+package cn.lili.event;
+
+import cn.hutool.json.JSONUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import cn.lili.modules.order.order.service.OrderService;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 订单状态变更分发
+ * <p>
+ * 同一条消息的各处理器共用一个上下文，订单只加载一次；无依赖的处理器并行执行，声明了依赖的等依赖执行完后执行。
+ * 可重复执行的处理器失败后立即重试，仍失败则记入重放队列由定时任务重放，超过重放次数或不可重复执行的记入搁置队列等待人工处理
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class OrderStatusChangeDispatcher {
+
+    /**
+     * 待重放的失败记录
+     */
+    public static final String RETRY_KEY = CachePrefix.ORDER_STATUS_CHANGE.getPrefix() + "RETRY";
+
+    /**
+     * 搁置的失败记录，需人工处理
+     */
+    public static final String PARKED_KEY = CachePrefix.ORDER_STATUS_CHANGE.getPrefix() + "PARKED";
+
+    /**
+     * 失败后立即重试次数
+     */
+    @Value("${lili.order.status-change.retries:2}")
+    private Integer retries;
+
+    /**
+     * 立即重试间隔（毫秒），按重试次数递增
+     */
+    @Value("${lili.order.status-change.retry-interval:200}")
+    private Long retryInterval;
+
+    /**
+     * 定时任务最多重放次数
+     */
+    @Value("${lili.order.status-change.replay-limit:10}")
+    private Integer replayLimit;
+
+    /**
+     * 定时任务每次重放数量
+     */
+    @Value("${lili.order.status-change.replay-batch:100}")
+    private Integer replayBatch;
+
+    @Autowired
+    private List<OrderStatusChangeEvent> orderStatusChangeEvents;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 按依赖排序的处理器，依赖在前
+     */
+    private List<OrderStatusChangeEvent> handlers;
+
+    /**
+     * 处理器及其依赖的处理器
+     */
+    private Map<OrderStatusChangeEvent, List<OrderStatusChangeEvent>> dependencies;
+
+    @PostConstruct
+    public void init() {
+        dependencies = new IdentityHashMap<>();
+        for (OrderStatusChangeEvent handler : orderStatusChangeEvents) {
+            List<OrderStatusChangeEvent> upstream = new ArrayList<>();
+            for (Class<? extends OrderStatusChangeEvent> type : handler.dependsOn()) {
+                for (OrderStatusChangeEvent candidate : orderStatusChangeEvents) {
+                    if (type.isInstance(candidate) && candidate != handler) {
+                        upstream.add(candidate);
+                    }
+                }
+            }
+            dependencies.put(handler, upstream);
+        }
+        handlers = new ArrayList<>();
+        Map<OrderStatusChangeEvent, Boolean> visited = new IdentityHashMap<>();
+        for (OrderStatusChangeEvent handler : orderStatusChangeEvents) {
+            this.sort(handler, visited);
+        }
+    }
+
+    /**
+     * 深度优先排序，依赖先加入，存在循环依赖时启动失败
+     *
+     * @param handler 处理器
+     * @param visited 处理器是否已排序，false 表示排序中
+     */
+    private void sort(OrderStatusChangeEvent handler, Map<OrderStatusChangeEvent, Boolean> visited) {
+        Boolean sorted = visited.get(handler);
+        if (Boolean.TRUE.equals(sorted)) {
+            return;
+        }
+        if (Boolean.FALSE.equals(sorted)) {
+            throw new IllegalStateException("订单状态变更处理器存在循环依赖：" + name(handler));
+        }
+        visited.put(handler, false);
+        for (OrderStatusChangeEvent upstream : dependencies.get(handler)) {
+            this.sort(upstream, visited);
+        }
+        visited.put(handler, true);
+        handlers.add(handler);
+    }
+
+    /**
+     * 分发订单状态变更，全部处理器执行完后返回
+     *
+     * @param orderMessage 订单消息
+     */
+    public void dispatch(OrderMessage orderMessage) {
+        OrderStatusChangeContext context = new OrderStatusChangeContext(orderMessage, orderService);
+        ExecutorService executor = executorManager.get(ExecutorEnum.ORDER_STATUS_CHANGE);
+        Map<OrderStatusChangeEvent, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        for (OrderStatusChangeEvent handler : handlers) {
+            CompletableFuture<?>[] upstream = dependencies.get(handler).stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+            //依赖无论成功与否都继续执行
+            futures.put(handler, CompletableFuture.allOf(upstream)
+                    .handle((v, e) -> v)
+                    .thenRunAsync(() -> this.execute(handler, context), executor));
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * 重放失败的处理器
+     */
+    public void replay() {
+        for (int i = 0; i < replayBatch; i++) {
+            String value = stringRedisTemplate.opsForList().rightPop(RETRY_KEY);
+            if (value == null) {
+                return;
+            }
+            OrderStatusChangeFailure failure = JSONUtil.toBean(value, OrderStatusChangeFailure.class);
+            OrderStatusChangeEvent handler = this.find(failure.getHandler());
+            if (handler == null) {
+                failure.setError("处理器不存在");
+                this.park(PARKED_KEY, failure);
+                continue;
+            }
+            Exception e = this.invoke(handler, new OrderStatusChangeContext(failure.getOrderMessage(), orderService));
+            if (e != null) {
+                failure.setReplays(failure.getReplays() == null ? 1 : failure.getReplays() + 1);
+                failure.setError(e.getMessage());
+                failure.setFailTime(new Date());
+                this.park(failure.getReplays() < replayLimit ? RETRY_KEY : PARKED_KEY, failure);
+            }
+        }
+    }
+
+    /**
+     * 执行处理器，可重复执行的失败后立即重试
+     *
+     * @param handler 处理器
+     * @param context 订单状态变更上下文
+     */
+    private void execute(OrderStatusChangeEvent handler, OrderStatusChangeContext context) {
+        int attempts = handler.retryable() ? retries + 1 : 1;
+        Exception e = null;
+        for (int i = 0; i < attempts; i++) {
+            if (i > 0) {
+                try {
+                    Thread.sleep(retryInterval * i);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            e = this.invoke(handler, context);
+            if (e == null) {
+                return;
+            }
+        }
+        OrderStatusChangeFailure failure = new OrderStatusChangeFailure(name(handler), context.getOrderMessage());
+        failure.setError(e == null ? null : e.getMessage());
+        failure.setFailTime(new Date());
+        this.park(handler.retryable() ? RETRY_KEY : PARKED_KEY, failure);
+    }
+
+    /**
+     * 调用处理器并记录耗时
+     *
+     * @return 处理器异常，成功返回null
+     */
+    private Exception invoke(OrderStatusChangeEvent handler, OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        String outcome = "success";
+        try {
+            handler.orderChange(context);
+            return null;
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("订单{},在{}业务中，状态修改事件执行异常", JSONUtil.toJsonStr(orderMessage), name(handler), e);
+            return e;
+        } finally {
+            sample.stop(Metrics.timer("lili.order.status-change.handler",
+                    "handler", ClassUtils.getUserClass(handler).getSimpleName(),
+                    "status", String.valueOf(orderMessage.getNewStatus()),
+                    "outcome", outcome));
+        }
+    }
+
+    /**
+     * 记录失败，写入失败时输出完整记录以便人工处理
+     *
+     * @param key     重放或搁置队列
+     * @param failure 失败记录
+     */
+    private void park(String key, OrderStatusChangeFailure failure) {
+        String value = JSONUtil.toJsonStr(failure);
+        Metrics.counter("lili.order.status-change.parked",
+                "handler", ClassUtils.getShortName(failure.getHandler()),
+                "queue", RETRY_KEY.equals(key) ? "retry" : "parked").increment();
+        try {
+            stringRedisTemplate.opsForList().leftPush(key, value);
+        } catch (Exception e) {
+            log.error("订单状态变更失败记录写入失败：{}", value, e);
+        }
+    }
+
+    private OrderStatusChangeEvent find(String name) {
+        for (OrderStatusChangeEvent handler : handlers) {
+            if (name(handler).equals(name)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    private static String name(OrderStatusChangeEvent handler) {
+        return ClassUtils.getUserClass(handler).getName();
+    }
+}
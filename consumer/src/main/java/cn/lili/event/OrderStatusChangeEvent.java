@@ -1,9 +1,12 @@
 package cn.lili.event;
 
-import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 订单状态改变事件
+ * <p>
+ * 同一条消息的各处理器并行执行，有先后要求的通过 {@link #dependsOn()} 声明
  *
  * @author Chopper
  * @since 2020/11/17 7:13 下午
@@ -12,7 +15,25 @@ public interface OrderStatusChangeEvent {
 
     /**
      * 订单改变
-     * @param orderMessage 订单消息
+     * @param context 订单状态变更上下文
      */
-    void orderChange(OrderMessage orderMessage);
+    void orderChange(OrderStatusChangeContext context);
+
+    /**
+     * 需要先执行完的处理器，无论其成功与否
+     *
+     * @return 处理器类型
+     */
+    default List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 是否可以重复执行，可重复执行的处理器失败后自动重试，否则搁置等待人工处理
+     *
+     * @return 是否可以重复执行
+     */
+    default boolean retryable() {
+        return false;
+    }
 }
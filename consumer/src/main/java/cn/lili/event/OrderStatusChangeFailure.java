@@ -0,0 +1,49 @@
+package cn.lili.event;
+
+import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 订单状态变更处理失败记录
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Data
+@NoArgsConstructor
+public class OrderStatusChangeFailure {
+
+    /**
+     * 处理器类名
+     */
+    private String handler;
+
+    /**
+     * 订单消息
+     */
+    private OrderMessage orderMessage;
+
+    /**
+     * 定时任务已重放次数
+     */
+    private Integer replays;
+
+    /**
+     * 最近一次异常信息
+     */
+    private String error;
+
+    /**
+     * 最近一次失败时间
+     */
+    private Date failTime;
+
+    public OrderStatusChangeFailure(String handler, OrderMessage orderMessage) {
+        this.handler = handler;
+        this.orderMessage = orderMessage;
+        this.replays = 0;
+    }
+}
@@ -4,6 +4,7 @@ import cn.hutool.core.date.DateField;
 import cn.hutool.core.date.DateTime;
 import cn.hutool.json.JSONUtil;
 import cn.lili.event.AfterSaleStatusChangeEvent;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.distribution.entity.enums.DistributionOrderStatusEnum;
 import cn.lili.modules.distribution.service.DistributionOrderService;
@@ -36,7 +37,8 @@ public class DistributionOrderExecute implements OrderStatusChangeEvent, AfterSa
     private DistributionOrderService distributionOrderService;
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
 
         switch (orderMessage.getNewStatus()) {
             //订单带校验/订单代发货/待自提，则记录分销信息
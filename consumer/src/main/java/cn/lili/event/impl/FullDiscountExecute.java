@@ -7,6 +7,7 @@ import cn.lili.cache.CachePrefix;
 import cn.lili.common.properties.RocketmqCustomProperties;
 import cn.lili.common.security.enums.UserEnums;
 import cn.lili.common.utils.SnowFlake;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.event.TradeEvent;
 import cn.lili.modules.goods.entity.dos.GoodsSku;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -89,12 +91,13 @@ public class FullDiscountExecute implements TradeEvent, OrderStatusChangeEvent {
     }
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         // 如果订单已支付
         if (orderMessage.getNewStatus().equals(OrderStatusEnum.PAID)) {
             log.debug("满减活动，订单状态操作 {}", CachePrefix.ORDER.getPrefix() + orderMessage.getOrderSn());
             renderGift(JSONUtil.toBean(cache.getString(CachePrefix.ORDER.getPrefix() + orderMessage.getOrderSn()),
-                    CartVO.class), orderMessage);
+                    CartVO.class), context);
         } else if (orderMessage.getNewStatus().equals(OrderStatusEnum.CANCELLED)) {
             log.debug("满减活动，取消订单状态操作 {}", CachePrefix.ORDER.getPrefix() + orderMessage.getOrderSn());
             OrderSearchParams searchParams = new OrderSearchParams();
@@ -107,15 +110,23 @@ public class FullDiscountExecute implements TradeEvent, OrderStatusChangeEvent {
         }
     }
 
+    /**
+     * 库存处理器确认库存后再处理赠品
+     */
+    @Override
+    public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+        return List.of(StockUpdateExecute.class);
+    }
+
     /**
      * 渲染优惠券信息
      */
-    private void renderGift(CartVO cartVO, OrderMessage orderMessage) {
+    private void renderGift(CartVO cartVO, OrderStatusChangeContext context) {
         // 没有优惠信息则跳过
         if (cartVO == null) {
             return;
         }
-        Order order = orderService.getBySn(orderMessage.getOrderSn());
+        Order order = context.getOrder();
         // 赠送喵币判定
         try {
             if (cartVO.getGiftPoint() != null && cartVO.getGiftPoint() > 0) {
@@ -157,10 +168,12 @@ public class FullDiscountExecute implements TradeEvent, OrderStatusChangeEvent {
      */
     private void generatorGiftOrder(List<String> skuIds, Order originOrder) {
         // 获取赠品列表
-        List<GoodsSku> goodsSkus = goodsSkuService.getGoodsSkuByIdFromCache(skuIds);
+        List<GoodsSku> goodsSkus = goodsSkuService.getGoodsSkuByIdFromCache(skuIds).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
         // 赠品判定
-        if (goodsSkus == null || goodsSkus.isEmpty()) {
+        if (goodsSkus.isEmpty()) {
             log.error("赠品不存在：{}", skuIds);
             return;
         }
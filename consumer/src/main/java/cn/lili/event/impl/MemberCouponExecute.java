@@ -3,6 +3,7 @@ package cn.lili.event.impl;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.text.CharSequenceUtil;
 import cn.lili.event.AfterSaleStatusChangeEvent;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.order.aftersale.entity.dos.AfterSale;
 import cn.lili.modules.order.order.entity.dos.Order;
@@ -33,28 +34,36 @@ public class MemberCouponExecute implements OrderStatusChangeEvent, AfterSaleSta
     private MemberCouponService memberCouponService;
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         // 订单取消返还优惠券
         if (orderMessage.getNewStatus() == OrderStatusEnum.CANCELLED) {
-            this.refundCoupon(orderMessage.getOrderSn());
+            this.refundCoupon(context.getOrder());
         }
     }
 
+    /**
+     * 返还优惠券只修改会员优惠券状态，可重复执行
+     */
+    @Override
+    public boolean retryable() {
+        return true;
+    }
+
 
     @Override
     public void afterSaleStatusChange(AfterSale afterSale) {
         // 售后完成返还优惠券
         if (afterSale.getServiceStatus().equals(AfterSaleStatusEnum.COMPLETE.name())) {
-            this.refundCoupon(afterSale.getOrderSn());
+            this.refundCoupon(orderService.getBySn(afterSale.getOrderSn()));
         }
     }
 
     /**
      * 退款返还优惠券
-     * @param orderSn 订单编号
+     * @param order 订单
      */
-    private void refundCoupon(String orderSn) {
-        Order order = orderService.getBySn(orderSn);
+    private void refundCoupon(Order order) {
         if (CharSequenceUtil.isNotEmpty(order.getUseStoreMemberCouponIds())) {
             memberCouponService.recoveryMemberCoupon(ListUtil.toList(order.getUseStoreMemberCouponIds().split(",")));
         }
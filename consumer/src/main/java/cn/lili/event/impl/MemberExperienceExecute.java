@@ -3,6 +3,7 @@ package cn.lili.event.impl;
 import cn.lili.common.utils.CurrencyUtil;
 import cn.lili.event.GoodsCommentCompleteEvent;
 import cn.lili.event.MemberRegisterEvent;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.member.entity.dos.Member;
 import cn.lili.modules.member.entity.dos.MemberEvaluation;
@@ -11,7 +12,6 @@ import cn.lili.modules.member.service.MemberService;
 import cn.lili.modules.order.order.entity.dos.Order;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
-import cn.lili.modules.order.order.service.OrderService;
 import cn.lili.modules.system.entity.dos.Setting;
 import cn.lili.modules.system.entity.dto.ExperienceSetting;
 import cn.lili.modules.system.entity.enums.SettingEnum;
@@ -19,6 +19,8 @@ import cn.lili.modules.system.service.SettingService;
 import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.List;
+
 /**
  * 会员经验值
  *
@@ -38,11 +40,6 @@ public class MemberExperienceExecute implements MemberRegisterEvent, GoodsCommen
      */
     @Autowired
     private MemberService memberService;
-    /**
-     * 订单
-     */
-    @Autowired
-    private OrderService orderService;
 
     /**
      * 会员注册赠送经验值
@@ -80,15 +77,16 @@ public class MemberExperienceExecute implements MemberRegisterEvent, GoodsCommen
     /**
      * 完成订单赠送经验值
      *
-     * @param orderMessage 订单消息
+     * @param context 订单状态变更上下文
      */
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         if (orderMessage.getNewStatus().equals(OrderStatusEnum.COMPLETED)) {
             // 获取经验值设置
             ExperienceSetting experienceSetting = getExperienceSetting();
             // 获取订单信息
-            Order order = orderService.getBySn(orderMessage.getOrderSn());
+            Order order = context.getOrder();
             // 计算赠送经验值数量
             Double point = CurrencyUtil.mul(experienceSetting.getMoney(), order.getFlowPrice(), 0);
             // 赠送会员经验值
@@ -99,6 +97,22 @@ public class MemberExperienceExecute implements MemberRegisterEvent, GoodsCommen
         }
     }
 
+    /**
+     * 经验值与积分更新同一会员账户，等积分处理器执行完后执行
+     */
+    @Override
+    public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+        return List.of(MemberPointExecute.class);
+    }
+
+    /**
+     * 经验值变动按业务id幂等，可重复执行
+     */
+    @Override
+    public boolean retryable() {
+        return true;
+    }
+
     /**
      * 获取经验值设置
      *
@@ -3,6 +3,7 @@ package cn.lili.event.impl;
 import cn.lili.event.AfterSaleStatusChangeEvent;
 import cn.lili.event.GoodsCommentCompleteEvent;
 import cn.lili.event.MemberRegisterEvent;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.member.entity.dos.Member;
 import cn.lili.modules.member.entity.dos.MemberEvaluation;
@@ -66,10 +67,11 @@ public class MemberPointExecute
      * 订单状态变更赠送/回退积分
      */
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         switch (orderMessage.getNewStatus()) {
             case CANCELLED: {
-                Order order = orderService.getBySn(orderMessage.getOrderSn());
+                Order order = context.getOrder();
                 Long point = order.getPriceDetailDTO().getPayPoint();
                 if (point == null || point <= 0)
                     return;
@@ -82,7 +84,7 @@ public class MemberPointExecute
                 break;
             }
             case COMPLETED: {
-                Order order = orderService.getBySn(orderMessage.getOrderSn());
+                Order order = context.getOrder();
                 if (order.getOrderPromotionType() != null
                         && order.getOrderPromotionType().equals(OrderPromotionTypeEnum.POINTS.name())) {
                     return;
@@ -134,6 +136,14 @@ public class MemberPointExecute
         }
     }
 
+    /**
+     * 喵币、积分变动按业务id幂等，可重复执行
+     */
+    @Override
+    public boolean retryable() {
+        return true;
+    }
+
     @Override
     public void afterSaleStatusChange(AfterSale afterSale) {
         if (afterSale.getServiceStatus().equals(AfterSaleStatusEnum.COMPLETE.name())) {
@@ -12,7 +12,6 @@ import cn.lili.modules.order.cart.entity.dto.TradeDTO;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.order.order.entity.enums.OrderPromotionTypeEnum;
 import cn.lili.modules.order.order.entity.vo.OrderDetailVO;
-import cn.lili.modules.order.order.service.OrderService;
 import cn.lili.modules.order.trade.entity.enums.AfterSaleStatusEnum;
 import cn.lili.modules.order.trade.entity.enums.AfterSaleTypeEnum;
 import cn.lili.modules.wallet.entity.dto.MemberWithdrawalMessage;
@@ -35,8 +34,6 @@ public class NoticeMessageExecute implements TradeEvent, OrderStatusChangeEvent,
 
     @Autowired
     private NoticeMessageService noticeMessageService;
-    @Autowired
-    private OrderService orderService;
 
 
     @Override
@@ -53,9 +50,10 @@ public class NoticeMessageExecute implements TradeEvent, OrderStatusChangeEvent,
     }
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         //查询订单信息
-        OrderDetailVO orderDetailVO = orderService.queryDetail(orderMessage.getOrderSn());
+        OrderDetailVO orderDetailVO = context.getOrderDetail();
         NoticeMessageDTO noticeMessageDTO = new NoticeMessageDTO();
         //如果订单状态不为空
         if (orderDetailVO != null && orderDetailVO.getOrderItems() != null && !orderDetailVO.getOrderItems().isEmpty()) {
@@ -0,0 +1,72 @@
+package cn.lili.event.impl;
+
+import cn.lili.event.AfterSaleStatusChangeEvent;
+import cn.lili.event.OrderStatusChangeContext;
+import cn.lili.event.OrderStatusChangeEvent;
+import cn.lili.event.TradeEvent;
+import cn.lili.modules.order.aftersale.entity.dos.AfterSale;
+import cn.lili.modules.order.cart.entity.dto.TradeDTO;
+import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
+import cn.lili.modules.order.order.entity.vo.OrderVO;
+import cn.lili.modules.order.trade.entity.enums.AfterSaleStatusEnum;
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 订单小时统计
+ * <p>
+ * 订单创建、付款、取消及售后完成时，标记订单涉及的小时统计待汇总
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+@Service
+public class OrderStatisticsExecute implements TradeEvent, OrderStatusChangeEvent, AfterSaleStatusChangeEvent {
+
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
+
+    @Override
+    public void orderCreate(TradeDTO tradeDTO) {
+        if (tradeDTO.getOrderVO() == null) {
+            return;
+        }
+        for (OrderVO orderVO : tradeDTO.getOrderVO()) {
+            orderStatisticsDataService.refreshOrder(orderVO.getSn());
+        }
+    }
+
+    @Override
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
+        //付款及取消会改变订单付款状态并产生流水
+        if (orderMessage.getNewStatus() == OrderStatusEnum.PAID || orderMessage.getNewStatus() == OrderStatusEnum.CANCELLED) {
+            orderStatisticsDataService.refreshOrder(orderMessage.getOrderSn());
+        }
+    }
+
+    /**
+     * 退款流水由支付处理器产生，库存不足时订单由库存处理器取消，统计需在两者之后刷新
+     */
+    @Override
+    public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+        return List.of(PaymentExecute.class, StockUpdateExecute.class);
+    }
+
+    @Override
+    public boolean retryable() {
+        return true;
+    }
+
+    @Override
+    public void afterSaleStatusChange(AfterSale afterSale) {
+        //售后完成产生退款流水
+        if (afterSale.getServiceStatus().equals(AfterSaleStatusEnum.COMPLETE.name())) {
+            orderStatisticsDataService.refreshOrder(afterSale.getOrderSn());
+        }
+    }
+}
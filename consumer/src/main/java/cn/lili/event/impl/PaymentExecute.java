@@ -2,12 +2,12 @@ package cn.lili.event.impl;
 
 import cn.lili.common.utils.SnowFlake;
 import cn.lili.common.utils.SpringContextUtil;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.order.order.entity.dos.Order;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
 import cn.lili.modules.order.order.entity.enums.PayStatusEnum;
-import cn.lili.modules.order.order.service.OrderService;
 import cn.lili.modules.order.order.service.StoreFlowService;
 import cn.lili.modules.payment.entity.RefundLog;
 import cn.lili.modules.payment.kit.Payment;
@@ -26,19 +26,15 @@ import org.springframework.stereotype.Service;
 @Service
 public class PaymentExecute implements OrderStatusChangeEvent {
 
-    /**
-     * 订单
-     */
-    @Autowired
-    private OrderService orderService;
     @Autowired
     private StoreFlowService storeFlowService;
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
 
         if (orderMessage.getNewStatus() == OrderStatusEnum.CANCELLED) {
-            Order order = orderService.getBySn(orderMessage.getOrderSn());
+            Order order = context.getOrder();
 
             //如果未付款，则不去要退回相关代码执行
             if (order.getPayStatus().equals(PayStatusEnum.UNPAID.name())) {
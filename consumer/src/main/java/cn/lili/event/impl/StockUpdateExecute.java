@@ -3,14 +3,17 @@ package cn.lili.event.impl;
 import cn.hutool.core.convert.Convert;
 import cn.lili.cache.Cache;
 import cn.lili.common.enums.PromotionTypeEnum;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.goods.entity.dos.GoodsSku;
 import cn.lili.modules.goods.service.GoodsSkuService;
+import cn.lili.modules.goods.service.GoodsStockSyncService;
 import cn.lili.modules.order.order.entity.dos.OrderItem;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.order.order.entity.enums.PayStatusEnum;
 import cn.lili.modules.order.order.entity.vo.OrderDetailVO;
 import cn.lili.modules.order.order.service.OrderService;
+import cn.lili.modules.order.order.service.OrderStockReservationService;
 import cn.lili.modules.promotion.entity.dos.KanjiaActivity;
 import cn.lili.modules.promotion.entity.dos.PromotionGoods;
 import cn.lili.modules.promotion.entity.dto.KanjiaActivityGoodsDTO;
@@ -80,15 +83,26 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
     private KanjiaActivityGoodsService kanjiaActivityGoodsService;
     @Autowired
     private PointsGoodsService pointsGoodsService;
+    @Autowired
+    private OrderStockReservationService orderStockReservationService;
+    @Autowired
+    private GoodsStockSyncService goodsStockSyncService;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void orderChange(OrderMessage orderMessage) {
-
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         switch (orderMessage.getNewStatus()) {
             case PAID: {
                 //获取订单详情
-                OrderDetailVO order = orderService.queryDetail(orderMessage.getOrderSn());
+                OrderDetailVO order = context.getOrderDetail();
+                //下单时已预占库存，确认预占后直接同步库存
+                if (orderStockReservationService.confirm(orderMessage.getOrderSn())) {
+                    log.info("订单[{}]预占库存确认成功", orderMessage.getOrderSn());
+                    orderService.afterOrderConfirm(orderMessage.getOrderSn());
+                    synchroDB(order);
+                    break;
+                }
                 //库存key 和 扣减数量
                 List<String> keys = new ArrayList<>();
                 List<String> values = new ArrayList<>();
@@ -120,8 +134,12 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
                 break;
             }
             case CANCELLED: {
+                //释放下单时预占的库存，已确认的预占不会重复释放
+                if (orderStockReservationService.release(orderMessage.getOrderSn())) {
+                    break;
+                }
                 //获取订单详情
-                OrderDetailVO order = orderService.queryDetail(orderMessage.getOrderSn());
+                OrderDetailVO order = context.getOrderDetail();
                 //判定是否已支付 并且 非库存不足导致库存回滚 则需要考虑订单库存返还业务
                 if (order.getOrder().getPayStatus().equals(PayStatusEnum.PAID.name())
                         && !order.getOrder().getCancelReason().equals(outOfStockMessage)) {
@@ -275,14 +293,11 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
         List<GoodsSku> goodsSkus = new ArrayList<>();
         //促销商品
         List<PromotionGoods> promotionGoods = new ArrayList<>();
-        //sku库存key 集合
-        List<String> skuKeys = new ArrayList<>();
         //促销库存key 集合
         List<String> promotionKey = new ArrayList<>();
 
         //循环订单
         for (OrderItem orderItem : order.getOrderItems()) {
-            skuKeys.add(GoodsSkuService.getStockCacheKey(orderItem.getSkuId()));
 
             GoodsSku goodsSku = new GoodsSku();
             goodsSku.setId(orderItem.getSkuId());
@@ -337,12 +352,6 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
             goodsSkus.add(goodsSku);
         }
 
-        //批量获取商品库存
-        List skuStocks = cache.multiGet(skuKeys);
-        //循环写入商品库存
-        for (int i = 0; i < skuStocks.size(); i++) {
-            goodsSkus.get(i).setQuantity(Convert.toInt(skuStocks.get(i).toString()));
-        }
 
         //促销库存处理
         if (!promotionKey.isEmpty()) {
@@ -354,8 +363,8 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
             }
             promotionGoodsService.updatePromotionGoodsStock(promotionGoods);
         }
-        //商品库存，包含sku库存集合，批量更新商品库存相关
-        goodsSkuService.updateGoodsStock(goodsSkus);
+        //标记库存变动的sku，由定时任务批量同步到数据库
+        goodsStockSyncService.markDirty(goodsSkus);
 
         log.info("订单确认，库存同步：商品信息--{}；促销信息---{}", goodsSkus, promotionGoods);
 
@@ -370,8 +379,6 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
 
         //sku商品
         List<GoodsSku> goodsSkus = new ArrayList<>();
-        //sku库存key 集合
-        List<String> skuKeys = new ArrayList<>();
         //促销商品
         List<PromotionGoods> promotionGoods = new ArrayList<>();
         //促销库存key 集合
@@ -379,7 +386,6 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
 
         //循环订单
         for (OrderItem orderItem : order.getOrderItems()) {
-            skuKeys.add(GoodsSkuService.getStockCacheKey(orderItem.getSkuId()));
 
             GoodsSku goodsSku = new GoodsSku();
             goodsSku.setId(orderItem.getSkuId());
@@ -437,18 +443,11 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
 
         //循环订单
         for (OrderItem orderItem : order.getOrderItems()) {
-            skuKeys.add(GoodsSkuService.getStockCacheKey(orderItem.getSkuId()));
             GoodsSku goodsSku = new GoodsSku();
             goodsSku.setId(orderItem.getSkuId());
             goodsSku.setGoodsId(orderItem.getGoodsId());
             goodsSkus.add(goodsSku);
         }
-        //批量获取商品库存
-        List skuStocks = cache.multiGet(skuKeys);
-        //循环写入商品SKU库存
-        for (int i = 0; i < skuStocks.size(); i++) {
-            goodsSkus.get(i).setQuantity(Convert.toInt(skuStocks.get(i).toString()));
-        }
         //促销库存处理
         if (!promotionKey.isEmpty()) {
             List promotionStocks = cache.multiGet(promotionKey);
@@ -460,8 +459,8 @@ public class StockUpdateExecute implements OrderStatusChangeEvent {
             promotionGoodsService.updatePromotionGoodsStock(promotionGoods);
         }
         log.info("订单取消，库存还原：{}", goodsSkus);
-        //批量修改商品库存
-        goodsSkuService.updateGoodsStock(goodsSkus);
+        //标记库存变动的sku，由定时任务批量同步到数据库
+        goodsStockSyncService.markDirty(goodsSkus);
 
     }
 }
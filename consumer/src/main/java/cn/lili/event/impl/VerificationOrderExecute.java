@@ -1,6 +1,7 @@
 package cn.lili.event.impl;
 
 import cn.hutool.core.util.RandomUtil;
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.order.order.entity.dos.Order;
 import cn.lili.modules.order.order.entity.dos.OrderItem;
@@ -29,11 +30,12 @@ public class VerificationOrderExecute implements OrderStatusChangeEvent {
     @Autowired
     private OrderItemService orderItemService;
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
         //订单状态为待核验，添加订单添加核验码
         if (orderMessage.getNewStatus().equals(OrderStatusEnum.TAKE) || orderMessage.getNewStatus().equals(OrderStatusEnum.STAY_PICKED_UP)) {
             //获取订单信息
-            Order order = orderService.getBySn(orderMessage.getOrderSn());
+            Order order = context.getOrder();
             //获取随机数，判定是否存在
             String code = getCode(order.getStoreId());
             //设置订单验证码
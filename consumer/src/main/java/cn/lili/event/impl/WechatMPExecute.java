@@ -1,5 +1,6 @@
 package cn.lili.event.impl;
 
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.wechat.service.WechatMPService;
@@ -24,10 +25,11 @@ public class WechatMPExecute implements OrderStatusChangeEvent {
     /**
      * 订单已发货、待提货、待核验状态 如果是微信小程序的订单则进行 订单发货信息录入
      *
-     * @param orderMessage 订单消息
+     * @param context 订单状态变更上下文
      */
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
 
         switch (orderMessage.getNewStatus()) {
             case TAKE:
@@ -1,5 +1,6 @@
 package cn.lili.event.impl;
 
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.OrderStatusChangeEvent;
 import cn.lili.event.TradeEvent;
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
@@ -36,7 +37,8 @@ public class WechatMessageExecute implements OrderStatusChangeEvent, TradeEvent
     }
 
     @Override
-    public void orderChange(OrderMessage orderMessage) {
+    public void orderChange(OrderStatusChangeContext context) {
+        OrderMessage orderMessage = context.getOrderMessage();
 
         switch (orderMessage.getNewStatus()) {
             case UNDELIVERED:
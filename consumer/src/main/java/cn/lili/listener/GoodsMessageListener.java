@@ -7,7 +7,9 @@ import cn.hutool.core.util.ClassLoaderUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import cn.lili.common.aop.annotation.RetryOperation;
+import cn.lili.common.enums.ResultCode;
 import cn.lili.common.exception.RetryException;
+import cn.lili.common.exception.ServiceException;
 import cn.lili.common.vo.PageVO;
 import cn.lili.event.GoodsCommentCompleteEvent;
 import cn.lili.modules.distribution.entity.dos.DistributionGoods;
@@ -16,7 +18,6 @@ import cn.lili.modules.distribution.service.DistributionGoodsService;
 import cn.lili.modules.distribution.service.DistributionSelectedGoodsService;
 import cn.lili.modules.goods.entity.dos.*;
 import cn.lili.modules.goods.entity.dto.GoodsCompleteMessage;
-import cn.lili.modules.goods.entity.dto.GoodsParamsDTO;
 import cn.lili.modules.goods.entity.dto.GoodsSearchParams;
 import cn.lili.modules.goods.entity.enums.GoodsAuthEnum;
 import cn.lili.modules.goods.entity.enums.GoodsStatusEnum;
@@ -30,8 +31,11 @@ import cn.lili.modules.promotion.entity.dos.PromotionGoods;
 import cn.lili.modules.promotion.entity.dto.search.PromotionGoodsSearchParams;
 import cn.lili.modules.promotion.entity.enums.PromotionsScopeTypeEnum;
 import cn.lili.modules.promotion.service.PromotionGoodsService;
+import cn.lili.modules.promotion.service.PromotionIndexService;
 import cn.lili.modules.promotion.service.PromotionService;
 import cn.lili.modules.search.entity.dos.EsGoodsIndex;
+import cn.lili.modules.search.service.EsGoodsIndexBatchService;
+import cn.lili.modules.search.service.EsGoodsIndexBuildService;
 import cn.lili.modules.search.service.EsGoodsIndexService;
 import cn.lili.rocketmq.tags.GoodsTagsEnum;
 import com.baomidou.mybatisplus.core.metadata.IPage;
@@ -100,23 +104,15 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
     @Autowired
     private DistributionSelectedGoodsService distributionSelectedGoodsService;
     /**
-     * 分类
+     * 商品索引生成
      */
     @Autowired
-    private CategoryService categoryService;
+    private EsGoodsIndexBuildService esGoodsIndexBuildService;
     /**
-     * 品牌
+     * 商品索引批量更新
      */
     @Autowired
-    private BrandService brandService;
-
-    @Autowired
-    private cn.lili.modules.goods.service.ProductTranslationService productTranslationService;
-    /**
-     * 店铺商品分类
-     */
-    @Autowired
-    private StoreGoodsLabelService storeGoodsLabelService;
+    private EsGoodsIndexBatchService esGoodsIndexBatchService;
 
     @Autowired
     private PromotionService promotionService;
@@ -124,6 +120,9 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
     @Autowired
     private PromotionGoodsService promotionGoodsService;
 
+    @Autowired
+    private PromotionIndexService promotionIndexService;
+
     @Override
     @RetryOperation
     public void onMessage(MessageExt messageExt) {
@@ -142,6 +141,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     Goods goods = this.goodsService.getById(goodsId);
                     this.updateGoodsIndex(goods);
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("生成商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -150,6 +150,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     String storeId = new String(messageExt.getBody());
                     this.updateGoodsIndex(storeId);
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("生成店铺商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -162,8 +163,9 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                 if (CharSequenceUtil.isEmpty(promotionKey)) {
                     break;
                 }
+                this.promotionIndexService.refresh(promotionKey);
                 if (CharSequenceUtil.isNotEmpty(jsonObject.getStr("scopeId"))) {
-                    this.goodsIndexService.deleteEsGoodsPromotionByPromotionKey(
+                    this.esGoodsIndexBatchService.removePromotion(
                             Arrays.asList(jsonObject.getStr("scopeId").split(",")), promotionKey);
                 } else {
                     this.goodsIndexService.deleteEsGoodsPromotionByPromotionKey(promotionKey);
@@ -177,6 +179,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     List<Goods> goodsList = goodsService.queryListByParams(searchParams);
                     this.updateGoodsIndex(goodsList);
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("更新商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -197,8 +200,9 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                 try {
                     String goodsIdsJsonStr = new String(messageExt.getBody());
                     List<EsGoodsIndex> goodsIndices = JSONUtil.toList(goodsIdsJsonStr, EsGoodsIndex.class);
-                    goodsIndexService.updateBulkIndex(goodsIndices);
+                    esGoodsIndexBatchService.save(goodsIndices);
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("重置商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -218,6 +222,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
 
                     promotionService.removeByGoodsIds(goodsIdsJsonStr);
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("删除商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -239,6 +244,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                 } catch (RetryException re) {
                     throw re;
                 } catch (Exception e) {
+                    this.throwIfIndexNotWritten(e);
                     log.error("删除店铺商品索引事件执行异常，商品信息: " + new String(messageExt.getBody()), e);
                 }
                 break;
@@ -271,6 +277,17 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
         }
     }
 
+    /**
+     * 商品索引写入失败时抛出异常，消息不确认，由MQ重新投递
+     *
+     * @param e 异常
+     */
+    private void throwIfIndexNotWritten(Exception e) {
+        if (e instanceof ServiceException && ResultCode.ELASTICSEARCH_INDEX_WRITE_ERROR.equals(((ServiceException) e).getResultCode())) {
+            throw (ServiceException) e;
+        }
+    }
+
     private void updateGoodsIndexPromotions(String promotionsJsonStr) {
         try {
             log.info("更新商品索引促销信息: {}", promotionsJsonStr);
@@ -280,6 +297,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     ClassLoaderUtil.loadClass(jsonObject.get("promotionsType").toString()));
             // 获取促销唯一key,由 促销类型 + 促销id 组成
             String esPromotionKey = jsonObject.get("esPromotionKey").toString();
+            this.promotionIndexService.refresh(esPromotionKey);
             if (PromotionsScopeTypeEnum.PORTION_GOODS.name().equals(promotions.getScopeType())) {
                 for (int i = 0;; i++) {
                     PromotionGoodsSearchParams searchParams = new PromotionGoodsSearchParams();
@@ -294,10 +312,8 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     }
                     List<String> skuIds = promotionGoodsPage.getRecords().stream().map(PromotionGoods::getSkuId)
                             .collect(Collectors.toList());
-                    // 更新商品索引促销信息（删除原索引中相关的促销信息，更新索引中促销信息）
-                    this.goodsIndexService.deleteEsGoodsPromotionByPromotionKey(skuIds, esPromotionKey);
-                    this.goodsIndexService.updateEsGoodsIndexByList(promotionGoodsPage.getRecords(), promotions,
-                            esPromotionKey);
+                    // 更新商品索引促销信息，同一促销key直接覆盖原促销信息
+                    this.esGoodsIndexBatchService.updatePromotion(skuIds, esPromotionKey, promotions);
                 }
 
             } else if (PromotionsScopeTypeEnum.PORTION_GOODS_CATEGORY.name().equals(promotions.getScopeType())) {
@@ -315,15 +331,15 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                     }
                     List<String> skuIds = goodsSkuByPage.getRecords().stream().map(GoodsSku::getId)
                             .collect(Collectors.toList());
-                    // 更新商品索引促销信息（删除原索引中相关的促销信息，更新索引中促销信息）
-                    this.goodsIndexService.deleteEsGoodsPromotionByPromotionKey(skuIds, esPromotionKey);
-                    this.goodsIndexService.updateEsGoodsIndexPromotions(skuIds, promotions, esPromotionKey);
+                    // 更新商品索引促销信息，同一促销key直接覆盖原促销信息
+                    this.esGoodsIndexBatchService.updatePromotion(skuIds, esPromotionKey, promotions);
                 }
 
             } else if (PromotionsScopeTypeEnum.ALL.name().equals(promotions.getScopeType())) {
                 this.goodsIndexService.updateEsGoodsIndexAllByList(promotions, esPromotionKey);
             }
         } catch (Exception e) {
+            this.throwIfIndexNotWritten(e);
             log.error("生成商品索引促销信息执行异常", e);
         }
     }
@@ -379,12 +395,8 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                 this.generatorGoodsIndex(goods, goodsSkuByPage.getRecords());
             } else {
                 // 如果商品状态值不支持es搜索，那么将商品信息做下架处理
-                for (GoodsSku goodsSku : goodsSkuByPage.getRecords()) {
-                    EsGoodsIndex esGoodsOld = goodsIndexService.findById(goodsSku.getId());
-                    if (esGoodsOld != null) {
-                        goodsIndexService.deleteIndexById(goodsSku.getId());
-                    }
-                }
+                esGoodsIndexBatchService.delete(goodsSkuByPage.getRecords().stream().map(GoodsSku::getId)
+                        .collect(Collectors.toList()));
             }
         }
 
@@ -397,80 +409,11 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
      * @param goodsSkuList 商品sku信息
      */
     private void generatorGoodsIndex(Goods goods, List<GoodsSku> goodsSkuList) {
-        int skuSource = 100;
-        List<EsGoodsIndex> esGoodsIndices = new ArrayList<>();
-        for (GoodsSku goodsSku : goodsSkuList) {
-            EsGoodsIndex goodsIndex = this.settingUpGoodsIndexData(goods, goodsSku);
-            skuSource--;
-            if (skuSource <= 0) {
-                skuSource = 1;
-            }
-            goodsIndex.setSkuSource(skuSource);
-            log.info("goodsSku：{}", goodsSku);
-            log.info("生成商品索引 {}", goodsIndex);
-            esGoodsIndices.add(goodsIndex);
-        }
+        List<EsGoodsIndex> esGoodsIndices = esGoodsIndexBuildService.buildGoodsIndex(goods, goodsSkuList);
+        log.info("生成商品索引 {}", esGoodsIndices);
         this.goodsIndexService
                 .deleteIndex(MapUtil.builder(new HashMap<String, Object>()).put("goodsId", goods.getId()).build());
-        this.goodsIndexService.addIndex(esGoodsIndices);
-    }
-
-    private EsGoodsIndex settingUpGoodsIndexData(Goods goods, GoodsSku goodsSku) {
-        EsGoodsIndex goodsIndex = new EsGoodsIndex(goodsSku);
-        if (goods.getParams() != null && !goods.getParams().isEmpty()) {
-            List<GoodsParamsDTO> goodsParamDTOS = JSONUtil.toList(goods.getParams(), GoodsParamsDTO.class);
-            goodsIndex = new EsGoodsIndex(goodsSku, goodsParamDTOS);
-        }
-        goodsIndex.setAuthFlag(goods.getAuthFlag());
-        goodsIndex.setMarketEnable(goods.getMarketEnable());
-
-        // Multi-language names
-        List<cn.lili.modules.goods.entity.dos.ProductTranslation> translations = productTranslationService
-                .listBySpuId(goods.getId());
-        for (cn.lili.modules.goods.entity.dos.ProductTranslation translation : translations) {
-            String lang = translation.getLanguageCode();
-            try {
-                cn.hutool.core.util.ReflectUtil.setFieldValue(goodsIndex, "title_" + lang, translation.getTitle());
-            } catch (Exception e) {
-                log.warn("Failed to set multi-language field for goods {}: title_{}", goods.getId(), lang);
-            }
-        }
-
-        this.settingUpGoodsIndexOtherParam(goodsIndex);
-        return goodsIndex;
-    }
-
-    /**
-     * 设置商品索引的其他参数（非商品自带）
-     *
-     * @param goodsIndex 商品索引信息
-     */
-    private void settingUpGoodsIndexOtherParam(EsGoodsIndex goodsIndex) {
-        List<Category> categories = categoryService
-                .listByIdsOrderByLevel(Arrays.asList(goodsIndex.getCategoryPath().split(",")));
-        if (!categories.isEmpty()) {
-            goodsIndex.setCategoryNamePath(ArrayUtil.join(categories.stream().map(Category::getName).toArray(), ","));
-        }
-        Brand brand = brandService.getById(goodsIndex.getBrandId());
-        if (brand != null) {
-            goodsIndex.setBrandName(brand.getName());
-            goodsIndex.setBrandUrl(brand.getLogo());
-        }
-        if (goodsIndex.getStoreCategoryPath() != null
-                && CharSequenceUtil.isNotEmpty(goodsIndex.getStoreCategoryPath())) {
-            List<StoreGoodsLabel> storeGoodsLabels = storeGoodsLabelService
-                    .listByStoreIds(Arrays.asList(goodsIndex.getStoreCategoryPath().split(",")));
-            if (!storeGoodsLabels.isEmpty()) {
-                goodsIndex.setStoreCategoryNamePath(
-                        ArrayUtil.join(storeGoodsLabels.stream().map(StoreGoodsLabel::getLabelName).toArray(), ","));
-            }
-        }
-
-        if (goodsIndex.getOriginPromotionMap() == null || goodsIndex.getOriginPromotionMap().isEmpty()) {
-            Map<String, Object> goodsCurrentPromotionMap = promotionService
-                    .getGoodsSkuPromotionMap(goodsIndex.getStoreId(), goodsIndex.getId());
-            goodsIndex.setPromotionMapJson(JSONUtil.toJsonStr(goodsCurrentPromotionMap));
-        }
+        this.esGoodsIndexBatchService.save(esGoodsIndices);
     }
 
     /**
@@ -532,9 +475,7 @@ public class GoodsMessageListener implements RocketMQListener<MessageExt> {
                 goodsSku.setBuyCount(buyCount);
                 goodsSkuService.updateGoodsSkuBuyCount(goodsSku.getId(), buyCount);
 
-                this.goodsIndexService.updateIndex(
-                        MapUtil.builder(new HashMap<String, Object>()).put("id", goodsCompleteMessage.getSkuId())
-                                .build(),
+                this.esGoodsIndexBatchService.update(goodsCompleteMessage.getSkuId(),
                         MapUtil.builder(new HashMap<String, Object>()).put("buyCount", buyCount).build());
 
             } else {
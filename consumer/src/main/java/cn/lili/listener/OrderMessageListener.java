@@ -2,7 +2,7 @@ package cn.lili.listener;
 
 import cn.hutool.json.JSONUtil;
 import cn.lili.cache.Cache;
-import cn.lili.event.OrderStatusChangeEvent;
+import cn.lili.event.OrderStatusChangeDispatcher;
 import cn.lili.event.TradeEvent;
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
@@ -33,10 +33,10 @@ public class OrderMessageListener implements RocketMQListener<MessageExt> {
     @Autowired
     private List<TradeEvent> tradeEvent;
     /**
-     * 订单状态
+     * 订单状态变更分发
      */
     @Autowired
-    private List<OrderStatusChangeEvent> orderStatusChangeEvents;
+    private OrderStatusChangeDispatcher orderStatusChangeDispatcher;
     /**
      * 缓存
      */
@@ -83,17 +83,7 @@ public class OrderMessageListener implements RocketMQListener<MessageExt> {
                 break;
             //订单状态变更
             case STATUS_CHANGE:
-                for (OrderStatusChangeEvent orderStatusChangeEvent : orderStatusChangeEvents) {
-                    try {
-                        OrderMessage orderMessage = JSONUtil.toBean(new String(messageExt.getBody()), OrderMessage.class);
-                        orderStatusChangeEvent.orderChange(orderMessage);
-                    } catch (Exception e) {
-                        log.error("订单{},在{}业务中，状态修改事件执行异常",
-                                new String(messageExt.getBody()),
-                                orderStatusChangeEvent.getClass().getName(),
-                                e);
-                    }
-                }
+                orderStatusChangeDispatcher.dispatch(JSONUtil.toBean(new String(messageExt.getBody()), OrderMessage.class));
                 break;
             default:
                 break;
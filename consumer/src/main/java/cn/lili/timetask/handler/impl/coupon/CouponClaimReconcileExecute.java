@@ -0,0 +1,32 @@
+package cn.lili.timetask.handler.impl.coupon;
+
+import cn.lili.modules.promotion.service.CouponClaimService;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 优惠券领取校准定时器
+ * <p>
+ * 领取记录由领取节点异步入库，节点异常时遗留的记录在此入库，并按数据库校准缓存中的已领取数量
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class CouponClaimReconcileExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private CouponClaimService couponClaimService;
+
+    @Override
+    public void execute() {
+        try {
+            couponClaimService.reconcile();
+        } catch (Exception e) {
+            log.error("优惠券领取校准失败", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cn.lili.timetask.handler.impl.coupon;
+
+import cn.lili.modules.promotion.service.CouponDistributionService;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 优惠券定向发放续发定时器
+ * <p>
+ * 节点异常中断或发放失败的优惠券活动，从最近的发放进度继续发放
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class CouponDistributionResumeExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private CouponDistributionService couponDistributionService;
+
+    @Override
+    public void execute() {
+        try {
+            couponDistributionService.resume();
+        } catch (Exception e) {
+            log.error("优惠券定向发放续发失败", e);
+        }
+    }
+}
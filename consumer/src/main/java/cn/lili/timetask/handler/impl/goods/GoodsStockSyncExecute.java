@@ -0,0 +1,32 @@
+package cn.lili.timetask.handler.impl.goods;
+
+import cn.lili.modules.goods.service.GoodsStockSyncService;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商品库存同步定时器
+ * <p>
+ * 订单扣减、还原的库存先记录在缓存中，每分钟批量同步到数据库
+ *
+ * @author Chopper
+ * @since 2024-03-22
+ */
+@Slf4j
+@Component
+public class GoodsStockSyncExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private GoodsStockSyncService goodsStockSyncService;
+
+    @Override
+    public void execute() {
+        try {
+            goodsStockSyncService.flush();
+        } catch (Exception e) {
+            log.error("商品库存同步失败", e);
+        }
+    }
+}
@@ -25,8 +25,8 @@ public class MaollarAuditTaskExecute implements EveryHourExecute {
     public void execute() {
         log.info("【Maollar 审计】开始执行资金对账审计...");
         try {
-            // 1. 获取 Stripe 实际收到的美元净额
-            double totalSalesUSD = stripePaymentSnapshotService.getCompletedTotalSalesUSD();
+            // 1. 获取 Stripe 实际收到的美元净额，审计按快照表汇总并校准缓存
+            double totalSalesUSD = stripePaymentSnapshotService.reconcileCompletedTotalSalesUSD();
             
             // 2. 获取链上已成功发放的 $MAO 总量
             double totalIssuedMAO = maoWithdrawalService.getTotalIssuedAmount();
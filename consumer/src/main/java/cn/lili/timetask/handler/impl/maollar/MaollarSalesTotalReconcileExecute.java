@@ -0,0 +1,32 @@
+package cn.lili.timetask.handler.impl.maollar;
+
+import cn.lili.modules.payment.service.StripePaymentSnapshotService;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maollar 累计销售额校准
+ * <p>
+ * 按 Stripe 快照表重新汇总已确认销售额写入缓存，覆盖未经确认接口写入的快照及退款状态变更
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class MaollarSalesTotalReconcileExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private StripePaymentSnapshotService stripePaymentSnapshotService;
+
+    @Override
+    public void execute() {
+        try {
+            stripePaymentSnapshotService.reconcileCompletedTotalSalesUSD();
+        } catch (Exception e) {
+            log.error("Maollar 累计销售额校准失败", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cn.lili.timetask.handler.impl.order;
+
+import cn.lili.event.OrderStatusChangeDispatcher;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单状态变更失败重放定时器
+ * <p>
+ * 重放执行失败的可重复执行的处理器，超过重放次数的转入搁置队列
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class OrderStatusChangeReplayExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private OrderStatusChangeDispatcher orderStatusChangeDispatcher;
+
+    @Override
+    public void execute() {
+        try {
+            orderStatusChangeDispatcher.replay();
+        } catch (Exception e) {
+            log.error("订单状态变更失败重放异常", e);
+        }
+    }
+}
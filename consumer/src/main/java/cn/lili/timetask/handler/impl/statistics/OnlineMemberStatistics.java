@@ -1,10 +1,11 @@
 package cn.lili.timetask.handler.impl.statistics;
 
+import cn.hutool.core.date.DateUnit;
 import cn.lili.cache.Cache;
 import cn.lili.cache.CachePrefix;
-import cn.lili.common.security.enums.UserEnums;
 import cn.lili.common.properties.StatisticsProperties;
 import cn.lili.modules.statistics.entity.vo.OnlineMemberVO;
+import cn.lili.modules.statistics.service.TrafficCounterService;
 import cn.lili.timetask.handler.EveryHourExecute;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -35,6 +36,11 @@ public class OnlineMemberStatistics implements EveryHourExecute {
      */
     @Autowired
     private StatisticsProperties statisticsProperties;
+    /**
+     * 流量计数
+     */
+    @Autowired
+    private TrafficCounterService trafficCounterService;
 
 
     @Override
@@ -72,7 +78,10 @@ public class OnlineMemberStatistics implements EveryHourExecute {
         calendar.set(Calendar.MINUTE, 0);
         calendar.set(Calendar.SECOND, 0);
         calendar.set(Calendar.MILLISECOND, 0);
-        onlineMemberVOS.add(new OnlineMemberVO(calendar.getTime(), cache.keys(CachePrefix.ACCESS_TOKEN.getPrefix(UserEnums.MEMBER) + "*").size(),
+        //统计上一小时内有请求的会员
+        Date endTime = calendar.getTime();
+        Date startTime = new Date(endTime.getTime() - DateUnit.HOUR.getMillis());
+        onlineMemberVOS.add(new OnlineMemberVO(endTime, trafficCounterService.online(startTime, endTime).intValue(),
                 lastNum.get()));
 
         //写入缓存
@@ -0,0 +1,35 @@
+package cn.lili.timetask.handler.impl.statistics;
+
+import cn.hutool.core.date.DateField;
+import cn.hutool.core.date.DateUtil;
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
+import cn.lili.timetask.handler.EveryHourExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单小时统计校准
+ * <p>
+ * 订单消息丢失或处理失败时，统计以此任务重新汇总的结果为准
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+@Slf4j
+@Component
+public class OrderStatisticsEveryHourExecute implements EveryHourExecute {
+
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
+
+    @Override
+    public void execute() {
+        try {
+            //重新汇总上一个小时
+            orderStatisticsDataService.refreshHour(DateUtil.offset(DateUtil.date(), DateField.HOUR_OF_DAY, -1));
+        } catch (Exception e) {
+            log.error("订单小时统计校准异常", e);
+        }
+    }
+}
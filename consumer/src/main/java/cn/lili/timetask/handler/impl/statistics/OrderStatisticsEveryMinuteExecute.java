@@ -0,0 +1,35 @@
+package cn.lili.timetask.handler.impl.statistics;
+
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
+import cn.lili.timetask.handler.EveryMinuteExecute;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单小时统计汇总
+ * <p>
+ * 汇总订单变化时标记的店铺小时，同一店铺小时一分钟内多次变化只汇总一次
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+@Slf4j
+@Component
+public class OrderStatisticsEveryMinuteExecute implements EveryMinuteExecute {
+
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
+
+    @Override
+    public void execute() {
+        try {
+            int count = orderStatisticsDataService.refreshDirty();
+            if (count > 0) {
+                log.debug("订单小时统计汇总{}个店铺小时", count);
+            }
+        } catch (Exception e) {
+            log.error("订单小时统计汇总异常", e);
+        }
+    }
+}
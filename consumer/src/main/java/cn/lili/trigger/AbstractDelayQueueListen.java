@@ -2,18 +2,40 @@ package cn.lili.trigger;
 
 import cn.hutool.json.JSONUtil;
 import cn.lili.cache.Cache;
-import cn.lili.common.utils.ThreadPoolUtil;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.trigger.util.DelayQueueTools;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisZSetCommands;
 import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.util.CollectionUtils;
 
+import jakarta.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 延时队列工厂
+ * <p>
+ * 轮询各分片，用脚本批量取出一分钟内到期的任务放入本地时间轮，到期后执行并确认删除。
+ * 取出的任务在redis中延长租约，节点宕机时租约到期后会被重新取出
  *
  * @author paulG
  * @since 2020/11/7
@@ -21,9 +43,68 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public abstract class AbstractDelayQueueListen implements ApplicationRunner {
 
+    /**
+     * 提前取出的时间范围（毫秒），该范围内到期的任务由时间轮精确触发
+     */
+    private static final long LOOKAHEAD = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 取出后的租约时长（毫秒），需大于提前取出的时间范围
+     */
+    private static final long LEASE = LOOKAHEAD + TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 时间轮每格时长（毫秒）
+     */
+    private static final long TICK = 100;
+
+    /**
+     * 线程池已满时任务放回时间轮的延迟（毫秒）
+     */
+    private static final long DEFER = TICK * 10;
+
+    /**
+     * 分片数量，需与生产端一致
+     */
+    @Value("${lili.delay-queue.shards:4}")
+    private Integer shards;
+
+    /**
+     * 轮询间隔（毫秒），只影响新增的近期任务被取出的时间，到期时间由时间轮保证
+     */
+    @Value("${lili.delay-queue.poll-interval:1000}")
+    private Long pollInterval;
+
+    /**
+     * 单个分片单次取出的数量
+     */
+    @Value("${lili.delay-queue.batch-size:500}")
+    private Integer batchSize;
+
     @Autowired
     private Cache cache;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DefaultRedisScript<List> delayQueuePopScript;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    private TimingWheel<DelayJob> timingWheel;
+
+    private Counter polledCounter;
+
+    private Counter firedCounter;
+
+    private Counter deferredCounter;
+
+    private Timer latenessTimer;
+
+    private volatile boolean running;
+
 
     /**
      * 延时队列机器开始运作
@@ -32,47 +113,131 @@ public abstract class AbstractDelayQueueListen implements ApplicationRunner {
         log.info("延时队列机器{}开始运作", setDelayQueueName());
 
         //监听redis队列
-        while (true) {
+        while (running) {
             try {
-                //获取当前时间的时间戳
-                long now = System.currentTimeMillis() / 1000;
-                //获取当前时间前需要执行的任务列表
-                Set<DefaultTypedTuple> tuples = cache.zRangeByScore(setDelayQueueName(), 0, now);
-
-                //如果任务不为空
-                if (!CollectionUtils.isEmpty(tuples)) {
-                    log.info("执行任务:{}", JSONUtil.toJsonStr(tuples));
-
-                    for (DefaultTypedTuple tuple : tuples) {
-                        String jobId = (String) tuple.getValue();
-                        //移除缓存，如果移除成功则表示当前线程处理了延时任务，则执行延时任务
-                        Long num = cache.zRemove(setDelayQueueName(), jobId);
-                        //如果移除成功, 则执行
-                        if (num > 0) {
-                            ThreadPoolUtil.execute(() -> invoke(jobId));
-                        }
-                    }
+                long now = System.currentTimeMillis();
+                for (int shard = 0; shard < shards; shard++) {
+                    poll(shard, now);
                 }
-
+                pollLegacy(now);
             } catch (Exception e) {
                 log.error("处理延时任务发生异常,异常原因为{}", e.getMessage(), e);
             } finally {
-                //间隔一秒钟搞一次
                 try {
-                    TimeUnit.SECONDS.sleep(5L);
+                    TimeUnit.MILLISECONDS.sleep(pollInterval);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    return;
                 }
+            }
+        }
 
+    }
+
+    /**
+     * 取出分片中即将到期的任务放入时间轮，单次取满时继续取
+     *
+     * @param shard 分片序号
+     * @param now   当前时间
+     */
+    private void poll(int shard, long now) {
+        List<String> keys = Arrays.asList(DelayQueueTools.indexKey(setDelayQueueName(), shard),
+                DelayQueueTools.payloadKey(setDelayQueueName(), shard));
+        while (true) {
+            List<Object> items = stringRedisTemplate.execute(delayQueuePopScript, keys,
+                    String.valueOf(now + LOOKAHEAD), String.valueOf(batchSize), String.valueOf(now), String.valueOf(LEASE));
+            if (CollectionUtils.isEmpty(items)) {
+                return;
+            }
+            for (int i = 0; i + 2 < items.size(); i += 3) {
+                long triggerTime = Long.parseLong(items.get(i + 1).toString());
+                timingWheel.add(new DelayJob(shard, items.get(i).toString(), triggerTime, items.get(i + 2).toString()), triggerTime);
+            }
+            polledCounter.increment(items.size() / 3.0);
+            if (items.size() / 3 < batchSize) {
+                return;
             }
         }
+    }
 
+    /**
+     * 升级前写入的任务，任务内容直接作为zset成员，执行时间为秒
+     *
+     * @param now 当前时间
+     */
+    private void pollLegacy(long now) {
+        Set<DefaultTypedTuple> tuples = cache.zRangeByScore(setDelayQueueName(), 0, now / 1000);
+        if (CollectionUtils.isEmpty(tuples)) {
+            return;
+        }
+        log.info("执行任务:{}", JSONUtil.toJsonStr(tuples));
+        for (DefaultTypedTuple tuple : tuples) {
+            String jobId = (String) tuple.getValue();
+            //移除缓存，如果移除成功则表示当前线程处理了延时任务，则执行延时任务
+            Long num = cache.zRemove(setDelayQueueName(), jobId);
+            if (num > 0) {
+                executorManager.execute(ExecutorEnum.DELAY_QUEUE, () -> invoke(jobId));
+            }
+        }
+    }
+
+    /**
+     * 时间轮到期，执行任务后确认删除，执行失败的任务租约到期后重新取出。
+     * 在时间轮工作线程中调用，线程池已满时不阻塞，放回时间轮稍后重试
+     *
+     * @param job 任务
+     */
+    private void fire(DelayJob job) {
+        boolean accepted = executorManager.tryExecute(ExecutorEnum.DELAY_QUEUE, () -> {
+            latenessTimer.record(Math.max(0, System.currentTimeMillis() - job.getTriggerTime()), TimeUnit.MILLISECONDS);
+            try {
+                renew(job);
+                invoke(job.getPayload());
+            } catch (Exception e) {
+                log.error("延时任务执行异常,任务id{}", job.getJobId(), e);
+                return;
+            }
+            firedCounter.increment();
+            ack(job);
+        });
+        if (!accepted && running) {
+            deferredCounter.increment();
+            timingWheel.add(job, System.currentTimeMillis() + DEFER);
+        }
+    }
+
+    /**
+     * 开始执行时续租，避免在线程池中等待过久的任务被其他节点重新取出；
+     * 任务已确认删除时不再写入。重复取出的任务由消费端删除任务标识保证只执行一次
+     *
+     * @param job 任务
+     */
+    private void renew(DelayJob job) {
+        byte[] indexKey = stringRedisTemplate.getStringSerializer().serialize(DelayQueueTools.indexKey(setDelayQueueName(), job.getShard()));
+        byte[] jobId = stringRedisTemplate.getStringSerializer().serialize(job.getJobId());
+        double score = System.currentTimeMillis() + LEASE;
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.zSetCommands().zAdd(indexKey, score, jobId, RedisZSetCommands.ZAddArgs.ifExists()));
+    }
+
+    private void ack(DelayJob job) {
+        String indexKey = DelayQueueTools.indexKey(setDelayQueueName(), job.getShard());
+        String payloadKey = DelayQueueTools.payloadKey(setDelayQueueName(), job.getShard());
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForZSet().remove(indexKey, job.getJobId());
+                redisOperations.opsForHash().delete(payloadKey, job.getJobId());
+                return null;
+            }
+        });
     }
 
     /**
      * 最终执行的任务方法
      *
-     * @param jobId 任务id
+     * @param jobId 任务内容
      */
     public abstract void invoke(String jobId);
 
@@ -88,7 +253,61 @@ public abstract class AbstractDelayQueueListen implements ApplicationRunner {
      * 监听队列
      */
     public void init() {
-        ThreadPoolUtil.getPool().execute(this::startDelayQueueMachine);
+        String queueName = setDelayQueueName();
+        polledCounter = Metrics.counter("lili.delay.queue.polled", "queue", queueName);
+        firedCounter = Metrics.counter("lili.delay.queue.fired", "queue", queueName);
+        deferredCounter = Metrics.counter("lili.delay.queue.deferred", "queue", queueName);
+        latenessTimer = Timer.builder("lili.delay.queue.lateness").tag("queue", queueName)
+                .publishPercentiles(0.5, 0.99).register(Metrics.globalRegistry);
+        //两层时间轮，第一层6.4秒，第二层约7分钟，覆盖提前取出的范围
+        timingWheel = new TimingWheel<>(TICK, 64, 2, this::fire);
+        Metrics.gauge("lili.delay.queue.pending", List.of(Tag.of("queue", queueName)),
+                timingWheel, TimingWheel::size);
+        timingWheel.start("delay-queue-wheel-" + queueName);
+
+        running = true;
+        Thread poller = new Thread(this::startDelayQueueMachine, "delay-queue-poller-" + queueName);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * 停止监听，时间轮中未执行的任务租约到期后由其他节点重新取出
+     */
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (timingWheel != null) {
+            timingWheel.stop();
+        }
+    }
+
+    /**
+     * 已取出的任务
+     */
+    @Data
+    @AllArgsConstructor
+    private static class DelayJob {
+
+        /**
+         * 分片序号
+         */
+        private int shard;
+
+        /**
+         * 任务id
+         */
+        private String jobId;
+
+        /**
+         * 执行时间（毫秒）
+         */
+        private long triggerTime;
+
+        /**
+         * 任务内容
+         */
+        private String payload;
     }
 
 }
@@ -28,17 +28,17 @@ public class TimeTriggerConsumer implements RocketMQListener<TimeTriggerMsg> {
     public void onMessage(TimeTriggerMsg timeTriggerMsg) {
         try {
             String key = DelayQueueTools.generateKey(timeTriggerMsg.getTriggerExecutor(), timeTriggerMsg.getTriggerTime(), timeTriggerMsg.getUniqueKey());
+            String legacyKey = DelayQueueTools.legacyKey(timeTriggerMsg.getTriggerExecutor(), timeTriggerMsg.getTriggerTime(), timeTriggerMsg.getUniqueKey());
 
-            if (cache.get(key) == null) {
-                log.info("执行器执行被取消：{} | 任务标识：{}", timeTriggerMsg.getTriggerExecutor(), timeTriggerMsg.getUniqueKey());
+            //删除标识成功的消费者才执行，任务租约到期被重复投递时只执行一次
+            if (!Boolean.TRUE.equals(cache.remove(key)) && !Boolean.TRUE.equals(cache.remove(legacyKey))) {
+                log.info("执行器执行被取消或已执行：{} | 任务标识：{}", timeTriggerMsg.getTriggerExecutor(), timeTriggerMsg.getUniqueKey());
                 return;
             }
 
             log.info("执行器执行：" + timeTriggerMsg.getTriggerExecutor());
             log.info("执行器参数：" + JSONUtil.toJsonStr(timeTriggerMsg.getParam()));
 
-            cache.remove(key);
-
             TimeTriggerExecutor executor = (TimeTriggerExecutor) SpringContextUtil.getBean(timeTriggerMsg.getTriggerExecutor());
             executor.execute(timeTriggerMsg.getParam());
         } catch (Exception e) {
@@ -0,0 +1,234 @@
+package cn.lili.trigger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ * <p>
+ * 第一层每格为一个tick，上层每格为下层转一圈的时长。任务放入能容纳其到期时间的最低一层，
+ * 指针走到上层格子时将其中的任务重新放入下层，最终在第一层到期。
+ * 时间轮只由工作线程读写，其他线程添加的任务先进入队列，在下一个tick放入时间轮
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+public class TimingWheel<T> {
+
+    /**
+     * 每格时长（毫秒）
+     */
+    private final long tickMs;
+
+    /**
+     * 每层格数
+     */
+    private final int wheelSize;
+
+    /**
+     * 各层每格包含的tick数
+     */
+    private final long[] spans;
+
+    /**
+     * 各层的格子
+     */
+    private final List<Entry<T>>[][] buckets;
+
+    /**
+     * 到期任务处理，在工作线程中调用，需尽快返回
+     */
+    private final Consumer<T> expiredHandler;
+
+    /**
+     * 待放入时间轮的任务
+     */
+    private final Queue<Entry<T>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 未到期的任务数量
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 已处理到的tick
+     */
+    private long currentTick;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    /**
+     * @param tickMs         每格时长（毫秒）
+     * @param wheelSize      每层格数
+     * @param levels         层数
+     * @param expiredHandler 到期任务处理
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, int levels, Consumer<T> expiredHandler) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.expiredHandler = expiredHandler;
+        this.spans = new long[levels];
+        this.buckets = new List[levels][wheelSize];
+        long span = 1;
+        for (int level = 0; level < levels; level++) {
+            spans[level] = span;
+            span *= wheelSize;
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[level][i] = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param value    任务
+     * @param deadline 到期时间（毫秒时间戳）
+     */
+    public void add(T value, long deadline) {
+        size.incrementAndGet();
+        pending.add(new Entry<>(value, (deadline + tickMs - 1) / tickMs));
+    }
+
+    /**
+     * 未到期的任务数量
+     *
+     * @return 任务数量
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 启动工作线程
+     *
+     * @param name 线程名称
+     */
+    public synchronized void start(String name) {
+        if (running) {
+            return;
+        }
+        running = true;
+        currentTick = System.currentTimeMillis() / tickMs;
+        worker = new Thread(this::work, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 停止工作线程，未到期的任务直接丢弃
+     */
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                long targetTick = System.currentTimeMillis() / tickMs;
+                drainPending();
+                while (currentTick < targetTick) {
+                    currentTick++;
+                    advance();
+                    drainPending();
+                }
+                long sleep = (currentTick + 1) * tickMs - System.currentTimeMillis();
+                if (sleep > 0) {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("时间轮处理异常", e);
+            }
+        }
+    }
+
+    private void drainPending() {
+        Entry<T> entry;
+        while ((entry = pending.poll()) != null) {
+            place(entry);
+        }
+    }
+
+    /**
+     * 指针前进一格：先将上层到达的格子降级，再处理第一层到期的格子
+     */
+    private void advance() {
+        for (int level = spans.length - 1; level > 0; level--) {
+            if (currentTick % spans[level] == 0) {
+                List<Entry<T>> bucket = takeBucket(level, (int) ((currentTick / spans[level]) % wheelSize));
+                bucket.forEach(this::place);
+            }
+        }
+        takeBucket(0, (int) (currentTick % wheelSize)).forEach(this::place);
+    }
+
+    private List<Entry<T>> takeBucket(int level, int index) {
+        List<Entry<T>> bucket = buckets[level][index];
+        if (bucket.isEmpty()) {
+            return bucket;
+        }
+        buckets[level][index] = new ArrayList<>();
+        return bucket;
+    }
+
+    /**
+     * 已到期的任务直接处理，否则放入能容纳的最低一层，超出范围的放入最高层最远的格子，到达时再重新放置
+     */
+    private void place(Entry<T> entry) {
+        if (entry.tick <= currentTick) {
+            expire(entry);
+            return;
+        }
+        for (int level = 0; level < spans.length; level++) {
+            long slot = entry.tick / spans[level];
+            if (slot < currentTick / spans[level] + wheelSize) {
+                buckets[level][(int) (slot % wheelSize)].add(entry);
+                return;
+            }
+        }
+        int top = spans.length - 1;
+        long slot = currentTick / spans[top] + wheelSize - 1;
+        buckets[top][(int) (slot % wheelSize)].add(entry);
+    }
+
+    private void expire(Entry<T> entry) {
+        size.decrementAndGet();
+        try {
+            expiredHandler.accept(entry.value);
+        } catch (Exception e) {
+            log.error("时间轮任务处理异常", e);
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final T value;
+
+        /**
+         * 到期的tick
+         */
+        private final long tick;
+
+        private Entry(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+    }
+}
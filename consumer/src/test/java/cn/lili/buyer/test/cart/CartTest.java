@@ -1,8 +1,10 @@
 package cn.lili.buyer.test.cart;
 
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.event.impl.StockUpdateExecute;
 import cn.lili.modules.order.order.entity.dto.OrderMessage;
 import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
+import cn.lili.modules.order.order.service.OrderService;
 import cn.lili.modules.payment.entity.enums.PaymentMethodEnum;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -22,6 +24,9 @@ class CartTest {
     @Autowired
     private StockUpdateExecute stockUpdateExecute;
 
+    @Autowired
+    private OrderService orderService;
+
     //订单支付，库存扣减单元测试
     @Test
     void stockUpdate() {
@@ -29,7 +34,7 @@ class CartTest {
         orderMessage.setOrderSn("O202102221363668802717351937");//订单sn
         orderMessage.setNewStatus(OrderStatusEnum.PAID);
         orderMessage.setPaymentMethod(PaymentMethodEnum.WALLET.name());
-        stockUpdateExecute.orderChange(orderMessage);
+        stockUpdateExecute.orderChange(new OrderStatusChangeContext(orderMessage, orderService));
     }
 
 
@@ -0,0 +1,182 @@
+package cn.lili.event;
+
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.order.order.entity.dto.OrderMessage;
+import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
+import cn.lili.modules.order.order.service.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单状态变更分发测试
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+class OrderStatusChangeDispatcherTest {
+
+    private final Queue<String> executed = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService executor;
+
+    private ListOperations<String, String> listOperations;
+
+    @BeforeEach
+    void setUp() {
+        executed.clear();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void dependentRunsAfterDependency() {
+        OrderStatusChangeDispatcher dispatcher = dispatcher(new Downstream(), new Upstream());
+
+        dispatcher.dispatch(message());
+
+        assertEquals(List.of("upstream", "downstream"), List.copyOf(executed));
+    }
+
+    @Test
+    void retryableHandlerRetriesBeforeParking() {
+        AtomicInteger calls = new AtomicInteger();
+        OrderStatusChangeDispatcher dispatcher = dispatcher(new Flaky(calls, true));
+
+        dispatcher.dispatch(message());
+
+        assertEquals(2, calls.get());
+        verify(listOperations, never()).leftPush(anyString(), anyString());
+    }
+
+    @Test
+    void nonRetryableHandlerIsParkedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        OrderStatusChangeDispatcher dispatcher = dispatcher(new Flaky(calls, false));
+
+        dispatcher.dispatch(message());
+
+        assertEquals(1, calls.get());
+        verify(listOperations).leftPush(eq(OrderStatusChangeDispatcher.PARKED_KEY), anyString());
+    }
+
+    @Test
+    void cyclicDependencyFailsOnStartup() {
+        assertThrows(IllegalStateException.class, () -> dispatcher(new CycleA(), new CycleB()));
+    }
+
+    private OrderStatusChangeDispatcher dispatcher(OrderStatusChangeEvent... handlers) {
+        ExecutorManager executorManager = mock(ExecutorManager.class);
+        when(executorManager.get(ExecutorEnum.ORDER_STATUS_CHANGE)).thenReturn(executor);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        listOperations = mock(ListOperations.class);
+        when(stringRedisTemplate.opsForList()).thenReturn(listOperations);
+
+        OrderStatusChangeDispatcher dispatcher = new OrderStatusChangeDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "orderStatusChangeEvents", List.of(handlers));
+        ReflectionTestUtils.setField(dispatcher, "orderService", mock(OrderService.class));
+        ReflectionTestUtils.setField(dispatcher, "executorManager", executorManager);
+        ReflectionTestUtils.setField(dispatcher, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(dispatcher, "retries", 2);
+        ReflectionTestUtils.setField(dispatcher, "retryInterval", 1L);
+        ReflectionTestUtils.setField(dispatcher, "replayLimit", 10);
+        ReflectionTestUtils.setField(dispatcher, "replayBatch", 100);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    private static OrderMessage message() {
+        return new OrderMessage("O1", OrderStatusEnum.PAID, "WALLET");
+    }
+
+    private class Upstream implements OrderStatusChangeEvent {
+        @Override
+        public void orderChange(OrderStatusChangeContext context) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add("upstream");
+        }
+    }
+
+    private class Downstream implements OrderStatusChangeEvent {
+        @Override
+        public void orderChange(OrderStatusChangeContext context) {
+            executed.add("downstream");
+        }
+
+        @Override
+        public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+            return List.of(Upstream.class);
+        }
+    }
+
+    private static class Flaky implements OrderStatusChangeEvent {
+
+        private final AtomicInteger calls;
+
+        private final boolean retryable;
+
+        Flaky(AtomicInteger calls, boolean retryable) {
+            this.calls = calls;
+            this.retryable = retryable;
+        }
+
+        @Override
+        public void orderChange(OrderStatusChangeContext context) {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("first call fails");
+            }
+        }
+
+        @Override
+        public boolean retryable() {
+            return retryable;
+        }
+    }
+
+    private static class CycleA implements OrderStatusChangeEvent {
+        @Override
+        public void orderChange(OrderStatusChangeContext context) {
+        }
+
+        @Override
+        public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+            return List.of(CycleB.class);
+        }
+    }
+
+    private static class CycleB implements OrderStatusChangeEvent {
+        @Override
+        public void orderChange(OrderStatusChangeContext context) {
+        }
+
+        @Override
+        public List<Class<? extends OrderStatusChangeEvent>> dependsOn() {
+            return List.of(CycleA.class);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package cn.lili.event.impl;
 
-
+import cn.lili.event.OrderStatusChangeContext;
 import cn.lili.modules.member.entity.dos.MemberPointsHistory;
 import cn.lili.modules.member.entity.enums.PointTypeEnum;
 import cn.lili.modules.member.service.MemberPointsHistoryService;
@@ -67,7 +67,7 @@ class MaocoinEconomicModelTest {
         message.setOrderSn(orderSn);
         message.setNewStatus(OrderStatusEnum.COMPLETED);
         
-        memberPointExecute.orderChange(message);
+        memberPointExecute.orderChange(new OrderStatusChangeContext(message, orderService));
         
         // 14 * 10 * 1,000,000 = 140,000,000
         verify(memberService, times(1)).updateMemberPoint(
@@ -48,6 +48,17 @@ public interface Cache<T> {
      */
     void multiSet(Map map);
 
+    /**
+     * 批量set，一次管道写入
+     * 每个key的过期时间为exp加上[0, jitter)之间的随机值，避免同一批写入的key同时过期
+     *
+     * @param map      键值对
+     * @param exp      过期时间
+     * @param jitter   过期时间随机增量，为0时不增加
+     * @param timeUnit 时间单位
+     */
+    void multiSet(Map map, Long exp, Long jitter, TimeUnit timeUnit);
+
 
     /**
      * 批量删除
@@ -138,6 +149,32 @@ public interface Cache<T> {
      */
     Map<Object, Object> getHash(Object key);
 
+    /**
+     * 批量读取缓存值
+     *
+     * @param key      缓存key
+     * @param hashKeys 要读取的hashKey集合
+     * @return 与hashKey顺序一致的数据，不存在的位置为null
+     */
+    List<T> multiGetHash(Object key, Collection hashKeys);
+
+    /**
+     * 读取hash中的全部hashKey
+     *
+     * @param key 缓存key
+     * @return hashKey集合
+     */
+    Set<Object> hashKeys(Object key);
+
+    /**
+     * 删除hash中的指定内容
+     *
+     * @param key      缓存key
+     * @param hashKeys 要删除的hashKey
+     * @return 删除数量
+     */
+    Long removeHash(Object key, Object... hashKeys);
+
     /**
      * 是否包含
      *
@@ -438,6 +438,18 @@ public enum CachePrefix {
      * 店铺 商品UV 统计
      */
     STORE_GOODS_UV,
+    /**
+     * 按日的页面浏览数，hash结构，hashKey为店铺id，平台为-1
+     */
+    VIEW_PV,
+    /**
+     * 按日、店铺的访客数，HyperLogLog结构
+     */
+    VIEW_UV,
+    /**
+     * 按分钟的活跃会员，HyperLogLog结构
+     */
+    ONLINE_MEMBER_MINUTE,
     /**
      * 分销员
      */
@@ -470,6 +482,11 @@ public enum CachePrefix {
      */
     INIT_INDEX_FLAG,
 
+    /**
+     * IM会话所在节点
+     */
+    IM_SESSION,
+
     /**
      * 店铺
      */
@@ -517,7 +534,37 @@ public enum CachePrefix {
     /**
      * MAO Token 价格
      */
-    MAO_PRICE;
+    MAO_PRICE,
+
+    /**
+     * 运费试算报价
+     */
+    FREIGHT_QUOTE,
+
+    /**
+     * 优惠券领取配额
+     */
+    COUPON_CLAIM,
+
+    /**
+     * 优惠券定向发放进度
+     */
+    COUPON_DISTRIBUTION,
+
+    /**
+     * 订单状态变更处理失败记录
+     */
+    ORDER_STATUS_CHANGE,
+
+    /**
+     * 订单小时统计待汇总的店铺小时及汇总锁
+     */
+    ORDER_STATISTICS,
+
+    /**
+     * Stripe 已确认累计销售额
+     */
+    MAOLLAR_SALES_TOTAL;
 
     public static String removePrefix(String str) {
         return str.substring(str.lastIndexOf("}_") + 2);
@@ -0,0 +1,521 @@
+package cn.lili.cache.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.ObjectUtil;
+import cn.lili.cache.Cache;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.properties.NearCacheProperties;
+import cn.lili.common.security.enums.UserEnums;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 二级缓存实现
+ * <p>
+ * 配置的缓存前缀在redis之前增加一层进程内缓存，其余缓存直接读写redis。
+ * 通过本类修改的缓存会立即失效本地缓存，并通过redis发布订阅通知其他节点失效。
+ * 本地缓存保存序列化后的副本，每次读取都返回新的对象，调用方修改返回值不会影响缓存。
+ *
+ * @author Chopper
+ * @since 2024-03-18
+ */
+@Slf4j
+@Primary
+@Component
+public class NearCache implements Cache {
+
+    /**
+     * 本地缓存命中统计指标
+     */
+    private static final String METRIC_NAME = "lili.cache.near";
+
+    /**
+     * 清空全部本地缓存的失效消息
+     */
+    private static final String CLEAR_ALL = "*";
+
+    /**
+     * 失效消息中多个key的分隔符
+     */
+    private static final String KEY_SEPARATOR = "\n";
+
+    /**
+     * 当前节点标识，忽略自己发出的失效消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 失效计数，读取redis期间发生失效时不写入本地缓存，避免写入过期数据
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 本地缓存失效监听，本节点及其他节点的失效均会通知
+     */
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private NearCacheProperties nearCacheProperties;
+
+    private LRUCache<String, Object> localCache;
+
+    private List<String> prefixes;
+
+    @PostConstruct
+    public void init() {
+        this.localCache = CacheUtil.newLRUCache(nearCacheProperties.getMaximumSize(), nearCacheProperties.getExpireSeconds() * 1000L);
+        this.prefixes = new ArrayList<>();
+        if (Boolean.TRUE.equals(nearCacheProperties.getEnabled())) {
+            for (CachePrefix cachePrefix : nearCacheProperties.getPrefixes()) {
+                this.prefixes.add(cachePrefix.getPrefix());
+                for (UserEnums userEnums : UserEnums.values()) {
+                    this.prefixes.add(cachePrefix.getPrefix(userEnums));
+                }
+            }
+        }
+        if (!this.prefixes.isEmpty()) {
+            redisMessageListenerContainer.addMessageListener(this::onInvalidate, new ChannelTopic(nearCacheProperties.getChannel()));
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        String prefix = this.nearPrefix(key);
+        if (prefix == null) {
+            return redisCache.get(key);
+        }
+        Object local = localCache.get((String) key, false);
+        if (local != null) {
+            this.counter(prefix, true).increment();
+            return this.fromLocal(local);
+        }
+        this.counter(prefix, false).increment();
+        long version = invalidations.get();
+        Object value = redisCache.get(key);
+        this.putLocal((String) key, value, version);
+        return value;
+    }
+
+    @Override
+    public String getString(Object key) {
+        Object value = this.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public List multiGet(Collection keys) {
+        List<Object> keyList = new ArrayList<>(keys);
+        Object[] result = new Object[keyList.size()];
+        List<Object> missKeys = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            Object key = keyList.get(i);
+            String prefix = this.nearPrefix(key);
+            Object local = prefix == null ? null : localCache.get((String) key, false);
+            if (local != null) {
+                this.counter(prefix, true).increment();
+                result[i] = this.fromLocal(local);
+            } else {
+                if (prefix != null) {
+                    this.counter(prefix, false).increment();
+                }
+                missKeys.add(key);
+                missIndexes.add(i);
+            }
+        }
+        if (!missKeys.isEmpty()) {
+            long version = invalidations.get();
+            List<?> values = redisCache.multiGet(missKeys);
+            for (int i = 0; i < missKeys.size(); i++) {
+                Object value = values == null ? null : values.get(i);
+                result[missIndexes.get(i)] = value;
+                if (this.nearPrefix(missKeys.get(i)) != null) {
+                    this.putLocal((String) missKeys.get(i), value, version);
+                }
+            }
+        }
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    @Override
+    public void multiSet(Map map) {
+        redisCache.multiSet(map);
+        this.invalidate(map.keySet());
+    }
+
+    @Override
+    public void multiSet(Map map, Long exp, Long jitter, TimeUnit timeUnit) {
+        redisCache.multiSet(map, exp, jitter, timeUnit);
+        this.invalidate(map.keySet());
+    }
+
+    @Override
+    public void multiDel(Collection keys) {
+        redisCache.multiDel(keys);
+        this.invalidate(keys);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        this.invalidate(Collections.singletonList(key));
+    }
+
+    @Override
+    public void put(Object key, Object value, Long exp) {
+        redisCache.put(key, value, exp);
+        this.invalidate(Collections.singletonList(key));
+    }
+
+    @Override
+    public void put(Object key, Object value, Long exp, TimeUnit timeUnit) {
+        redisCache.put(key, value, exp, timeUnit);
+        this.invalidate(Collections.singletonList(key));
+    }
+
+    @Override
+    public Boolean remove(Object key) {
+        Boolean result = redisCache.remove(key);
+        this.invalidate(Collections.singletonList(key));
+        return result;
+    }
+
+    @Override
+    public void vagueDel(Object key) {
+        redisCache.vagueDel(key);
+        if (this.overlaps(key)) {
+            this.evictLocal(key + CLEAR_ALL);
+            this.publish(key + CLEAR_ALL);
+        }
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        if (!prefixes.isEmpty()) {
+            this.evictLocal(CLEAR_ALL);
+            this.publish(CLEAR_ALL);
+        }
+    }
+
+    @Override
+    public void putHash(Object key, Object hashKey, Object hashValue) {
+        redisCache.putHash(key, hashKey, hashValue);
+    }
+
+    @Override
+    public void putAllHash(Object key, Map map) {
+        redisCache.putAllHash(key, map);
+    }
+
+    @Override
+    public Object getHash(Object key, Object hashKey) {
+        return redisCache.getHash(key, hashKey);
+    }
+
+    @Override
+    public Map<Object, Object> getHash(Object key) {
+        return redisCache.getHash(key);
+    }
+
+    @Override
+    public List multiGetHash(Object key, Collection hashKeys) {
+        return redisCache.multiGetHash(key, hashKeys);
+    }
+
+    @Override
+    public Set<Object> hashKeys(Object key) {
+        return redisCache.hashKeys(key);
+    }
+
+    @Override
+    public Long removeHash(Object key, Object... hashKeys) {
+        return redisCache.removeHash(key, hashKeys);
+    }
+
+    @Override
+    public boolean hasKey(Object key) {
+        if (this.nearPrefix(key) != null) {
+            //读取时写入本地缓存，例如token校验
+            return this.get(key) != null;
+        }
+        return redisCache.hasKey(key);
+    }
+
+    @Override
+    public List<Object> keys(String pattern) {
+        return redisCache.keys(pattern);
+    }
+
+    @Override
+    public List<Object> keysBlock(String pattern) {
+        return redisCache.keysBlock(pattern);
+    }
+
+    @Override
+    public Long cumulative(Object key, Object value) {
+        return redisCache.cumulative(key, value);
+    }
+
+    @Override
+    public Long counter(Object key) {
+        return redisCache.counter(key);
+    }
+
+    @Override
+    public List multiCounter(Collection keys) {
+        return redisCache.multiCounter(keys);
+    }
+
+    @Override
+    public Long mergeCounter(Object... key) {
+        return redisCache.mergeCounter(key);
+    }
+
+    @Override
+    public Long incr(String key, long liveTime) {
+        Long result = redisCache.incr(key, liveTime);
+        this.invalidate(Collections.singletonList(key));
+        return result;
+    }
+
+    @Override
+    public Long incr(String key) {
+        Long result = redisCache.incr(key);
+        this.invalidate(Collections.singletonList(key));
+        return result;
+    }
+
+    @Override
+    public void incrementScore(String sortedSetName, String keyword) {
+        redisCache.incrementScore(sortedSetName, keyword);
+    }
+
+    @Override
+    public void incrementScore(String sortedSetName, String keyword, Integer score) {
+        redisCache.incrementScore(sortedSetName, keyword, score);
+    }
+
+    @Override
+    public Set<ZSetOperations.TypedTuple<Object>> reverseRangeWithScores(String sortedSetName, Integer start, Integer end) {
+        return redisCache.reverseRangeWithScores(sortedSetName, start, end);
+    }
+
+    @Override
+    public Set<ZSetOperations.TypedTuple<Object>> reverseRangeWithScores(String sortedSetName, Integer count) {
+        return redisCache.reverseRangeWithScores(sortedSetName, count);
+    }
+
+    @Override
+    public boolean zAdd(String key, long score, String value) {
+        return redisCache.zAdd(key, score, value);
+    }
+
+    @Override
+    public Set<ZSetOperations.TypedTuple<Object>> zRangeByScore(String key, int from, long to) {
+        return redisCache.zRangeByScore(key, from, to);
+    }
+
+    @Override
+    public Long zRemove(String key, String... value) {
+        return redisCache.zRemove(key, value);
+    }
+
+    /**
+     * 失效本地缓存并通知其他节点，用于绕过本类直接修改redis的场景，例如lua脚本
+     * 多个key合并为一条失效消息发送
+     *
+     * @param keys 缓存key
+     */
+    public void invalidate(Collection<?> keys) {
+        List<String> nearKeys = new ArrayList<>();
+        for (Object key : keys) {
+            if (this.nearPrefix(key) != null) {
+                this.evictLocal((String) key);
+                nearKeys.add((String) key);
+            }
+        }
+        if (!nearKeys.isEmpty()) {
+            this.publish(String.join(KEY_SEPARATOR, nearKeys));
+        }
+    }
+
+    /**
+     * 添加本地缓存失效监听，用于同步失效依赖缓存内容构建的其他进程内数据
+     *
+     * @param listener 监听，参数为失效的key，以*结尾时为按前缀失效，*为全部失效
+     */
+    public void addEvictionListener(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * 获取缓存key对应的本地缓存前缀
+     *
+     * @param key 缓存key
+     * @return 前缀，不使用本地缓存时返回null
+     */
+    private String nearPrefix(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        for (String prefix : prefixes) {
+            if (((String) key).startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 模糊删除的key是否涉及本地缓存
+     */
+    private boolean overlaps(Object key) {
+        if (key == null) {
+            return false;
+        }
+        String pattern = key.toString();
+        for (String prefix : prefixes) {
+            if (pattern.startsWith(prefix) || prefix.startsWith(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putLocal(String key, Object value, long version) {
+        if (value == null || invalidations.get() != version) {
+            return;
+        }
+        Object local = this.toLocal(value);
+        if (local != null) {
+            localCache.put(key, local);
+        }
+    }
+
+    /**
+     * 不可变对象直接保存，其他对象保存序列化后的副本，无法序列化的对象不保存
+     */
+    private Object toLocal(Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Serializable) {
+            try {
+                return new Snapshot(ObjectUtil.serialize(value));
+            } catch (Exception e) {
+                log.debug("本地缓存序列化失败，跳过本地缓存", e);
+            }
+        }
+        return null;
+    }
+
+    private Object fromLocal(Object local) {
+        if (local instanceof Snapshot) {
+            return ObjectUtil.deserialize(((Snapshot) local).bytes);
+        }
+        return local;
+    }
+
+    /**
+     * 失效本地缓存，key以*结尾时按前缀失效
+     */
+    private void evictLocal(String key) {
+        invalidations.incrementAndGet();
+        if (CLEAR_ALL.equals(key)) {
+            localCache.clear();
+        } else if (key.endsWith(CLEAR_ALL)) {
+            String prefix = key.substring(0, key.length() - 1);
+            for (String localKey : new ArrayList<>(localCache.keySet())) {
+                if (localKey.startsWith(prefix)) {
+                    localCache.remove(localKey);
+                }
+            }
+        } else {
+            localCache.remove(key);
+        }
+        for (Consumer<String> listener : evictionListeners) {
+            try {
+                listener.accept(key);
+            } catch (Exception e) {
+                log.error("本地缓存失效监听处理异常，key:{}", key, e);
+            }
+        }
+    }
+
+    /**
+     * 发送失效消息
+     *
+     * @param keys 失效的key，多个key以换行分隔
+     */
+    private void publish(String keys) {
+        try {
+            redisTemplate.convertAndSend(nearCacheProperties.getChannel(), nodeId + "|" + keys);
+        } catch (Exception e) {
+            log.error("本地缓存失效消息发送失败，key:{}", keys, e);
+        }
+    }
+
+    private void onInvalidate(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body == null) {
+            return;
+        }
+        String content = body.toString();
+        int index = content.indexOf('|');
+        if (index < 0 || nodeId.equals(content.substring(0, index))) {
+            return;
+        }
+        for (String key : content.substring(index + 1).split(KEY_SEPARATOR)) {
+            if (!key.isEmpty()) {
+                this.evictLocal(key);
+            }
+        }
+    }
+
+    private Counter counter(String prefix, boolean hit) {
+        return counters.computeIfAbsent(prefix + hit, k -> Metrics.counter(METRIC_NAME, "prefix", prefix, "result", hit ? "hit" : "miss"));
+    }
+
+    /**
+     * 序列化后的缓存副本
+     */
+    private static class Snapshot {
+
+        private final byte[] bytes;
+
+        Snapshot(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -56,6 +57,25 @@ public class RedisCache implements Cache {
         redisTemplate.opsForValue().multiSet(map);
     }
 
+    @Override
+    public void multiSet(Map map, Long exp, Long jitter, TimeUnit timeUnit) {
+        if (map == null || map.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) {
+                ValueOperations valueOperations = operations.opsForValue();
+                for (Object entry : map.entrySet()) {
+                    Map.Entry<?, ?> item = (Map.Entry<?, ?>) entry;
+                    long ttl = jitter == null || jitter <= 0 ? exp : exp + ThreadLocalRandom.current().nextLong(jitter);
+                    valueOperations.set(item.getKey(), item.getValue(), ttl, timeUnit);
+                }
+                return null;
+            }
+        });
+    }
+
     @Override
     public void multiDel(Collection keys) {
         redisTemplate.delete(keys);
@@ -119,9 +139,24 @@ public class RedisCache implements Cache {
         return this.redisTemplate.opsForHash().entries(key);
     }
 
+    @Override
+    public List multiGetHash(Object key, Collection hashKeys) {
+        return this.redisTemplate.opsForHash().multiGet(key, hashKeys);
+    }
+
+    @Override
+    public Set<Object> hashKeys(Object key) {
+        return this.redisTemplate.opsForHash().keys(key);
+    }
+
+    @Override
+    public Long removeHash(Object key, Object... hashKeys) {
+        return this.redisTemplate.opsForHash().delete(key, hashKeys);
+    }
+
     @Override
     public boolean hasKey(Object key) {
-        return this.redisTemplate.opsForValue().get(key) != null;
+        return Boolean.TRUE.equals(this.redisTemplate.hasKey(key));
     }
 
     /**
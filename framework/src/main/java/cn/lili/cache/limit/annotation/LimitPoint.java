@@ -1,6 +1,7 @@
 package cn.lili.cache.limit.annotation;
 
 
+import cn.lili.cache.limit.enums.LimitAlgorithmEnums;
 import cn.lili.cache.limit.enums.LimitTypeEnums;
 
 import java.lang.annotation.*;
@@ -61,4 +62,18 @@ public @interface LimitPoint {
      * @return LimitType
      */
     LimitTypeEnums limitType() default LimitTypeEnums.IP;
-}
\ No newline at end of file
+
+    /**
+     * 限流算法
+     *
+     * @return LimitAlgorithmEnums
+     */
+    LimitAlgorithmEnums algorithm() default LimitAlgorithmEnums.FIXED_WINDOW;
+
+    /**
+     * 令牌桶算法每次从redis领取的令牌数，小于1时取最多访问次数的十分之一
+     *
+     * @return int
+     */
+    int lease() default 0;
+}
@@ -0,0 +1,23 @@
+package cn.lili.cache.limit.enums;
+
+/**
+ * 限流算法
+ *
+ * @author Chopper
+ * @since 2024-03-27
+ */
+public enum LimitAlgorithmEnums {
+    /**
+     * 固定窗口计数，周期边界处可能通过两倍的请求
+     */
+    FIXED_WINDOW,
+    /**
+     * 滑动窗口（GCRA），请求按周期平均分布，不会在周期边界突增，本节点会记住被拒绝的key直到可再次访问
+     */
+    SLIDING_WINDOW,
+    /**
+     * 令牌桶，节点每次从redis领取一批令牌在本地使用，大部分请求无需访问redis，
+     * 适合请求量大的全局限流，多节点之间的精度以领取的令牌数为限
+     */
+    TOKEN_BUCKET
+}
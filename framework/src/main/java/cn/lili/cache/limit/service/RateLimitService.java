@@ -1,23 +1,35 @@
 package cn.lili.cache.limit.service;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.lili.cache.limit.enums.LimitAlgorithmEnums;
 import cn.lili.common.enums.ResultCode;
 import cn.lili.common.exception.ServiceException;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 运行时限流工具（复用 limit.lua）。
  * <p>
- * 用于需要“按账号/邮箱”等动态维度限流的场景（非纯 IP 维度）。
+ * 用于需要“按账号/邮箱”等动态维度限流的场景（非纯 IP 维度），
+ * 同时为 {@link cn.lili.cache.limit.annotation.LimitPoint} 提供固定窗口、滑动窗口、令牌桶三种限流算法。
  */
 @Slf4j
 @Component
@@ -25,9 +37,44 @@ public class RateLimitService {
 
     private static final String DEFAULT_PREFIX = "limit:";
 
+    private static final String METRIC_NAME = "lili.limit.requests";
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 滑动窗口被拒绝的key及可再次访问的时间
+     */
+    private LRUCache<String, Long> blockedKeys;
+
+    /**
+     * 令牌桶本节点领取的令牌
+     */
+    private LRUCache<String, TokenLease> tokenLeases;
+
+    /**
+     * 本地保存的限流key数量上限
+     */
+    @Value("${lili.limit.local-size:10000}")
+    private Integer localSize;
+
     private RedisTemplate<String, Serializable> redisTemplate;
     private DefaultRedisScript<Long> limitScript;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DefaultRedisScript<Long> limitGcraScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> limitTokenBucketScript;
+
+    @PostConstruct
+    public void init() {
+        this.blockedKeys = CacheUtil.newLRUCache(localSize);
+        this.tokenLeases = CacheUtil.newLRUCache(localSize);
+    }
+
     @Autowired
     public void setRedisTemplate(RedisTemplate redisTemplate) {
         this.redisTemplate = redisTemplate;
@@ -47,21 +94,105 @@ public class RateLimitService {
             throw new ServiceException(ResultCode.ILLEGAL_REQUEST_ERROR);
         }
         String redisKey = StringUtils.join(StringUtils.defaultString(prefix), key);
-        ImmutableList<String> keys = ImmutableList.of(redisKey);
+        check(StringUtils.defaultString(prefix), redisKey, limitCount, periodSeconds, LimitAlgorithmEnums.FIXED_WINDOW, 0);
+    }
+
+    /**
+     * 按指定算法限流，超过限制时抛出异常
+     *
+     * @param name          限流名称，用于统计
+     * @param redisKey      限流key
+     * @param limitCount    周期内最多访问次数
+     * @param periodSeconds 周期，单位秒
+     * @param algorithm     限流算法
+     * @param lease         令牌桶算法每次领取的令牌数，小于1时取最多访问次数的十分之一
+     */
+    public void check(String name, String redisKey, int limitCount, int periodSeconds, LimitAlgorithmEnums algorithm, int lease) {
+        boolean passed;
         try {
-            Number count = redisTemplate.execute(limitScript, keys, limitCount, periodSeconds);
-            if (count == null) {
-                return;
+            switch (algorithm) {
+                case SLIDING_WINDOW:
+                    passed = this.slidingWindow(redisKey, limitCount, periodSeconds);
+                    break;
+                case TOKEN_BUCKET:
+                    passed = this.tokenBucket(redisKey, limitCount, periodSeconds, lease);
+                    break;
+                default:
+                    passed = this.fixedWindow(redisKey, limitCount, periodSeconds);
+                    break;
             }
-            if (count.intValue() > limitCount) {
-                throw new ServiceException(ResultCode.LIMIT_ERROR);
-            }
-        } catch (ServiceException e) {
-            throw e;
         } catch (Exception e) {
-            log.error("动态限流异常, key={}", redisKey, e);
+            log.error("限流异常, key={}", redisKey, e);
             throw new ServiceException(ResultCode.ERROR);
         }
+        this.counter(name, algorithm, passed).increment();
+        if (!passed) {
+            log.debug("请求被限流, key={}, 限制{}次/{}秒", redisKey, limitCount, periodSeconds);
+            throw new ServiceException(ResultCode.LIMIT_ERROR);
+        }
+    }
+
+    /**
+     * 固定窗口计数
+     */
+    private boolean fixedWindow(String redisKey, int limitCount, int periodSeconds) {
+        Number count = redisTemplate.execute(limitScript, ImmutableList.of(redisKey), limitCount, periodSeconds);
+        //如果从redis中执行都值判定为空，则这里跳过
+        return count == null || count.intValue() <= limitCount;
+    }
+
+    /**
+     * 滑动窗口（GCRA），被拒绝的key在本节点记录可再次访问的时间，期间不再访问redis
+     */
+    private boolean slidingWindow(String redisKey, int limitCount, int periodSeconds) {
+        Long blockedUntil = blockedKeys.get(redisKey, false);
+        if (blockedUntil != null && blockedUntil > System.currentTimeMillis()) {
+            return false;
+        }
+        Long waitMillis = stringRedisTemplate.execute(limitGcraScript, Collections.singletonList(redisKey),
+                String.valueOf(limitCount), String.valueOf(periodSeconds));
+        if (waitMillis == null || waitMillis <= 0) {
+            return true;
+        }
+        blockedKeys.put(redisKey, System.currentTimeMillis() + waitMillis, waitMillis);
+        return false;
+    }
+
+    /**
+     * 令牌桶，本节点领取的令牌用完后再从redis领取
+     */
+    private boolean tokenBucket(String redisKey, int limitCount, int periodSeconds, int lease) {
+        int leaseSize = Math.min(limitCount, lease > 0 ? lease : Math.max(1, limitCount / 10));
+        //令牌在补充同等数量所需的时间内有效，超时未用完的令牌丢弃，避免本节点长期占用令牌
+        long leaseMillis = Math.max(1L, periodSeconds * 1000L * leaseSize / limitCount);
+        TokenLease tokenLease = tokenLeases.get(redisKey, false, TokenLease::new);
+        synchronized (tokenLease) {
+            long now = System.currentTimeMillis();
+            if (now < tokenLease.expireAt) {
+                if (tokenLease.permits > 0) {
+                    tokenLease.permits--;
+                    return true;
+                }
+                //令牌已耗尽，等待补充期间直接拒绝
+                if (tokenLease.exhausted) {
+                    return false;
+                }
+            }
+            Long granted = stringRedisTemplate.execute(limitTokenBucketScript, Collections.singletonList(redisKey),
+                    String.valueOf(limitCount), String.valueOf(periodSeconds), String.valueOf(leaseSize));
+            if (granted == null) {
+                return true;
+            }
+            tokenLease.exhausted = granted <= 0;
+            tokenLease.permits = Math.max(0, granted.intValue() - 1);
+            tokenLease.expireAt = now + (tokenLease.exhausted ? Math.max(1L, periodSeconds * 1000L / limitCount) : leaseMillis);
+            return !tokenLease.exhausted;
+        }
+    }
+
+    private Counter counter(String name, LimitAlgorithmEnums algorithm, boolean passed) {
+        return counters.computeIfAbsent(name + algorithm + passed, k -> Metrics.counter(METRIC_NAME,
+                "name", name, "algorithm", algorithm.name(), "result", passed ? "pass" : "reject"));
     }
 
     /**
@@ -85,5 +216,25 @@ public class RateLimitService {
             return StringUtils.left(value, 64);
         }
     }
-}
 
+    /**
+     * 本节点领取的令牌
+     */
+    private static class TokenLease {
+
+        /**
+         * 剩余令牌数
+         */
+        private int permits;
+
+        /**
+         * 令牌有效期
+         */
+        private long expireAt;
+
+        /**
+         * redis中令牌是否已耗尽
+         */
+        private boolean exhausted;
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.scripting.support.ResourceScriptSource;
 
+import java.util.List;
+
 /**
  * redis 脚本
  *
@@ -39,4 +41,125 @@ public class LuaScript {
         redisScript.setResultType(Long.class);
         return redisScript;
     }
+
+    /**
+     * GCRA（滑动窗口）流量限制脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> limitGcraScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/limit_gcra.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 令牌桶流量限制脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> limitTokenBucketScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/limit_token_bucket.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 下单库存预占脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> stockReserveScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/stock_reserve.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 预占库存释放脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> stockReleaseScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/stock_release.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 延时任务批量取出脚本
+     */
+    @Bean
+    public DefaultRedisScript<List> delayQueuePopScript() {
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/delay_queue_pop.lua")));
+        redisScript.setResultType(List.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券领取脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> couponClaimScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券配额加载脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> couponClaimLoadScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim_load.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券领取记录批量取出脚本
+     */
+    @Bean
+    public DefaultRedisScript<List> couponClaimPopScript() {
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim_pop.lua")));
+        redisScript.setResultType(List.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券处理中领取记录放回脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> couponClaimRequeueScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim_requeue.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券领取释放脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> couponClaimReleaseScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim_release.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    /**
+     * 优惠券定向发放已领取数量累加脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> couponClaimIssueScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("script/coupon_claim_issue.lua")));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
 }
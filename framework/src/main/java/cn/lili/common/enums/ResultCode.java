@@ -422,6 +422,7 @@ public enum ResultCode {
     FREIGHT_TEMPLATE_NOT_EXIST(50010, "当前模版不存在"),
     STORE_STATUS_ERROR(50011, "店铺在申请中或审核中，请勿重复操作"),
     STORE_DELIVER_ADDRESS_EXIST(50012, "请填写发货地址"),
+    FREIGHT_QUOTE_TIMEOUT(50013, "运费试算超时，请稍后重试"),
 
     /**
      * 结算单
@@ -515,6 +516,7 @@ public enum ResultCode {
     CUSTOM_WORDS_SECRET_KEY_ERROR(90002, "秘钥验证失败！"),
     CONNECT_NOT_EXIST(90000, "登录方式不存在！"),
     ELASTICSEARCH_INDEX_INIT_ERROR(90003, "索引初始化失败！"),
+    ELASTICSEARCH_INDEX_WRITE_ERROR(90006, "索引写入失败，请稍后重试"),
     PURCHASE_ORDER_DEADLINE_ERROR(90004, "供求单，已超过报名截止时间"),
     USER_ADD_ERROR(90005, "用户添加失败"),
     INDEX_BUILDING(90005, "索引正在生成");
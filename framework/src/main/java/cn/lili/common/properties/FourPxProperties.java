@@ -36,4 +36,9 @@ public class FourPxProperties {
      * 默认始发仓代码 (如 SZ, GZ)
      */
     private String defaultWarehouseCode = "SZ";
+
+    /**
+     * 接口超时时间（毫秒）
+     */
+    private Integer timeout = 5000;
 }
@@ -0,0 +1,53 @@
+package cn.lili.common.properties;
+
+import cn.lili.cache.CachePrefix;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 本地缓存配置
+ * <p>
+ * 指定前缀的缓存在redis之前增加一层进程内缓存，多节点之间通过redis发布订阅失效
+ *
+ * @author Chopper
+ * @since 2024-03-18
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "lili.cache.near")
+public class NearCacheProperties {
+
+    /**
+     * 是否开启本地缓存
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 使用本地缓存的缓存前缀，按用户端区分的前缀（如ACCESS_TOKEN）同时匹配各用户端
+     * 库存缓存会被lua脚本直接修改，不建议加入
+     * 权限缓存的失效同时用于失效编译后的权限，移除后编译后的权限只能等待过期
+     */
+    private List<CachePrefix> prefixes = new ArrayList<>(Arrays.asList(CachePrefix.GOODS_SKU, CachePrefix.GOODS, CachePrefix.ACCESS_TOKEN,
+            CachePrefix.PERMISSION_LIST));
+
+    /**
+     * 本地缓存最大数量
+     */
+    private Integer maximumSize = 10000;
+
+    /**
+     * 本地缓存过期时间，单位秒，失效消息丢失时以此为准
+     */
+    private Integer expireSeconds = 30;
+
+    /**
+     * 失效消息频道
+     */
+    private String channel = "{NEAR_CACHE}_INVALIDATE";
+
+}
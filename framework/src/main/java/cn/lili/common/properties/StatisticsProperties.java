@@ -26,6 +26,11 @@ public class StatisticsProperties {
      */
     private Integer currentOnlineUpdate = 600;
 
+    /**
+     * 当前在线人数 统计最近X分钟内有请求的会员
+     */
+    private Integer onlineMinutes = 30;
+
     public Integer getOnlineMember() {
         if (onlineMember == null) {
             return 48;
@@ -39,4 +44,11 @@ public class StatisticsProperties {
         }
         return currentOnlineUpdate;
     }
+
+    public Integer getOnlineMinutes() {
+        if (onlineMinutes == null || onlineMinutes <= 0) {
+            return 30;
+        }
+        return onlineMinutes;
+    }
 }
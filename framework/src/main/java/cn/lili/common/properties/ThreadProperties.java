@@ -1,9 +1,13 @@
 package cn.lili.common.properties;
 
+import cn.lili.common.thread.ExecutorEnum;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * 线程配置
  * @author Chopper
@@ -39,5 +43,36 @@ public class ThreadProperties {
      */
     private Integer keepAliveSeconds = 60;
 
+    /**
+     * 业务线程池配置，未配置的项使用 ExecutorEnum 中的默认值
+     */
+    private Map<ExecutorEnum, Pool> executors = new EnumMap<>(ExecutorEnum.class);
+
+    /**
+     * 业务线程池
+     */
+    @Data
+    public static class Pool {
+
+        /**
+         * 核心线程数
+         */
+        private Integer corePoolSize;
+
+        /**
+         * 最大线程数
+         */
+        private Integer maxPoolSize;
+
+        /**
+         * 队列最大长度
+         */
+        private Integer queueCapacity;
+
+        /**
+         * 是否使用虚拟线程，需运行在JDK21及以上
+         */
+        private Boolean virtual;
+    }
 
 }
@@ -9,8 +9,10 @@ import cn.lili.common.security.enums.SecurityEnum;
 import cn.lili.common.security.token.SecretKeyUtil;
 import cn.lili.common.utils.StringUtils;
 import com.google.gson.Gson;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.JwtException;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -25,6 +27,28 @@ import jakarta.servlet.http.HttpServletRequest;
  */
 public class UserContext {
 
+    /**
+     * 当前请求解析后的用户信息，同一请求内只解析一次
+     */
+    public static final String AUTH_USER_ATTRIBUTE = "AuthUser";
+
+    /**
+     * 已验证签名的token本地缓存时间，单位毫秒
+     */
+    private static final long VERIFIED_TOKEN_TTL = 60 * 1000L;
+
+    /**
+     * 已验证签名的token，value为token中的用户信息json
+     */
+    private static final LRUCache<String, String> VERIFIED_TOKENS = CacheUtil.newLRUCache(10000, VERIFIED_TOKEN_TTL);
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 异步任务中的用户信息，由线程池在提交任务时传递
+     */
+    private static final ThreadLocal<AuthUser> TASK_USER = new ThreadLocal<>();
+
     /**
      * 根据request获取用户信息
      *
@@ -39,10 +63,40 @@ public class UserContext {
                 return openApiUser;
             }
             
+            AuthUser authUser = (AuthUser) request.getAttribute(AUTH_USER_ATTRIBUTE);
+            if (authUser != null) {
+                return authUser;
+            }
             String accessToken = request.getHeader(SecurityEnum.HEADER_TOKEN.getValue());
-            return getAuthUser(accessToken);
+            authUser = getAuthUser(accessToken);
+            if (authUser != null) {
+                request.setAttribute(AUTH_USER_ATTRIBUTE, authUser);
+            }
+            return authUser;
+        }
+        return TASK_USER.get();
+    }
+
+    /**
+     * 异步任务中的用户信息
+     *
+     * @return 提交任务时的用户
+     */
+    public static AuthUser getTaskUser() {
+        return TASK_USER.get();
+    }
+
+    /**
+     * 设置异步任务中的用户信息
+     *
+     * @param authUser 提交任务时的用户，为空时清除
+     */
+    public static void setTaskUser(AuthUser authUser) {
+        if (authUser == null) {
+            TASK_USER.remove();
+        } else {
+            TASK_USER.set(authUser);
         }
-        return null;
     }
 
     /**
@@ -96,20 +150,38 @@ public class UserContext {
      */
     public static AuthUser getAuthUser(String accessToken) {
         try {
-            //获取token的信息
-            Claims claims
-                    = Jwts.parserBuilder()
-                    .setSigningKey(SecretKeyUtil.generalKeyByDecoders())
-                    .build()
-                    .parseClaimsJws(accessToken).getBody();
-            //获取存储在claims中的用户信息
-            String json = claims.get(SecurityEnum.USER_CONTEXT.getValue()).toString();
-            return new Gson().fromJson(json, AuthUser.class);
+            return parseAuthUser(accessToken);
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * 解析token中的用户信息，已验证过签名的token在本地缓存一段时间，不重复验签
+     * token是否失效仍需通过缓存中的token判断
+     *
+     * @param accessToken token
+     * @return 授权用户
+     * @throws JwtException token过期、签名错误等
+     */
+    public static AuthUser parseAuthUser(String accessToken) {
+        String json = VERIFIED_TOKENS.get(accessToken, false);
+        if (json == null) {
+            //获取token的信息
+            Claims claims = SecretKeyUtil.jwtParser().parseClaimsJws(accessToken).getBody();
+            //获取存储在claims中的用户信息
+            json = claims.get(SecurityEnum.USER_CONTEXT.getValue()).toString();
+            long timeout = VERIFIED_TOKEN_TTL;
+            if (claims.getExpiration() != null) {
+                timeout = Math.min(timeout, claims.getExpiration().getTime() - System.currentTimeMillis());
+            }
+            if (timeout > 0) {
+                VERIFIED_TOKENS.put(accessToken, json, timeout);
+            }
+        }
+        return GSON.fromJson(json, AuthUser.class);
+    }
+
 
     /**
      * 写入邀请人信息
@@ -0,0 +1,166 @@
+package cn.lili.common.security.permission;
+
+import cn.lili.common.security.enums.PermissionEnum;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译后的用户权限
+ * <p>
+ * 权限路径按匹配方式预先分类：不含通配符的路径精确匹配，仅以*结尾的路径放入前缀树，
+ * 其余路径按{@link PatternMatchUtils#simpleMatch(String, String)}匹配，结果与逐条匹配一致。
+ * 同一请求地址的鉴权结果会被缓存，对象创建后不可修改，可在多个线程间共享
+ *
+ * @author Chopper
+ * @since 2024-03-26
+ */
+public class PermissionMatcher {
+
+    /**
+     * 单个用户缓存的鉴权结果上限，超过后不再缓存，避免路径参数导致缓存无限增长
+     */
+    private static final int MAX_DECISIONS = 1024;
+
+    /**
+     * 超级权限（可操作）
+     */
+    private final Rules superRules;
+
+    /**
+     * 查看权限
+     */
+    private final Rules queryRules;
+
+    /**
+     * 查看请求的鉴权结果
+     */
+    private final Map<String, Boolean> queryDecisions = new ConcurrentHashMap<>();
+
+    /**
+     * 操作请求的鉴权结果
+     */
+    private final Map<String, Boolean> operateDecisions = new ConcurrentHashMap<>();
+
+    /**
+     * 编译时的权限版本，用于判断编译期间权限是否被修改
+     */
+    private final long version;
+
+    public PermissionMatcher(Map<String, List<String>> permission, long version) {
+        this.superRules = new Rules(permission == null ? null : permission.get(PermissionEnum.SUPER.name()));
+        this.queryRules = new Rules(permission == null ? null : permission.get(PermissionEnum.QUERY.name()));
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 校验权限，查看请求需要超级权限或查看权限，操作请求需要超级权限
+     *
+     * @param url   请求地址
+     * @param query 是否为查看（GET）请求
+     * @return 是否拥有权限
+     */
+    public boolean match(String url, boolean query) {
+        Map<String, Boolean> decisions = query ? queryDecisions : operateDecisions;
+        Boolean decision = decisions.get(url);
+        if (decision != null) {
+            return decision;
+        }
+        decision = superRules.match(url) || (query && queryRules.match(url));
+        if (decisions.size() < MAX_DECISIONS) {
+            decisions.put(url, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * 一组权限路径
+     */
+    private static class Rules {
+
+        /**
+         * 不含通配符的路径
+         */
+        private final Set<String> exact = new HashSet<>();
+
+        /**
+         * 以*结尾的路径前缀
+         */
+        private final Node prefixes = new Node();
+
+        /**
+         * 其余包含通配符的路径
+         */
+        private final String[] patterns;
+
+        Rules(List<String> permissions) {
+            List<String> others = new ArrayList<>();
+            if (permissions != null) {
+                for (String permission : permissions) {
+                    if (permission == null || permission.isEmpty()) {
+                        continue;
+                    }
+                    int index = permission.indexOf('*');
+                    if (index < 0) {
+                        exact.add(permission);
+                    } else if (index == permission.length() - 1) {
+                        prefixes.add(permission, index);
+                    } else {
+                        others.add(permission);
+                    }
+                }
+            }
+            this.patterns = others.toArray(new String[0]);
+        }
+
+        boolean match(String url) {
+            if (url == null) {
+                return false;
+            }
+            return exact.contains(url) || prefixes.match(url)
+                    || (patterns.length > 0 && PatternMatchUtils.simpleMatch(patterns, url));
+        }
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+
+        /**
+         * 是否有路径前缀在此结束
+         */
+        private boolean end;
+
+        void add(String prefix, int length) {
+            Node node = this;
+            for (int i = 0; i < length; i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+            }
+            node.end = true;
+        }
+
+        boolean match(String url) {
+            Node node = this;
+            for (int i = 0; ; i++) {
+                if (node.end) {
+                    return true;
+                }
+                if (i >= url.length()) {
+                    return false;
+                }
+                node = node.children.get(url.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+    }
+}
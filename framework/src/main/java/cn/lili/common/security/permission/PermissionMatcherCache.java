@@ -0,0 +1,117 @@
+package cn.lili.common.security.permission;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.lili.cache.CachePrefix;
+import cn.lili.cache.impl.NearCache;
+import cn.lili.common.properties.NearCacheProperties;
+import cn.lili.common.security.enums.UserEnums;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 编译后的用户权限缓存
+ * <p>
+ * 以权限缓存key保存在进程内，权限缓存（PERMISSION_LIST）被修改或删除时，
+ * 通过本地缓存的失效通知同步失效，失效通知丢失时以本地缓存过期时间为准
+ *
+ * @author Chopper
+ * @since 2024-03-26
+ */
+@Component
+public class PermissionMatcherCache {
+
+    private static final String CLEAR_ALL = "*";
+
+    /**
+     * 失效次数，编译期间发生失效时不保存编译结果
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private NearCacheProperties nearCacheProperties;
+
+    private LRUCache<String, PermissionMatcher> matchers;
+
+    /**
+     * 权限缓存前缀
+     */
+    private final List<String> prefixes = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        prefixes.add(CachePrefix.PERMISSION_LIST.getPrefix());
+        for (UserEnums userEnums : UserEnums.values()) {
+            prefixes.add(CachePrefix.PERMISSION_LIST.getPrefix(userEnums));
+        }
+        this.matchers = CacheUtil.newLRUCache(nearCacheProperties.getMaximumSize(), nearCacheProperties.getExpireSeconds() * 1000L);
+        nearCache.addEvictionListener(this::evict);
+    }
+
+    /**
+     * 获取编译后的权限
+     *
+     * @param permissionCacheKey 权限缓存key
+     * @param loader             权限加载，返回值为权限类型及对应的路径集合
+     * @return 编译后的权限
+     */
+    public PermissionMatcher get(String permissionCacheKey, Supplier<Map<String, List<String>>> loader) {
+        PermissionMatcher matcher = matchers.get(permissionCacheKey, false);
+        if (matcher != null) {
+            return matcher;
+        }
+        long current = version.get();
+        matcher = new PermissionMatcher(loader.get(), current);
+        if (version.get() == current) {
+            matchers.put(permissionCacheKey, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * 失效编译后的权限
+     *
+     * @param key 缓存key，以*结尾时按前缀失效
+     */
+    private void evict(String key) {
+        if (!this.overlaps(key)) {
+            return;
+        }
+        version.incrementAndGet();
+        if (CLEAR_ALL.equals(key)) {
+            matchers.clear();
+        } else if (key.endsWith(CLEAR_ALL)) {
+            String prefix = key.substring(0, key.length() - 1);
+            for (String matcherKey : new ArrayList<>(matchers.keySet())) {
+                if (matcherKey.startsWith(prefix)) {
+                    matchers.remove(matcherKey);
+                }
+            }
+        } else {
+            matchers.remove(key);
+        }
+    }
+
+    /**
+     * 失效的key是否涉及权限缓存
+     */
+    private boolean overlaps(String key) {
+        String pattern = key.endsWith(CLEAR_ALL) ? key.substring(0, key.length() - 1) : key;
+        for (String prefix : prefixes) {
+            if (pattern.startsWith(prefix) || prefix.startsWith(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
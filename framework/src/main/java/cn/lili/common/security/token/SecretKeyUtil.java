@@ -1,6 +1,7 @@
 package cn.lili.common.security.token;
 
-import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base64;
@@ -16,7 +17,25 @@ import javax.crypto.SecretKey;
  */
 @Slf4j
 public class SecretKeyUtil {
+
     public static SecretKey generalKey() {
+        return KeyHolder.SECRET_KEY;
+    }
+
+    public static SecretKey generalKeyByDecoders() {
+        return KeyHolder.SECRET_KEY;
+    }
+
+    /**
+     * 获取token解析器，解析器线程安全，全局复用
+     *
+     * @return token解析器
+     */
+    public static JwtParser jwtParser() {
+        return KeyHolder.JWT_PARSER;
+    }
+
+    private static SecretKey buildKey() {
         String secret = System.getenv("LILI_JWT_SECRET_BASE64");
         if (secret == null || secret.trim().isEmpty()) {
             log.warn("LILI_JWT_SECRET_BASE64 not found in environment, using default fallback secret. PLEASE CONFIGURE THIS IN PRODUCTION!");
@@ -26,13 +45,14 @@ public class SecretKeyUtil {
         return Keys.hmacShaKeyFor(encodedKey);
     }
 
-    public static SecretKey generalKeyByDecoders() {
-        String secret = System.getenv("LILI_JWT_SECRET_BASE64");
-        if (secret == null || secret.trim().isEmpty()) {
-            log.warn("LILI_JWT_SECRET_BASE64 not found in environment, using default fallback secret. PLEASE CONFIGURE THIS IN PRODUCTION!");
-            secret = "bG9uZy10ZXJtLXNlY3JldC1rZXktZm9yLWxpbGlzaG9wLWFwcGxpY2F0aW9uLWJhc2U2NA=="; // "long-term-secret-key-for-lilishop-application-base64"
-        }
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    /**
+     * 密钥只在首次使用时从环境变量读取并解码一次
+     */
+    private static class KeyHolder {
+
+        private static final SecretKey SECRET_KEY = buildKey();
+
+        private static final JwtParser JWT_PARSER = Jwts.parserBuilder().setSigningKey(SECRET_KEY).build();
     }
 
 }
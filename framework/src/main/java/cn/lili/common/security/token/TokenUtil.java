@@ -65,10 +65,7 @@ public class TokenUtil {
 
         Claims claims;
         try {
-            claims = Jwts.parserBuilder()
-                    .setSigningKey(SecretKeyUtil.generalKeyByDecoders())
-                    .build()
-                    .parseClaimsJws(oldRefreshToken).getBody();
+            claims = SecretKeyUtil.jwtParser().parseClaimsJws(oldRefreshToken).getBody();
         } catch (ExpiredJwtException | UnsupportedJwtException | MalformedJwtException | SignatureException |
                  IllegalArgumentException e) {
             //token 过期 认证失败等
@@ -0,0 +1,301 @@
+package cn.lili.common.sensitive;
+
+import java.util.*;
+
+/**
+ * 敏感词匹配器
+ * <p>
+ * 以双数组保存的AC自动机，对句子只做一次线性扫描，所有命中的敏感词（包括相互重叠的词）都会被替换。
+ * 没有命中时不创建任何对象，直接返回入参。
+ * 对象创建后不可修改，敏感词更新时重新创建并整体替换。
+ *
+ * @author Chopper
+ * @since 2024-03-28
+ */
+public final class SensitiveWordsMatcher {
+
+    /**
+     * 空匹配器
+     */
+    public static final SensitiveWordsMatcher EMPTY = new SensitiveWordsMatcher(Collections.emptyList());
+
+    /**
+     * 根状态
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * 敏感词
+     */
+    private final List<String> words;
+
+    /**
+     * 字符编码，0表示字符不在任何敏感词中
+     */
+    private final char[] charCodes;
+
+    /**
+     * 状态转移的基址，状态s经编码c转移到base[s]+c
+     */
+    private int[] base;
+
+    /**
+     * 转移的来源状态，check[t]==s时s到t的转移有效
+     */
+    private int[] check;
+
+    /**
+     * 失败转移
+     */
+    private int[] fail;
+
+    /**
+     * 在此状态结束的最长敏感词长度，包含失败转移链上的词
+     */
+    private int[] matchLength;
+
+    private SensitiveWordsMatcher(List<String> words) {
+        this.words = Collections.unmodifiableList(words);
+        this.charCodes = new char[Character.MAX_VALUE + 1];
+        this.build();
+    }
+
+    /**
+     * 创建敏感词匹配器，与原有规则一致：去除首尾空格后长度小于2的词、两个字母或数字组成的词不加入
+     *
+     * @param words 敏感词
+     * @return 匹配器
+     */
+    public static SensitiveWordsMatcher of(Collection<String> words) {
+        Set<String> accepted = new LinkedHashSet<>();
+        if (words != null) {
+            for (String word : words) {
+                if (accept(word)) {
+                    accepted.add(word.trim());
+                }
+            }
+        }
+        return accepted.isEmpty() ? EMPTY : new SensitiveWordsMatcher(new ArrayList<>(accepted));
+    }
+
+    /**
+     * 是否为有效的敏感词
+     *
+     * @param word 敏感词
+     * @return 是否有效
+     */
+    public static boolean accept(String word) {
+        //长度小于2的不加入
+        if (word == null || word.trim().length() < 2) {
+            return false;
+        }
+        //两个字符的不考虑
+        return !(word.length() == 2 && word.matches("\\w\\w"));
+    }
+
+    /**
+     * 当前的敏感词
+     *
+     * @return 敏感词，不可修改
+     */
+    public List<String> getWords() {
+        return words;
+    }
+
+    /**
+     * 替换句子中的敏感词
+     *
+     * @param sentence 句子
+     * @param replace  敏感词的替换字符
+     * @return 替换后的句子，没有敏感词时返回入参
+     */
+    public String filter(String sentence, char replace) {
+        if (sentence == null || words.isEmpty()) {
+            return sentence;
+        }
+        char[] filtered = null;
+        int state = ROOT;
+        for (int i = 0, length = sentence.length(); i < length; i++) {
+            int code = charCodes[sentence.charAt(i)];
+            if (code == 0) {
+                state = ROOT;
+                continue;
+            }
+            state = this.next(state, code);
+            int wordLength = matchLength[state];
+            if (wordLength > 0) {
+                if (filtered == null) {
+                    filtered = sentence.toCharArray();
+                }
+                Arrays.fill(filtered, i - wordLength + 1, i + 1, replace);
+            }
+        }
+        return filtered == null ? sentence : new String(filtered);
+    }
+
+    /**
+     * 句子中是否包含敏感词
+     *
+     * @param sentence 句子
+     * @return 是否包含
+     */
+    public boolean contains(String sentence) {
+        if (sentence == null || words.isEmpty()) {
+            return false;
+        }
+        int state = ROOT;
+        for (int i = 0, length = sentence.length(); i < length; i++) {
+            int code = charCodes[sentence.charAt(i)];
+            if (code == 0) {
+                state = ROOT;
+                continue;
+            }
+            state = this.next(state, code);
+            if (matchLength[state] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 状态转移，没有转移时沿失败转移回退
+     */
+    private int next(int state, int code) {
+        while (true) {
+            int target = base[state] + code;
+            if (target < check.length && check[target] == state) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * 先构建字典树，再按层分配双数组位置，最后计算失败转移
+     */
+    private void build() {
+        //按出现顺序为字符编码
+        char nextCode = 1;
+        for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (charCodes[c] == 0) {
+                    charCodes[c] = nextCode++;
+                }
+            }
+        }
+
+        TrieNode root = new TrieNode();
+        for (String word : words) {
+            TrieNode node = root;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.children.computeIfAbsent((int) charCodes[word.charAt(i)], code -> new TrieNode());
+            }
+            node.wordLength = word.length();
+        }
+
+        int capacity = Math.max(1024, nextCode * 2);
+        base = new int[capacity];
+        check = new int[capacity];
+        Arrays.fill(check, -1);
+        check[ROOT] = ROOT;
+
+        //按层分配位置，同时记录层序用于计算失败转移
+        List<TrieNode> order = new ArrayList<>();
+        Deque<TrieNode> queue = new ArrayDeque<>();
+        root.state = ROOT;
+        queue.add(root);
+        int searchFrom = 1;
+        while (!queue.isEmpty()) {
+            TrieNode node = queue.poll();
+            order.add(node);
+            if (node.children.isEmpty()) {
+                continue;
+            }
+            int[] codes = new int[node.children.size()];
+            int index = 0;
+            for (Integer code : node.children.keySet()) {
+                codes[index++] = code;
+            }
+            Arrays.sort(codes);
+            //从空闲位置开始，找到所有子节点位置都空闲的基址
+            int position = Math.max(searchFrom, codes[0] + 1);
+            int begin;
+            while (true) {
+                this.ensureCapacity(position + 1);
+                if (check[position] != -1) {
+                    position++;
+                    continue;
+                }
+                begin = position - codes[0];
+                this.ensureCapacity(begin + codes[codes.length - 1] + 1);
+                boolean free = true;
+                for (int i = 1; i < codes.length; i++) {
+                    if (check[begin + codes[i]] != -1) {
+                        free = false;
+                        break;
+                    }
+                }
+                if (free) {
+                    break;
+                }
+                position++;
+            }
+            base[node.state] = begin;
+            for (int code : codes) {
+                TrieNode child = node.children.get(code);
+                child.state = begin + code;
+                check[child.state] = node.state;
+                queue.add(child);
+            }
+            //跳过已基本占满的区域，加快后续查找
+            while (searchFrom < check.length && check[searchFrom] != -1) {
+                searchFrom++;
+            }
+        }
+
+        fail = new int[check.length];
+        matchLength = new int[check.length];
+        for (TrieNode node : order) {
+            for (Map.Entry<Integer, TrieNode> entry : node.children.entrySet()) {
+                TrieNode child = entry.getValue();
+                int childFail = node.state == ROOT ? ROOT : this.next(fail[node.state], entry.getKey());
+                fail[child.state] = childFail;
+                matchLength[child.state] = Math.max(child.wordLength, matchLength[childFail]);
+            }
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= check.length) {
+            return;
+        }
+        int capacity = Math.max(size, check.length * 2);
+        int oldLength = check.length;
+        base = Arrays.copyOf(base, capacity);
+        check = Arrays.copyOf(check, capacity);
+        Arrays.fill(check, oldLength, capacity, -1);
+    }
+
+    /**
+     * 构建用的字典树节点
+     */
+    private static class TrieNode {
+
+        private final Map<Integer, TrieNode> children = new HashMap<>();
+
+        /**
+         * 以此节点结束的敏感词长度，0表示没有敏感词在此结束
+         */
+        private int wordLength;
+
+        /**
+         * 在双数组中的位置
+         */
+        private int state;
+    }
+}
@@ -0,0 +1,55 @@
+package cn.lili.common.thread;
+
+import cn.lili.common.security.AuthUser;
+import cn.lili.common.security.context.UserContext;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+
+/**
+ * 异步任务上下文传递
+ * <p>
+ * 提交任务时记录日志MDC（traceId等）及当前用户，在执行线程中恢复，执行完成后还原执行线程原有的上下文
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public class ContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        AuthUser authUser = currentUser();
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            AuthUser previousUser = UserContext.getTaskUser();
+            setContext(mdc, authUser);
+            try {
+                runnable.run();
+            } finally {
+                setContext(previousMdc, previousUser);
+            }
+        };
+    }
+
+    private static void setContext(Map<String, String> mdc, AuthUser authUser) {
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+        UserContext.setTaskUser(authUser);
+    }
+
+    /**
+     * 当前用户，token无效等情况不影响任务提交
+     */
+    private static AuthUser currentUser() {
+        try {
+            return UserContext.getCurrentUser();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
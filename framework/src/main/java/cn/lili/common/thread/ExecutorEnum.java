@@ -0,0 +1,98 @@
+package cn.lili.common.thread;
+
+import lombok.Getter;
+
+/**
+ * 业务线程池
+ * <p>
+ * 不同业务使用各自的线程池，互不影响，默认值可通过 lili.thread.executors 覆盖
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Getter
+public enum ExecutorEnum {
+
+    /**
+     * 商品索引
+     */
+    INDEX("商品索引", 1, 2, 16, false),
+    /**
+     * 商品索引批量写入，与全量重建索引分开，避免重建期间增量写入排队
+     */
+    INDEX_BATCH("商品索引批量写入", 1, 2, 16, false),
+    /**
+     * 商品索引全量重建，分页生成并写入新索引
+     */
+    INDEX_REBUILD("商品索引全量重建", 4, 4, 16, false),
+    /**
+     * 促销活动索引定时加载
+     */
+    PROMOTION_INDEX("促销活动索引加载", 1, 1, 4, false),
+    /**
+     * 通知消息，IM消息入库、会话路由续期及扫码登录等待等以IO等待为主的任务
+     */
+    NOTIFICATION("通知消息", 4, 16, 2000, true),
+    /**
+     * 延时任务执行
+     */
+    DELAY_QUEUE("延时任务执行", 8, 32, 10000, false),
+    /**
+     * 统计，页面浏览计数等，繁忙时丢弃
+     */
+    STATISTICS("统计", 2, 4, 1000, false),
+    /**
+     * 操作日志
+     */
+    LOG("操作日志", 2, 8, 2000, false),
+    /**
+     * 物流运费试算，等待第三方接口为主
+     */
+    LOGISTICS("物流运费试算", 4, 32, 200, true),
+    /**
+     * 优惠券领取记录入库
+     */
+    COUPON_CLAIM("优惠券领取入库", 1, 4, 1000, false),
+    /**
+     * 优惠券定向发放任务，每个活动占用一个线程提交分页并等待完成
+     */
+    COUPON_DISTRIBUTION("优惠券定向发放", 4, 8, 64, false),
+    /**
+     * 优惠券定向分页发放，与发放任务分开，避免发放任务占满线程后分页无法执行
+     */
+    COUPON_DISTRIBUTION_PAGE("优惠券定向分页发放", 8, 32, 64, false),
+    /**
+     * 订单状态变更，同一订单消息的各处理器并行执行
+     */
+    ORDER_STATUS_CHANGE("订单状态变更", 8, 32, 2000, false);
+
+    private final String description;
+
+    /**
+     * 默认核心线程数
+     */
+    private final int corePoolSize;
+
+    /**
+     * 默认最大线程数
+     */
+    private final int maxPoolSize;
+
+    /**
+     * 默认队列长度
+     */
+    private final int queueCapacity;
+
+    /**
+     * 默认是否使用虚拟线程，适用于以IO等待为主的任务
+     */
+    private final boolean virtual;
+
+    ExecutorEnum(String description, int corePoolSize, int maxPoolSize, int queueCapacity, boolean virtual) {
+        this.description = description;
+        this.corePoolSize = corePoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.queueCapacity = queueCapacity;
+        this.virtual = virtual;
+    }
+}
@@ -0,0 +1,245 @@
+package cn.lili.common.thread;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.lili.common.properties.ThreadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 业务线程池管理
+ * <p>
+ * 每种业务一个线程池，首次使用时按配置创建，任务执行时传递MDC及当前用户，
+ * 并上报线程池的活跃线程、队列长度及拒绝次数。
+ * 定时任务共用一个调度线程，调度线程只负责到点后把任务交给对应业务线程池执行
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Component
+public class ExecutorManager {
+
+    /**
+     * 队列超过该长度时使用链表队列，避免一次性分配过大的数组
+     */
+    private static final int ARRAY_QUEUE_LIMIT = 10000;
+
+    private final Map<ExecutorEnum, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程提交的任务在队列满时直接拒绝，不由提交线程执行
+     */
+    private static final ThreadLocal<Boolean> NON_BLOCKING = new ThreadLocal<>();
+
+    private final TaskDecorator taskDecorator = new ContextTaskDecorator();
+
+    /**
+     * 定时任务调度线程，首次使用时创建
+     */
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    private ThreadProperties threadProperties;
+
+    /**
+     * 执行任务
+     *
+     * @param type     业务
+     * @param runnable 任务
+     */
+    public void execute(ExecutorEnum type, Runnable runnable) {
+        get(type).execute(runnable);
+    }
+
+    /**
+     * 尝试执行任务，线程池队列已满或已关闭时不执行，也不占用提交线程
+     *
+     * @param type     业务
+     * @param runnable 任务
+     * @return 任务是否已提交
+     */
+    public boolean tryExecute(ExecutorEnum type, Runnable runnable) {
+        NON_BLOCKING.set(Boolean.TRUE);
+        try {
+            get(type).execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        } finally {
+            NON_BLOCKING.remove();
+        }
+    }
+
+    /**
+     * 按固定间隔执行定时任务，到点后交给业务线程池执行。
+     * 上一次未执行完或线程池繁忙时跳过本次，任务异常不影响后续执行
+     *
+     * @param type         业务
+     * @param task         任务
+     * @param initialDelay 首次延迟
+     * @param delay        上一次调度到下一次调度的间隔
+     * @param unit         时间单位
+     * @return 定时任务，用于取消
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(ExecutorEnum type, Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        AtomicBoolean running = new AtomicBoolean();
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("{}定时任务执行异常", type.getDescription(), e);
+            } finally {
+                running.set(false);
+            }
+        };
+        return scheduler().scheduleWithFixedDelay(() -> {
+            if (running.compareAndSet(false, true) && !tryExecute(type, guarded)) {
+                running.set(false);
+            }
+        }, initialDelay, delay, unit);
+    }
+
+    /**
+     * 提交有返回值的任务
+     *
+     * @param type     业务
+     * @param callable 任务
+     * @return 任务结果
+     */
+    public <T> Future<T> submit(ExecutorEnum type, Callable<T> callable) {
+        return get(type).submit(callable);
+    }
+
+    /**
+     * 获取业务线程池
+     *
+     * @param type 业务
+     * @return 线程池
+     */
+    public ExecutorService get(ExecutorEnum type) {
+        return executors.computeIfAbsent(type, this::create);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    private ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("lili-scheduler-", true));
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private ThreadPoolExecutor create(ExecutorEnum type) {
+        ThreadProperties.Pool pool = threadProperties.getExecutors().get(type);
+        int core = pool != null && pool.getCorePoolSize() != null ? pool.getCorePoolSize() : type.getCorePoolSize();
+        int max = pool != null && pool.getMaxPoolSize() != null ? pool.getMaxPoolSize() : type.getMaxPoolSize();
+        int queueCapacity = pool != null && pool.getQueueCapacity() != null ? pool.getQueueCapacity() : type.getQueueCapacity();
+        boolean virtual = pool != null && pool.getVirtual() != null ? pool.getVirtual() : type.isVirtual();
+        max = Math.max(core, max);
+
+        String name = "lili-" + type.name().toLowerCase().replace('_', '-');
+        ThreadFactory threadFactory = virtual ? virtualThreadFactory(name + "-") : null;
+        if (threadFactory == null) {
+            virtual = false;
+            threadFactory = new NamedThreadFactory(name + "-", false);
+        } else {
+            //虚拟线程创建成本低，不保留核心线程，最大线程数作为并发上限
+            core = max;
+        }
+
+        Counter rejected = Metrics.counter("lili.executor.rejected", "name", name);
+        RejectedExecutionHandler callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        //队列满时由提交线程执行，形成反压，同时记录拒绝次数；tryExecute 提交的任务直接拒绝
+        RejectedExecutionHandler handler = (runnable, executor) -> {
+            rejected.increment();
+            if (Boolean.TRUE.equals(NON_BLOCKING.get())) {
+                throw new RejectedExecutionException(name + " 线程池已满或已关闭");
+            }
+            callerRuns.rejectedExecution(runnable, executor);
+        };
+
+        ThreadPoolExecutor executor = new ContextThreadPoolExecutor(core, max, threadProperties.getKeepAliveSeconds(),
+                queueCapacity <= 0 ? new SynchronousQueue<>() :
+                        queueCapacity <= ARRAY_QUEUE_LIMIT ? new ArrayBlockingQueue<>(queueCapacity) : new LinkedBlockingQueue<>(queueCapacity),
+                threadFactory, handler, taskDecorator);
+        executor.allowCoreThreadTimeOut(virtual);
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(Metrics.globalRegistry);
+        log.info("创建{}线程池 {}，核心线程{}，最大线程{}，队列长度{}，虚拟线程{}", type.getDescription(), name, core, max, queueCapacity, virtual);
+        return executor;
+    }
+
+    /**
+     * 虚拟线程工厂，编译目标为JDK17，运行在JDK21及以上时通过反射创建
+     *
+     * @param prefix 线程名前缀
+     * @return 线程工厂，不支持虚拟线程时返回null
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            log.warn("当前JDK不支持虚拟线程，{}使用平台线程", prefix);
+            return null;
+        }
+    }
+
+    /**
+     * 提交任务时传递上下文的线程池，submit 最终也经过 execute
+     */
+    private static class ContextThreadPoolExecutor extends ThreadPoolExecutor {
+
+        private final TaskDecorator taskDecorator;
+
+        ContextThreadPoolExecutor(int core, int max, long keepAliveSeconds, BlockingQueue<Runnable> queue,
+                                  ThreadFactory threadFactory, RejectedExecutionHandler handler, TaskDecorator taskDecorator) {
+            super(core, max, keepAliveSeconds, TimeUnit.SECONDS, queue, threadFactory, handler);
+            this.taskDecorator = taskDecorator;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(taskDecorator.decorate(command));
+        }
+    }
+}
@@ -37,6 +37,8 @@ public class ThreadConfig implements AsyncConfigurer {
         executor.setKeepAliveSeconds(threadProperties.getKeepAliveSeconds());
 //       允许超时关闭
         executor.setAllowCoreThreadTimeOut(threadProperties.getAllowCoreThreadTimeOut());
+//       传递traceId及当前用户
+        executor.setTaskDecorator(new ContextTaskDecorator());
         executor.initialize();
         return executor;
     }
@@ -79,6 +79,16 @@ public class ElasticsearchProperties {
      */
     private Account account = new Account();
 
+    /**
+     * 全量重建索引配置
+     */
+    private Reindex reindex = new Reindex();
+
+    /**
+     * 索引批量更新配置
+     */
+    private Batch batch = new Batch();
+
     /**
      * 索引配置信息
      */
@@ -97,6 +107,68 @@ public class ElasticsearchProperties {
 
     }
 
+    /**
+     * 全量重建索引配置
+     */
+    @Data
+    public static class Reindex {
+
+        /**
+         * 每次从数据库读取的sku数量
+         */
+        private Integer pageSize = 1000;
+
+        /**
+         * 每次批量写入es的文档数量
+         */
+        private Integer bulkSize = 500;
+
+        /**
+         * 已提交未完成的批次数量上限，达到上限时读取线程等待，避免读取过快占用内存。
+         * 生成索引的线程数通过 lili.thread.executors 的 INDEX_REBUILD 配置
+         */
+        private Integer queueCapacity = 8;
+
+        /**
+         * 批量写入失败重试次数
+         */
+        private Integer retryTimes = 3;
+
+        /**
+         * 保留的旧索引数量，用于重建后回滚
+         */
+        private Integer retainIndices = 1;
+
+    }
+
+    /**
+     * 索引批量更新配置
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * 定时写入间隔，单位毫秒，写入失败的修改按此间隔重试
+         */
+        private Long windowMillis = 500L;
+
+        /**
+         * 每次批量请求的最大文档数量
+         */
+        private Integer maxSize = 1000;
+
+        /**
+         * 写入失败重试次数
+         */
+        private Integer retryTimes = 3;
+
+        /**
+         * 调用方等待修改写入的最长时间，单位毫秒，超时视为写入失败
+         */
+        private Long awaitMillis = 30000L;
+
+    }
+
     /**
      * 认证账户
      */
@@ -12,6 +12,7 @@ import com.baomidou.mybatisplus.core.toolkit.Constants;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -120,4 +121,18 @@ public interface GoodsSkuMapper extends BaseMapper<GoodsSku> {
     @Select("SELECT id as sku_id, quantity, goods_id,simple_specs,sn,goods_name FROM li_goods_sku ${ew.customSqlSegment}")
     List<GoodsSkuStockDTO> queryStocks(@Param(Constants.WRAPPER) Wrapper<GoodsSku> queryWrapper);
 
-}
\ No newline at end of file
+    /**
+     * 批量修改sku库存，一条语句完成
+     *
+     * @param goodsSkus sku集合，只使用id及库存
+     * @return 修改的行数
+     */
+    @Update({"<script>",
+            "UPDATE li_goods_sku SET quantity = CASE id",
+            "<foreach collection='goodsSkus' item='sku'> WHEN #{sku.id} THEN #{sku.quantity} </foreach>",
+            "END WHERE id IN",
+            "<foreach collection='goodsSkus' item='sku' open='(' separator=',' close=')'>#{sku.id}</foreach>",
+            "</script>"})
+    int batchUpdateQuantity(@Param("goodsSkus") List<GoodsSku> goodsSkus);
+
+}
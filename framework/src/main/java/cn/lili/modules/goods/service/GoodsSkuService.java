@@ -15,6 +15,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletResponse;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -105,10 +106,19 @@ public interface GoodsSkuService extends IService<GoodsSku> {
      * 批量从redis中获取商品SKU信息
      *
      * @param ids SkuId集合
-     * @return 商品SKU信息集合
+     * @return 商品SKU信息集合，与ids顺序一致，不存在的sku为null
      */
     List<GoodsSku> getGoodsSkuByIdFromCache(List<String> ids);
 
+    /**
+     * 批量获取商品SKU信息及最新库存
+     * sku缓存与库存缓存一次读取，缓存未命中的sku一次查询数据库
+     *
+     * @param ids SkuId集合
+     * @return key为skuId的商品SKU信息，不存在的sku不包含在内
+     */
+    Map<String, GoodsSku> getGoodsSkuMapFromCache(Collection<String> ids);
+
     /**
      * 获取goodsId下所有的goodsSku
      *
@@ -240,6 +250,14 @@ public interface GoodsSkuService extends IService<GoodsSku> {
      */
     void updateGoodsStock(List<GoodsSku> goodsSkus);
 
+    /**
+     * 批量同步sku库存到数据库
+     * sku库存一条语句修改，商品库存每个商品修改一次，不回写库存缓存
+     *
+     * @param goodsSkus sku集合，需要id、商品id及库存
+     */
+    void batchUpdateStock(List<GoodsSku> goodsSkus);
+
     /**
      * 根据商品id获取全部skuId的集合
      *
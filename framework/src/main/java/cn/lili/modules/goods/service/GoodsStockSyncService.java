@@ -0,0 +1,42 @@
+package cn.lili.modules.goods.service;
+
+import cn.lili.cache.CachePrefix;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+
+import java.util.List;
+
+/**
+ * 商品库存异步同步
+ * <p>
+ * 订单扣减、返还库存后只标记变动的sku，由定时任务将缓存中的最新库存批量写入数据库，
+ * 多个订单对同一sku的变动在一次同步中合并。
+ *
+ * @author Chopper
+ * @since 2024-03-22
+ */
+public interface GoodsStockSyncService {
+
+    /**
+     * 待同步的sku，field为skuId，value为商品id及首次标记时间
+     */
+    String DIRTY_KEY = CachePrefix.SKU_STOCK.getPrefix() + "DIRTY";
+
+    /**
+     * 同步中的sku，同步成功后删除，同步中断时下次优先重新同步
+     */
+    String PROCESSING_KEY = CachePrefix.SKU_STOCK.getPrefix() + "DIRTY_PROCESSING";
+
+    /**
+     * 标记库存变动的sku
+     *
+     * @param goodsSkus sku集合，需要id及商品id
+     */
+    void markDirty(List<GoodsSku> goodsSkus);
+
+    /**
+     * 将待同步的sku库存写入数据库
+     *
+     * @return 本次同步的sku数量
+     */
+    int flush();
+}
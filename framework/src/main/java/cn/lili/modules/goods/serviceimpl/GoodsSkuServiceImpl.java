@@ -1,5 +1,6 @@
 package cn.lili.modules.goods.serviceimpl;
 
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.text.CharSequenceUtil;
 import cn.hutool.core.util.NumberUtil;
@@ -51,18 +52,21 @@ import cn.lili.mybatis.BaseEntity;
 import cn.lili.mybatis.util.PageUtil;
 import cn.lili.rocketmq.RocketmqSendCallbackBuilder;
 import cn.lili.rocketmq.tags.GoodsTagsEnum;
+import io.micrometer.core.instrument.Metrics;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellRangeAddressList;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -75,6 +79,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -83,9 +88,21 @@ import java.util.stream.Collectors;
  * @author pikachu
  * @since 2020-02-23 15:18:56
  */
+@Slf4j
 @Service
 public class GoodsSkuServiceImpl extends ServiceImpl<GoodsSkuMapper, GoodsSku> implements GoodsSkuService {
 
+    /**
+     * sku缓存命中统计指标
+     */
+    private static final String SKU_CACHE_METRIC = "lili.cache.goods.sku";
+
+    /**
+     * 批量读取时回写的sku缓存过期时间，单位秒，写入时增加10%以内的随机时间
+     */
+    @Value("${lili.goods.sku-cache-seconds:86400}")
+    private Long skuCacheSeconds;
+
     /**
      * 缓存
      */
@@ -433,20 +450,64 @@ public class GoodsSkuServiceImpl extends ServiceImpl<GoodsSkuMapper, GoodsSku> i
 
     @Override
     public List<GoodsSku> getGoodsSkuByIdFromCache(List<String> ids) {
-        List<String> keys = new ArrayList<>();
+        Map<String, GoodsSku> goodsSkuMap = this.getGoodsSkuMapFromCache(ids);
+        List<GoodsSku> list = new ArrayList<>(ids.size());
         for (String id : ids) {
+            list.add(goodsSkuMap.get(id));
+        }
+        return list;
+    }
+
+    @Override
+    public Map<String, GoodsSku> getGoodsSkuMapFromCache(Collection<String> ids) {
+        List<String> skuIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Map<String, GoodsSku> result = new HashMap<>(skuIds.size());
+        if (skuIds.isEmpty()) {
+            return result;
+        }
+        //sku与库存的缓存key一起读取，前半部分为sku，后半部分为库存
+        List<String> keys = new ArrayList<>(skuIds.size() * 2);
+        for (String id : skuIds) {
             keys.add(GoodsSkuService.getCacheKeys(id));
         }
-        List<GoodsSku> list = cache.multiGet(keys);
-        if (list == null || list.isEmpty()) {
-            list = new ArrayList<>();
-            List<GoodsSku> goodsSkus = listByIds(ids);
-            for (GoodsSku skus : goodsSkus) {
-                cache.put(GoodsSkuService.getCacheKeys(skus.getId()), skus);
-                list.add(skus);
+        for (String id : skuIds) {
+            keys.add(GoodsSkuService.getStockCacheKey(id));
+        }
+        List<?> values = cache.multiGet(keys);
+
+        List<String> missIds = new ArrayList<>();
+        for (int i = 0; i < skuIds.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            if (value instanceof GoodsSku) {
+                result.put(skuIds.get(i), (GoodsSku) value);
+            } else {
+                missIds.add(skuIds.get(i));
             }
         }
-        return list;
+        //只查询缓存未命中的sku，一次写回缓存
+        if (!missIds.isEmpty()) {
+            Map<String, GoodsSku> loaded = new HashMap<>(missIds.size());
+            for (GoodsSku goodsSku : this.listByIds(missIds)) {
+                loaded.put(GoodsSkuService.getCacheKeys(goodsSku.getId()), goodsSku);
+                result.put(goodsSku.getId(), goodsSku);
+            }
+            cache.multiSet(loaded, skuCacheSeconds, skuCacheSeconds / 10, TimeUnit.SECONDS);
+        }
+
+        //以库存缓存为准
+        for (int i = 0; i < skuIds.size(); i++) {
+            Object stock = values == null ? null : values.get(skuIds.size() + i);
+            GoodsSku goodsSku = result.get(skuIds.get(i));
+            if (goodsSku != null && stock != null) {
+                goodsSku.setQuantity(Convert.toInt(stock));
+            }
+        }
+
+        int hits = skuIds.size() - missIds.size();
+        Metrics.counter(SKU_CACHE_METRIC, "result", "hit").increment(hits);
+        Metrics.counter(SKU_CACHE_METRIC, "result", "miss").increment(missIds.size());
+        log.debug("批量读取sku缓存，总数:{}，命中:{}，未命中:{}，数据库不存在:{}", skuIds.size(), hits, missIds.size(), skuIds.size() - result.size());
+        return result;
     }
 
     @Override
@@ -790,23 +851,63 @@ public class GoodsSkuServiceImpl extends ServiceImpl<GoodsSkuMapper, GoodsSku> i
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void updateGoodsStock(List<GoodsSku> goodsSkus) {
-        Map<String, List<GoodsSku>> groupByGoodsIds = goodsSkus.stream().collect(Collectors.groupingBy(GoodsSku::getGoodsId));
-
-        //统计每个商品的库存
-        for (String goodsId : groupByGoodsIds.keySet()) {
-            //库存
-            Integer quantity = 0;
-            for (GoodsSku goodsSku : goodsSkus) {
-                if (goodsId.equals(goodsSku.getGoodsId())) {
-                    quantity += goodsSku.getQuantity();
-                }
-                this.updateStock(goodsSku.getId(), goodsSku.getQuantity());
-            }
-            //保存商品库存结果
-            goodsService.updateStock(goodsId);
+        if (goodsSkus == null || goodsSkus.isEmpty()) {
+            return;
         }
+        Map<String, Object> stocks = new HashMap<>(goodsSkus.size());
+        for (GoodsSku goodsSku : goodsSkus) {
+            stocks.put(GoodsSkuService.getStockCacheKey(goodsSku.getId()), goodsSku.getQuantity());
+        }
+        cache.multiSet(stocks);
+        this.batchUpdateStock(goodsSkus);
+    }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void batchUpdateStock(List<GoodsSku> goodsSkus) {
+        if (goodsSkus == null || goodsSkus.isEmpty()) {
+            return;
+        }
+        List<String> skuIds = goodsSkus.stream().map(GoodsSku::getId).collect(Collectors.toList());
+        //修改前的库存及状态，用于判断库存从0恢复时是否需要重建索引
+        Map<String, GoodsSku> oldSkus = this.list(new LambdaQueryWrapper<GoodsSku>()
+                        .select(GoodsSku::getId, GoodsSku::getQuantity, GoodsSku::getMarketEnable, GoodsSku::getAuthFlag)
+                        .in(GoodsSku::getId, skuIds))
+                .stream().collect(Collectors.toMap(GoodsSku::getId, i -> i, (a, b) -> a));
+        for (List<GoodsSku> partition : CollUtil.split(goodsSkus, 500)) {
+            this.baseMapper.batchUpdateQuantity(partition);
+        }
 
+        List<String> deleteIndexIds = new ArrayList<>();
+        Set<String> reindexGoodsIds = new HashSet<>();
+        Map<String, Integer> skuQuantities = new LinkedHashMap<>(goodsSkus.size());
+        List<String> skuCacheKeys = new ArrayList<>(goodsSkus.size());
+        for (GoodsSku goodsSku : goodsSkus) {
+            skuQuantities.put(goodsSku.getId(), goodsSku.getQuantity());
+            skuCacheKeys.add(GoodsSkuService.getCacheKeys(goodsSku.getId()));
+            GoodsSku oldSku = oldSkus.get(goodsSku.getId());
+            //商品库存为0是删除商品索引
+            if (goodsSku.getQuantity() <= 0) {
+                deleteIndexIds.add(goodsSku.getId());
+            } else if (oldSku != null && (oldSku.getQuantity() == null || oldSku.getQuantity() <= 0)
+                    && GoodsStatusEnum.UPPER.name().equals(oldSku.getMarketEnable())
+                    && GoodsAuthEnum.PASS.name().equals(oldSku.getAuthFlag())) {
+                //库存从<=0恢复到>0并且商品为上架、审核通过状态时重建商品索引
+                reindexGoodsIds.add(goodsSku.getGoodsId());
+            }
+        }
+        //缓存中的sku库存已过期，下次读取时重新加载
+        cache.multiDel(skuCacheKeys);
+        this.promotionGoodsService.batchUpdatePromotionGoodsStock(skuQuantities);
+        if (!deleteIndexIds.isEmpty()) {
+            goodsIndexService.deleteIndexByIds(deleteIndexIds);
+        }
+        if (!reindexGoodsIds.isEmpty()) {
+            applicationEventPublisher.publishEvent(new TransactionCommitSendMQEvent("更新商品", rocketmqCustomProperties.getGoodsTopic(),
+                    GoodsTagsEnum.UPDATE_GOODS_INDEX.name(), new ArrayList<>(reindexGoodsIds)));
+        }
+        //商品库存每个商品只修改一次
+        goodsSkus.stream().map(GoodsSku::getGoodsId).distinct().forEach(goodsService::updateStock);
     }
 
     /**
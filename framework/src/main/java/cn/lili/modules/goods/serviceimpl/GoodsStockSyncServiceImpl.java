@@ -0,0 +1,228 @@
+package cn.lili.modules.goods.serviceimpl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.goods.service.GoodsSkuService;
+import cn.lili.modules.goods.service.GoodsStockSyncService;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品库存异步同步业务层实现
+ *
+ * @author Chopper
+ * @since 2024-03-22
+ */
+@Slf4j
+@Service
+public class GoodsStockSyncServiceImpl implements GoodsStockSyncService {
+
+    /**
+     * 同步锁，避免多个节点同时同步
+     */
+    private static final String LOCK_KEY = GoodsStockSyncService.DIRTY_KEY + "_LOCK";
+
+    /**
+     * 单次提交到数据库的sku数量
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 待同步的sku数量
+     */
+    private final AtomicLong backlog = new AtomicLong();
+
+    /**
+     * 最早一条待同步记录的延迟，单位毫秒
+     */
+    private final AtomicLong lag = new AtomicLong();
+
+    /**
+     * 单次任务最多处理的批次，避免持续下单时任务无法结束
+     */
+    @Value("${lili.goods.stock-sync-rounds:10}")
+    private Integer maxRounds;
+
+    /**
+     * 缓存中没有库存的sku重新等待同步的最长时间，单位分钟，超过后放弃同步
+     */
+    @Value("${lili.goods.stock-sync-retain-minutes:1440}")
+    private Integer retainMinutes;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedissonClient redisson;
+
+    @Autowired
+    private GoodsSkuService goodsSkuService;
+
+    @PostConstruct
+    public void init() {
+        Metrics.gauge("lili.stock.sync.backlog", backlog);
+        Metrics.gauge("lili.stock.sync.lag", lag);
+    }
+
+    @Override
+    public void markDirty(List<GoodsSku> goodsSkus) {
+        if (goodsSkus == null || goodsSkus.isEmpty()) {
+            return;
+        }
+        String value = "," + System.currentTimeMillis();
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                for (GoodsSku goodsSku : goodsSkus) {
+                    //保留首次标记的时间，用于统计同步延迟
+                    redisOperations.opsForHash().putIfAbsent(DIRTY_KEY, goodsSku.getId(), goodsSku.getGoodsId() + value);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public int flush() {
+        RLock lock = redisson.getLock(LOCK_KEY);
+        if (!lock.tryLock()) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            for (int round = 0; round < maxRounds; round++) {
+                //上次同步中断时，优先重新同步，库存以缓存中的最新值为准，重复同步没有影响
+                if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(PROCESSING_KEY))) {
+                    if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(DIRTY_KEY))) {
+                        break;
+                    }
+                    stringRedisTemplate.renameIfAbsent(DIRTY_KEY, PROCESSING_KEY);
+                }
+                Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(PROCESSING_KEY);
+                this.recordMetrics(entries);
+                int synced = this.sync(entries);
+                total += synced;
+                //本轮没有可同步的sku时，剩余的都在等待缓存库存，下次任务再处理
+                if (synced == 0) {
+                    break;
+                }
+            }
+            Long remaining = stringRedisTemplate.opsForHash().size(DIRTY_KEY);
+            backlog.set(remaining == null ? 0 : remaining);
+            if (remaining == null || remaining == 0) {
+                lag.set(0);
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将缓存中的库存写入数据库，同步成功的sku从同步中记录移除；
+     * 缓存中没有库存的sku重新标记，等待库存缓存重建后同步
+     *
+     * @param entries skuId及商品id
+     * @return 同步的sku数量
+     */
+    private int sync(Map<Object, Object> entries) {
+        List<String> skuIds = new ArrayList<>(entries.size());
+        for (Object skuId : entries.keySet()) {
+            skuIds.add(skuId.toString());
+        }
+        int count = 0;
+        for (List<String> partition : CollUtil.split(skuIds, BATCH_SIZE)) {
+            List<String> stockKeys = new ArrayList<>(partition.size());
+            for (String skuId : partition) {
+                stockKeys.add(GoodsSkuService.getStockCacheKey(skuId));
+            }
+            List<String> stocks = stringRedisTemplate.opsForValue().multiGet(stockKeys);
+            List<GoodsSku> goodsSkus = new ArrayList<>(partition.size());
+            List<String> skipped = new ArrayList<>();
+            for (int i = 0; i < partition.size(); i++) {
+                String stock = stocks == null ? null : stocks.get(i);
+                //缓存中没有库存时无法确定最新库存，稍后重试
+                if (stock == null) {
+                    skipped.add(partition.get(i));
+                    continue;
+                }
+                GoodsSku goodsSku = new GoodsSku();
+                goodsSku.setId(partition.get(i));
+                goodsSku.setGoodsId(entries.get(partition.get(i)).toString().split(",")[0]);
+                goodsSku.setQuantity(Convert.toInt(stock));
+                goodsSkus.add(goodsSku);
+            }
+            if (!goodsSkus.isEmpty()) {
+                goodsSkuService.batchUpdateStock(goodsSkus);
+                stringRedisTemplate.opsForHash().delete(PROCESSING_KEY, goodsSkus.stream().map(GoodsSku::getId).toArray());
+                count += goodsSkus.size();
+            }
+            if (!skipped.isEmpty()) {
+                this.requeue(skipped, entries);
+            }
+        }
+        Metrics.counter("lili.stock.sync.flushed").increment(count);
+        log.info("库存同步完成，sku数量：{}", count);
+        return count;
+    }
+
+    /**
+     * 缓存中没有库存的sku重新标记，保留首次标记时间，超过保留时间的放弃同步
+     *
+     * @param skuIds  skuId
+     * @param entries skuId及商品id、标记时间
+     */
+    private void requeue(List<String> skuIds, Map<Object, Object> entries) {
+        long expireBefore = System.currentTimeMillis() - retainMinutes * 60_000L;
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                for (String skuId : skuIds) {
+                    String value = entries.get(skuId).toString();
+                    String[] parts = value.split(",");
+                    if (parts.length > 1 && Convert.toLong(parts[1], 0L) < expireBefore) {
+                        log.warn("sku[{}]缓存中没有库存，超过保留时间放弃同步", skuId);
+                    } else {
+                        redisOperations.opsForHash().putIfAbsent(DIRTY_KEY, skuId, value);
+                    }
+                    redisOperations.opsForHash().delete(PROCESSING_KEY, skuId);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 记录待同步数量及最早一条记录的延迟
+     */
+    private void recordMetrics(Map<Object, Object> entries) {
+        Long dirty = stringRedisTemplate.opsForHash().size(DIRTY_KEY);
+        backlog.set(entries.size() + (dirty == null ? 0 : dirty));
+        long oldest = System.currentTimeMillis();
+        for (Object value : entries.values()) {
+            String[] parts = value.toString().split(",");
+            if (parts.length > 1) {
+                oldest = Math.min(oldest, Convert.toLong(parts[1], oldest));
+            }
+        }
+        lag.set(System.currentTimeMillis() - oldest);
+    }
+}
@@ -0,0 +1,49 @@
+package cn.lili.modules.im.service;
+
+import cn.lili.modules.im.entity.dos.ImMessage;
+
+import java.util.List;
+
+/**
+ * Im消息异步持久化
+ * <p>
+ * 消息先进入内存队列，由后台线程定时批量写入消息表，并按会话合并更新最后一条消息。
+ * 查询及已读操作同时处理尚未写入的消息，无需等待写入
+ *
+ * @author Chopper
+ * @since 2024-03-25
+ */
+public interface ImMessagePersistService {
+
+    /**
+     * 提交消息，队列已满时同步写入
+     *
+     * @param imMessage 消息
+     */
+    void submit(ImMessage imMessage);
+
+    /**
+     * 阅读消息，包含尚未写入的消息
+     *
+     * @param talkId      对话Id
+     * @param accessToken 验证token
+     */
+    void read(String talkId, String accessToken);
+
+    /**
+     * 未读消息列表，包含尚未写入的消息
+     *
+     * @param accessToken 验证token
+     * @return 未读消息列表
+     */
+    List<ImMessage> unReadMessages(String accessToken);
+
+    /**
+     * 历史消息，包含尚未写入的消息
+     *
+     * @param accessToken 验证token
+     * @param to          接收人
+     * @return 历史消息列表，按时间倒序
+     */
+    List<ImMessage> historyMessage(String accessToken, String to);
+}
@@ -0,0 +1,250 @@
+package cn.lili.modules.im.serviceimpl;
+
+import cn.lili.common.security.context.UserContext;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.im.entity.dos.ImMessage;
+import cn.lili.modules.im.entity.dos.ImTalk;
+import cn.lili.modules.im.service.ImMessagePersistService;
+import cn.lili.modules.im.service.ImMessageService;
+import cn.lili.modules.im.service.ImTalkService;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Im消息异步持久化实现
+ * <p>
+ * 写入只在后台线程进行，写入失败的消息放回重试队列，超过重试次数后放弃并输出完整消息
+ *
+ * @author Chopper
+ * @since 2024-03-25
+ */
+@Slf4j
+@Service
+public class ImMessagePersistServiceImpl implements ImMessagePersistService {
+
+    /**
+     * 写入间隔，单位毫秒
+     */
+    @Value("${lili.im.persist-interval-millis:200}")
+    private Long intervalMillis;
+
+    /**
+     * 每批写入的消息数量
+     */
+    @Value("${lili.im.persist-batch-size:500}")
+    private Integer batchSize;
+
+    /**
+     * 队列容量
+     */
+    @Value("${lili.im.persist-queue-capacity:100000}")
+    private Integer queueCapacity;
+
+    /**
+     * 写入失败重试次数
+     */
+    @Value("${lili.im.persist-retry-times:5}")
+    private Integer retryTimes;
+
+    @Autowired
+    private ImMessageService imMessageService;
+
+    @Autowired
+    private ImTalkService imTalkService;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    private BlockingQueue<ImMessage> queue;
+
+    /**
+     * 尚未写入的消息，包括队列中、写入中及等待重试的消息，key为消息id
+     */
+    private final Map<String, ImMessage> unsaved = new ConcurrentHashMap<>();
+
+    /**
+     * 写入失败等待重试的批次，持有当前对象锁时访问
+     */
+    private final LinkedList<FailedBatch> failed = new LinkedList<>();
+
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        Metrics.gauge("lili.im.persist.pending", unsaved, Map::size);
+        flushTask = executorManager.scheduleWithFixedDelay(ExecutorEnum.NOTIFICATION, this::flush,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushTask.cancel(false);
+        this.flush();
+    }
+
+    @Override
+    public void submit(ImMessage imMessage) {
+        unsaved.put(imMessage.getId(), imMessage);
+        if (!queue.offer(imMessage)) {
+            log.warn("Im消息队列已满，同步写入消息");
+            if (!this.persist(Collections.singletonList(imMessage))) {
+                synchronized (this) {
+                    failed.add(new FailedBatch(Collections.singletonList(imMessage)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void read(String talkId, String accessToken) {
+        String userId = UserContext.getAuthUser(accessToken).getId();
+        //先标记未写入的消息，写入时已生成语句的由写入线程补充更新
+        for (ImMessage imMessage : unsaved.values()) {
+            if (Objects.equals(talkId, imMessage.getTalkId()) && Objects.equals(userId, imMessage.getToUser())) {
+                imMessage.setIsRead(true);
+            }
+        }
+        imMessageService.read(talkId, accessToken);
+    }
+
+    @Override
+    public List<ImMessage> unReadMessages(String accessToken) {
+        String userId = UserContext.getAuthUser(accessToken).getId();
+        return this.merge(imMessageService.unReadMessages(accessToken), imMessage ->
+                Objects.equals(userId, imMessage.getToUser()) && Boolean.FALSE.equals(imMessage.getIsRead()), null);
+    }
+
+    @Override
+    public List<ImMessage> historyMessage(String accessToken, String to) {
+        String userId = UserContext.getAuthUser(accessToken).getId();
+        return this.merge(imMessageService.historyMessage(accessToken, to), imMessage ->
+                        Objects.equals(userId, imMessage.getToUser()) && Objects.equals(to, imMessage.getFromUser())
+                                || Objects.equals(to, imMessage.getToUser()) && Objects.equals(userId, imMessage.getFromUser()),
+                Comparator.comparing(ImMessage::getCreateTime).reversed());
+    }
+
+    /**
+     * 合并数据库查询结果与尚未写入的消息，查询期间写入的消息以查询结果为准
+     *
+     * @param saved      数据库查询结果
+     * @param filter     未写入消息的筛选条件
+     * @param comparator 合并后的排序，为空时不排序
+     * @return 合并后的消息
+     */
+    private List<ImMessage> merge(List<ImMessage> saved, Predicate<ImMessage> filter, Comparator<ImMessage> comparator) {
+        List<ImMessage> buffered = unsaved.values().stream().filter(filter).collect(Collectors.toList());
+        if (buffered.isEmpty()) {
+            return saved;
+        }
+        Map<String, ImMessage> result = new LinkedHashMap<>();
+        saved.forEach(imMessage -> result.put(imMessage.getId(), imMessage));
+        buffered.forEach(imMessage -> result.putIfAbsent(imMessage.getId(), imMessage));
+        List<ImMessage> imMessages = new ArrayList<>(result.values());
+        if (comparator != null) {
+            imMessages.sort(comparator);
+        }
+        return imMessages;
+    }
+
+    /**
+     * 写入队列中的消息及等待重试的消息，只由后台线程及关闭时调用
+     */
+    private synchronized void flush() {
+        int retries = failed.size();
+        for (int i = 0; i < retries; i++) {
+            FailedBatch batch = failed.poll();
+            if (!this.persist(batch.imMessages)) {
+                if (++batch.attempts >= retryTimes) {
+                    batch.imMessages.forEach(imMessage -> unsaved.remove(imMessage.getId()));
+                    Metrics.counter("lili.im.persist.dropped").increment(batch.imMessages.size());
+                    log.error("Im消息写入失败次数过多，放弃写入，消息：{}", batch.imMessages);
+                } else {
+                    failed.add(batch);
+                }
+            }
+        }
+        List<ImMessage> imMessages = new ArrayList<>(batchSize);
+        while (queue.drainTo(imMessages, batchSize) > 0) {
+            if (!this.persist(imMessages)) {
+                failed.add(new FailedBatch(imMessages));
+                imMessages = new ArrayList<>(batchSize);
+            } else {
+                imMessages.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写入消息，同一会话只更新最后一条消息
+     *
+     * @param imMessages 消息
+     * @return 消息是否写入成功，会话最后一条消息更新失败不影响结果
+     */
+    private boolean persist(List<ImMessage> imMessages) {
+        long start = System.nanoTime();
+        List<ImMessage> unread = imMessages.stream().filter(imMessage -> Boolean.FALSE.equals(imMessage.getIsRead())).collect(Collectors.toList());
+        try {
+            imMessageService.saveBatch(imMessages);
+        } catch (Exception e) {
+            log.error("Im消息批量写入失败，等待重试", e);
+            Metrics.timer("lili.im.persist").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return false;
+        }
+        imMessages.forEach(imMessage -> unsaved.remove(imMessage.getId()));
+        //写入期间被标记已读的消息
+        List<String> readIds = unread.stream().filter(imMessage -> Boolean.TRUE.equals(imMessage.getIsRead()))
+                .map(ImMessage::getId).collect(Collectors.toList());
+        try {
+            if (!readIds.isEmpty()) {
+                imMessageService.update(new LambdaUpdateWrapper<ImMessage>().in(ImMessage::getId, readIds).set(ImMessage::getIsRead, true));
+            }
+            Map<String, ImMessage> lastMessages = new LinkedHashMap<>();
+            for (ImMessage imMessage : imMessages) {
+                lastMessages.put(imMessage.getTalkId(), imMessage);
+            }
+            lastMessages.forEach((talkId, imMessage) -> imTalkService.update(new LambdaUpdateWrapper<ImTalk>()
+                    .eq(ImTalk::getId, talkId)
+                    .set(ImTalk::getLastTalkMessage, imMessage.getText())
+                    .set(ImTalk::getLastTalkTime, imMessage.getCreateTime())
+                    .set(ImTalk::getLastMessageType, imMessage.getMessageType())));
+        } catch (Exception e) {
+            log.error("Im会话最后消息更新失败，消息：{}", imMessages, e);
+        }
+        Metrics.timer("lili.im.persist").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * 写入失败的批次
+     */
+    private static class FailedBatch {
+
+        private final List<ImMessage> imMessages;
+
+        private int attempts;
+
+        FailedBatch(List<ImMessage> imMessages) {
+            this.imMessages = imMessages;
+        }
+    }
+}
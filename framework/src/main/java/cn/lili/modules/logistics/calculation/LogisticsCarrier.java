@@ -0,0 +1,29 @@
+package cn.lili.modules.logistics.calculation;
+
+import java.util.List;
+
+/**
+ * 运费试算渠道
+ * <p>
+ * 每个物流商实现一个渠道，由 {@link LogisticsCalculationService} 并行查询并合并报价
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public interface LogisticsCarrier {
+
+    /**
+     * 渠道编码
+     *
+     * @return 渠道编码
+     */
+    String code();
+
+    /**
+     * 试算运费，渠道未配置时返回空集合
+     *
+     * @param request 试算请求
+     * @return 渠道报价
+     */
+    List<LogisticsQuote> estimate(LogisticsEstimateRequest request);
+}
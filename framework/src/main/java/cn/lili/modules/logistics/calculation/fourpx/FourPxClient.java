@@ -1,12 +1,13 @@
 package cn.lili.modules.logistics.calculation.fourpx;
 
 import cn.hutool.crypto.SecureUtil;
-import cn.hutool.http.HttpUtil;
+import cn.hutool.http.HttpRequest;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import cn.lili.common.exception.ServiceException;
 import cn.lili.common.properties.FourPxProperties;
+import cn.lili.modules.logistics.calculation.LogisticsCarrier;
 import cn.lili.modules.logistics.calculation.LogisticsEstimateRequest;
 import cn.lili.modules.logistics.calculation.LogisticsQuote;
 import lombok.extern.slf4j.Slf4j;
@@ -22,7 +23,7 @@ import java.util.UUID;
  */
 @Slf4j
 @Component
-public class FourPxClient {
+public class FourPxClient implements LogisticsCarrier {
 
     @Autowired
     private FourPxProperties fourPxProperties;
@@ -30,6 +31,16 @@ public class FourPxClient {
     private static final String METHOD_DS = "ds.xms.estimated_cost.get";
     private static final String VERSION = "1.0.0";
 
+    @Override
+    public String code() {
+        return "4PX";
+    }
+
+    @Override
+    public List<LogisticsQuote> estimate(LogisticsEstimateRequest request) {
+        return estimateCost(request);
+    }
+
     public List<LogisticsQuote> estimateCost(LogisticsEstimateRequest request) {
         if (fourPxProperties == null
                 || fourPxProperties.getAppKey() == null
@@ -92,14 +103,15 @@ public class FourPxClient {
             log.info("4PX estimate request url: {}", url);
             log.info("4PX estimate request body: {}", body);
 
-            String response = HttpUtil.post(url, body);
+            String response = HttpRequest.post(url).body(body).timeout(fourPxProperties.getTimeout()).execute().body();
             log.info("4PX estimate response: {}", response);
 
             JSONObject respJson = JSONUtil.parseObj(response);
             // 4PX 的结果码：result为1表示成功
             if (!"1".equals(respJson.getStr("result"))) {
                 log.error("4PX API Error: {}", response);
-                return new ArrayList<>();
+                //接口错误不能当作无报价缓存，抛出异常由调用方按渠道失败处理
+                throw new ServiceException("4PX 运费试算接口返回错误：" + respJson.getStr("msg"));
             }
 
             // 4. 处理结果集
@@ -120,6 +132,8 @@ public class FourPxClient {
             }
             return quotes;
 
+        } catch (ServiceException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to estimate cost via 4PX", e);
             throw new ServiceException("4PX 运费试算接口异常：" + e.getMessage());
@@ -1,29 +1,228 @@
 package cn.lili.modules.logistics.calculation.impl;
 
+import cn.hutool.core.util.StrUtil;
+import cn.lili.cache.Cache;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.modules.logistics.calculation.LogisticsCalculationService;
+import cn.lili.modules.logistics.calculation.LogisticsCarrier;
 import cn.lili.modules.logistics.calculation.LogisticsEstimateRequest;
 import cn.lili.modules.logistics.calculation.LogisticsQuote;
-import cn.lili.modules.logistics.calculation.fourpx.FourPxClient;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * 运费试算服务占位实现。
+ * 运费试算服务
+ * <p>
+ * 收件地址规范化、重量及尺寸按档位向上取整后作为缓存key，命中缓存直接返回；
+ * 未命中时同一key只发起一次查询，并行请求各物流渠道后合并报价（按运费升序）。
+ * 调用方最多等待 lili.logistics.quote.timeout 毫秒，超时抛出异常由下单页降级为运费模板计算，
+ * 查询本身继续执行并写入缓存
  *
- * 说明：当前默认走 4PX 客户端（未接入时会抛 UnsupportedOperationException）。
- * 后续可按系统配置选择不同渠道，并在此处增加降级策略（例如：返回运费模板/固定运费）。
+ * @author Chopper
+ * @since 2024-03-31
  */
+@Slf4j
 @Service
 public class LogisticsCalculationServiceImpl implements LogisticsCalculationService {
 
+    /**
+     * 尺寸档位（厘米）
+     */
+    private static final double DIMENSION_STEP = 5D;
+
+    /**
+     * 渠道均无报价时的缓存时间（秒），避免未开通的线路反复请求
+     */
+    private static final long EMPTY_CACHE_SECONDS = 60L;
+
+    /**
+     * 重量档位（千克）
+     */
+    @Value("${lili.logistics.quote.weight-step:0.5}")
+    private Double weightStep;
+
+    /**
+     * 报价缓存时间（秒）
+     */
+    @Value("${lili.logistics.quote.cache-seconds:1800}")
+    private Long cacheSeconds;
+
+    /**
+     * 等待报价的超时时间（毫秒）
+     */
+    @Value("${lili.logistics.quote.timeout:1500}")
+    private Long timeout;
+
+    @Autowired
+    private List<LogisticsCarrier> carriers;
+
     @Autowired
-    private FourPxClient fourPxClient;
+    private Cache cache;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    /**
+     * 查询中的报价，相同key的请求共用一次查询
+     */
+    private final Map<String, CompletableFuture<List<LogisticsQuote>>> inFlight = new ConcurrentHashMap<>();
 
     @Override
     public List<LogisticsQuote> estimate(LogisticsEstimateRequest request) {
-        return fourPxClient.estimateCost(request);
+        LogisticsEstimateRequest normalized = normalize(request);
+        String key = CachePrefix.FREIGHT_QUOTE.getPrefix() + cacheKey(normalized);
+
+        List<LogisticsQuote> cached = (List<LogisticsQuote>) cache.get(key);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
+        CompletableFuture<List<LogisticsQuote>> future = new CompletableFuture<>();
+        CompletableFuture<List<LogisticsQuote>> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            future = existing;
+        } else {
+            query(key, normalized, future);
+        }
+
+        try {
+            return new ArrayList<>(future.get(timeout, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("运费试算超时，key:{}", key);
+            throw new ServiceException(ResultCode.FREIGHT_QUOTE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ResultCode.FREIGHT_QUOTE_TIMEOUT);
+        } catch (ExecutionException e) {
+            throw new ServiceException(ResultCode.ERROR, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
     }
-}
 
+    /**
+     * 并行查询各渠道，全部返回后合并写入缓存。
+     * 有渠道异常时不写缓存，全部渠道异常时以异常结束
+     *
+     * @param key     缓存key
+     * @param request 规范化后的请求
+     * @param future  查询结果
+     */
+    private void query(String key, LogisticsEstimateRequest request, CompletableFuture<List<LogisticsQuote>> future) {
+        List<CompletableFuture<List<LogisticsQuote>>> carrierFutures = new ArrayList<>();
+        for (LogisticsCarrier carrier : carriers) {
+            CompletableFuture<List<LogisticsQuote>> carrierFuture = new CompletableFuture<>();
+            //线程池已满时不在调用线程请求渠道，按渠道失败处理，由下单页降级为运费模板计算
+            if (!executorManager.tryExecute(ExecutorEnum.LOGISTICS, () -> carrierFuture.complete(estimate(carrier, request)))) {
+                log.warn("物流渠道{}运费试算线程池已满，跳过本次查询", carrier.code());
+                carrierFuture.completeExceptionally(new ServiceException(ResultCode.FREIGHT_QUOTE_TIMEOUT));
+            }
+            carrierFutures.add(carrierFuture);
+        }
+
+        CompletableFuture.allOf(carrierFutures.toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+            try {
+                List<LogisticsQuote> quotes = new ArrayList<>();
+                int failed = 0;
+                for (CompletableFuture<List<LogisticsQuote>> carrierFuture : carrierFutures) {
+                    List<LogisticsQuote> carrierQuotes = carrierFuture.isCompletedExceptionally() ? null : carrierFuture.join();
+                    if (carrierQuotes == null) {
+                        failed++;
+                    } else {
+                        quotes.addAll(carrierQuotes);
+                    }
+                }
+                if (failed > 0 && failed == carrierFutures.size()) {
+                    future.completeExceptionally(new ServiceException("运费试算渠道均不可用"));
+                    return;
+                }
+                quotes.sort(Comparator.comparing(LogisticsQuote::getAmount, Comparator.nullsLast(Comparator.naturalOrder())));
+                if (failed == 0) {
+                    cache.put(key, quotes, quotes.isEmpty() ? EMPTY_CACHE_SECONDS : cacheSeconds);
+                }
+                future.complete(quotes);
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                inFlight.remove(key, future);
+            }
+        });
+    }
+
+    /**
+     * 单个渠道试算
+     *
+     * @return 渠道报价，异常时返回null
+     */
+    private List<LogisticsQuote> estimate(LogisticsCarrier carrier, LogisticsEstimateRequest request) {
+        try {
+            List<LogisticsQuote> quotes = carrier.estimate(request);
+            return quotes == null ? new ArrayList<>() : quotes;
+        } catch (Exception e) {
+            log.warn("物流渠道{}运费试算失败：{}", carrier.code(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 规范化试算请求：国家、邮编大写并去除空格和连字符，城市、省州小写；
+     * 重量、尺寸按档位向上取整，尺寸从大到小排列，保证同一档位的报价不低于实际运费
+     *
+     * @param request 试算请求
+     * @return 规范化后的请求
+     */
+    private LogisticsEstimateRequest normalize(LogisticsEstimateRequest request) {
+        LogisticsEstimateRequest normalized = new LogisticsEstimateRequest();
+        normalized.setCountryCode(StrUtil.trimToEmpty(request.getCountryCode()).toUpperCase());
+        normalized.setPostalCode(StrUtil.removeAll(StrUtil.trimToEmpty(request.getPostalCode()), ' ', '-').toUpperCase());
+        normalized.setCity(StrUtil.trimToEmpty(request.getCity()).toLowerCase());
+        normalized.setState(StrUtil.trimToEmpty(request.getState()).toLowerCase());
+        normalized.setTotalWeightKg(ceil(request.getTotalWeightKg() == null ? 0D : request.getTotalWeightKg(), weightStep));
+        normalized.setSkuLines(request.getSkuLines());
+
+        if (request.getLengthCm() != null && request.getWidthCm() != null && request.getHeightCm() != null) {
+            double[] dimensions = {ceil(request.getLengthCm(), DIMENSION_STEP),
+                    ceil(request.getWidthCm(), DIMENSION_STEP), ceil(request.getHeightCm(), DIMENSION_STEP)};
+            Arrays.sort(dimensions);
+            normalized.setLengthCm(dimensions[2]);
+            normalized.setWidthCm(dimensions[1]);
+            normalized.setHeightCm(dimensions[0]);
+        }
+        return normalized;
+    }
+
+    /**
+     * 缓存key，商品明细不参与，报价只与目的地及包裹规格相关
+     */
+    private String cacheKey(LogisticsEstimateRequest request) {
+        return StrUtil.join(":", request.getCountryCode(), request.getPostalCode(), request.getState(), request.getCity(),
+                Math.round(request.getTotalWeightKg() * 1000),
+                dimension(request.getLengthCm()), dimension(request.getWidthCm()), dimension(request.getHeightCm()));
+    }
+
+    private static String dimension(Double value) {
+        return value == null ? "" : String.valueOf(Math.round(value));
+    }
+
+    private static double ceil(double value, double step) {
+        if (step <= 0) {
+            return value;
+        }
+        return Math.max(1, Math.ceil(value / step)) * step;
+    }
+}
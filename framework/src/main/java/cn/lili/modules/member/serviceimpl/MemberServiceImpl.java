@@ -532,8 +532,8 @@ public class MemberServiceImpl extends ServiceImpl<MemberMapper, Member> impleme
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean updateMemberPoint(Long point, String type, String memberId, String content, String bizId, java.math.BigDecimal fundReserve) {
-        // 获取当前会员信息
-        Member member = this.getById(memberId);
+        // 获取当前会员信息，加锁读取最新积分，同一会员的积分变动依次执行
+        Member member = this.getOne(new LambdaQueryWrapper<Member>().eq(Member::getId, memberId).last("FOR UPDATE"));
         if (member == null) {
             return false;
         }
@@ -575,10 +575,13 @@ public class MemberServiceImpl extends ServiceImpl<MemberMapper, Member> impleme
             return true; // 幂等返回成功
         }
 
-        // 3. 更新账户余额
-        member.setPoint(currentPoint);
-        member.setTotalPoint(totalPoint);
-        boolean result = this.updateById(member);
+        // 3. 更新账户余额，只更新积分字段，并以读取时的积分为条件，避免覆盖并发修改
+        boolean result = this.update(new LambdaUpdateWrapper<Member>()
+                .eq(Member::getId, memberId)
+                .eq(Member::getPoint, beforePoint)
+                .eq(Member::getTotalPoint, member.getTotalPoint())
+                .set(Member::getPoint, currentPoint)
+                .set(Member::getTotalPoint, totalPoint));
 
         if (!result) {
             // P0 Fix: 失败时抛出异常以触发事务回滚，防止账实不符
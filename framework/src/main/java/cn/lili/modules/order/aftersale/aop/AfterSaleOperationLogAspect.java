@@ -4,8 +4,9 @@ import cn.hutool.core.text.CharSequenceUtil;
 import cn.lili.common.security.AuthUser;
 import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.UserEnums;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.common.utils.SpelUtil;
-import cn.lili.common.utils.ThreadPoolUtil;
 import cn.lili.modules.order.aftersale.entity.dos.AfterSaleLog;
 import cn.lili.modules.order.aftersale.service.AfterSaleLogService;
 import cn.lili.modules.order.trade.entity.enums.AfterSaleStatusEnum;
@@ -34,6 +35,9 @@ public class AfterSaleOperationLogAspect {
     @Autowired
     private AfterSaleLogService afterSaleLogService;
 
+    @Autowired
+    private ExecutorManager executorManager;
+
     @AfterReturning(returning = "rvt", pointcut = "@annotation(cn.lili.modules.order.aftersale.aop.AfterSaleLogPoint)")
     public void afterReturning(JoinPoint joinPoint, Object rvt) {
         try {
@@ -50,7 +54,7 @@ public class AfterSaleOperationLogAspect {
             Map<String, String> afterSaleLogPoints = spelFormat(joinPoint, rvt);
             AfterSaleLog afterSaleLog = new AfterSaleLog(afterSaleLogPoints.get("sn"), id, role, userName, afterSaleLogPoints.get("description"));
             //调用线程保存
-            ThreadPoolUtil.getPool().execute(new SaveAfterSaleLogThread(afterSaleLog, afterSaleLogService));
+            executorManager.execute(ExecutorEnum.LOG, new SaveAfterSaleLogThread(afterSaleLog, afterSaleLogService));
         } catch (Exception e) {
             log.error("售后日志错误",e);
         }
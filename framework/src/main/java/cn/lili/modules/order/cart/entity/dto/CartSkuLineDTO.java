@@ -0,0 +1,176 @@
+package cn.lili.modules.order.cart.entity.dto;
+
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.goods.entity.enums.GoodsStatusEnum;
+import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
+import cn.lili.modules.order.cart.entity.vo.CartSkuVO;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 购物车行记录
+ * <p>
+ * 购物车按hash存储时，每个sku对应一个field，只保存用户操作产生的数据，
+ * sku详情在读取购物车时从商品缓存中重新获取
+ *
+ * @author Chopper
+ * @since 2024-03-11
+ */
+@Data
+@NoArgsConstructor
+public class CartSkuLineDTO implements Serializable {
+
+    private static final long serialVersionUID = 3215843296047431553L;
+
+    /**
+     * skuId
+     */
+    private String skuId;
+
+    /**
+     * 商品id
+     */
+    private String goodsId;
+
+    /**
+     * 店铺id
+     */
+    private String storeId;
+
+    /**
+     * 店铺名称
+     */
+    private String storeName;
+
+    /**
+     * 商品名称，sku失效时用于展示
+     */
+    private String goodsName;
+
+    /**
+     * 商品缩略图，sku失效时用于展示
+     */
+    private String thumbnail;
+
+    /**
+     * 购买数量
+     */
+    private Integer num;
+
+    /**
+     * 是否选中
+     */
+    private Boolean checked;
+
+    /**
+     * 配送方式
+     */
+    private String deliveryMethod;
+
+    /**
+     * 加入购物车时的成交价
+     */
+    private Double purchasePrice;
+
+    /**
+     * 加入购物车时的单价
+     */
+    private Double utilPrice;
+
+    /**
+     * 小计
+     */
+    private Double subTotal;
+
+    /**
+     * 促销活动集合
+     */
+    private Map<String, Object> promotionMap;
+
+    /**
+     * 加入购物车时sku的创建时间，用于判定sku是否被重建
+     */
+    private Date skuCreateTime;
+
+    /**
+     * 加入购物车时sku的更新时间，用于判定sku是否被修改
+     */
+    private Date skuUpdateTime;
+
+    /**
+     * 加入购物车的时间，用于保持购物车商品顺序
+     */
+    private Long addTime;
+
+    public CartSkuLineDTO(CartSkuVO cartSkuVO) {
+        GoodsSku goodsSku = cartSkuVO.getGoodsSku();
+        this.skuId = goodsSku.getId();
+        this.goodsId = goodsSku.getGoodsId();
+        this.goodsName = goodsSku.getGoodsName();
+        this.thumbnail = goodsSku.getThumbnail();
+        this.skuCreateTime = goodsSku.getCreateTime();
+        this.skuUpdateTime = goodsSku.getUpdateTime();
+        this.storeId = cartSkuVO.getStoreId();
+        this.storeName = cartSkuVO.getStoreName();
+        this.num = cartSkuVO.getNum();
+        this.checked = cartSkuVO.getChecked();
+        this.deliveryMethod = cartSkuVO.getDeliveryMethod();
+        this.purchasePrice = cartSkuVO.getPurchasePrice();
+        this.utilPrice = cartSkuVO.getUtilPrice();
+        this.subTotal = cartSkuVO.getSubTotal();
+        this.promotionMap = cartSkuVO.getNotFilterPromotionMap();
+    }
+
+    /**
+     * 根据最新的sku还原购物车商品
+     *
+     * @param dataSku  缓存中最新的sku，为空时表示sku已不存在
+     * @param cartType 购物车类型
+     * @return 购物车商品
+     */
+    public CartSkuVO toCartSkuVO(GoodsSku dataSku, CartTypeEnum cartType) {
+        //sku已不存在，使用行记录中的信息占位，由渲染步骤标记为失效
+        if (dataSku == null) {
+            dataSku = new GoodsSku();
+            dataSku.setId(this.skuId);
+            dataSku.setGoodsId(this.goodsId);
+            dataSku.setGoodsName(this.goodsName);
+            dataSku.setThumbnail(this.thumbnail);
+            dataSku.setStoreId(this.storeId);
+            dataSku.setStoreName(this.storeName);
+            dataSku.setCreateTime(this.skuCreateTime);
+            dataSku.setUpdateTime(this.skuUpdateTime);
+            dataSku.setMarketEnable(GoodsStatusEnum.DOWN.name());
+            dataSku.setPrice(this.utilPrice);
+        }
+        CartSkuVO cartSkuVO = new CartSkuVO(dataSku, this.promotionMap);
+        cartSkuVO.setCartType(cartType);
+        cartSkuVO.setNum(this.num);
+        cartSkuVO.setChecked(this.checked);
+        cartSkuVO.setDeliveryMethod(this.deliveryMethod);
+        //sku未修改过，保留加入购物车时计算的价格，否则以最新sku价格为准
+        if (this.isSameSku(dataSku)) {
+            cartSkuVO.setPurchasePrice(this.purchasePrice);
+            cartSkuVO.setUtilPrice(this.utilPrice);
+            cartSkuVO.setSubTotal(this.subTotal);
+        } else {
+            cartSkuVO.rebuildBySku(dataSku);
+        }
+        return cartSkuVO;
+    }
+
+    /**
+     * sku是否与加入购物车时一致
+     *
+     * @param dataSku 最新的sku
+     * @return 是否一致
+     */
+    public boolean isSameSku(GoodsSku dataSku) {
+        return dataSku.getUpdateTime() == null || this.skuUpdateTime == null || !dataSku.getUpdateTime().after(this.skuUpdateTime);
+    }
+
+}
@@ -37,4 +37,13 @@ public enum CartTypeEnum {
         return "{" + this.name() + "}_";
     }
 
+    /**
+     * 按sku存储购物车时使用的key前缀
+     *
+     * @return key前缀
+     */
+    public String getLinePrefix() {
+        return "{" + this.name() + "}_LINES_";
+    }
+
 }
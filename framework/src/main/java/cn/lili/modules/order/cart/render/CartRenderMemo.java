@@ -0,0 +1,246 @@
+package cn.lili.modules.order.cart.render;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.order.cart.entity.dto.TradeDTO;
+import cn.lili.modules.order.cart.entity.enums.RenderStepEnums;
+import cn.lili.modules.order.cart.entity.vo.CartSkuVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * 购物车渲染结果复用
+ * <p>
+ * 选择商品过滤、商品校验每次都重新执行，校验后的商品状态、库存、价格及当前促销信息作为指纹，
+ * 指纹一致时复用上次促销计算的结果，只重新执行优惠券、运费等有额外输入的步骤。
+ * <p>
+ * 每个购物车只保存一份中间结果：第一个有额外输入的步骤之前的渲染结果，没有这类步骤时为最终结果。
+ * 未命中时序列化一次，命中时反序列化一次，保存时间很短，用于应对结算页的频繁刷新
+ *
+ * @author Chopper
+ * @since 2024-03-11
+ */
+@Slf4j
+@Component
+public class CartRenderMemo {
+
+    /**
+     * 每次都要执行的校验步骤，商品上下架、库存等以校验结果为准
+     */
+    private static final Set<RenderStepEnums> CHECK_STEPS = EnumSet.of(RenderStepEnums.CHECKED_FILTER,
+            RenderStepEnums.CHECK_DATA);
+
+    /**
+     * 有额外输入的步骤，优惠券、收货地址
+     */
+    private static final Set<RenderStepEnums> INPUT_STEPS = EnumSet.of(RenderStepEnums.COUPON,
+            RenderStepEnums.SKU_FREIGHT);
+
+    /**
+     * 不可复用的步骤，例如生成交易编号
+     */
+    private static final Set<RenderStepEnums> VOLATILE_STEPS = EnumSet.of(RenderStepEnums.CART_SN,
+            RenderStepEnums.DISTRIBUTION, RenderStepEnums.PLATFORM_COMMISSION);
+
+    /**
+     * 渲染结果保存时间，单位秒，为0则不复用
+     */
+    @Value("${lili.cart.render-memo-seconds:5}")
+    private Integer expireSeconds;
+
+    /**
+     * 最多保存的购物车数量
+     */
+    @Value("${lili.cart.render-memo-size:10000}")
+    private Integer capacity;
+
+    private volatile LRUCache<String, Memo> memos;
+
+    /**
+     * 按步骤渲染，校验后的指纹一致时复用上次的中间结果
+     *
+     * @param tradeDTO 交易DTO
+     * @param steps    渲染步骤
+     * @param renderer 执行单个步骤，返回是否执行成功
+     * @return 渲染完成的交易DTO，可能是复用的中间结果继续渲染得到的新对象
+     */
+    public TradeDTO render(TradeDTO tradeDTO, RenderStepEnums[] steps, StepRenderer renderer) {
+        int checked = 0;
+        for (int i = 0; i < steps.length; i++) {
+            if (CHECK_STEPS.contains(steps[i])) {
+                checked = i + 1;
+            }
+        }
+        int snapshotAt = checked;
+        while (snapshotAt < steps.length && !INPUT_STEPS.contains(steps[snapshotAt])) {
+            snapshotAt++;
+        }
+
+        boolean success = true;
+        for (int i = 0; i < checked; i++) {
+            success &= renderer.render(tradeDTO, steps[i]);
+        }
+        if (!success || snapshotAt == checked || !this.reusable(tradeDTO, steps)) {
+            for (int i = checked; i < steps.length; i++) {
+                renderer.render(tradeDTO, steps[i]);
+            }
+            return tradeDTO;
+        }
+
+        String memoKey = tradeDTO.getMemberId() + "_" + tradeDTO.getCartTypeEnum().name() + "_" + Arrays.toString(steps);
+        String fingerprint = this.fingerprint(tradeDTO);
+        Memo memo = this.getMemos().get(memoKey);
+        TradeDTO current = null;
+        if (memo != null && memo.fingerprint.equals(fingerprint)) {
+            current = (TradeDTO) this.deserialize(memo.snapshot);
+            if (current != null) {
+                this.copyInputs(tradeDTO, current);
+            }
+        }
+        if (current == null) {
+            current = tradeDTO;
+            for (int i = checked; i < snapshotAt; i++) {
+                success &= renderer.render(current, steps[i]);
+            }
+            if (success) {
+                byte[] snapshot = this.serialize(current);
+                if (snapshot != null) {
+                    this.getMemos().put(memoKey, new Memo(fingerprint, snapshot));
+                }
+            }
+        }
+        for (int i = snapshotAt; i < steps.length; i++) {
+            renderer.render(current, steps[i]);
+        }
+        return current;
+    }
+
+    /**
+     * 是否可以复用
+     */
+    private boolean reusable(TradeDTO tradeDTO, RenderStepEnums[] steps) {
+        if (expireSeconds == null || expireSeconds <= 0 || tradeDTO.getMemberId() == null) {
+            return false;
+        }
+        for (RenderStepEnums step : steps) {
+            if (VOLATILE_STEPS.contains(step)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 校验后的购物车指纹，包含商品状态、库存、价格以及当前促销信息
+     */
+    private String fingerprint(TradeDTO tradeDTO) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(tradeDTO.getCartTypeEnum()).append('|').append(tradeDTO.getParentOrderSn()).append('|');
+        for (CartSkuVO cartSkuVO : tradeDTO.getSkuList()) {
+            GoodsSku goodsSku = cartSkuVO.getGoodsSku();
+            builder.append(goodsSku.getId()).append(',')
+                    .append(goodsSku.getMarketEnable()).append(',')
+                    .append(goodsSku.getAuthFlag()).append(',')
+                    .append(goodsSku.getQuantity()).append(',')
+                    .append(goodsSku.getPrice()).append(',')
+                    .append(goodsSku.getPromotionFlag()).append(',')
+                    .append(goodsSku.getPromotionPrice()).append(',')
+                    .append(goodsSku.getUpdateTime() == null ? 0 : goodsSku.getUpdateTime().getTime()).append(',')
+                    .append(cartSkuVO.getNum()).append(',')
+                    .append(cartSkuVO.getChecked()).append(',')
+                    .append(cartSkuVO.getInvalid()).append(',')
+                    .append(cartSkuVO.getErrorMessage()).append(',')
+                    .append(cartSkuVO.getDeliveryMethod()).append(',')
+                    .append(cartSkuVO.getPurchasePrice()).append(',')
+                    .append(cartSkuVO.getPromotionMap() == null ? "" : JSONUtil.toJsonStr(new TreeMap<>(cartSkuVO.getPromotionMap())))
+                    .append(';');
+        }
+        return DigestUtil.md5Hex(builder.toString());
+    }
+
+    /**
+     * 将本次请求的优惠券、收货地址以及不参与渲染的头信息复制到复用的结果中
+     */
+    private void copyInputs(TradeDTO from, TradeDTO to) {
+        to.setPlatformCoupon(from.getPlatformCoupon());
+        to.setStoreCoupons(from.getStoreCoupons());
+        to.setMemberAddress(from.getMemberAddress());
+        to.setStoreAddress(from.getStoreAddress());
+        to.setReceiptVO(from.getReceiptVO());
+        to.setNeedReceipt(from.getNeedReceipt());
+        to.setStoreRemark(from.getStoreRemark());
+        to.setClientType(from.getClientType());
+        to.setMemberName(from.getMemberName());
+        to.setDistributionId(from.getDistributionId());
+    }
+
+    private byte[] serialize(Object object) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            log.debug("购物车渲染结果无法序列化，跳过复用", e);
+            return null;
+        }
+    }
+
+    private Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.debug("购物车渲染结果反序列化失败", e);
+            return null;
+        }
+    }
+
+    private LRUCache<String, Memo> getMemos() {
+        if (memos == null) {
+            synchronized (this) {
+                if (memos == null) {
+                    memos = CacheUtil.newLRUCache(capacity, expireSeconds * 1000L);
+                }
+            }
+        }
+        return memos;
+    }
+
+    /**
+     * 单个步骤的执行
+     */
+    @FunctionalInterface
+    public interface StepRenderer {
+
+        /**
+         * 执行渲染步骤
+         *
+         * @param tradeDTO 交易DTO
+         * @param step     渲染步骤
+         * @return 是否执行成功，失败时不保存渲染结果
+         */
+        boolean render(TradeDTO tradeDTO, RenderStepEnums step);
+    }
+
+    /**
+     * 一次渲染的指纹及中间结果
+     */
+    private static class Memo {
+
+        private final String fingerprint;
+
+        private final byte[] snapshot;
+
+        Memo(String fingerprint, byte[] snapshot) {
+            this.fingerprint = fingerprint;
+            this.snapshot = snapshot;
+        }
+    }
+}
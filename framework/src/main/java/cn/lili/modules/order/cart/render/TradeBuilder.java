@@ -11,7 +11,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 交易构造&&创建
@@ -38,6 +41,16 @@ public class TradeBuilder {
      */
     @Autowired
     private CartPersistenceService cartPersistenceService;
+    /**
+     * 渲染结果复用
+     */
+    @Autowired(required = false)
+    private CartRenderMemo cartRenderMemo;
+
+    /**
+     * 渲染步骤与实现的对应关系，首次渲染时构建
+     */
+    private volatile Map<RenderStepEnums, List<CartRenderStep>> stepDispatch;
 
     /**
      * 构造购物车
@@ -57,8 +70,7 @@ public class TradeBuilder {
         }
 
         // 按照计划进行渲染
-        renderCartBySteps(tradeDTO, RenderStepStatement.cartRender);
-        return tradeDTO;
+        return renderCartBySteps(tradeDTO, RenderStepStatement.cartRender, true);
     }
 
     /**
@@ -69,14 +81,12 @@ public class TradeBuilder {
         TradeDTO tradeDTO = cartPersistenceService.readDTO(checkedWay);
         // 需要对购物车渲染
         if (isSingle(checkedWay)) {
-            renderCartBySteps(tradeDTO, RenderStepStatement.checkedSingleRender);
+            return renderCartBySteps(tradeDTO, RenderStepStatement.checkedSingleRender, true);
         } else if (checkedWay.equals(CartTypeEnum.PINTUAN)) {
-            renderCartBySteps(tradeDTO, RenderStepStatement.pintuanTradeRender);
+            return renderCartBySteps(tradeDTO, RenderStepStatement.pintuanTradeRender, false);
         } else {
-            renderCartBySteps(tradeDTO, RenderStepStatement.checkedRender);
+            return renderCartBySteps(tradeDTO, RenderStepStatement.checkedRender, true);
         }
-
-        return tradeDTO;
     }
 
     /**
@@ -89,13 +99,13 @@ public class TradeBuilder {
      */
     public Trade createTrade(TradeDTO tradeDTO) {
 
-        // 需要对购物车渲染
+        // 需要对购物车渲染，创建交易时不复用渲染结果
         if (isSingle(tradeDTO.getCartTypeEnum())) {
-            renderCartBySteps(tradeDTO, RenderStepStatement.singleTradeRender);
+            renderCartBySteps(tradeDTO, RenderStepStatement.singleTradeRender, false);
         } else if (tradeDTO.getCartTypeEnum().equals(CartTypeEnum.PINTUAN)) {
-            renderCartBySteps(tradeDTO, RenderStepStatement.pintuanTradeRender);
+            renderCartBySteps(tradeDTO, RenderStepStatement.pintuanTradeRender, false);
         } else {
-            renderCartBySteps(tradeDTO, RenderStepStatement.tradeRender);
+            renderCartBySteps(tradeDTO, RenderStepStatement.tradeRender, false);
         }
 
         // 添加order订单及order_item子订单并返回
@@ -119,20 +129,54 @@ public class TradeBuilder {
      *
      * @param tradeDTO      交易DTO
      * @param defaultRender 渲染枚举
+     * @param reusable      是否可以复用之前的渲染结果
+     * @return 渲染后的交易DTO
      */
-    private void renderCartBySteps(TradeDTO tradeDTO, RenderStepEnums[] defaultRender) {
+    private TradeDTO renderCartBySteps(TradeDTO tradeDTO, RenderStepEnums[] defaultRender, boolean reusable) {
+        if (reusable && cartRenderMemo != null) {
+            return cartRenderMemo.render(tradeDTO, defaultRender, this::renderStep);
+        }
         for (RenderStepEnums step : defaultRender) {
+            renderStep(tradeDTO, step);
+        }
+        return tradeDTO;
+    }
+
+    /**
+     * 执行单个渲染步骤
+     *
+     * @param tradeDTO 交易DTO
+     * @param step     渲染步骤
+     * @return 是否全部执行成功
+     */
+    private boolean renderStep(TradeDTO tradeDTO, RenderStepEnums step) {
+        boolean success = true;
+        for (CartRenderStep render : getStepDispatch().getOrDefault(step, new ArrayList<>())) {
+            try {
+                render.render(tradeDTO);
+            } catch (ServiceException e) {
+                throw e;
+            } catch (Exception e) {
+                success = false;
+                log.error("购物车{}渲染异常：", render.getClass(), e);
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 获取渲染步骤与实现的对应关系
+     *
+     * @return 渲染步骤与实现的对应关系
+     */
+    private Map<RenderStepEnums, List<CartRenderStep>> getStepDispatch() {
+        if (stepDispatch == null) {
+            Map<RenderStepEnums, List<CartRenderStep>> dispatch = new EnumMap<>(RenderStepEnums.class);
             for (CartRenderStep render : cartRenderSteps) {
-                try {
-                    if (render.step().equals(step)) {
-                        render.render(tradeDTO);
-                    }
-                } catch (ServiceException e) {
-                    throw e;
-                } catch (Exception e) {
-                    log.error("购物车{}渲染异常：", render.getClass(), e);
-                }
+                dispatch.computeIfAbsent(render.step(), k -> new ArrayList<>()).add(render);
             }
+            stepDispatch = dispatch;
         }
+        return stepDispatch;
     }
 }
@@ -102,6 +102,13 @@ public class CheckDataRender implements CartRenderStep {
     private void checkData(TradeDTO tradeDTO) {
         List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
 
+        //批量读取缓存中的商品信息及库存
+        Map<String, GoodsSku> dataSkuMap = goodsSkuService.getGoodsSkuMapFromCache(
+                cartSkuVOS.stream().map(i -> i.getGoodsSku().getId()).collect(Collectors.toList()));
+
+        //需要刷新促销信息的商品
+        List<CartSkuVO> promotionSkus = new ArrayList<>();
+
         //循环购物车中的商品
         for (CartSkuVO cartSkuVO : cartSkuVOS) {
 
@@ -112,7 +119,7 @@ public class CheckDataRender implements CartRenderStep {
             }
 
             //缓存中的商品信息
-            GoodsSku dataSku = goodsSkuService.getGoodsSkuByIdFromCache(cartSkuVO.getGoodsSku().getId());
+            GoodsSku dataSku = dataSkuMap.get(cartSkuVO.getGoodsSku().getId());
 
             //商品上架状态判定  sku为空、sku非上架状态、sku审核不通过
             boolean checkGoodsStatus = dataSku == null || !GoodsAuthEnum.PASS.name().equals(dataSku.getAuthFlag()) || !GoodsStatusEnum.UPPER.name().equals(dataSku.getMarketEnable());
@@ -149,16 +156,25 @@ public class CheckDataRender implements CartRenderStep {
             }
             //如果存在商品促销活动，则判定商品促销状态
             if (!cartSkuVO.getCartType().equals(CartTypeEnum.POINTS) && (CollUtil.isNotEmpty(cartSkuVO.getNotFilterPromotionMap()) || Boolean.TRUE.equals(cartSkuVO.getGoodsSku().getPromotionFlag()))) {
-                //获取当前最新的促销信息
-                cartSkuVO.setPromotionMap(this.promotionGoodsService.getCurrentGoodsPromotion(cartSkuVO.getGoodsSku(), tradeDTO.getCartTypeEnum().name()));
-                //设定商品价格
-                Double goodsPrice = cartSkuVO.getGoodsSku().getPromotionFlag() != null && cartSkuVO.getGoodsSku().getPromotionFlag() ? cartSkuVO.getGoodsSku().getPromotionPrice() : cartSkuVO.getGoodsSku().getPrice();
-                cartSkuVO.setPurchasePrice(goodsPrice);
-                cartSkuVO.setUtilPrice(goodsPrice);
-                cartSkuVO.setSubTotal(CurrencyUtil.mul(cartSkuVO.getPurchasePrice(), cartSkuVO.getNum()));
+                promotionSkus.add(cartSkuVO);
             }
 
         }
+
+        if (promotionSkus.isEmpty()) {
+            return;
+        }
+        //批量获取当前最新的促销信息
+        Map<String, Map<String, Object>> promotionMaps = this.promotionGoodsService.getCurrentGoodsPromotion(
+                promotionSkus.stream().map(CartSkuVO::getGoodsSku).collect(Collectors.toList()), tradeDTO.getCartTypeEnum().name());
+        for (CartSkuVO cartSkuVO : promotionSkus) {
+            cartSkuVO.setPromotionMap(promotionMaps.get(cartSkuVO.getGoodsSku().getId()));
+            //设定商品价格
+            Double goodsPrice = cartSkuVO.getGoodsSku().getPromotionFlag() != null && cartSkuVO.getGoodsSku().getPromotionFlag() ? cartSkuVO.getGoodsSku().getPromotionPrice() : cartSkuVO.getGoodsSku().getPrice();
+            cartSkuVO.setPurchasePrice(goodsPrice);
+            cartSkuVO.setUtilPrice(goodsPrice);
+            cartSkuVO.setSubTotal(CurrencyUtil.mul(cartSkuVO.getPurchasePrice(), cartSkuVO.getNum()));
+        }
     }
 
     /**
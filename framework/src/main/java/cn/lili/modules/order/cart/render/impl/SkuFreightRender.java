@@ -1,6 +1,10 @@
 package cn.lili.modules.order.cart.render.impl;
 
 import cn.lili.common.utils.CurrencyUtil;
+import cn.lili.modules.logistics.calculation.LogisticsCalculationService;
+import cn.lili.modules.logistics.calculation.LogisticsEstimateRequest;
+import cn.lili.modules.logistics.calculation.LogisticsEstimateSkuLine;
+import cn.lili.modules.logistics.calculation.LogisticsQuote;
 import cn.lili.modules.member.entity.dos.MemberAddress;
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
 import cn.lili.modules.order.cart.entity.enums.DeliveryMethodEnum;
@@ -13,6 +17,7 @@ import cn.lili.modules.store.entity.dto.FreightTemplateChildDTO;
 import cn.lili.modules.store.entity.enums.FreightTemplateEnum;
 import cn.lili.modules.store.entity.vos.FreightTemplateVO;
 import cn.lili.modules.store.service.FreightTemplateService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -28,6 +33,7 @@ import java.util.stream.Collectors;
  * @author Chopper
  * @since 2020-07-02 14:47
  */
+@Slf4j
 @Service
 public class SkuFreightRender implements CartRenderStep {
 
@@ -35,7 +41,7 @@ public class SkuFreightRender implements CartRenderStep {
     private FreightTemplateService freightTemplateService;
 
     @Autowired
-    private cn.lili.modules.logistics.calculation.LogisticsCalculationService logisticsCalculationService;
+    private LogisticsCalculationService logisticsCalculationService;
 
     @Override
     public RenderStepEnums step() {
@@ -72,10 +78,9 @@ public class SkuFreightRender implements CartRenderStep {
                     if (freightTemplate != null) {
                         // --- 4PX 逻辑开始 ---
                         // 如果开启了 4PX 开关，且收货地址是非中国地址，则优先走 4PX 实时计费
-                        if (Boolean.TRUE.equals(freightTemplate.getFourPxSwitch()) && !"CN".equals(memberAddress.getCountryCode())) {
-                            calculateInternationalFreightForGroup(tradeDTO, currentCartSkus);
-                            // 如果 4PX 成功获取到了报价信息，则该组商品处理完成
-                            // 注意：这里需要确保 calculateInternationalFreightForGroup 已经处理了 SKU 的运费分摊
+                        // 试算成功则该组商品处理完成，无报价、超时或异常时降级为运费模板计算
+                        if (Boolean.TRUE.equals(freightTemplate.getFourPxSwitch()) && !"CN".equals(memberAddress.getCountryCode())
+                                && calculateInternationalFreightForGroup(tradeDTO, currentCartSkus)) {
                             continue;
                         }
                         // --- 4PX 逻辑结束 ---
@@ -232,27 +237,29 @@ public class SkuFreightRender implements CartRenderStep {
 
     /**
      * 为特定组商品计算国际运费
+     *
+     * @return 是否成功获取报价并完成运费分摊
      */
-    private void calculateInternationalFreightForGroup(TradeDTO tradeDTO, List<CartSkuVO> checkedSkus) {
+    private boolean calculateInternationalFreightForGroup(TradeDTO tradeDTO, List<CartSkuVO> checkedSkus) {
         MemberAddress address = tradeDTO.getMemberAddress();
         if (checkedSkus.isEmpty()) {
-            return;
+            return true;
         }
 
-        cn.lili.modules.logistics.calculation.LogisticsEstimateRequest request = new cn.lili.modules.logistics.calculation.LogisticsEstimateRequest();
+        LogisticsEstimateRequest request = new LogisticsEstimateRequest();
         request.setCountryCode(address.getCountryCode());
         request.setPostalCode(address.getPostalCode());
         request.setCity(address.getCity());
         request.setState(address.getProvince());
 
-        List<cn.lili.modules.logistics.calculation.LogisticsEstimateSkuLine> lines = new ArrayList<>();
+        List<LogisticsEstimateSkuLine> lines = new ArrayList<>();
         double totalWeight = 0;
         double maxLength = 0;
         double maxWidth = 0;
         double totalHeight = 0;
 
         for (CartSkuVO sku : checkedSkus) {
-            cn.lili.modules.logistics.calculation.LogisticsEstimateSkuLine line = new cn.lili.modules.logistics.calculation.LogisticsEstimateSkuLine();
+            LogisticsEstimateSkuLine line = new LogisticsEstimateSkuLine();
             line.setSkuId(sku.getGoodsSku().getId());
             line.setName(sku.getGoodsSku().getGoodsName());
             line.setQuantity(sku.getNum());
@@ -279,18 +286,18 @@ public class SkuFreightRender implements CartRenderStep {
         request.setHeightCm(totalHeight);
 
         try {
-            List<cn.lili.modules.logistics.calculation.LogisticsQuote> quotes = logisticsCalculationService.estimate(request);
-            tradeDTO.setLogisticsQuotes(quotes);
-
-            if (quotes != null && !quotes.isEmpty()) {
-                // 默认选择第一个渠道的报价作为预估运费
-                Double estimatesFreight = quotes.get(0).getAmount();
-                // 将总运费分摊到各个 SKU 上，保证 TradeDTO.priceDetailDTO 计算准确
-                resetFreightPrice(FreightTemplateEnum.NUM, (double) checkedSkus.size(), estimatesFreight, checkedSkus);
+            //报价按运费升序，默认选择第一个渠道的报价作为预估运费
+            List<LogisticsQuote> quotes = logisticsCalculationService.estimate(request);
+            if (quotes.isEmpty()) {
+                return false;
             }
+            tradeDTO.setLogisticsQuotes(quotes);
+            // 将总运费分摊到各个 SKU 上，保证 TradeDTO.priceDetailDTO 计算准确
+            resetFreightPrice(FreightTemplateEnum.NUM, (double) checkedSkus.size(), quotes.get(0).getAmount(), checkedSkus);
+            return true;
         } catch (Exception e) {
-            // 如果试算失败，可以记录日志或抛出异常，这里选择记录日志并跳过运费计算（或者设为不支持配送）
-            tradeDTO.setNotSupportFreight(checkedSkus);
+            log.warn("国际运费试算失败，使用运费模板计算：{}", e.getMessage());
+            return false;
         }
     }
 
@@ -0,0 +1,374 @@
+package cn.lili.modules.order.cart.service;
+
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.security.AuthUser;
+import cn.lili.common.security.context.UserContext;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.goods.service.GoodsSkuService;
+import cn.lili.modules.order.cart.entity.dto.CartSkuLineDTO;
+import cn.lili.modules.order.cart.entity.dto.TradeDTO;
+import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
+import cn.lili.modules.order.cart.entity.vo.CartSkuVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 购物车持久化业务层实现，按sku存储
+ * <p>
+ * 购物车(CART)存储为一个redis hash：header 字段保存地址、发票、优惠券等头信息，
+ * 每个sku一个字段保存精简的行记录 {@link CartSkuLineDTO}。
+ * 加购、选中、删除只读写对应的字段，完整的 {@link TradeDTO} 只在渲染时组装。
+ * 立即购买等其他类型只有单个商品，仍按整体存储。
+ * <p>
+ * 首次访问时会将旧的整体存储数据迁移到hash中。
+ *
+ * @author Chopper
+ * @since 2024-03-11
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "lili.cart", name = "storage", havingValue = "hash", matchIfMissing = true)
+public class CartHashPersistenceServiceImpl extends CartPersistenceServiceImpl {
+
+    /**
+     * 头信息字段
+     */
+    private static final String HEADER_FIELD = "header";
+
+    /**
+     * sku行记录字段前缀
+     */
+    private static final String SKU_FIELD_PREFIX = "sku:";
+
+    @Autowired
+    private GoodsSkuService goodsSkuService;
+
+    @Override
+    public TradeDTO readDTO(CartTypeEnum checkedWay) {
+        if (!this.isLineStorage(checkedWay)) {
+            return super.readDTO(checkedWay);
+        }
+        String key = this.getLineKey(checkedWay);
+        Map<Object, Object> entries = cache.getHash(key);
+        if (!entries.containsKey(HEADER_FIELD)) {
+            this.migrate(checkedWay);
+            entries = cache.getHash(key);
+        }
+
+        TradeDTO tradeDTO = this.initTradeDTO((TradeDTO) entries.get(HEADER_FIELD), checkedWay);
+        List<CartSkuLineDTO> lines = entries.entrySet().stream()
+                .filter(i -> i.getKey().toString().startsWith(SKU_FIELD_PREFIX))
+                .map(i -> (CartSkuLineDTO) i.getValue())
+                .sorted(Comparator.comparing(CartSkuLineDTO::getAddTime, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+        tradeDTO.setSkuList(this.toCartSkuVOList(lines, checkedWay));
+        return tradeDTO;
+    }
+
+    @Override
+    public void resetTradeDTO(TradeDTO tradeDTO) {
+        CartTypeEnum checkedWay = tradeDTO.getCartTypeEnum();
+        if (!this.isLineStorage(checkedWay)) {
+            super.resetTradeDTO(tradeDTO);
+            return;
+        }
+        String key = this.getLineKey(checkedWay);
+        Map<Object, Object> fields = new HashMap<>(tradeDTO.getSkuList().size() + 1);
+        fields.put(HEADER_FIELD, this.toHeader(tradeDTO));
+        //整体写入时按当前顺序重新编号，之后新加入的商品以时间戳排在后面
+        long addTime = 0;
+        for (CartSkuVO cartSkuVO : tradeDTO.getSkuList()) {
+            CartSkuLineDTO line = new CartSkuLineDTO(cartSkuVO);
+            line.setAddTime(addTime++);
+            fields.put(this.getSkuField(line.getSkuId()), line);
+        }
+        //先写入再删除已不存在的sku，避免并发读取到空购物车
+        Set<Object> staleFields = cache.hashKeys(key);
+        staleFields.removeAll(fields.keySet());
+        cache.putAllHash(key, fields);
+        if (!staleFields.isEmpty()) {
+            cache.removeHash(key, staleFields.toArray());
+        }
+    }
+
+    @Override
+    public void clean() {
+        cache.remove(this.getLineKey(CartTypeEnum.CART));
+        super.clean();
+    }
+
+    @Override
+    public CartSkuVO readSku(CartTypeEnum checkedWay, String skuId) {
+        if (!this.isLineStorage(checkedWay)) {
+            return super.readSku(checkedWay, skuId);
+        }
+        List<Object> values = cache.multiGetHash(this.getLineKey(checkedWay), Arrays.asList(HEADER_FIELD, this.getSkuField(skuId)));
+        CartSkuLineDTO line = (CartSkuLineDTO) values.get(1);
+        if (values.get(0) == null) {
+            line = this.migrate(checkedWay).get(skuId);
+        }
+        if (line == null) {
+            return null;
+        }
+        GoodsSku dataSku = goodsSkuService.getGoodsSkuByIdFromCache(skuId);
+        //sku不存在或已被重建，视为购物车中没有此商品
+        if (dataSku == null || !Objects.equals(dataSku.getCreateTime(), line.getSkuCreateTime())) {
+            return null;
+        }
+        return line.toCartSkuVO(dataSku, checkedWay);
+    }
+
+    @Override
+    public void saveSku(CartTypeEnum checkedWay, CartSkuVO cartSkuVO) {
+        if (!this.isLineStorage(checkedWay)) {
+            super.saveSku(checkedWay, cartSkuVO);
+            return;
+        }
+        String key = this.getLineKey(checkedWay);
+        String field = this.getSkuField(cartSkuVO.getGoodsSku().getId());
+        List<Object> values = cache.multiGetHash(key, Arrays.asList(HEADER_FIELD, field));
+        CartSkuLineDTO oldLine = (CartSkuLineDTO) values.get(1);
+        if (values.get(0) == null) {
+            oldLine = this.migrate(checkedWay).get(cartSkuVO.getGoodsSku().getId());
+        }
+
+        CartSkuLineDTO line = new CartSkuLineDTO(cartSkuVO);
+        //已存在的商品保持原有顺序
+        line.setAddTime(oldLine != null && oldLine.getAddTime() != null ? oldLine.getAddTime() : System.currentTimeMillis());
+        cache.putHash(key, field, line);
+    }
+
+    @Override
+    public void deleteSku(CartTypeEnum checkedWay, String... skuIds) {
+        if (!this.isLineStorage(checkedWay)) {
+            super.deleteSku(checkedWay, skuIds);
+            return;
+        }
+        String key = this.getLineKey(checkedWay);
+        if (cache.getHash(key, HEADER_FIELD) == null) {
+            this.migrate(checkedWay);
+        }
+        Object[] fields = Arrays.stream(skuIds).map(this::getSkuField).toArray();
+        if (fields.length > 0) {
+            cache.removeHash(key, fields);
+        }
+    }
+
+    @Override
+    public void checked(CartTypeEnum checkedWay, String skuId, String storeId, boolean checked) {
+        if (!this.isLineStorage(checkedWay)) {
+            super.checked(checkedWay, skuId, storeId, checked);
+            return;
+        }
+        String key = this.getLineKey(checkedWay);
+        TradeDTO header;
+        List<CartSkuLineDTO> lines = new ArrayList<>();
+        if (skuId != null) {
+            //指定sku时只读取头信息和对应的行
+            List<Object> values = cache.multiGetHash(key, Arrays.asList(HEADER_FIELD, this.getSkuField(skuId)));
+            header = (TradeDTO) values.get(0);
+            if (values.get(1) != null) {
+                lines.add((CartSkuLineDTO) values.get(1));
+            }
+        } else {
+            Map<Object, Object> entries = cache.getHash(key);
+            header = (TradeDTO) entries.get(HEADER_FIELD);
+            entries.forEach((field, value) -> {
+                if (field.toString().startsWith(SKU_FIELD_PREFIX)) {
+                    lines.add((CartSkuLineDTO) value);
+                }
+            });
+        }
+        if (header == null) {
+            Map<String, CartSkuLineDTO> migrated = this.migrate(checkedWay);
+            lines.clear();
+            lines.addAll(migrated.values().stream().filter(i -> skuId == null || i.getSkuId().equals(skuId)).collect(Collectors.toList()));
+            header = (TradeDTO) cache.getHash(key, HEADER_FIELD);
+        }
+
+        Map<Object, Object> fields = new HashMap<>(lines.size() + 1);
+        header.setPlatformCoupon(null);
+        header.setStoreCoupons(new HashMap<>());
+        fields.put(HEADER_FIELD, header);
+        for (CartSkuLineDTO line : lines) {
+            if (storeId == null || storeId.equals(line.getStoreId())) {
+                line.setChecked(checked);
+                fields.put(this.getSkuField(line.getSkuId()), line);
+            }
+        }
+        cache.putAllHash(key, fields);
+    }
+
+    @Override
+    public void removeCoupon(CartTypeEnum checkedWay) {
+        if (!this.isLineStorage(checkedWay)) {
+            super.removeCoupon(checkedWay);
+            return;
+        }
+        TradeDTO header = this.readHeader(checkedWay);
+        header.setPlatformCoupon(null);
+        header.setStoreCoupons(new HashMap<>());
+        this.resetHeader(header);
+    }
+
+    @Override
+    public TradeDTO readHeader(CartTypeEnum checkedWay) {
+        if (!this.isLineStorage(checkedWay)) {
+            return super.readHeader(checkedWay);
+        }
+        String key = this.getLineKey(checkedWay);
+        TradeDTO header = (TradeDTO) cache.getHash(key, HEADER_FIELD);
+        if (header == null) {
+            this.migrate(checkedWay);
+            header = (TradeDTO) cache.getHash(key, HEADER_FIELD);
+        }
+        return this.initTradeDTO(header, checkedWay);
+    }
+
+    @Override
+    public void resetHeader(TradeDTO tradeDTO) {
+        if (!this.isLineStorage(tradeDTO.getCartTypeEnum())) {
+            super.resetHeader(tradeDTO);
+            return;
+        }
+        cache.putHash(this.getLineKey(tradeDTO.getCartTypeEnum()), HEADER_FIELD, this.toHeader(tradeDTO));
+    }
+
+    /**
+     * 初始化hash存储：写入头信息，并将旧的整体存储数据迁移过来
+     * 迁移时hash中已存在的sku以hash中的为准
+     *
+     * @param checkedWay 购物车类型
+     * @return 迁移后hash中的sku行记录，key为skuId
+     */
+    private Map<String, CartSkuLineDTO> migrate(CartTypeEnum checkedWay) {
+        String key = this.getLineKey(checkedWay);
+        String originKey = this.getOriginKey(checkedWay);
+        TradeDTO tradeDTO = (TradeDTO) cache.get(originKey);
+        if (tradeDTO == null) {
+            tradeDTO = this.newTradeDTO(checkedWay);
+        }
+
+        Map<Object, Object> entries = cache.getHash(key);
+        Map<Object, Object> fields = new HashMap<>(tradeDTO.getSkuList().size() + 1);
+        if (!entries.containsKey(HEADER_FIELD)) {
+            fields.put(HEADER_FIELD, this.toHeader(tradeDTO));
+        }
+        long addTime = 0;
+        for (CartSkuVO cartSkuVO : tradeDTO.getSkuList()) {
+            CartSkuLineDTO line = new CartSkuLineDTO(cartSkuVO);
+            line.setAddTime(addTime++);
+            String field = this.getSkuField(line.getSkuId());
+            if (!entries.containsKey(field)) {
+                fields.put(field, line);
+            }
+        }
+        if (!fields.isEmpty()) {
+            cache.putAllHash(key, fields);
+        }
+        cache.remove(originKey);
+
+        Map<String, CartSkuLineDTO> lines = new HashMap<>(fields.size() + entries.size());
+        entries.putAll(fields);
+        entries.forEach((field, value) -> {
+            if (field.toString().startsWith(SKU_FIELD_PREFIX)) {
+                CartSkuLineDTO line = (CartSkuLineDTO) value;
+                lines.put(line.getSkuId(), line);
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * 将行记录还原为购物车商品，sku信息批量从缓存中读取
+     *
+     * @param lines      行记录
+     * @param checkedWay 购物车类型
+     * @return 购物车商品
+     */
+    private List<CartSkuVO> toCartSkuVOList(List<CartSkuLineDTO> lines, CartTypeEnum checkedWay) {
+        List<CartSkuVO> cartSkuVOS = new ArrayList<>(lines.size());
+        if (lines.isEmpty()) {
+            return cartSkuVOS;
+        }
+        List<String> skuIds = lines.stream().map(CartSkuLineDTO::getSkuId).collect(Collectors.toList());
+        Map<String, GoodsSku> skuMap = goodsSkuService.getGoodsSkuMapFromCache(skuIds);
+        for (CartSkuLineDTO line : lines) {
+            cartSkuVOS.add(line.toCartSkuVO(skuMap.get(line.getSkuId()), checkedWay));
+        }
+        return cartSkuVOS;
+    }
+
+    /**
+     * 提取购物车头信息，不包含商品及渲染结果
+     *
+     * @param tradeDTO 购物车
+     * @return 头信息
+     */
+    private TradeDTO toHeader(TradeDTO tradeDTO) {
+        TradeDTO header = new TradeDTO(tradeDTO.getCartTypeEnum());
+        header.setParentOrderSn(tradeDTO.getParentOrderSn());
+        header.setReceiptVO(tradeDTO.getReceiptVO());
+        header.setNeedReceipt(tradeDTO.getNeedReceipt());
+        header.setStoreRemark(tradeDTO.getStoreRemark());
+        header.setPlatformCoupon(tradeDTO.getPlatformCoupon());
+        header.setStoreCoupons(tradeDTO.getStoreCoupons());
+        header.setMemberAddress(tradeDTO.getMemberAddress());
+        header.setStoreAddress(tradeDTO.getStoreAddress());
+        header.setClientType(tradeDTO.getClientType());
+        header.setMemberId(tradeDTO.getMemberId());
+        header.setMemberName(tradeDTO.getMemberName());
+        header.setDistributionId(tradeDTO.getDistributionId());
+        return header;
+    }
+
+    /**
+     * 新建空购物车，不查询默认地址
+     *
+     * @param checkedWay 购物车类型
+     * @return 购物车
+     */
+    private TradeDTO newTradeDTO(CartTypeEnum checkedWay) {
+        TradeDTO tradeDTO = new TradeDTO(checkedWay);
+        AuthUser currentUser = UserContext.getCurrentUser();
+        if (currentUser != null) {
+            tradeDTO.setMemberId(currentUser.getId());
+            tradeDTO.setMemberName(currentUser.getUsername());
+        }
+        return tradeDTO;
+    }
+
+    /**
+     * 是否按sku存储
+     *
+     * @param checkedWay 购物车类型
+     * @return 是否按sku存储
+     */
+    private boolean isLineStorage(CartTypeEnum checkedWay) {
+        return CartTypeEnum.CART.equals(checkedWay);
+    }
+
+    private String getSkuField(String skuId) {
+        return SKU_FIELD_PREFIX + skuId;
+    }
+
+    /**
+     * 读取当前会员购物车hash key
+     *
+     * @param cartTypeEnum 获取方式
+     * @return 当前会员购物车hash key
+     */
+    private String getLineKey(CartTypeEnum cartTypeEnum) {
+        AuthUser currentUser = UserContext.getCurrentUser();
+        if (currentUser != null) {
+            return cartTypeEnum.getLinePrefix() + currentUser.getId();
+        }
+        throw new ServiceException(ResultCode.USER_NOT_EXIST);
+    }
+}
@@ -2,6 +2,11 @@ package cn.lili.modules.order.cart.service;
 
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
 import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
+import cn.lili.modules.order.cart.entity.vo.CartSkuVO;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * 购物车持久化业务层
@@ -30,4 +35,105 @@ public interface CartPersistenceService {
      * 清除选中的购物车数据
      */
     void clean();
+
+    /**
+     * 读取购物车中的某个sku
+     * 默认实现读取整个购物车，支持按sku存储的实现只读取对应的行
+     *
+     * @param checkedWay 购物车类型
+     * @param skuId      skuId
+     * @return 购物车商品，不存在时返回null
+     */
+    default CartSkuVO readSku(CartTypeEnum checkedWay, String skuId) {
+        return this.readDTO(checkedWay).getSkuList().stream()
+                .filter(i -> i.getGoodsSku().getId().equals(skuId)).findFirst().orElse(null);
+    }
+
+    /**
+     * 写入购物车中的某个sku，已存在则覆盖
+     *
+     * @param checkedWay 购物车类型
+     * @param cartSkuVO  购物车商品
+     */
+    default void saveSku(CartTypeEnum checkedWay, CartSkuVO cartSkuVO) {
+        TradeDTO tradeDTO = this.readDTO(checkedWay);
+        List<CartSkuVO> skuList = tradeDTO.getSkuList();
+        String skuId = cartSkuVO.getGoodsSku().getId();
+        for (int i = 0; i < skuList.size(); i++) {
+            if (skuList.get(i).getGoodsSku().getId().equals(skuId)) {
+                skuList.set(i, cartSkuVO);
+                this.resetTradeDTO(tradeDTO);
+                return;
+            }
+        }
+        skuList.add(cartSkuVO);
+        this.resetTradeDTO(tradeDTO);
+    }
+
+    /**
+     * 删除购物车中的sku
+     *
+     * @param checkedWay 购物车类型
+     * @param skuIds     要删除的skuId
+     */
+    default void deleteSku(CartTypeEnum checkedWay, String... skuIds) {
+        TradeDTO tradeDTO = this.readDTO(checkedWay);
+        List<String> ids = Arrays.asList(skuIds);
+        tradeDTO.getSkuList().removeIf(i -> ids.contains(i.getGoodsSku().getId()));
+        this.resetTradeDTO(tradeDTO);
+    }
+
+    /**
+     * 选中/取消选中购物车商品，同时取消已选择的优惠券
+     *
+     * @param checkedWay 购物车类型
+     * @param skuId      skuId，为空则不按sku过滤
+     * @param storeId    店铺id，为空则不按店铺过滤
+     * @param checked    是否选中
+     */
+    default void checked(CartTypeEnum checkedWay, String skuId, String storeId, boolean checked) {
+        TradeDTO tradeDTO = this.readDTO(checkedWay);
+        tradeDTO.setPlatformCoupon(null);
+        tradeDTO.setStoreCoupons(new HashMap<>());
+        for (CartSkuVO cartSkuVO : tradeDTO.getSkuList()) {
+            if ((skuId == null || cartSkuVO.getGoodsSku().getId().equals(skuId))
+                    && (storeId == null || storeId.equals(cartSkuVO.getStoreId()))) {
+                cartSkuVO.setChecked(checked);
+            }
+        }
+        this.resetTradeDTO(tradeDTO);
+    }
+
+    /**
+     * 取消已选择的优惠券
+     *
+     * @param checkedWay 购物车类型
+     */
+    default void removeCoupon(CartTypeEnum checkedWay) {
+        TradeDTO tradeDTO = this.readDTO(checkedWay);
+        tradeDTO.setPlatformCoupon(null);
+        tradeDTO.setStoreCoupons(new HashMap<>());
+        this.resetTradeDTO(tradeDTO);
+    }
+
+    /**
+     * 读取购物车头信息（地址、发票、优惠券等），不包含商品
+     * 默认实现读取整个购物车
+     *
+     * @param checkedWay 购物车类型
+     * @return 购物车头信息
+     */
+    default TradeDTO readHeader(CartTypeEnum checkedWay) {
+        return this.readDTO(checkedWay);
+    }
+
+    /**
+     * 写入购物车头信息，不改动购物车商品
+     * 只能传入通过{@link #readHeader(CartTypeEnum)}读取的对象
+     *
+     * @param tradeDTO 购物车头信息
+     */
+    default void resetHeader(TradeDTO tradeDTO) {
+        this.resetTradeDTO(tradeDTO);
+    }
 }
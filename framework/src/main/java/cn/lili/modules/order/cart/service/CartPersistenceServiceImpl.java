@@ -9,26 +9,41 @@ import cn.lili.modules.member.service.MemberAddressService;
 import cn.lili.modules.order.cart.entity.dto.TradeDTO;
 import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 /**
  * 购物车持久化业务层实现
+ * <p>
+ * 整个购物车作为一个值存储，lili.cart.storage=blob 时启用
  *
  * @author Chopper
  * @since 2024-03-11
  */
 @Service
+@ConditionalOnProperty(prefix = "lili.cart", name = "storage", havingValue = "blob")
 public class CartPersistenceServiceImpl implements CartPersistenceService {
 
     @Autowired
-    private Cache<Object> cache;
+    protected Cache<Object> cache;
 
     @Autowired
-    private MemberAddressService memberAddressService;
+    protected MemberAddressService memberAddressService;
 
     @Override
     public TradeDTO readDTO(CartTypeEnum checkedWay) {
         TradeDTO tradeDTO = (TradeDTO) cache.get(this.getOriginKey(checkedWay));
+        return this.initTradeDTO(tradeDTO, checkedWay);
+    }
+
+    /**
+     * 初始化购物车，不存在则新建，并填充默认收货地址
+     *
+     * @param tradeDTO   缓存中读取的购物车
+     * @param checkedWay 购物车类型
+     * @return 购物车
+     */
+    protected TradeDTO initTradeDTO(TradeDTO tradeDTO, CartTypeEnum checkedWay) {
         if (tradeDTO == null) {
             tradeDTO = new TradeDTO(checkedWay);
             AuthUser currentUser = UserContext.getCurrentUser();
@@ -59,7 +74,7 @@ public class CartPersistenceServiceImpl implements CartPersistenceService {
      * @param cartTypeEnum 获取方式
      * @return 当前会员购物原始数据key
      */
-    private String getOriginKey(CartTypeEnum cartTypeEnum) {
+    protected String getOriginKey(CartTypeEnum cartTypeEnum) {
         if (cartTypeEnum != null) {
             AuthUser currentUser = UserContext.getCurrentUser();
             if (currentUser != null) {
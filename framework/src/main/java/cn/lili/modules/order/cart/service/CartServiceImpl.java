@@ -143,10 +143,7 @@ public class CartServiceImpl implements CartService {
             if (cartTypeEnum.equals(CartTypeEnum.CART)) {
 
                 // 如果存在，则变更数量不做新增，否则新增一个商品进入集合
-                tradeDTO = this.readDTO(cartTypeEnum);
-                List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
-                CartSkuVO cartSkuVO = cartSkuVOS.stream().filter(i -> i.getGoodsSku().getId().equals(skuId)).findFirst()
-                        .orElse(null);
+                CartSkuVO cartSkuVO = cartPersistenceService.readSku(cartTypeEnum, skuId);
 
                 // 购物车中已经存在，更新数量
                 if (cartSkuVO != null && dataSku.getCreateTime().equals(cartSkuVO.getGoodsSku().getCreateTime())) {
@@ -165,8 +162,6 @@ public class CartServiceImpl implements CartService {
                     cartSkuVO.setSubTotal(CurrencyUtil.mul(cartSkuVO.getPurchasePrice(), cartSkuVO.getNum()));
                 } else {
 
-                    // 先清理一下 如果商品无效的话
-                    cartSkuVOS.remove(cartSkuVO);
                     // 购物车中不存在此商品，则新建立一个
                     cartSkuVO = new CartSkuVO(dataSku, promotionMap);
 
@@ -175,11 +170,21 @@ public class CartServiceImpl implements CartService {
                     this.checkSetGoodsQuantity(cartSkuVO, skuId, num);
                     // 计算购物车小计
                     cartSkuVO.setSubTotal(CurrencyUtil.mul(cartSkuVO.getPurchasePrice(), cartSkuVO.getNum()));
-                    cartSkuVOS.add(cartSkuVO);
                 }
 
                 // 新加入的商品都是选中的
                 cartSkuVO.setChecked(true);
+
+                // 非批发商品只需要写入当前sku，批发商品需要按同商品的全部sku重新计算批发价
+                if (!GoodsSalesModeEnum.WHOLESALE.name().equals(dataSku.getSalesModel())) {
+                    cartPersistenceService.removeCoupon(cartTypeEnum);
+                    cartPersistenceService.saveSku(cartTypeEnum, cartSkuVO);
+                    return;
+                }
+                tradeDTO = this.readDTO(cartTypeEnum);
+                List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
+                cartSkuVOS.removeIf(i -> i.getGoodsSku().getId().equals(skuId));
+                cartSkuVOS.add(cartSkuVO);
             } else {
                 tradeDTO = new TradeDTO(cartTypeEnum);
                 tradeDTO.setMemberId(currentUser.getId());
@@ -217,47 +222,18 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public void checked(String skuId, boolean checked) {
-        TradeDTO tradeDTO = this.readDTO(CartTypeEnum.CART);
-
-        remoteCoupon(tradeDTO);
-
-        List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
-        for (CartSkuVO cartSkuVO : cartSkuVOS) {
-            if (cartSkuVO.getGoodsSku().getId().equals(skuId)) {
-                cartSkuVO.setChecked(checked);
-            }
-        }
-
-        this.resetTradeDTO(tradeDTO);
+        // 选中状态变更时同时取消已选择的优惠券
+        cartPersistenceService.checked(CartTypeEnum.CART, skuId, null, checked);
     }
 
     @Override
     public void checkedStore(String storeId, boolean checked) {
-        TradeDTO tradeDTO = this.readDTO(CartTypeEnum.CART);
-
-        remoteCoupon(tradeDTO);
-
-        List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
-        for (CartSkuVO cartSkuVO : cartSkuVOS) {
-            if (cartSkuVO.getStoreId().equals(storeId)) {
-                cartSkuVO.setChecked(checked);
-            }
-        }
-
-        resetTradeDTO(tradeDTO);
+        cartPersistenceService.checked(CartTypeEnum.CART, null, storeId, checked);
     }
 
     @Override
     public void checkedAll(boolean checked) {
-        TradeDTO tradeDTO = this.readDTO(CartTypeEnum.CART);
-
-        remoteCoupon(tradeDTO);
-
-        List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
-        for (CartSkuVO cartSkuVO : cartSkuVOS) {
-            cartSkuVO.setChecked(checked);
-        }
-        resetTradeDTO(tradeDTO);
+        cartPersistenceService.checked(CartTypeEnum.CART, null, null, checked);
     }
 
     /**
@@ -272,18 +248,7 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public void delete(String[] skuIds) {
-        TradeDTO tradeDTO = this.readDTO(CartTypeEnum.CART);
-        List<CartSkuVO> cartSkuVOS = tradeDTO.getSkuList();
-        List<CartSkuVO> deleteVos = new ArrayList<>();
-        for (CartSkuVO cartSkuVO : cartSkuVOS) {
-            for (String skuId : skuIds) {
-                if (cartSkuVO.getGoodsSku().getId().equals(skuId)) {
-                    deleteVos.add(cartSkuVO);
-                }
-            }
-        }
-        cartSkuVOS.removeAll(deleteVos);
-        resetTradeDTO(tradeDTO);
+        cartPersistenceService.deleteSku(CartTypeEnum.CART, skuIds);
     }
 
     @Override
@@ -426,10 +391,10 @@ public class CartServiceImpl implements CartService {
             cartTypeEnum = CartTypeEnum.valueOf(way);
         }
 
-        TradeDTO tradeDTO = this.readDTO(cartTypeEnum);
+        TradeDTO tradeDTO = cartPersistenceService.readHeader(cartTypeEnum);
         MemberAddress memberAddress = memberAddressService.getById(shippingAddressId);
         tradeDTO.setMemberAddress(memberAddress);
-        this.resetTradeDTO(tradeDTO);
+        cartPersistenceService.resetHeader(tradeDTO);
     }
 
     @Override
@@ -440,10 +405,10 @@ public class CartServiceImpl implements CartService {
             cartTypeEnum = CartTypeEnum.valueOf(way);
         }
 
-        TradeDTO tradeDTO = this.readDTO(cartTypeEnum);
+        TradeDTO tradeDTO = cartPersistenceService.readHeader(cartTypeEnum);
         StoreAddress storeAddress = storeAddressService.getById(shopAddressId);
         tradeDTO.setStoreAddress(storeAddress);
-        this.resetTradeDTO(tradeDTO);
+        cartPersistenceService.resetHeader(tradeDTO);
     }
 
     /**
@@ -458,10 +423,10 @@ public class CartServiceImpl implements CartService {
         if (CharSequenceUtil.isNotEmpty(way)) {
             cartTypeEnum = CartTypeEnum.valueOf(way);
         }
-        TradeDTO tradeDTO = this.readDTO(cartTypeEnum);
+        TradeDTO tradeDTO = cartPersistenceService.readHeader(cartTypeEnum);
         tradeDTO.setNeedReceipt(true);
         tradeDTO.setReceiptVO(receiptVO);
-        this.resetTradeDTO(tradeDTO);
+        cartPersistenceService.resetHeader(tradeDTO);
     }
 
     /**
@@ -2,8 +2,9 @@ package cn.lili.modules.order.order.aop;
 
 import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.UserEnums;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.common.utils.SpelUtil;
-import cn.lili.common.utils.ThreadPoolUtil;
 import cn.lili.modules.order.trade.entity.dos.OrderLog;
 import cn.lili.modules.order.trade.service.OrderLogService;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,9 @@ public class OrderOperationLogAspect {
     @Autowired
     private OrderLogService orderLogService;
 
+    @Autowired
+    private ExecutorManager executorManager;
+
     @After("@annotation(cn.lili.modules.order.order.aop.OrderLogPoint)")
     public void doAfter(JoinPoint joinPoint) {
         try {
@@ -47,7 +51,7 @@ public class OrderOperationLogAspect {
             Map<String, String> orderLogPoints = spelFormat(joinPoint);
             OrderLog orderLog = new OrderLog(orderLogPoints.get("orderSn"), id, role, userName, orderLogPoints.get("description"));
             //调用线程保存
-            ThreadPoolUtil.getPool().execute(new SaveOrderLogThread(orderLog, orderLogService));
+            executorManager.execute(ExecutorEnum.LOG, new SaveOrderLogThread(orderLog, orderLogService));
         } catch (Exception e) {
             log.error("订单日志错误",e);
         }
@@ -0,0 +1,52 @@
+package cn.lili.modules.order.order.service;
+
+import cn.lili.cache.CachePrefix;
+import cn.lili.modules.order.order.entity.dos.OrderItem;
+
+import java.util.List;
+
+/**
+ * 订单库存预占
+ * <p>
+ * 提交订单时整单预占商品库存及促销库存，支付后确认，取消后释放，
+ * 库存不足在提交订单时直接拒绝，不再等待支付后扣减失败再取消订单
+ *
+ * @author Chopper
+ * @since 2024-03-20
+ */
+public interface OrderStockReservationService {
+
+    /**
+     * 获取订单预占记录的缓存key，与库存key在同一槽内，保证lua脚本可以执行
+     *
+     * @param orderSn 订单编号
+     * @return 缓存key
+     */
+    static String getReservationCacheKey(String orderSn) {
+        return CachePrefix.SKU_STOCK.getPrefix() + "RESERVATION_" + orderSn;
+    }
+
+    /**
+     * 预占订单库存，同一订单重复预占不会重复扣减
+     *
+     * @param orderSn    订单编号
+     * @param orderItems 订单子项
+     */
+    void reserve(String orderSn, List<OrderItem> orderItems);
+
+    /**
+     * 确认预占的库存，订单支付后调用
+     *
+     * @param orderSn 订单编号
+     * @return 是否存在预占记录，不存在时需按原有方式扣减库存
+     */
+    boolean confirm(String orderSn);
+
+    /**
+     * 释放预占的库存，订单取消后调用
+     *
+     * @param orderSn 订单编号
+     * @return 是否释放了库存，已确认或未预占的订单返回false
+     */
+    boolean release(String orderSn);
+}
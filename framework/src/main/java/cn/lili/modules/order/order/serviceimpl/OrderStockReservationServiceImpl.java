@@ -0,0 +1,196 @@
+package cn.lili.modules.order.order.serviceimpl;
+
+import cn.lili.cache.Cache;
+import cn.lili.common.enums.PromotionTypeEnum;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.modules.goods.service.GoodsSkuService;
+import cn.lili.modules.order.order.entity.dos.OrderItem;
+import cn.lili.modules.order.order.service.OrderStockReservationService;
+import cn.lili.modules.promotion.entity.dos.KanjiaActivityGoods;
+import cn.lili.modules.promotion.service.KanjiaActivityGoodsService;
+import cn.lili.modules.promotion.service.PointsGoodsService;
+import cn.lili.modules.promotion.service.PromotionGoodsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 订单库存预占业务层实现
+ *
+ * @author Chopper
+ * @since 2024-03-20
+ */
+@Slf4j
+@Service
+public class OrderStockReservationServiceImpl implements OrderStockReservationService {
+
+    /**
+     * 预占成功
+     */
+    private static final long RESERVED = 1L;
+
+    /**
+     * 订单已预占过
+     */
+    private static final long ALREADY_RESERVED = 2L;
+
+    /**
+     * 预占记录保存时间，单位秒，需大于订单自动取消时间
+     */
+    @Value("${lili.order.stock-reservation-seconds:604800}")
+    private Long reservationSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DefaultRedisScript<Long> stockReserveScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> stockReleaseScript;
+
+    @Autowired
+    private Cache cache;
+
+    @Autowired
+    private GoodsSkuService goodsSkuService;
+
+    @Autowired
+    private PromotionGoodsService promotionGoodsService;
+
+    @Autowired
+    private KanjiaActivityGoodsService kanjiaActivityGoodsService;
+
+    @Autowired
+    private PointsGoodsService pointsGoodsService;
+
+    @Override
+    public void reserve(String orderSn, List<OrderItem> orderItems) {
+        //库存key及扣减数量，同一个库存key合并扣减
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        //库存key及对应的订单子项、促销类型，用于初始化缓存中不存在的库存
+        Map<String, StockSource> stockSources = new HashMap<>();
+        for (OrderItem orderItem : orderItems) {
+            String skuStockKey = GoodsSkuService.getStockCacheKey(orderItem.getSkuId());
+            quantities.merge(skuStockKey, orderItem.getNum(), Integer::sum);
+            stockSources.put(skuStockKey, new StockSource(orderItem, null, null));
+            if (orderItem.getPromotionType() == null || orderItem.getPromotionId() == null) {
+                continue;
+            }
+            String[] promotionTypes = orderItem.getPromotionType().split(",");
+            String[] promotionIds = orderItem.getPromotionId().split(",");
+            for (int i = 0; i < promotionTypes.length && i < promotionIds.length; i++) {
+                if (PromotionTypeEnum.haveStock(promotionTypes[i])) {
+                    PromotionTypeEnum promotionTypeEnum = PromotionTypeEnum.valueOf(promotionTypes[i]);
+                    String promotionStockKey = PromotionGoodsService.getPromotionGoodsStockCacheKey(promotionTypeEnum, promotionIds[i], orderItem.getSkuId());
+                    quantities.merge(promotionStockKey, orderItem.getNum(), Integer::sum);
+                    stockSources.put(promotionStockKey, new StockSource(orderItem, promotionTypeEnum, promotionIds[i]));
+                }
+            }
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        //缓存中不存在的库存先写入缓存，防止缓存失效导致无法下单
+        List<String> stockKeys = new ArrayList<>(quantities.keySet());
+        List<?> stocks = cache.multiGet(stockKeys);
+        for (int i = 0; i < stockKeys.size(); i++) {
+            if (stocks == null || stocks.get(i) == null) {
+                this.initStockCache(stockKeys.get(i), stockSources.get(stockKeys.get(i)));
+            }
+        }
+
+        List<String> keys = new ArrayList<>(stockKeys.size() + 1);
+        List<String> values = new ArrayList<>(stockKeys.size() + 1);
+        keys.add(OrderStockReservationService.getReservationCacheKey(orderSn));
+        values.add(reservationSeconds.toString());
+        quantities.forEach((key, num) -> {
+            keys.add(key);
+            values.add(num.toString());
+        });
+        Long result = stringRedisTemplate.execute(stockReserveScript, keys, values.toArray());
+        if (result == null || (result != RESERVED && result != ALREADY_RESERVED)) {
+            log.info("订单[{}]库存预占失败，库存key{}，预占数量{}", orderSn, keys, values);
+            throw new ServiceException(ResultCode.GOODS_SKU_QUANTITY_NOT_ENOUGH);
+        }
+        log.info("订单[{}]库存预占成功，库存key{}，预占数量{}", orderSn, keys, values);
+    }
+
+    @Override
+    public boolean confirm(String orderSn) {
+        return Boolean.TRUE.equals(stringRedisTemplate.delete(OrderStockReservationService.getReservationCacheKey(orderSn)));
+    }
+
+    @Override
+    public boolean release(String orderSn) {
+        String reservationKey = OrderStockReservationService.getReservationCacheKey(orderSn);
+        //脚本内操作的key都需要通过KEYS传入，先读取预占的库存key
+        Set<Object> stockKeys = stringRedisTemplate.opsForHash().keys(reservationKey);
+        if (stockKeys.isEmpty()) {
+            return false;
+        }
+        List<String> keys = new ArrayList<>(stockKeys.size() + 1);
+        keys.add(reservationKey);
+        stockKeys.forEach(stockKey -> keys.add(stockKey.toString()));
+        Long result = stringRedisTemplate.execute(stockReleaseScript, keys);
+        boolean released = result != null && result == RESERVED;
+        if (released) {
+            log.info("订单[{}]预占库存已释放", orderSn);
+        }
+        return released;
+    }
+
+    /**
+     * 初始化缓存中的库存
+     *
+     * @param stockKey 库存key
+     * @param source   库存来源
+     */
+    private void initStockCache(String stockKey, StockSource source) {
+        OrderItem orderItem = source.orderItem;
+        PromotionTypeEnum promotionTypeEnum = source.promotionType;
+        if (promotionTypeEnum == null) {
+            //内部会自动写入
+            goodsSkuService.getStock(orderItem.getSkuId());
+            return;
+        }
+        switch (promotionTypeEnum) {
+            case KANJIA:
+                KanjiaActivityGoods kanjiaActivityGoods = kanjiaActivityGoodsService.getKanjiaGoodsBySkuId(orderItem.getSkuId());
+                cache.put(stockKey, kanjiaActivityGoods == null || kanjiaActivityGoods.getStock() == null ? 0 : kanjiaActivityGoods.getStock());
+                break;
+            case POINTS_GOODS:
+                cache.put(stockKey, pointsGoodsService.getPointsGoodsDetailBySkuId(orderItem.getSkuId()).getActiveStock());
+                break;
+            default:
+                //内部会自动写入
+                promotionGoodsService.getPromotionGoodsStock(promotionTypeEnum, source.promotionId, orderItem.getSkuId());
+                break;
+        }
+    }
+
+    /**
+     * 库存来源，促销类型为空时为商品库存
+     */
+    private static class StockSource {
+
+        private final OrderItem orderItem;
+
+        private final PromotionTypeEnum promotionType;
+
+        private final String promotionId;
+
+        StockSource(OrderItem orderItem, PromotionTypeEnum promotionType, String promotionId) {
+            this.orderItem = orderItem;
+            this.promotionType = promotionType;
+            this.promotionId = promotionId;
+        }
+    }
+}
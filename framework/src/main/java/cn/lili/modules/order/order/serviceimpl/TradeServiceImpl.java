@@ -19,9 +19,11 @@ import cn.lili.modules.order.cart.entity.vo.CartVO;
 import cn.lili.modules.order.order.entity.dos.Order;
 import cn.lili.modules.order.order.entity.dos.Trade;
 import cn.lili.modules.order.order.entity.enums.PayStatusEnum;
+import cn.lili.modules.order.order.entity.vo.OrderVO;
 import cn.lili.modules.order.order.mapper.TradeMapper;
 import cn.lili.modules.order.order.mapper.OrderMapper;
 import cn.lili.modules.order.order.service.OrderService;
+import cn.lili.modules.order.order.service.OrderStockReservationService;
 import cn.lili.modules.order.order.service.TradeService;
 import cn.lili.modules.promotion.service.CouponService;
 import cn.lili.modules.promotion.service.KanjiaActivityService;
@@ -33,6 +35,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -80,6 +84,11 @@ public class TradeServiceImpl extends ServiceImpl<TradeMapper, Trade> implements
      */
     @Autowired
     private KanjiaActivityService kanjiaActivityService;
+    /**
+     * 库存预占
+     */
+    @Autowired
+    private OrderStockReservationService orderStockReservationService;
     /**
      * RocketMQ 配置
      */
@@ -105,6 +114,8 @@ public class TradeServiceImpl extends ServiceImpl<TradeMapper, Trade> implements
         this.save(trade);
         // 添加订单
         orderService.intoDB(tradeDTO);
+        // 库存预占
+        stockReservation(tradeDTO);
 
         // 砍价订单处理
         kanjiaPretreatment(tradeDTO);
@@ -118,6 +129,38 @@ public class TradeServiceImpl extends ServiceImpl<TradeMapper, Trade> implements
         return trade;
     }
 
+    /**
+     * 预占订单库存，库存不足时直接拒绝下单
+     * 交易创建失败时释放已预占的库存
+     *
+     * @param tradeDTO 购物车视图
+     */
+    private void stockReservation(TradeDTO tradeDTO) {
+        List<String> reservedOrderSns = new ArrayList<>();
+        boolean synchronizationActive = TransactionSynchronizationManager.isSynchronizationActive();
+        if (synchronizationActive) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservedOrderSns.forEach(orderStockReservationService::release);
+                    }
+                }
+            });
+        }
+        try {
+            for (OrderVO orderVO : tradeDTO.getOrderVO()) {
+                orderStockReservationService.reserve(orderVO.getSn(), orderVO.getOrderItems());
+                reservedOrderSns.add(orderVO.getSn());
+            }
+        } catch (RuntimeException e) {
+            if (!synchronizationActive) {
+                reservedOrderSns.forEach(orderStockReservationService::release);
+            }
+            throw e;
+        }
+    }
+
     /**
      * 创建订单最后一步校验
      *
@@ -18,8 +18,23 @@ public interface StripePaymentSnapshotService extends IService<StripePaymentSnap
 
     /**
      * 获取累计已确认的真实销售额 (USD)
+     * 读取缓存中维护的累计值，不扫描快照表
      * 
      * @return 累计销售额 (USD)
      */
     double getCompletedTotalSalesUSD();
+
+    /**
+     * 确认快照，首次确认时将净收款累加到累计销售额
+     *
+     * @param snapshot Stripe 支付快照
+     */
+    void confirm(StripePaymentSnapshot snapshot);
+
+    /**
+     * 按快照表重新汇总累计销售额并写入缓存
+     *
+     * @return 累计销售额 (USD)
+     */
+    double reconcileCompletedTotalSalesUSD();
 }
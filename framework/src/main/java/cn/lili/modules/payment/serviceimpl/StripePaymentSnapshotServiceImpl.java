@@ -1,43 +1,148 @@
 package cn.lili.modules.payment.serviceimpl;
 
+import cn.lili.cache.CachePrefix;
 import cn.lili.modules.payment.entity.StripePaymentSnapshot;
 import cn.lili.modules.payment.mapper.StripePaymentSnapshotMapper;
 import cn.lili.modules.payment.service.StripePaymentSnapshotService;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import java.util.Map;
 
 /**
  * Stripe 支付快照服务实现
+ * 累计销售额以百万分之一美元为单位维护在缓存中，确认快照时累加，定时任务按快照表校准
  */
+@Slf4j
 @Service
 public class StripePaymentSnapshotServiceImpl extends ServiceImpl<StripePaymentSnapshotMapper, StripePaymentSnapshot> implements StripePaymentSnapshotService {
 
+    private static final String CONFIRMED = "CONFIRMED";
+
+    /**
+     * 累计销售额缓存key
+     */
+    private static final String SALES_TOTAL_KEY = CachePrefix.MAOLLAR_SALES_TOTAL.getPrefix();
+
+    private static final BigDecimal MICROS = BigDecimal.valueOf(1_000_000L);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
     @Override
     public StripePaymentSnapshot getConfirmedSnapshot(String orderSn) {
         return this.getOne(new LambdaQueryWrapper<StripePaymentSnapshot>()
                 .eq(StripePaymentSnapshot::getOrderSn, orderSn)
-                .eq(StripePaymentSnapshot::getPaymentStatus, "CONFIRMED")
+                .eq(StripePaymentSnapshot::getPaymentStatus, CONFIRMED)
                 .isNotNull(StripePaymentSnapshot::getAmountNetUsd)
                 .orderByDesc(StripePaymentSnapshot::getUpdateTime), false); // false = don't throw exception if multiple found
     }
 
     @Override
     public double getCompletedTotalSalesUSD() {
-        // 求和已确认的真实净收款 (USD)
+        String value;
+        try {
+            value = stringRedisTemplate.opsForValue().get(SALES_TOTAL_KEY);
+        } catch (Exception e) {
+            log.warn("累计销售额缓存读取失败，改为查询快照表：{}", e.getMessage());
+            return this.sumConfirmed().doubleValue();
+        }
+        if (value == null) {
+            // 缓存丢失时只由一个线程汇总
+            synchronized (this) {
+                value = stringRedisTemplate.opsForValue().get(SALES_TOTAL_KEY);
+                if (value == null) {
+                    return this.reconcileCompletedTotalSalesUSD();
+                }
+            }
+        }
+        return BigDecimal.valueOf(Long.parseLong(value)).divide(MICROS, 6, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void confirm(StripePaymentSnapshot snapshot) {
+        snapshot.setPaymentStatus(CONFIRMED);
+        boolean first;
+        if (snapshot.getId() == null) {
+            first = this.save(snapshot);
+        } else {
+            // 仅未确认的快照会更新成功，重复通知不会重复累加
+            first = this.update(snapshot, new LambdaUpdateWrapper<StripePaymentSnapshot>()
+                    .eq(StripePaymentSnapshot::getId, snapshot.getId())
+                    .and(wrapper -> wrapper.isNull(StripePaymentSnapshot::getPaymentStatus)
+                            .or().ne(StripePaymentSnapshot::getPaymentStatus, CONFIRMED)));
+            if (!first) {
+                this.updateById(snapshot);
+            }
+        }
+        BigDecimal amount = snapshot.getAmountNetUsd();
+        if (!first || amount == null || amount.signum() <= 0) {
+            return;
+        }
+        long micros = toMicros(amount);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increase(micros);
+                }
+            });
+        } else {
+            this.increase(micros);
+        }
+    }
+
+    @Override
+    public double reconcileCompletedTotalSalesUSD() {
+        BigDecimal total = this.sumConfirmed();
+        stringRedisTemplate.opsForValue().set(SALES_TOTAL_KEY, String.valueOf(toMicros(total)));
+        return total.doubleValue();
+    }
+
+    /**
+     * 累加累计销售额，缓存不存在时不累加，下次读取时按快照表汇总
+     *
+     * @param micros 百万分之一美元
+     */
+    private void increase(long micros) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(SALES_TOTAL_KEY))) {
+                stringRedisTemplate.opsForValue().increment(SALES_TOTAL_KEY, micros);
+            }
+        } catch (Exception e) {
+            log.error("累计销售额累加失败，等待定时校准", e);
+        }
+    }
+
+    /**
+     * 求和已确认的真实净收款 (USD)
+     */
+    private BigDecimal sumConfirmed() {
         QueryWrapper<StripePaymentSnapshot> queryWrapper = new QueryWrapper<>();
         queryWrapper.select("IFNULL(sum(amount_net_usd), 0) as totalSales");
-        queryWrapper.eq("payment_status", "CONFIRMED");
+        queryWrapper.eq("payment_status", CONFIRMED);
         queryWrapper.gt("amount_net_usd", 0);
         Map<String, Object> map = this.getMap(queryWrapper);
         if (map != null && map.get("totalSales") != null) {
-            return Double.parseDouble(map.get("totalSales").toString());
+            return new BigDecimal(map.get("totalSales").toString());
         }
-        return 0.0;
+        return BigDecimal.ZERO;
+    }
+
+    private static long toMicros(BigDecimal amount) {
+        return amount.multiply(MICROS).setScale(0, RoundingMode.HALF_UP).longValue();
     }
 }
@@ -92,6 +92,9 @@ public class MemberCoupon extends BaseEntity {
     @ApiModelProperty(value = "是否是平台优惠券")
     private Boolean platformFlag;
 
+    @ApiModelProperty(value = "定向发放的优惠券活动id，领取的优惠券为空")
+    private String couponActivityId;
+
     @ApiModelProperty(value = "店铺承担比例")
     private Double storeCommission;
 
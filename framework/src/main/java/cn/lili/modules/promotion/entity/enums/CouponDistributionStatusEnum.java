@@ -0,0 +1,25 @@
+package cn.lili.modules.promotion.entity.enums;
+
+/**
+ * 优惠券定向发放状态枚举
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public enum CouponDistributionStatusEnum {
+
+    /**
+     * 枚举
+     */
+    RUNNING("发放中"), FINISHED("已完成"), FAILED("发放失败");
+
+    private final String description;
+
+    CouponDistributionStatusEnum(String str) {
+        this.description = str;
+    }
+
+    public String description() {
+        return description;
+    }
+}
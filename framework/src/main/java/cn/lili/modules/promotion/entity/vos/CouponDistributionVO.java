@@ -0,0 +1,55 @@
+package cn.lili.modules.promotion.entity.vos;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 优惠券定向发放进度
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Data
+public class CouponDistributionVO implements Serializable {
+
+    private static final long serialVersionUID = 3174532164328410625L;
+
+    @ApiModelProperty(value = "优惠券活动id")
+    private String couponActivityId;
+
+    /**
+     * @see cn.lili.modules.promotion.entity.enums.CouponDistributionStatusEnum
+     */
+    @ApiModelProperty(value = "发放状态")
+    private String status;
+
+    @ApiModelProperty(value = "发放会员总数")
+    private Long total;
+
+    @ApiModelProperty(value = "已发放会员数")
+    private Long sentMembers;
+
+    @ApiModelProperty(value = "已发放优惠券数")
+    private Long sentCoupons;
+
+    @ApiModelProperty(value = "每秒发放会员数")
+    private Double membersPerSecond;
+
+    @ApiModelProperty(value = "已重试次数")
+    private Integer retries;
+
+    @ApiModelProperty(value = "失败原因")
+    private String error;
+
+    @ApiModelProperty(value = "开始时间")
+    private Date startTime;
+
+    @ApiModelProperty(value = "最近进度时间")
+    private Date updateTime;
+
+    @ApiModelProperty(value = "完成时间")
+    private Date finishTime;
+}
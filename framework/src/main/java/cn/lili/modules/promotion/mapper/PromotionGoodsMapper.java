@@ -6,8 +6,12 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.toolkit.Constants;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 促销商品数据处理层
@@ -64,4 +68,38 @@ public interface PromotionGoodsMapper extends BaseMapper<PromotionGoods> {
      */
     @Select("select price from li_promotion_goods ${ew.customSqlSegment} ")
     Double selectPromotionsGoodsPrice(@Param(Constants.WRAPPER) Wrapper<PromotionGoods> queryWrapper);
-}
\ No newline at end of file
+
+    /**
+     * 批量修改sku参与的促销商品库存，一条语句完成
+     *
+     * @param skuQuantities skuId及库存
+     * @param excludeTypes  不修改的促销类型，即有独立库存的促销
+     * @return 修改的行数
+     */
+    @Update({"<script>",
+            "UPDATE li_promotion_goods SET quantity = CASE sku_id",
+            "<foreach collection='skuQuantities' index='skuId' item='quantity'> WHEN #{skuId} THEN #{quantity} </foreach>",
+            "END WHERE sku_id IN",
+            "<foreach collection='skuQuantities' index='skuId' open='(' separator=',' close=')'>#{skuId}</foreach>",
+            "AND promotion_type NOT IN",
+            "<foreach collection='excludeTypes' item='type' open='(' separator=',' close=')'>#{type}</foreach>",
+            "</script>"})
+    int batchUpdateSkuQuantity(@Param("skuQuantities") Map<String, Integer> skuQuantities,
+                               @Param("excludeTypes") Collection<String> excludeTypes);
+
+    /**
+     * 批量修改促销商品库存及已售数量，一条语句完成
+     *
+     * @param promotionGoods 促销商品，按促销类型、促销id、skuId匹配
+     * @return 修改的行数
+     */
+    @Update({"<script>",
+            "UPDATE li_promotion_goods SET quantity = CASE",
+            "<foreach collection='promotionGoods' item='g'> WHEN promotion_type = #{g.promotionType} AND promotion_id = #{g.promotionId} AND sku_id = #{g.skuId} THEN #{g.quantity} </foreach>",
+            "ELSE quantity END, num = CASE",
+            "<foreach collection='promotionGoods' item='g'> WHEN promotion_type = #{g.promotionType} AND promotion_id = #{g.promotionId} AND sku_id = #{g.skuId} THEN #{g.num} </foreach>",
+            "ELSE num END WHERE",
+            "<foreach collection='promotionGoods' item='g' open='(' separator=' OR ' close=')'>(promotion_type = #{g.promotionType} AND promotion_id = #{g.promotionId} AND sku_id = #{g.skuId})</foreach>",
+            "</script>"})
+    int batchUpdateStock(@Param("promotionGoods") List<PromotionGoods> promotionGoods);
+}
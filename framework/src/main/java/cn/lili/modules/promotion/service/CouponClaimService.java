@@ -0,0 +1,60 @@
+package cn.lili.modules.promotion.service;
+
+import cn.lili.cache.CachePrefix;
+import cn.lili.modules.promotion.entity.dos.Coupon;
+import cn.lili.modules.promotion.entity.dos.MemberCoupon;
+
+import java.util.List;
+
+/**
+ * 优惠券领取
+ * <p>
+ * 优惠券发行数量、每人限领数量及会员已领取数量加载到缓存，领取时由脚本一次完成校验和扣减，
+ * 领取记录先写入缓存，再异步批量写入会员优惠券，定时任务兜底入库并按数据库校准已领取数量。
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public interface CouponClaimService {
+
+    /**
+     * 已加载配额的优惠券id集合
+     */
+    String ACTIVE_KEY = CachePrefix.COUPON_CLAIM.getPrefix() + "ACTIVE";
+
+    /**
+     * 领取优惠券，领取成功后会员优惠券异步入库
+     *
+     * @param coupon     优惠券
+     * @param memberId   会员id
+     * @param memberName 会员名称
+     */
+    void claim(Coupon coupon, String memberId, String memberName);
+
+    /**
+     * 将优惠券待入库的领取记录写入会员优惠券
+     *
+     * @param couponId 优惠券id
+     * @return 本次入库数量
+     */
+    int flush(String couponId);
+
+    /**
+     * 定向发放的会员优惠券入库后，累加缓存中已加载的已领取数量及会员领取数量
+     *
+     * @param memberCoupons 已入库的会员优惠券
+     */
+    void issued(List<MemberCoupon> memberCoupons);
+
+    /**
+     * 优惠券修改后清除配额，事务提交后生效，下次领取时重新加载
+     *
+     * @param couponIds 优惠券id集合
+     */
+    void evict(List<String> couponIds);
+
+    /**
+     * 入库遗留的待入库及处理中领取记录，按数据库校准已领取数量，清理已结束的优惠券，预加载即将开始的免费领取优惠券
+     */
+    void reconcile();
+}
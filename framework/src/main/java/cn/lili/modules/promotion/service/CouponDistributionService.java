@@ -0,0 +1,41 @@
+package cn.lili.modules.promotion.service;
+
+import cn.lili.cache.CachePrefix;
+import cn.lili.modules.promotion.entity.vos.CouponDistributionVO;
+
+/**
+ * 优惠券定向发放
+ * <p>
+ * 按会员id游标分页读取发放对象，每页在独立事务中发放，多页并行；
+ * 发放进度记录在缓存中，节点异常中断或失败后由定时任务从最近的进度继续发放。
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public interface CouponDistributionService {
+
+    /**
+     * 未完成的发放任务（优惠券活动id集合）
+     */
+    String UNFINISHED_KEY = CachePrefix.COUPON_DISTRIBUTION.getPrefix() + "UNFINISHED";
+
+    /**
+     * 开始发放优惠券活动，已完成的活动不重复发放
+     *
+     * @param couponActivityId 优惠券活动id
+     */
+    void distribute(String couponActivityId);
+
+    /**
+     * 继续中断或失败的发放任务
+     */
+    void resume();
+
+    /**
+     * 发放进度
+     *
+     * @param couponActivityId 优惠券活动id
+     * @return 发放进度，未发放时返回null
+     */
+    CouponDistributionVO progress(String couponActivityId);
+}
@@ -170,4 +170,11 @@ public interface MemberCouponService extends IService<MemberCoupon> {
      */
     long getMemberCouponNum(String memberId, String couponId);
 
+    /**
+     * 保存已领取的会员优惠券，并按优惠券累加已领取数量
+     *
+     * @param memberCoupons 会员优惠券
+     */
+    void saveReceivedCoupons(List<MemberCoupon> memberCoupons);
+
 }
\ No newline at end of file
@@ -145,6 +145,13 @@ public interface PromotionGoodsService extends IService<PromotionGoods> {
      */
     void updatePromotionGoodsStock(String skuId, Integer quantity);
 
+    /**
+     * 批量更新sku参与的促销活动商品库存，不包含有独立库存的促销
+     *
+     * @param skuQuantities skuId及库存
+     */
+    void batchUpdatePromotionGoodsStock(Map<String, Integer> skuQuantities);
+
     /**
      * 更新促销活动商品索引
      *
@@ -190,4 +197,13 @@ public interface PromotionGoodsService extends IService<PromotionGoods> {
      */
     Map<String, Object> getCurrentGoodsPromotion(GoodsSku dataSku, String cartType);
 
+    /**
+     * 批量获取当前商品促销信息
+     *
+     * @param dataSkus 商品sku信息
+     * @param cartType 购物车类型
+     * @return key为skuId的当前商品促销信息，没有促销的商品不包含在内
+     */
+    Map<String, Map<String, Object>> getCurrentGoodsPromotion(List<GoodsSku> dataSkus, String cartType);
+
 }
\ No newline at end of file
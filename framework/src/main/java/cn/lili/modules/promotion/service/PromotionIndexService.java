@@ -0,0 +1,48 @@
+package cn.lili.modules.promotion.service;
+
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.promotion.entity.dos.PromotionGoods;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 促销活动索引业务层
+ * <p>
+ * 在进程内保存未结束的促销商品及促销活动，按商品、店铺及分类查询当前进行中的促销活动。
+ * 返回的促销商品及促销活动均为副本，调用方可以修改
+ *
+ * @author Chopper
+ * @since 2024-03-29
+ */
+public interface PromotionIndexService {
+
+    /**
+     * 批量获取商品当前进行中的促销活动
+     *
+     * @param skus 商品sku
+     * @return key为skuId，value为促销活动，促销活动的key为 促销类型-促销id
+     */
+    Map<String, Map<String, Object>> getPromotionMaps(List<GoodsSku> skus);
+
+    /**
+     * 获取商品参与促销活动的促销商品信息
+     *
+     * @param skuId        skuId
+     * @param promotionKey 促销key，促销类型-促销id
+     * @return 促销商品信息，不存在时返回null
+     */
+    PromotionGoods getPromotionGoods(String skuId, String promotionKey);
+
+    /**
+     * 通知所有节点重新加载指定的促销活动
+     *
+     * @param promotionKey 促销key，促销类型-促销id
+     */
+    void refresh(String promotionKey);
+
+    /**
+     * 通知所有节点重新加载全部促销活动
+     */
+    void refreshAll();
+}
@@ -1,6 +1,5 @@
 package cn.lili.modules.promotion.serviceimpl;
 
-import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONUtil;
 import cn.lili.cache.Cache;
 import cn.lili.cache.CachePrefix;
@@ -9,7 +8,6 @@ import cn.lili.common.enums.ResultCode;
 import cn.lili.common.exception.ServiceException;
 import cn.lili.common.properties.RocketmqCustomProperties;
 import cn.lili.common.security.AuthUser;
-import cn.lili.modules.member.service.MemberService;
 import cn.lili.modules.promotion.entity.dos.Coupon;
 import cn.lili.modules.promotion.entity.dos.CouponActivity;
 import cn.lili.modules.promotion.entity.dos.CouponActivityItem;
@@ -37,7 +35,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -62,7 +59,7 @@ public class CouponActivityServiceImpl extends AbstractPromotionsServiceImpl<Cou
     private MemberCouponSignService memberCouponSignService;
 
     @Autowired
-    private MemberService memberService;
+    private CouponDistributionService couponDistributionService;
 
 
     @Autowired
@@ -104,32 +101,15 @@ public class CouponActivityServiceImpl extends AbstractPromotionsServiceImpl<Cou
 
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void specifyCoupon(String couponActivityId) {
 
         //获取优惠券活动
         CouponActivity couponActivity = this.getById(couponActivityId);
-        //获取活动优惠券发送范围
-        List<Map<String, Object>> member = this.getMemberList(couponActivity);
 
-        //如果指定会员发券，则当下直接进行发送，如果是全体会员发券，则变更为用户登录首页进行请求发券
+        //如果指定会员发券，则分批异步发送，如果是全体会员发券，则变更为用户登录首页进行请求发券
         //PS:即不主动发券，需要用户在活动时间内登录自动领取优惠券，类似美团、饿了么 的发放方式
-        if (couponActivity.getActivityScope().equals(CouponActivitySendTypeEnum.DESIGNATED.name())) {
-            //会员拆成多个小组进行发送
-            List<List<Map<String, Object>>> memberGroup = new ArrayList<>();
-
-            //循环分组
-            for (int i = 0; i < (member.size() / 100 + (member.size() % 100 == 0 ? 0 : 1)); i++) {
-                int endPoint = Math.min((100 + (i * 100)), member.size());
-                memberGroup.add(member.subList((i * 100), endPoint));
-            }
-
-            //优惠优惠券活动的优惠券列表
-            List<CouponActivityItem> couponActivityItems = couponActivityItemService.getCouponActivityList(couponActivity.getId());
-            //发送优惠券
-            for (List<Map<String, Object>> memberList : memberGroup) {
-                sendCoupon(memberList, couponActivityItems);
-            }
+        if (couponActivity != null && couponActivity.getActivityScope().equals(CouponActivitySendTypeEnum.DESIGNATED.name())) {
+            couponDistributionService.distribute(couponActivityId);
         }
     }
 
@@ -333,24 +313,6 @@ public class CouponActivityServiceImpl extends AbstractPromotionsServiceImpl<Cou
         return couponActivityVOS;
     }
 
-    /**
-     * 定向发送优惠券
-     *
-     * @param memberList          用户列表
-     * @param couponActivityItems 优惠券列表
-     */
-    private void sendCoupon(List<Map<String, Object>> memberList, List<CouponActivityItem> couponActivityItems) {
-
-        for (Map<String, Object> map : memberList) {
-            AuthUser authUser = new AuthUser();
-            authUser.setId(map.get("id").toString());
-            authUser.setNickName(map.get("nick_name").toString());
-
-            sendCoupon(authUser, couponActivityItems);
-
-        }
-    }
-
     /**
      * 给当前用户发送优惠券
      * 1.循环优惠券列表
@@ -400,27 +362,6 @@ public class CouponActivityServiceImpl extends AbstractPromotionsServiceImpl<Cou
 
     }
 
-    /**
-     * 获取优惠券的范围范围
-     * 此方法用于精准发券
-     *
-     * @param couponActivity 优惠券活动
-     * @return 获取优惠券的会员列表
-     */
-    private List<Map<String, Object>> getMemberList(CouponActivity couponActivity) {
-        //判断优惠券的发送范围，获取会员列表
-
-        List<String> ids = new ArrayList<>();
-        String scopeInfo = couponActivity.getActivityScopeInfo();
-        try {
-            JSONArray array = JSONUtil.parseArray(scopeInfo);
-            ids = array.toList(Map.class).stream().map(i -> i.get("id").toString()).collect(Collectors.toList());
-        } catch (Exception ignore) {
-            // 非数组或格式错误时忽略，保持 ids 为空列表
-        }
-        return memberService.listFieldsByMemberIds("id,nick_name", ids);
-    }
-
     /**
      * 检查优惠券
      *
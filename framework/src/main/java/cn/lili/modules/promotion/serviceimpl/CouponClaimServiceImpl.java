@@ -0,0 +1,464 @@
+package cn.lili.modules.promotion.serviceimpl;
+
+import cn.hutool.core.date.DateField;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.promotion.entity.dos.Coupon;
+import cn.lili.modules.promotion.entity.dos.MemberCoupon;
+import cn.lili.modules.promotion.entity.enums.CouponGetEnum;
+import cn.lili.modules.promotion.entity.enums.CouponRangeDayEnum;
+import cn.lili.modules.promotion.entity.enums.MemberCouponStatusEnum;
+import cn.lili.modules.promotion.entity.enums.PromotionsStatusEnum;
+import cn.lili.modules.promotion.mapper.CouponMapper;
+import cn.lili.modules.promotion.service.CouponClaimService;
+import cn.lili.modules.promotion.service.MemberCouponService;
+import cn.lili.modules.promotion.tools.PromotionTools;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 优惠券领取业务层实现
+ * <p>
+ * 每张优惠券的配额、会员领取数量、待入库及处理中记录使用同一hash tag，保证脚本在集群下可执行。
+ * 配额的加载、校准与领取记录入库使用同一把锁，入库时记录先移入处理中列表，提交后再删除，
+ * 持有锁时处理中的记录只可能是入库失败或节点宕机遗留的，放回待入库列表重新入库。
+ * 已领取数量 = 数据库已领取数量 + 待入库记录数量 + 处理中记录数量
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Service
+public class CouponClaimServiceImpl implements CouponClaimService {
+
+    private static final long SUCCESS = 1L;
+    private static final long NOT_LOADED = -1L;
+    private static final long NOT_STARTED = -2L;
+    private static final long INSUFFICIENT = -3L;
+    private static final long OVER_LIMIT = -4L;
+    private static final long MEMBER_NOT_LOADED = -5L;
+
+    /**
+     * 领取时最多重试次数：加载配额、加载会员领取数量后各重试一次
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 预加载开始时间在该时长内的免费领取优惠券（毫秒）
+     */
+    private static final long PRELOAD_AHEAD = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 单次入库的领取记录数量
+     */
+    @Value("${lili.coupon.claim.batch-size:200}")
+    private Integer batchSize;
+
+    /**
+     * 领取时加载配额等待锁的时长（秒），超时提示稍后重试
+     */
+    @Value("${lili.coupon.claim.load-wait-seconds:3}")
+    private Integer loadWaitSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DefaultRedisScript<Long> couponClaimScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> couponClaimLoadScript;
+
+    @Autowired
+    private DefaultRedisScript<List> couponClaimPopScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> couponClaimRequeueScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> couponClaimReleaseScript;
+
+    @Autowired
+    private DefaultRedisScript<Long> couponClaimIssueScript;
+
+    @Autowired
+    private RedissonClient redisson;
+
+    @Autowired
+    private CouponMapper couponMapper;
+
+    @Lazy
+    @Autowired
+    private MemberCouponService memberCouponService;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    /**
+     * 本节点已提交入库任务的优惠券，避免高并发领取时重复提交
+     */
+    private final Set<String> flushing = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void claim(Coupon coupon, String memberId, String memberName) {
+        String couponId = coupon.getId();
+        List<String> keys = Arrays.asList(quotaKey(couponId), memberKey(couponId), pendingKey(couponId));
+        long now = System.currentTimeMillis();
+        String record = new JSONObject()
+                .set("memberId", memberId)
+                .set("memberName", memberName)
+                .set("time", now)
+                .toString();
+        String memberNum = "";
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Long result = stringRedisTemplate.execute(couponClaimScript, keys, memberId, String.valueOf(now), record, memberNum);
+            long code = result == null ? NOT_LOADED : result;
+            if (code == SUCCESS) {
+                this.afterClaim(couponId, keys, memberId, record);
+                return;
+            } else if (code == NOT_LOADED) {
+                this.load(couponId);
+            } else if (code == MEMBER_NOT_LOADED) {
+                memberNum = String.valueOf(memberCouponService.getMemberCouponNum(memberId, couponId));
+            } else if (code == NOT_STARTED) {
+                throw new ServiceException(ResultCode.COUPON_RECEIVE_ERROR);
+            } else if (code == INSUFFICIENT) {
+                throw new ServiceException(ResultCode.COUPON_NUM_INSUFFICIENT_ERROR);
+            } else if (code == OVER_LIMIT) {
+                throw new ServiceException(ResultCode.COUPON_LIMIT_ERROR, "此优惠券最多领取" + coupon.getCouponLimitNum() + "张");
+            }
+        }
+        throw new ServiceException(ResultCode.COUPON_RECEIVE_ERROR);
+    }
+
+    /**
+     * 领取成功后的处理：在事务中领取时，提交后再提交入库任务，回滚时释放领取
+     *
+     * @param couponId 优惠券id
+     * @param keys     领取脚本的key
+     * @param memberId 会员id
+     * @param record   领取记录
+     */
+    private void afterClaim(String couponId, List<String> keys, String memberId, String record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.scheduleFlush(couponId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    release(couponId, keys, memberId, record);
+                } else {
+                    scheduleFlush(couponId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放领取，记录已被取出入库时无法释放
+     */
+    private void release(String couponId, List<String> keys, String memberId, String record) {
+        try {
+            Long released = stringRedisTemplate.execute(couponClaimReleaseScript, keys, memberId, record);
+            if (released == null || released != SUCCESS) {
+                log.warn("优惠券{}领取所在事务回滚，领取记录已入库，无法释放：{}", couponId, record);
+            }
+        } catch (Exception e) {
+            log.error("优惠券{}领取所在事务回滚，释放领取失败，领取记录：{}", couponId, record, e);
+        }
+    }
+
+    @Override
+    public int flush(String couponId) {
+        RLock lock = redisson.getLock(lockKey(couponId));
+        try {
+            //其他节点正在入库时稍作等待，取到锁后继续处理其入库结束前新增的记录
+            if (!lock.tryLock(1, TimeUnit.SECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        try {
+            return this.drain(couponId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void issued(List<MemberCoupon> memberCoupons) {
+        Map<String, Map<String, Long>> issued = memberCoupons.stream().collect(Collectors.groupingBy(MemberCoupon::getCouponId,
+                Collectors.groupingBy(MemberCoupon::getMemberId, Collectors.counting())));
+        issued.forEach((couponId, members) -> {
+            List<String> args = new ArrayList<>(members.size() * 2 + 1);
+            args.add(String.valueOf(members.values().stream().mapToLong(Long::longValue).sum()));
+            members.forEach((memberId, num) -> {
+                args.add(memberId);
+                args.add(String.valueOf(num));
+            });
+            stringRedisTemplate.execute(couponClaimIssueScript, Arrays.asList(quotaKey(couponId), memberKey(couponId)), args.toArray());
+        });
+    }
+
+    @Override
+    public void evict(List<String> couponIds) {
+        if (couponIds == null || couponIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        couponIds.forEach(couponId -> keys.add(quotaKey(couponId)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stringRedisTemplate.delete(keys);
+                }
+            });
+        } else {
+            stringRedisTemplate.delete(keys);
+        }
+    }
+
+    @Override
+    public void reconcile() {
+        Set<String> couponIds = stringRedisTemplate.opsForSet().members(ACTIVE_KEY);
+        if (couponIds != null) {
+            for (String couponId : couponIds) {
+                try {
+                    this.reconcile(couponId);
+                } catch (Exception e) {
+                    log.error("优惠券{}领取数量校准失败", couponId, e);
+                }
+            }
+        }
+
+        //预加载即将开始及进行中的免费领取优惠券
+        Date now = new Date();
+        List<Coupon> coupons = couponMapper.selectList(new LambdaQueryWrapper<Coupon>()
+                .eq(Coupon::getGetType, CouponGetEnum.FREE.name())
+                .le(Coupon::getStartTime, new Date(now.getTime() + PRELOAD_AHEAD))
+                .and(i -> i.ge(Coupon::getEndTime, now).or().isNull(Coupon::getEndTime)));
+        for (Coupon coupon : coupons) {
+            if (couponIds == null || !couponIds.contains(coupon.getId())) {
+                this.load(coupon.getId());
+            }
+        }
+    }
+
+    /**
+     * 校准单张优惠券：放回遗留的处理中记录并入库后按数据库重新加载配额，已结束的优惠券清理缓存
+     *
+     * @param couponId 优惠券id
+     */
+    private void reconcile(String couponId) {
+        RLock lock = redisson.getLock(lockKey(couponId));
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            this.drain(couponId);
+            Coupon coupon = couponMapper.selectById(couponId);
+            if (coupon == null || PromotionsStatusEnum.END.name().equals(coupon.getPromotionStatus())
+                    || PromotionsStatusEnum.CLOSE.name().equals(coupon.getPromotionStatus())) {
+                stringRedisTemplate.delete(Arrays.asList(quotaKey(couponId), memberKey(couponId)));
+                stringRedisTemplate.opsForSet().remove(ACTIVE_KEY, couponId);
+                return;
+            }
+            Long before = this.received(couponId);
+            Long received = this.reload(coupon);
+            if (before != null && !before.equals(received)) {
+                log.warn("优惠券{}已领取数量校准：{} -> {}", couponId, before, received);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 配额未加载时从数据库加载，等待锁超时提示稍后重试
+     *
+     * @param couponId 优惠券id
+     */
+    private void load(String couponId) {
+        RLock lock = redisson.getLock(lockKey(couponId));
+        try {
+            if (!lock.tryLock(loadWaitSeconds, TimeUnit.SECONDS)) {
+                throw new ServiceException(ResultCode.ERROR);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ResultCode.ERROR);
+        }
+        try {
+            //等待锁期间其他线程可能已加载
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(quotaKey(couponId)))) {
+                return;
+            }
+            Coupon coupon = couponMapper.selectById(couponId);
+            if (coupon == null) {
+                throw new ServiceException(ResultCode.COUPON_NOT_EXIST);
+            }
+            this.reload(coupon);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按数据库写入配额，调用方需持有锁
+     *
+     * @param coupon 优惠券
+     * @return 已领取数量
+     */
+    private Long reload(Coupon coupon) {
+        Long received = stringRedisTemplate.execute(couponClaimLoadScript,
+                Arrays.asList(quotaKey(coupon.getId()), pendingKey(coupon.getId()), processingKey(coupon.getId())),
+                String.valueOf(coupon.getPublishNum() == null ? 0 : coupon.getPublishNum()),
+                String.valueOf(coupon.getCouponLimitNum() == null ? 0 : coupon.getCouponLimitNum()),
+                String.valueOf(coupon.getStartTime() == null ? 0 : coupon.getStartTime().getTime()),
+                String.valueOf(coupon.getEndTime() == null ? 0 : coupon.getEndTime().getTime()),
+                String.valueOf(coupon.getReceivedNum() == null ? 0 : coupon.getReceivedNum()));
+        stringRedisTemplate.opsForSet().add(ACTIVE_KEY, coupon.getId());
+        return received;
+    }
+
+    private Long received(String couponId) {
+        Object received = stringRedisTemplate.opsForHash().get(quotaKey(couponId), "received");
+        return received == null ? null : Long.valueOf(received.toString());
+    }
+
+    /**
+     * 领取成功后提交入库任务，本节点同一优惠券只保留一个任务，
+     * 任务结束后仍有记录则重新提交
+     *
+     * @param couponId 优惠券id
+     */
+    private void scheduleFlush(String couponId) {
+        if (!flushing.add(couponId)) {
+            return;
+        }
+        executorManager.execute(ExecutorEnum.COUPON_CLAIM, () -> {
+            int flushed = 0;
+            try {
+                flushed = this.flush(couponId);
+            } catch (Exception e) {
+                log.error("优惠券{}领取记录入库失败，由定时任务重试", couponId, e);
+            } finally {
+                flushing.remove(couponId);
+            }
+            Long pending = stringRedisTemplate.opsForList().size(pendingKey(couponId));
+            if (flushed > 0 && pending != null && pending > 0) {
+                this.scheduleFlush(couponId);
+            }
+        });
+    }
+
+    /**
+     * 批量将领取记录移入处理中列表后写入数据库，提交后删除处理中列表，写入失败时按原顺序放回，调用方需持有锁
+     *
+     * @param couponId 优惠券id
+     * @return 入库数量
+     */
+    private int drain(String couponId) {
+        List<String> keys = Arrays.asList(pendingKey(couponId), processingKey(couponId));
+        //持有锁时处理中的记录为入库失败或节点宕机遗留，放回重新入库
+        Long requeued = stringRedisTemplate.execute(couponClaimRequeueScript, keys);
+        if (requeued != null && requeued > 0) {
+            log.warn("优惠券{}放回{}条遗留的处理中领取记录", couponId, requeued);
+        }
+        Coupon coupon = null;
+        int total = 0;
+        while (true) {
+            List<String> records = stringRedisTemplate.execute(couponClaimPopScript, keys, String.valueOf(batchSize));
+            if (records == null || records.isEmpty()) {
+                return total;
+            }
+            if (coupon == null) {
+                coupon = couponMapper.selectById(couponId);
+            }
+            if (coupon == null) {
+                log.warn("优惠券{}已删除，丢弃{}条领取记录", couponId, records.size());
+                stringRedisTemplate.delete(processingKey(couponId));
+                continue;
+            }
+            try {
+                memberCouponService.saveReceivedCoupons(this.memberCoupons(coupon, records));
+            } catch (Exception e) {
+                stringRedisTemplate.execute(couponClaimRequeueScript, keys);
+                throw e;
+            }
+            stringRedisTemplate.delete(processingKey(couponId));
+            total += records.size();
+        }
+    }
+
+    private List<MemberCoupon> memberCoupons(Coupon coupon, List<String> records) {
+        List<MemberCoupon> memberCoupons = new ArrayList<>(records.size());
+        for (String record : records) {
+            JSONObject json = JSONUtil.parseObj(record);
+            Date claimTime = new Date(json.getLong("time"));
+            MemberCoupon memberCoupon = new MemberCoupon(coupon);
+            //有效天数按领取时间计算
+            if (!CouponRangeDayEnum.FIXEDTIME.name().equals(coupon.getRangeDayType())) {
+                memberCoupon.setEndTime(DateUtil.endOfDay(DateUtil.offset(claimTime, DateField.DAY_OF_YEAR, coupon.getEffectiveDays() - 1)));
+            }
+            memberCoupon.setMemberId(json.getStr("memberId"));
+            memberCoupon.setMemberName(json.getStr("memberName"));
+            memberCoupon.setMemberCouponStatus(MemberCouponStatusEnum.NEW.name());
+            memberCoupon.setPlatformFlag((PromotionTools.PLATFORM_ID).equals(coupon.getStoreId()));
+            memberCoupons.add(memberCoupon);
+        }
+        return memberCoupons;
+    }
+
+    private static String quotaKey(String couponId) {
+        return "{" + CachePrefix.COUPON_CLAIM.name() + "_" + couponId + "}_QUOTA";
+    }
+
+    private static String memberKey(String couponId) {
+        return "{" + CachePrefix.COUPON_CLAIM.name() + "_" + couponId + "}_MEMBER";
+    }
+
+    private static String pendingKey(String couponId) {
+        return "{" + CachePrefix.COUPON_CLAIM.name() + "_" + couponId + "}_PENDING";
+    }
+
+    private static String processingKey(String couponId) {
+        return "{" + CachePrefix.COUPON_CLAIM.name() + "_" + couponId + "}_PROCESSING";
+    }
+
+    private static String lockKey(String couponId) {
+        return "{" + CachePrefix.COUPON_CLAIM.name() + "_" + couponId + "}_LOCK";
+    }
+}
@@ -0,0 +1,475 @@
+package cn.lili.modules.promotion.serviceimpl;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.json.JSONUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.member.entity.dos.Member;
+import cn.lili.modules.member.service.MemberService;
+import cn.lili.modules.promotion.entity.dos.Coupon;
+import cn.lili.modules.promotion.entity.dos.CouponActivity;
+import cn.lili.modules.promotion.entity.dos.CouponActivityItem;
+import cn.lili.modules.promotion.entity.dos.MemberCoupon;
+import cn.lili.modules.promotion.entity.enums.CouponDistributionStatusEnum;
+import cn.lili.modules.promotion.entity.enums.MemberCouponStatusEnum;
+import cn.lili.modules.promotion.entity.vos.CouponDistributionVO;
+import cn.lili.modules.promotion.mapper.CouponActivityMapper;
+import cn.lili.modules.promotion.service.CouponActivityItemService;
+import cn.lili.modules.promotion.service.CouponClaimService;
+import cn.lili.modules.promotion.service.CouponDistributionService;
+import cn.lili.modules.promotion.service.CouponService;
+import cn.lili.modules.promotion.service.MemberCouponService;
+import cn.lili.modules.promotion.tools.PromotionTools;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 优惠券定向发放业务层实现
+ * <p>
+ * 发放进度记录在 hash 中：cursor 为已连续发放完成的最大会员id，submitted 为已提交发放的最大会员id。
+ * 继续发放时从 cursor 之后开始，cursor 与 submitted 之间的页面可能已在上次发放中提交，
+ * 发放前排除已收到本活动发放的优惠券的会员，会员自行领取的不受影响，每页在同一事务中发放，会员要么全部收到要么全部未收到。
+ * 发放任务与分页发放使用不同的线程池，入库后同步缓存中的已领取数量
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Service
+public class CouponDistributionServiceImpl implements CouponDistributionService {
+
+    private static final String STATUS = "status";
+    private static final String TOTAL = "total";
+    private static final String SENT_MEMBERS = "sentMembers";
+    private static final String SENT_COUPONS = "sentCoupons";
+    private static final String CURSOR = "cursor";
+    private static final String SUBMITTED = "submitted";
+    private static final String RETRIES = "retries";
+    private static final String ERROR = "error";
+    private static final String START_TIME = "startTime";
+    private static final String UPDATE_TIME = "updateTime";
+    private static final String FINISH_TIME = "finishTime";
+
+    /**
+     * 失败后自动重试次数，超过后需人工处理
+     */
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * 发放完成后进度保留天数
+     */
+    private static final long PROGRESS_EXPIRE_DAYS = 30;
+
+    /**
+     * 每页会员数量，同一页在一个事务中发放
+     */
+    @Value("${lili.coupon.distribution.page-size:500}")
+    private Integer pageSize;
+
+    /**
+     * 同一活动并行发放的页数
+     */
+    @Value("${lili.coupon.distribution.parallelism:4}")
+    private Integer parallelism;
+
+    @Autowired
+    private CouponActivityMapper couponActivityMapper;
+
+    @Autowired
+    private CouponActivityItemService couponActivityItemService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private MemberCouponService memberCouponService;
+
+    @Autowired
+    private CouponClaimService couponClaimService;
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedissonClient redisson;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    @Override
+    public void distribute(String couponActivityId) {
+        String key = progressKey(couponActivityId);
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        if (CouponDistributionStatusEnum.FINISHED.name().equals(hashOperations.get(key, STATUS))) {
+            log.info("优惠券活动{}已发放完成，忽略重复发放", couponActivityId);
+            return;
+        }
+        hashOperations.putIfAbsent(key, START_TIME, String.valueOf(System.currentTimeMillis()));
+        hashOperations.put(key, STATUS, CouponDistributionStatusEnum.RUNNING.name());
+        stringRedisTemplate.opsForSet().add(UNFINISHED_KEY, couponActivityId);
+        executorManager.execute(ExecutorEnum.COUPON_DISTRIBUTION, () -> this.run(couponActivityId));
+    }
+
+    @Override
+    public void resume() {
+        Set<String> couponActivityIds = stringRedisTemplate.opsForSet().members(UNFINISHED_KEY);
+        if (couponActivityIds == null) {
+            return;
+        }
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        for (String couponActivityId : couponActivityIds) {
+            String key = progressKey(couponActivityId);
+            String status = hashOperations.get(key, STATUS);
+            if (status == null || CouponDistributionStatusEnum.FINISHED.name().equals(status)) {
+                stringRedisTemplate.opsForSet().remove(UNFINISHED_KEY, couponActivityId);
+                continue;
+            }
+            if (CouponDistributionStatusEnum.FAILED.name().equals(status) && retries(hashOperations.get(key, RETRIES)) >= MAX_RETRIES) {
+                continue;
+            }
+            //持有锁说明正在发放中
+            if (redisson.getLock(lockKey(couponActivityId)).isLocked()) {
+                continue;
+            }
+            log.info("继续发放优惠券活动{}，上次状态{}", couponActivityId, status);
+            executorManager.execute(ExecutorEnum.COUPON_DISTRIBUTION, () -> this.run(couponActivityId));
+        }
+    }
+
+    @Override
+    public CouponDistributionVO progress(String couponActivityId) {
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        Map<String, String> progress = hashOperations.entries(progressKey(couponActivityId));
+        if (progress.isEmpty()) {
+            return null;
+        }
+        CouponDistributionVO vo = new CouponDistributionVO();
+        vo.setCouponActivityId(couponActivityId);
+        vo.setStatus(progress.get(STATUS));
+        vo.setTotal(toLong(progress.get(TOTAL)));
+        vo.setSentMembers(toLong(progress.get(SENT_MEMBERS)));
+        vo.setSentCoupons(toLong(progress.get(SENT_COUPONS)));
+        vo.setRetries(retries(progress.get(RETRIES)));
+        vo.setError(progress.get(ERROR));
+        vo.setStartTime(toDate(progress.get(START_TIME)));
+        vo.setUpdateTime(toDate(progress.get(UPDATE_TIME)));
+        vo.setFinishTime(toDate(progress.get(FINISH_TIME)));
+        if (vo.getStartTime() != null && vo.getSentMembers() != null) {
+            Date end = vo.getFinishTime() != null ? vo.getFinishTime() : vo.getUpdateTime() != null ? vo.getUpdateTime() : new Date();
+            long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(end.getTime() - vo.getStartTime().getTime()));
+            vo.setMembersPerSecond((double) vo.getSentMembers() / seconds);
+        }
+        return vo;
+    }
+
+    /**
+     * 执行发放，同一活动同一时间只有一个节点发放
+     *
+     * @param couponActivityId 优惠券活动id
+     */
+    private void run(String couponActivityId) {
+        RLock lock = redisson.getLock(lockKey(couponActivityId));
+        if (!lock.tryLock()) {
+            return;
+        }
+        String key = progressKey(couponActivityId);
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        try {
+            Map<String, String> progress = hashOperations.entries(key);
+            if (CouponDistributionStatusEnum.FINISHED.name().equals(progress.get(STATUS))) {
+                return;
+            }
+            CouponActivity couponActivity = couponActivityMapper.selectById(couponActivityId);
+            if (couponActivity == null) {
+                this.finish(couponActivityId, CouponDistributionStatusEnum.FINISHED, "优惠券活动不存在");
+                return;
+            }
+            hashOperations.put(key, STATUS, CouponDistributionStatusEnum.RUNNING.name());
+            hashOperations.delete(key, ERROR);
+
+            List<CouponActivityItem> items = couponActivityItemService.getCouponActivityList(couponActivityId);
+            Map<String, Coupon> coupons = items.isEmpty() ? Collections.emptyMap() :
+                    couponService.listByIds(items.stream().map(CouponActivityItem::getCouponId).collect(Collectors.toSet()))
+                            .stream().collect(Collectors.toMap(Coupon::getId, Function.identity()));
+            items.stream().filter(item -> !coupons.containsKey(item.getCouponId()))
+                    .forEach(item -> log.error("赠送优惠券失败,当前优惠券不存在:" + item.getCouponId()));
+
+            List<String> memberIds = this.memberIds(couponActivity);
+            hashOperations.put(key, TOTAL, String.valueOf(memberIds.isEmpty() ? memberService.count() : memberIds.size()));
+
+            String cursor = progress.get(CURSOR);
+            String submitted = progress.get(SUBMITTED);
+            Watermark watermark = new Watermark(key);
+            Semaphore permits = new Semaphore(parallelism);
+            AtomicReference<Exception> failure = new AtomicReference<>();
+
+            while (failure.get() == null) {
+                MemberPage page = this.nextPage(memberIds, cursor);
+                if (page == null) {
+                    break;
+                }
+                //上次发放已提交过的范围，需排除已收到优惠券的会员
+                boolean dedupe = submitted != null && (cursor == null || cursor.compareTo(submitted) < 0);
+                cursor = page.lastId;
+                hashOperations.put(key, SUBMITTED, page.lastId);
+                watermark.submit(page.lastId);
+
+                permits.acquire();
+                executorManager.execute(ExecutorEnum.COUPON_DISTRIBUTION_PAGE, () -> {
+                    try {
+                        this.send(couponActivityId, page, items, coupons, dedupe);
+                        watermark.complete(page.lastId);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            //等待已提交的页面发放完成
+            permits.acquire(parallelism);
+            permits.release(parallelism);
+
+            if (failure.get() != null) {
+                log.error("优惠券活动{}发放失败", couponActivityId, failure.get());
+                hashOperations.increment(key, RETRIES, 1);
+                this.finish(couponActivityId, CouponDistributionStatusEnum.FAILED, failure.get().getMessage());
+            } else {
+                log.info("优惠券活动{}发放完成", couponActivityId);
+                this.finish(couponActivityId, CouponDistributionStatusEnum.FINISHED, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("优惠券活动{}发放异常", couponActivityId, e);
+            hashOperations.increment(key, RETRIES, 1);
+            this.finish(couponActivityId, CouponDistributionStatusEnum.FAILED, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发放一页会员，一页在一个事务中完成
+     *
+     * @param couponActivityId 优惠券活动id
+     * @param page             会员
+     * @param items            活动优惠券
+     * @param coupons          优惠券
+     * @param dedupe           是否排除已收到本活动发放的优惠券的会员
+     */
+    private void send(String couponActivityId, MemberPage page, List<CouponActivityItem> items, Map<String, Coupon> coupons, boolean dedupe) {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        List<Map<String, Object>> members = page.members;
+        if (dedupe && !members.isEmpty() && !coupons.isEmpty()) {
+            Set<String> received = memberCouponService.list(new LambdaQueryWrapper<MemberCoupon>()
+                            .select(MemberCoupon::getMemberId)
+                            .eq(MemberCoupon::getCouponActivityId, couponActivityId)
+                            .in(MemberCoupon::getMemberId, members.stream().map(member -> MapUtil.getStr(member, "id")).collect(Collectors.toList())))
+                    .stream().map(MemberCoupon::getMemberId).collect(Collectors.toSet());
+            if (!received.isEmpty()) {
+                log.info("优惠券活动{}继续发放，跳过已发放会员{}个", couponActivityId, received.size());
+                members = members.stream().filter(member -> !received.contains(MapUtil.getStr(member, "id"))).collect(Collectors.toList());
+            }
+        }
+
+        List<MemberCoupon> memberCoupons = new ArrayList<>();
+        for (Map<String, Object> member : members) {
+            for (CouponActivityItem item : items) {
+                Coupon coupon = coupons.get(item.getCouponId());
+                if (coupon == null) {
+                    continue;
+                }
+                for (int i = 1; i <= item.getNum(); i++) {
+                    MemberCoupon memberCoupon = new MemberCoupon(coupon);
+                    memberCoupon.setMemberId(MapUtil.getStr(member, "id"));
+                    memberCoupon.setMemberName(MapUtil.getStr(member, "nick_name"));
+                    memberCoupon.setMemberCouponStatus(MemberCouponStatusEnum.NEW.name());
+                    memberCoupon.setPlatformFlag(PromotionTools.PLATFORM_ID.equals(coupon.getStoreId()));
+                    memberCoupon.setCouponActivityId(couponActivityId);
+                    memberCoupons.add(memberCoupon);
+                }
+            }
+        }
+        memberCouponService.saveReceivedCoupons(memberCoupons);
+        try {
+            couponClaimService.issued(memberCoupons);
+        } catch (Exception e) {
+            log.error("优惠券活动{}发放后同步已领取数量失败，由定时任务校准", couponActivityId, e);
+        }
+
+        String key = progressKey(couponActivityId);
+        stringRedisTemplate.opsForHash().increment(key, SENT_MEMBERS, members.size());
+        stringRedisTemplate.opsForHash().increment(key, SENT_COUPONS, memberCoupons.size());
+        Metrics.counter("lili.coupon.distribution.members").increment(members.size());
+        Metrics.counter("lili.coupon.distribution.coupons").increment(memberCoupons.size());
+        sample.stop(Metrics.timer("lili.coupon.distribution.page"));
+    }
+
+    /**
+     * 读取游标之后的一页会员。指定会员时按排序后的会员id分段查询，未指定时按id游标查询全部会员
+     *
+     * @param memberIds 指定的会员id，已排序
+     * @param cursor    游标，已处理的最大会员id
+     * @return 会员，没有更多会员时返回null
+     */
+    private MemberPage nextPage(List<String> memberIds, String cursor) {
+        if (memberIds.isEmpty()) {
+            List<Map<String, Object>> members = memberService.listMaps(new QueryWrapper<Member>()
+                    .select("id", "nick_name")
+                    .gt(cursor != null, "id", cursor)
+                    .orderByAsc("id")
+                    .last("limit " + pageSize));
+            return members.isEmpty() ? null : new MemberPage(MapUtil.getStr(members.get(members.size() - 1), "id"), members);
+        }
+        int from = cursor == null ? 0 : upperBound(memberIds, cursor);
+        if (from >= memberIds.size()) {
+            return null;
+        }
+        List<String> ids = memberIds.subList(from, Math.min(from + pageSize, memberIds.size()));
+        List<Map<String, Object>> members = memberService.listFieldsByMemberIds("id,nick_name", ids);
+        return new MemberPage(ids.get(ids.size() - 1), members);
+    }
+
+    /**
+     * 活动指定的会员id，去重并排序，未指定时发放给全部会员
+     */
+    private List<String> memberIds(CouponActivity couponActivity) {
+        Set<String> ids = new HashSet<>();
+        try {
+            JSONUtil.parseArray(couponActivity.getActivityScopeInfo()).toList(Map.class)
+                    .forEach(member -> ids.add(member.get("id").toString()));
+        } catch (Exception ignore) {
+            // 非数组或格式错误时忽略，保持 ids 为空列表
+        }
+        List<String> memberIds = new ArrayList<>(ids);
+        Collections.sort(memberIds);
+        return memberIds;
+    }
+
+    private void finish(String couponActivityId, CouponDistributionStatusEnum status, String error) {
+        String key = progressKey(couponActivityId);
+        Map<String, String> fields = new HashMap<>(4);
+        fields.put(STATUS, status.name());
+        fields.put(UPDATE_TIME, String.valueOf(System.currentTimeMillis()));
+        if (error != null) {
+            fields.put(ERROR, error);
+        }
+        if (status == CouponDistributionStatusEnum.FINISHED) {
+            fields.put(FINISH_TIME, fields.get(UPDATE_TIME));
+            stringRedisTemplate.opsForSet().remove(UNFINISHED_KEY, couponActivityId);
+            stringRedisTemplate.expire(key, PROGRESS_EXPIRE_DAYS, TimeUnit.DAYS);
+        }
+        stringRedisTemplate.opsForHash().putAll(key, fields);
+    }
+
+    /**
+     * 第一个大于游标的下标
+     */
+    private static int upperBound(List<String> memberIds, String cursor) {
+        int index = Collections.binarySearch(memberIds, cursor);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static int retries(String retries) {
+        return retries == null ? 0 : Integer.parseInt(retries);
+    }
+
+    private static Long toLong(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private static Date toDate(String value) {
+        return value == null ? null : new Date(Long.parseLong(value));
+    }
+
+    private static String progressKey(String couponActivityId) {
+        return CachePrefix.COUPON_DISTRIBUTION.getPrefix() + couponActivityId;
+    }
+
+    private static String lockKey(String couponActivityId) {
+        return CachePrefix.COUPON_DISTRIBUTION.getPrefix() + couponActivityId + "_LOCK";
+    }
+
+    /**
+     * 一页会员
+     */
+    private static class MemberPage {
+
+        /**
+         * 本页最大会员id，作为下一页的游标
+         */
+        private final String lastId;
+
+        private final List<Map<String, Object>> members;
+
+        private MemberPage(String lastId, List<Map<String, Object>> members) {
+            this.lastId = lastId;
+            this.members = members;
+        }
+    }
+
+    /**
+     * 发放进度水位，多页并行发放时只记录已连续完成的最大会员id
+     */
+    private class Watermark {
+
+        private final String key;
+
+        private final Deque<String> submitted = new ArrayDeque<>();
+
+        private final Set<String> completed = new HashSet<>();
+
+        private Watermark(String key) {
+            this.key = key;
+        }
+
+        private synchronized void submit(String lastId) {
+            submitted.addLast(lastId);
+        }
+
+        private synchronized void complete(String lastId) {
+            completed.add(lastId);
+            String cursor = null;
+            while (!submitted.isEmpty() && completed.remove(submitted.peekFirst())) {
+                cursor = submitted.pollFirst();
+            }
+            Map<String, String> fields = new HashMap<>(2);
+            fields.put(UPDATE_TIME, String.valueOf(System.currentTimeMillis()));
+            if (cursor != null) {
+                fields.put(CURSOR, cursor);
+            }
+            stringRedisTemplate.opsForHash().putAll(key, fields);
+        }
+    }
+}
@@ -76,6 +76,12 @@ public class CouponServiceImpl extends AbstractPromotionsServiceImpl<CouponMappe
     @Autowired
     private CouponActivityItemService couponActivityItemService;
 
+    /**
+     * 优惠券领取
+     */
+    @Autowired
+    private CouponClaimService couponClaimService;
+
     @Autowired
     private RocketmqCustomProperties rocketmqCustomProperties;
 
@@ -106,9 +112,18 @@ public class CouponServiceImpl extends AbstractPromotionsServiceImpl<CouponMappe
 
         // 删除优惠券活动关联优惠券
         this.couponActivityItemService.removeByCouponId(ids);
+        this.couponClaimService.evict(ids);
         return super.removePromotions(ids);
     }
 
+    @Override
+    @Transactional(rollbackFor = { Exception.class })
+    public boolean updatePromotions(Coupon promotions) {
+        boolean result = super.updatePromotions(promotions);
+        this.couponClaimService.evict(Collections.singletonList(promotions.getId()));
+        return result;
+    }
+
     /**
      * 使用优惠券
      *
@@ -186,6 +201,7 @@ public class CouponServiceImpl extends AbstractPromotionsServiceImpl<CouponMappe
             // 删除优惠券活动关联优惠券
             this.couponActivityItemService.removeByCouponId(ids);
         }
+        this.couponClaimService.evict(ids);
         return super.updateStatus(ids, startTime, endTime);
     }
 
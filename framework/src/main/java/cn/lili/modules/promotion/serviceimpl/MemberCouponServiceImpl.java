@@ -17,6 +17,7 @@ import cn.lili.modules.promotion.entity.enums.PromotionsStatusEnum;
 import cn.lili.modules.promotion.entity.vos.MemberCouponVO;
 import cn.lili.modules.promotion.mapper.MemberCouponMapper;
 import cn.lili.modules.promotion.mapper.CouponMapper;
+import cn.lili.modules.promotion.service.CouponClaimService;
 import cn.lili.modules.promotion.service.MemberCouponService;
 import cn.lili.modules.promotion.tools.PromotionTools;
 import cn.lili.mybatis.util.PageUtil;
@@ -35,6 +36,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 会员优惠券业务层实现
@@ -58,6 +60,12 @@ public class MemberCouponServiceImpl extends ServiceImpl<MemberCouponMapper, Mem
     @Autowired
     private Cache cache;
 
+    /**
+     * 优惠券领取
+     */
+    @Autowired
+    private CouponClaimService couponClaimService;
+
     @Override
     public void checkCouponLimit(String couponId, String memberId) {
         Coupon coupon = couponMapper.selectById(couponId);
@@ -352,15 +360,28 @@ public class MemberCouponServiceImpl extends ServiceImpl<MemberCouponMapper, Mem
         return this.update(updateWrapper);
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveReceivedCoupons(List<MemberCoupon> memberCoupons) {
+        if (memberCoupons == null || memberCoupons.isEmpty()) {
+            return;
+        }
+        this.saveBatch(memberCoupons);
+        Map<String, Long> receivedNum = memberCoupons.stream()
+                .collect(Collectors.groupingBy(MemberCoupon::getCouponId, Collectors.counting()));
+        receivedNum.forEach((couponId, num) -> couponMapper.update(null, new LambdaUpdateWrapper<Coupon>()
+                .eq(Coupon::getId, couponId)
+                .setSql("received_num = received_num + " + num)));
+        //清除会员优惠券列表缓存，key格式与 @Cacheable(key = "#memberId") 一致
+        Set<String> keys = new HashSet<>();
+        memberCoupons.forEach(memberCoupon -> keys.add("{MemberCoupon}::" + memberCoupon.getMemberId()));
+        cache.multiDel(keys);
+    }
+
+    /**
+     * 领取优惠券，由缓存完成数量校验及扣减，会员优惠券异步入库
+     */
     private void receiverCoupon(String couponId, String memberId, String memberName, Coupon coupon) {
-        this.checkCouponLimit(couponId, memberId);
-        MemberCoupon memberCoupon = new MemberCoupon(coupon);
-        memberCoupon.setMemberId(memberId);
-        memberCoupon.setMemberName(memberName);
-        memberCoupon.setMemberCouponStatus(MemberCouponStatusEnum.NEW.name());
-        memberCoupon.setPlatformFlag((PromotionTools.PLATFORM_ID).equals(coupon.getStoreId()));
-        this.save(memberCoupon);
-        couponMapper.update(null, new LambdaUpdateWrapper<Coupon>().eq(Coupon::getId, couponId).set(Coupon::getReceivedNum,
-                coupon.getReceivedNum() + 1));
+        couponClaimService.claim(coupon, memberId, memberName);
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,11 @@
 package cn.lili.modules.promotion.serviceimpl;
 
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import cn.lili.cache.Cache;
 import cn.lili.common.enums.PromotionTypeEnum;
 import cn.lili.common.vo.PageVO;
 import cn.lili.modules.goods.entity.dos.GoodsSku;
-import cn.lili.modules.goods.entity.vos.GoodsVO;
-import cn.lili.modules.goods.service.GoodsService;
 import cn.lili.modules.goods.service.GoodsSkuService;
 import cn.lili.modules.order.cart.entity.enums.CartTypeEnum;
 import cn.lili.modules.promotion.entity.dos.PromotionGoods;
@@ -19,10 +16,9 @@ import cn.lili.modules.promotion.entity.enums.PromotionsScopeTypeEnum;
 import cn.lili.modules.promotion.entity.enums.PromotionsStatusEnum;
 import cn.lili.modules.promotion.mapper.PromotionGoodsMapper;
 import cn.lili.modules.promotion.service.PromotionGoodsService;
+import cn.lili.modules.promotion.service.PromotionIndexService;
 import cn.lili.modules.promotion.service.SeckillApplyService;
 import cn.lili.modules.promotion.tools.PromotionTools;
-import cn.lili.modules.search.entity.dos.EsGoodsIndex;
-import cn.lili.modules.search.service.EsGoodsIndexService;
 import cn.lili.modules.system.aspect.annotation.SystemLogPoint;
 import cn.lili.mybatis.util.PageUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
@@ -63,12 +59,8 @@ public class PromotionGoodsServiceImpl extends ServiceImpl<PromotionGoodsMapper,
     @Autowired
     private GoodsSkuService goodsSkuService;
 
-    @Lazy
-    @Autowired
-    private GoodsService goodsService;
-
     @Autowired
-    private EsGoodsIndexService goodsIndexService;
+    private PromotionIndexService promotionIndexService;
 
     @Autowired
     private Cache cache;
@@ -242,6 +234,10 @@ public class PromotionGoodsServiceImpl extends ServiceImpl<PromotionGoodsMapper,
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void updatePromotionGoodsStock(List<PromotionGoods> promotionGoodsList) {
+        if (promotionGoodsList == null || promotionGoodsList.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> stocks = new HashMap<>(promotionGoodsList.size());
         for (PromotionGoods promotionGoods : promotionGoodsList) {
             String promotionStockKey = PromotionGoodsService.getPromotionGoodsStockCacheKey(
                     PromotionTypeEnum.valueOf(promotionGoods.getPromotionType()), promotionGoods.getPromotionId(),
@@ -256,17 +252,13 @@ public class PromotionGoodsServiceImpl extends ServiceImpl<PromotionGoodsMapper,
                             promotionGoods.getSkuId(), promotionGoods.getNum());
                 }
             }
-
-            LambdaUpdateWrapper<PromotionGoods> updateWrapper = new LambdaUpdateWrapper<>();
-            updateWrapper.eq(PromotionGoods::getPromotionType, promotionGoods.getPromotionType())
-                    .eq(PromotionGoods::getPromotionId, promotionGoods.getPromotionId())
-                    .eq(PromotionGoods::getSkuId, promotionGoods.getSkuId());
-            updateWrapper.set(PromotionGoods::getQuantity, promotionGoods.getQuantity()).set(PromotionGoods::getNum,
-                    promotionGoods.getNum());
-
-            this.update(updateWrapper);
-            cache.put(promotionStockKey, promotionGoods.getQuantity());
+            stocks.put(promotionStockKey, promotionGoods.getQuantity());
+        }
+        //库存及已售数量一条语句修改
+        for (List<PromotionGoods> partition : CollUtil.split(promotionGoodsList, 500)) {
+            this.baseMapper.batchUpdateStock(partition);
         }
+        cache.multiSet(stocks);
     }
 
     @Override
@@ -290,6 +282,37 @@ public class PromotionGoodsServiceImpl extends ServiceImpl<PromotionGoodsMapper,
         this.update(updateWrapper);
     }
 
+    @Override
+    public void batchUpdatePromotionGoodsStock(Map<String, Integer> skuQuantities) {
+        if (skuQuantities == null || skuQuantities.isEmpty()) {
+            return;
+        }
+        List<String> excludeTypes = Arrays.stream(PromotionTypeEnum.haveIndependanceStockPromotion).map(Enum::name).collect(Collectors.toList());
+        LambdaQueryWrapper<PromotionGoods> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(PromotionGoods::getPromotionType, PromotionGoods::getPromotionId, PromotionGoods::getSkuId);
+        queryWrapper.notIn(PromotionGoods::getPromotionType, excludeTypes);
+        queryWrapper.in(PromotionGoods::getSkuId, skuQuantities.keySet());
+        List<PromotionGoods> promotionGoodsList = this.list(queryWrapper);
+        //没有参与促销的sku不需要修改
+        if (promotionGoodsList.isEmpty()) {
+            return;
+        }
+        List<String> promotionStockKeys = new ArrayList<>(promotionGoodsList.size());
+        Map<String, Integer> promotionSkuQuantities = new LinkedHashMap<>();
+        for (PromotionGoods promotionGoods : promotionGoodsList) {
+            promotionStockKeys.add(PromotionGoodsService.getPromotionGoodsStockCacheKey(
+                    PromotionTypeEnum.valueOf(promotionGoods.getPromotionType()), promotionGoods.getPromotionId(),
+                    promotionGoods.getSkuId()));
+            promotionSkuQuantities.put(promotionGoods.getSkuId(), skuQuantities.get(promotionGoods.getSkuId()));
+        }
+        cache.multiDel(promotionStockKeys);
+        for (List<String> partition : CollUtil.split(new ArrayList<>(promotionSkuQuantities.keySet()), 500)) {
+            Map<String, Integer> quantities = new LinkedHashMap<>(partition.size());
+            partition.forEach(skuId -> quantities.put(skuId, promotionSkuQuantities.get(skuId)));
+            this.baseMapper.batchUpdateSkuQuantity(quantities, excludeTypes);
+        }
+    }
+
     /**
      * 更新促销活动商品库存
      *
@@ -348,40 +371,43 @@ public class PromotionGoodsServiceImpl extends ServiceImpl<PromotionGoodsMapper,
 
     @Override
     public Map<String, Object> getCurrentGoodsPromotion(GoodsSku dataSku, String cartType) {
-        Map<String, Object> promotionMap;
-        EsGoodsIndex goodsIndex = goodsIndexService.findById(dataSku.getId());
-        if (goodsIndex == null) {
-            GoodsVO goodsVO = this.goodsService.getGoodsVO(dataSku.getGoodsId());
-            goodsIndex = goodsIndexService.getResetEsGoodsIndex(dataSku, goodsVO.getGoodsParamsDTOList());
+        return this.getCurrentGoodsPromotion(Collections.singletonList(dataSku), cartType).get(dataSku.getId());
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getCurrentGoodsPromotion(List<GoodsSku> dataSkus, String cartType) {
+        if (dataSkus.isEmpty()) {
+            return new HashMap<>(0);
         }
-        if (goodsIndex.getPromotionMap() != null && !goodsIndex.getPromotionMap().isEmpty()) {
-            if (goodsIndex.getPromotionMap().keySet().stream()
-                    .anyMatch(i -> i.contains(PromotionTypeEnum.SECKILL.name()))
-                    || (goodsIndex.getPromotionMap().keySet().stream()
-                            .anyMatch(i -> i.contains(PromotionTypeEnum.PINTUAN.name()))
-                            && CartTypeEnum.PINTUAN.name().equals(cartType))) {
-                Optional<Map.Entry<String, Object>> containsPromotion = goodsIndex.getPromotionMap().entrySet().stream()
-                        .filter(i -> i.getKey().contains(PromotionTypeEnum.SECKILL.name())
-                                || i.getKey().contains(PromotionTypeEnum.PINTUAN.name()))
-                        .findFirst();
-                containsPromotion
-                        .ifPresent(stringObjectEntry -> this.setGoodsPromotionInfo(dataSku, stringObjectEntry));
+        //从促销索引批量读取，不再逐个读取商品索引
+        Map<String, Map<String, Object>> result = promotionIndexService.getPromotionMaps(dataSkus);
+        for (GoodsSku dataSku : dataSkus) {
+            Map<String, Object> promotionMap = result.get(dataSku.getId());
+            if (promotionMap != null && !promotionMap.isEmpty()) {
+                if (promotionMap.keySet().stream().anyMatch(i -> i.contains(PromotionTypeEnum.SECKILL.name()))
+                        || (promotionMap.keySet().stream().anyMatch(i -> i.contains(PromotionTypeEnum.PINTUAN.name()))
+                        && CartTypeEnum.PINTUAN.name().equals(cartType))) {
+                    promotionMap.keySet().stream()
+                            .filter(i -> i.contains(PromotionTypeEnum.SECKILL.name()) || i.contains(PromotionTypeEnum.PINTUAN.name()))
+                            .findFirst()
+                            .ifPresent(promotionKey -> this.setGoodsPromotionInfo(dataSku, promotionKey));
+                }
+            } else {
+                result.remove(dataSku.getId());
+                this.setGoodsPromotionInfo(dataSku, null);
             }
-            promotionMap = goodsIndex.getPromotionMap();
-        } else {
-            promotionMap = null;
-            dataSku.setPromotionFlag(false);
-            dataSku.setPromotionPrice(null);
         }
-        return promotionMap;
+        return result;
     }
 
-    private void setGoodsPromotionInfo(GoodsSku dataSku, Map.Entry<String, Object> promotionInfo) {
-        JSONObject promotionsObj = JSONUtil.parseObj(promotionInfo.getValue());
-        PromotionGoodsSearchParams searchParams = new PromotionGoodsSearchParams();
-        searchParams.setSkuId(dataSku.getId());
-        searchParams.setPromotionId(promotionsObj.get("id").toString());
-        PromotionGoods promotionsGoods = this.getPromotionsGoods(searchParams);
+    /**
+     * 设置商品的促销价格
+     *
+     * @param dataSku      商品sku
+     * @param promotionKey 促销价格对应的促销key，为空时清除促销价格
+     */
+    private void setGoodsPromotionInfo(GoodsSku dataSku, String promotionKey) {
+        PromotionGoods promotionsGoods = promotionKey == null ? null : promotionIndexService.getPromotionGoods(dataSku.getId(), promotionKey);
         if (promotionsGoods != null && promotionsGoods.getPrice() != null) {
             dataSku.setPromotionFlag(true);
             dataSku.setPromotionPrice(promotionsGoods.getPrice());
@@ -0,0 +1,431 @@
+package cn.lili.modules.promotion.serviceimpl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.lili.common.enums.PromotionTypeEnum;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.promotion.entity.dos.BasePromotions;
+import cn.lili.modules.promotion.entity.dos.PromotionGoods;
+import cn.lili.modules.promotion.entity.dos.Seckill;
+import cn.lili.modules.promotion.entity.dos.SeckillApply;
+import cn.lili.modules.promotion.entity.enums.PromotionsScopeTypeEnum;
+import cn.lili.modules.promotion.entity.enums.PromotionsStatusEnum;
+import cn.lili.modules.promotion.service.*;
+import cn.lili.modules.promotion.tools.PromotionTools;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 促销活动索引业务层实现
+ * <p>
+ * 首次查询时从促销商品及各促销活动表加载未结束（未开始及进行中）的促销，查询时按当前时间判断促销是否进行中，
+ * 因此促销到达开始、结束时间时无需更新索引。
+ * 促销活动修改后由商品索引促销消息调用{@link #refresh(String)}，通过redis发布订阅通知所有节点重新加载该促销，
+ * 通知丢失时以定时全量加载为准
+ *
+ * @author Chopper
+ * @since 2024-03-29
+ */
+@Slf4j
+@Service
+public class PromotionIndexServiceImpl implements PromotionIndexService {
+
+    /**
+     * 重新加载消息频道
+     */
+    private static final String CHANNEL = "{PROMOTION_INDEX}_REFRESH";
+
+    /**
+     * 重新加载全部促销的消息
+     */
+    private static final String REFRESH_ALL = "*";
+
+    /**
+     * 全量加载间隔，单位秒
+     */
+    @Value("${lili.promotion.index.reload-seconds:300}")
+    private Long reloadSeconds;
+
+    @Lazy
+    @Autowired
+    private PromotionGoodsService promotionGoodsService;
+
+    @Lazy
+    @Autowired
+    private CouponService couponService;
+
+    @Lazy
+    @Autowired
+    private PintuanService pintuanService;
+
+    @Lazy
+    @Autowired
+    private FullDiscountService fullDiscountService;
+
+    @Lazy
+    @Autowired
+    private PointsGoodsService pointsGoodsService;
+
+    @Lazy
+    @Autowired
+    private SeckillService seckillService;
+
+    @Lazy
+    @Autowired
+    private SeckillApplyService seckillApplyService;
+
+    @Autowired
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    /**
+     * 当前索引，未被查询过的节点不加载
+     */
+    private volatile Index index;
+
+    private ScheduledFuture<?> reloadTask;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this::onRefresh, new ChannelTopic(CHANNEL));
+        Metrics.gauge("lili.promotion.index.size", this, service -> service.index == null ? 0 : service.index.size);
+        reloadTask = executorManager.scheduleWithFixedDelay(ExecutorEnum.PROMOTION_INDEX, () -> {
+            if (index != null) {
+                this.reload();
+            }
+        }, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reloadTask.cancel(false);
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getPromotionMaps(List<GoodsSku> skus) {
+        Index current = this.getIndex();
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> result = new HashMap<>(skus.size());
+        for (GoodsSku sku : skus) {
+            if (sku == null || result.containsKey(sku.getId())) {
+                continue;
+            }
+            Map<String, Object> promotionMap = new HashMap<>();
+            List<String> storeIds = Arrays.asList(sku.getStoreId(), PromotionTools.PLATFORM_ID);
+            current.collect(current.skuItems.get(sku.getId()), storeIds, now, promotionMap);
+            current.collect(current.goodsItems.get(sku.getGoodsId()), storeIds, now, promotionMap);
+            for (String storeId : storeIds) {
+                current.collect(current.storeItems.get(storeId), storeIds, now, promotionMap);
+                if (CharSequenceUtil.isNotEmpty(sku.getCategoryPath())) {
+                    List<Item> categoryItems = current.categoryItems.getOrDefault(storeId, Collections.emptyList()).stream()
+                            .filter(i -> i.promotionGoods.getScopeId() != null && i.promotionGoods.getScopeId().contains(sku.getCategoryPath()))
+                            .collect(Collectors.toList());
+                    current.collect(categoryItems, storeIds, now, promotionMap);
+                }
+            }
+            result.put(sku.getId(), promotionMap);
+        }
+        return result;
+    }
+
+    @Override
+    public PromotionGoods getPromotionGoods(String skuId, String promotionKey) {
+        List<Item> items = this.getIndex().skuItems.get(skuId);
+        if (items == null) {
+            return null;
+        }
+        for (Item item : items) {
+            if (item.promotionKey.equals(promotionKey)) {
+                return BeanUtil.copyProperties(item.promotionGoods, PromotionGoods.class);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void refresh(String promotionKey) {
+        this.publish(promotionKey);
+    }
+
+    @Override
+    public void refreshAll() {
+        this.publish(REFRESH_ALL);
+    }
+
+    private Index getIndex() {
+        Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    this.reload();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 全量加载
+     */
+    private synchronized void reload() {
+        List<PromotionGoods> promotionGoodsList = promotionGoodsService.list(this.validWrapper());
+        Map<String, List<Item>> promotions = this.load(promotionGoodsList);
+        this.index = new Index(promotions);
+        log.info("促销活动索引加载完成，促销活动数量：{}，促销商品数量：{}", promotions.size(), index.size);
+    }
+
+    /**
+     * 重新加载单个促销活动，其余促销活动沿用当前索引
+     */
+    private synchronized void reload(String promotionKey) {
+        if (index == null) {
+            return;
+        }
+        int split = promotionKey.indexOf('-');
+        if (split < 0) {
+            return;
+        }
+        QueryWrapper<PromotionGoods> queryWrapper = this.validWrapper();
+        queryWrapper.eq("promotion_type", promotionKey.substring(0, split));
+        queryWrapper.eq("promotion_id", promotionKey.substring(split + 1));
+        Map<String, List<Item>> promotions = new HashMap<>(index.promotions);
+        promotions.remove(promotionKey);
+        promotions.putAll(this.load(promotionGoodsService.list(queryWrapper)));
+        this.index = new Index(promotions);
+    }
+
+    /**
+     * 未结束的促销商品
+     */
+    private QueryWrapper<PromotionGoods> validWrapper() {
+        QueryWrapper<PromotionGoods> queryWrapper = new QueryWrapper<>();
+        queryWrapper.and(i -> i.or(PromotionTools.queryPromotionStatus(PromotionsStatusEnum.START))
+                .or(PromotionTools.queryPromotionStatus(PromotionsStatusEnum.NEW)));
+        return queryWrapper;
+    }
+
+    /**
+     * 按促销类型批量读取促销活动，与{@link PromotionServiceImpl#wrapperPromotionMapList(List)}规则一致
+     *
+     * @param promotionGoodsList 促销商品
+     * @return key为促销key，value为促销商品
+     */
+    private Map<String, List<Item>> load(List<PromotionGoods> promotionGoodsList) {
+        Map<String, List<PromotionGoods>> typeGroups = promotionGoodsList.stream()
+                .filter(i -> i.getPromotionType() != null && i.getPromotionId() != null)
+                .collect(Collectors.groupingBy(PromotionGoods::getPromotionType));
+        Map<String, List<Item>> promotions = new HashMap<>();
+        typeGroups.forEach((type, list) -> {
+            Map<String, ? extends BasePromotions> entities;
+            Set<String> seckillApplies = Collections.emptySet();
+            switch (PromotionTypeEnum.valueOf(type)) {
+                case COUPON:
+                    entities = this.listByIds(couponService, list);
+                    break;
+                case PINTUAN:
+                    entities = this.listByIds(pintuanService, list);
+                    break;
+                case FULL_DISCOUNT:
+                    entities = this.listByIds(fullDiscountService, list);
+                    break;
+                case POINTS_GOODS:
+                    entities = this.listByIds(pointsGoodsService, list);
+                    break;
+                case SECKILL:
+                    entities = this.listByIds(seckillService, list);
+                    seckillApplies = this.seckillApplies(list);
+                    break;
+                default:
+                    return;
+            }
+            for (PromotionGoods promotionGoods : list) {
+                BasePromotions promotion = entities.get(promotionGoods.getPromotionId());
+                if (promotion == null) {
+                    continue;
+                }
+                if (promotion instanceof Seckill) {
+                    //限时抢购需要存在申请，且每个商品的活动时间以促销商品为准
+                    if (!seckillApplies.contains(promotionGoods.getPromotionId() + "_" + promotionGoods.getSkuId())) {
+                        continue;
+                    }
+                    Seckill seckill = BeanUtil.toBean(promotion, Seckill.class);
+                    seckill.setStartTime(promotionGoods.getStartTime());
+                    seckill.setEndTime(promotionGoods.getEndTime());
+                    promotion = seckill;
+                }
+                String promotionKey = type + "-" + promotionGoods.getPromotionId();
+                promotions.computeIfAbsent(promotionKey, k -> new ArrayList<>()).add(new Item(promotionKey, promotionGoods, promotion));
+            }
+        });
+        return promotions;
+    }
+
+    private <T extends BasePromotions> Map<String, T> listByIds(IService<T> service, List<PromotionGoods> list) {
+        Set<String> ids = list.stream().map(PromotionGoods::getPromotionId).collect(Collectors.toSet());
+        return service.listByIds(ids).stream().collect(Collectors.toMap(BasePromotions::getId, Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * 限时抢购申请
+     *
+     * @return 限时抢购id_skuId
+     */
+    private Set<String> seckillApplies(List<PromotionGoods> list) {
+        Set<String> seckillIds = list.stream().map(PromotionGoods::getPromotionId).collect(Collectors.toSet());
+        return seckillApplyService.list(new LambdaQueryWrapper<SeckillApply>()
+                        .select(SeckillApply::getSeckillId, SeckillApply::getSkuId)
+                        .in(SeckillApply::getSeckillId, seckillIds))
+                .stream().map(i -> i.getSeckillId() + "_" + i.getSkuId()).collect(Collectors.toSet());
+    }
+
+    private void publish(String promotionKey) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, promotionKey);
+        } catch (Exception e) {
+            log.error("促销活动索引加载消息发送失败，促销key:{}", promotionKey, e);
+        }
+    }
+
+    private void onRefresh(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body == null || index == null) {
+            return;
+        }
+        String promotionKey = body.toString();
+        try {
+            if (REFRESH_ALL.equals(promotionKey)) {
+                this.reload();
+            } else {
+                this.reload(promotionKey);
+            }
+        } catch (Exception e) {
+            log.error("促销活动索引加载异常，促销key:{}", promotionKey, e);
+        }
+    }
+
+    /**
+     * 促销索引，创建后不可修改，更新时整体替换，对外只返回副本
+     */
+    private static class Index {
+
+        /**
+         * 促销商品，key为促销key
+         */
+        private final Map<String, List<Item>> promotions;
+
+        /**
+         * 指定商品的促销，key为skuId
+         */
+        private final Map<String, List<Item>> skuItems = new HashMap<>();
+
+        /**
+         * 未指定sku的商品促销，key为商品id
+         */
+        private final Map<String, List<Item>> goodsItems = new HashMap<>();
+
+        /**
+         * 全部商品参与的促销，key为店铺id
+         */
+        private final Map<String, List<Item>> storeItems = new HashMap<>();
+
+        /**
+         * 部分分类参与的促销，key为店铺id
+         */
+        private final Map<String, List<Item>> categoryItems = new HashMap<>();
+
+        private final int size;
+
+        Index(Map<String, List<Item>> promotions) {
+            this.promotions = promotions;
+            int count = 0;
+            for (List<Item> items : promotions.values()) {
+                for (Item item : items) {
+                    PromotionGoods promotionGoods = item.promotionGoods;
+                    if (PromotionsScopeTypeEnum.ALL.name().equals(promotionGoods.getScopeType())) {
+                        storeItems.computeIfAbsent(promotionGoods.getStoreId(), k -> new ArrayList<>()).add(item);
+                    } else if (PromotionsScopeTypeEnum.PORTION_GOODS_CATEGORY.name().equals(promotionGoods.getScopeType())) {
+                        categoryItems.computeIfAbsent(promotionGoods.getStoreId(), k -> new ArrayList<>()).add(item);
+                    }
+                    if (CharSequenceUtil.isNotEmpty(promotionGoods.getSkuId())) {
+                        skuItems.computeIfAbsent(promotionGoods.getSkuId(), k -> new ArrayList<>()).add(item);
+                    } else if (CharSequenceUtil.isNotEmpty(promotionGoods.getGoodsId())) {
+                        goodsItems.computeIfAbsent(promotionGoods.getGoodsId(), k -> new ArrayList<>()).add(item);
+                    }
+                    count++;
+                }
+            }
+            this.size = count;
+        }
+
+        /**
+         * 将进行中的促销加入促销活动，加入的是副本，调用方修改不影响索引
+         */
+        void collect(List<Item> items, List<String> storeIds, long now, Map<String, Object> promotionMap) {
+            if (items == null) {
+                return;
+            }
+            for (Item item : items) {
+                if (storeIds.contains(item.promotionGoods.getStoreId()) && item.isActive(now)) {
+                    promotionMap.put(item.promotionKey, BeanUtil.copyProperties(item.promotion, item.promotion.getClass()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 促销商品及所属的促销活动
+     */
+    private static class Item {
+
+        private final String promotionKey;
+
+        private final PromotionGoods promotionGoods;
+
+        private final BasePromotions promotion;
+
+        Item(String promotionKey, PromotionGoods promotionGoods, BasePromotions promotion) {
+            this.promotionKey = promotionKey;
+            this.promotionGoods = promotionGoods;
+            this.promotion = promotion;
+        }
+
+        /**
+         * 促销商品未结束，且促销活动在进行中
+         */
+        boolean isActive(long now) {
+            Date endTime = promotionGoods.getEndTime();
+            if (endTime == null || endTime.getTime() < now) {
+                return false;
+            }
+            return promotion.getStartTime() != null && promotion.getEndTime() != null
+                    && promotion.getStartTime().getTime() <= now && promotion.getEndTime().getTime() >= now;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.lili.modules.search.service;
+
+import cn.lili.modules.search.entity.dos.EsGoodsIndex;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商品索引批量更新业务层
+ * <p>
+ * 索引修改先在内存中按sku id合并后批量写入es，
+ * 同一文档的多次修改只写入一次，全量写入和删除按调用顺序以最后一次为准，部分字段及促销信息合并写入。
+ * 各方法在修改写入es后返回，写入失败时抛出{@link cn.lili.common.exception.ServiceException}
+ *
+ * @author Chopper
+ * @since 2024-03-24
+ */
+public interface EsGoodsIndexBatchService {
+
+    /**
+     * 写入完整的商品索引
+     *
+     * @param goodsIndices 商品索引
+     */
+    void save(List<EsGoodsIndex> goodsIndices);
+
+    /**
+     * 更新商品索引的部分字段
+     *
+     * @param id     商品skuId
+     * @param fields 更新的字段
+     */
+    void update(String id, Map<String, Object> fields);
+
+    /**
+     * 更新商品索引中的促销信息
+     *
+     * @param ids          商品skuId集合
+     * @param promotionKey 促销key
+     * @param promotion    促销信息
+     */
+    void updatePromotion(List<String> ids, String promotionKey, Object promotion);
+
+    /**
+     * 删除商品索引中的促销信息
+     *
+     * @param ids          商品skuId集合
+     * @param promotionKey 促销key
+     */
+    void removePromotion(List<String> ids, String promotionKey);
+
+    /**
+     * 删除商品索引
+     *
+     * @param ids 商品skuId集合
+     */
+    void delete(List<String> ids);
+
+    /**
+     * 立即写入所有待写入的修改
+     */
+    void flush();
+}
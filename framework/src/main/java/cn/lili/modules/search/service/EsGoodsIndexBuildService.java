@@ -0,0 +1,27 @@
+package cn.lili.modules.search.service;
+
+import cn.lili.modules.goods.entity.dos.Goods;
+import cn.lili.modules.goods.entity.dos.GoodsSku;
+import cn.lili.modules.search.entity.dos.EsGoodsIndex;
+
+import java.util.List;
+
+/**
+ * 商品索引生成业务层
+ * <p>
+ * 商品消息更新索引与全量重建索引共用，保证两处生成的索引内容一致
+ *
+ * @author Chopper
+ * @since 2024-03-23
+ */
+public interface EsGoodsIndexBuildService {
+
+    /**
+     * 生成商品索引，包含商品参数、多语言名称、分类品牌名称及当前促销信息
+     *
+     * @param goods     商品信息
+     * @param goodsSkus 商品sku信息
+     * @return 商品索引
+     */
+    List<EsGoodsIndex> buildGoodsIndex(Goods goods, List<GoodsSku> goodsSkus);
+}
@@ -7,6 +7,7 @@ import cn.lili.modules.promotion.entity.dos.BasePromotions;
 import cn.lili.modules.promotion.entity.dos.PromotionGoods;
 import cn.lili.modules.search.entity.dos.EsGoodsIndex;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +45,13 @@ public interface EsGoodsIndexService {
      */
     Map<String, Long> getProgress();
 
+    /**
+     * 记录重建索引期间修改的商品索引，别名切换后按数据库重新生成写入新索引
+     *
+     * @param skuIds 修改的商品skuId
+     */
+    void recordChange(Collection<String> skuIds);
+
     /**
      * 全局索引初始化
      */
@@ -185,6 +193,14 @@ public interface EsGoodsIndexService {
      */
     EsGoodsIndex findById(String id);
 
+    /**
+     * 根据id批量获取商品索引信息
+     *
+     * @param ids skuId集合
+     * @return 商品索引信息，不存在的索引不包含在内
+     */
+    List<EsGoodsIndex> findByIds(List<String> ids);
+
     /**
      * 根据id获取商品索引信息的促销信息
      *
@@ -0,0 +1,475 @@
+package cn.lili.modules.search.serviceimpl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.json.JSONUtil;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.elasticsearch.BaseElasticsearchService;
+import cn.lili.elasticsearch.config.ElasticsearchProperties;
+import cn.lili.modules.search.entity.dos.EsGoodsIndex;
+import cn.lili.modules.search.service.EsGoodsIndexBatchService;
+import cn.lili.modules.search.service.EsGoodsIndexService;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 商品索引批量更新业务层实现
+ * <p>
+ * 修改合并后由写入线程写入es，调用方等待包含其修改的批次写入完成后返回，写入失败时抛出异常，
+ * 消息不会在修改写入前被确认。写入期间产生的修改合并到下一批，负载越高批次越大。
+ * 写入失败的修改放回队列，由定时写入按间隔重试
+ *
+ * @author Chopper
+ * @since 2024-03-24
+ */
+@Slf4j
+@Service
+public class EsGoodsIndexBatchServiceImpl extends BaseElasticsearchService implements EsGoodsIndexBatchService {
+
+    /**
+     * 促销信息字段
+     */
+    private static final String PROMOTION_MAP_FIELD = "promotionMapJson";
+
+    @Autowired
+    private ElasticsearchProperties elasticsearchProperties;
+
+    @Autowired
+    @Lazy
+    private EsGoodsIndexService esGoodsIndexService;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    /**
+     * 待写入的修改，key为skuId
+     */
+    private Map<String, PendingIndex> pending = new LinkedHashMap<>();
+
+    private final Object pendingLock = new Object();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * 待写入的文档数量
+     */
+    private final AtomicInteger pendingSize = new AtomicInteger();
+
+    /**
+     * 是否已提交写入任务
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void init() {
+        Metrics.gauge("lili.es.index.pending", pendingSize);
+        long windowMillis = elasticsearchProperties.getBatch().getWindowMillis();
+        flushTask = executorManager.scheduleWithFixedDelay(ExecutorEnum.INDEX_BATCH, this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushTask.cancel(false);
+        this.flushQuietly();
+    }
+
+    @Override
+    public void save(List<EsGoodsIndex> goodsIndices) {
+        Map<String, EsGoodsIndex> documents = new LinkedHashMap<>();
+        for (EsGoodsIndex goodsIndex : goodsIndices) {
+            documents.put(goodsIndex.getId(), goodsIndex);
+        }
+        this.await(this.merge(documents.keySet(), (id, pendingIndex) -> pendingIndex.save(documents.get(id))));
+    }
+
+    @Override
+    public void update(String id, Map<String, Object> fields) {
+        this.await(this.merge(Collections.singletonList(id), (skuId, pendingIndex) -> pendingIndex.update(fields)));
+    }
+
+    @Override
+    public void updatePromotion(List<String> ids, String promotionKey, Object promotion) {
+        this.await(this.merge(ids, (id, pendingIndex) -> pendingIndex.putPromotion(promotionKey, promotion)));
+    }
+
+    @Override
+    public void removePromotion(List<String> ids, String promotionKey) {
+        this.await(this.merge(ids, (id, pendingIndex) -> pendingIndex.putPromotion(promotionKey, null)));
+    }
+
+    @Override
+    public void delete(List<String> ids) {
+        this.await(this.merge(ids, (id, pendingIndex) -> pendingIndex.delete()));
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, PendingIndex> batch;
+            synchronized (pendingLock) {
+                flushRequested.set(false);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                pendingSize.set(0);
+            }
+            long start = System.nanoTime();
+            Map<String, PendingIndex> chunk = new LinkedHashMap<>();
+            int maxSize = elasticsearchProperties.getBatch().getMaxSize();
+            for (Map.Entry<String, PendingIndex> entry : batch.entrySet()) {
+                chunk.put(entry.getKey(), entry.getValue());
+                if (chunk.size() >= maxSize) {
+                    this.writeChunk(chunk);
+                    chunk = new LinkedHashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                this.writeChunk(chunk);
+            }
+            Metrics.timer("lili.es.index.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Metrics.counter("lili.es.index.flushed").increment(batch.size());
+            log.debug("批量写入商品索引{}条，耗时{}ms", batch.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (Exception e) {
+            log.error("批量写入商品索引异常", e);
+        }
+    }
+
+    /**
+     * 写入一批修改，写入成功或无需写入的通知调用方，失败的放回队列
+     *
+     * @param chunk 合并后的修改
+     */
+    private void writeChunk(Map<String, PendingIndex> chunk) {
+        Map<String, PendingIndex> failed = new LinkedHashMap<>();
+        try {
+            this.write(chunk, failed);
+        } catch (Exception e) {
+            log.error("批量写入商品索引异常", e);
+            failed.putAll(chunk);
+        }
+        chunk.forEach((id, pendingIndex) -> {
+            if (!failed.containsKey(id)) {
+                pendingIndex.waiters.forEach(waiter -> waiter.complete(null));
+            }
+        });
+        if (!failed.isEmpty()) {
+            this.requeue(failed);
+        }
+    }
+
+    /**
+     * 等待修改写入完成
+     *
+     * @param written 修改写入结果
+     */
+    private void await(CompletableFuture<Void> written) {
+        try {
+            written.get(elasticsearchProperties.getBatch().getAwaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ResultCode.ELASTICSEARCH_INDEX_WRITE_ERROR);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new ServiceException(ResultCode.ELASTICSEARCH_INDEX_WRITE_ERROR);
+        }
+    }
+
+    /**
+     * 合并修改，没有写入任务时提交写入任务，已在写入时合并到下一批
+     *
+     * @param ids      skuId集合
+     * @param mutation 修改
+     * @return 修改写入结果，写入失败次数过多时异常结束
+     */
+    private CompletableFuture<Void> merge(Collection<String> ids, BiConsumer<String, PendingIndex> mutation) {
+        if (ids == null || ids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> waiters = new ArrayList<>(ids.size());
+        synchronized (pendingLock) {
+            for (String id : ids) {
+                PendingIndex pendingIndex = pending.get(id);
+                if (pendingIndex == null) {
+                    pendingIndex = new PendingIndex();
+                    pending.put(id, pendingIndex);
+                } else {
+                    Metrics.counter("lili.es.index.coalesced").increment();
+                }
+                mutation.accept(id, pendingIndex);
+                CompletableFuture<Void> waiter = new CompletableFuture<>();
+                pendingIndex.waiters.add(waiter);
+                waiters.add(waiter);
+            }
+            pendingSize.set(pending.size());
+        }
+        if (flushRequested.compareAndSet(false, true)
+                && !executorManager.tryExecute(ExecutorEnum.INDEX_BATCH, this::flushQuietly)) {
+            //线程池繁忙时由定时写入处理
+            flushRequested.set(false);
+        }
+        return CompletableFuture.allOf(waiters.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * 写入失败的修改重新放回队列，与期间新产生的修改合并
+     *
+     * @param failed 写入失败的修改
+     */
+    private void requeue(Map<String, PendingIndex> failed) {
+        int retryTimes = elasticsearchProperties.getBatch().getRetryTimes();
+        synchronized (pendingLock) {
+            failed.forEach((id, pendingIndex) -> {
+                if (++pendingIndex.attempts > retryTimes) {
+                    log.error("商品索引{}写入失败次数过多，放弃写入", id);
+                    Metrics.counter("lili.es.index.dropped").increment();
+                    pendingIndex.waiters.forEach(waiter -> waiter.completeExceptionally(new ServiceException(ResultCode.ELASTICSEARCH_INDEX_WRITE_ERROR)));
+                    return;
+                }
+                PendingIndex newer = pending.get(id);
+                if (newer != null) {
+                    pendingIndex.absorb(newer);
+                }
+                pending.put(id, pendingIndex);
+            });
+            pendingSize.set(pending.size());
+        }
+    }
+
+    /**
+     * 将合并后的修改分别以批量删除、批量写入、批量更新写入es
+     *
+     * @param batch  合并后的修改
+     * @param failed 写入失败的修改
+     */
+    private void write(Map<String, PendingIndex> batch, Map<String, PendingIndex> failed) {
+        esGoodsIndexService.recordChange(batch.keySet());
+        List<String> deleteIds = new ArrayList<>();
+        List<String> readIds = new ArrayList<>();
+        batch.forEach((id, pendingIndex) -> {
+            if (pendingIndex.delete) {
+                deleteIds.add(id);
+            } else if (pendingIndex.document == null) {
+                readIds.add(id);
+            }
+        });
+
+        //部分更新需基于当前文档，文档不存在时跳过
+        Map<String, EsGoodsIndex> currentIndices = new HashMap<>(readIds.size());
+        if (!readIds.isEmpty()) {
+            try {
+                for (MultiGetItem<EsGoodsIndex> item : elasticsearchOperations.multiGet(NativeQuery.builder().withIds(readIds).build(), EsGoodsIndex.class)) {
+                    if (item.hasItem()) {
+                        currentIndices.put(item.getItem().getId(), item.getItem());
+                    }
+                }
+            } catch (Exception e) {
+                log.error("批量读取商品索引失败", e);
+                failed.putAll(this.subMap(batch, readIds));
+                readIds.clear();
+            }
+        }
+
+        List<IndexQuery> indexQueries = new ArrayList<>();
+        List<UpdateQuery> updateQueries = new ArrayList<>();
+        batch.forEach((id, pendingIndex) -> {
+            if (pendingIndex.delete) {
+                return;
+            }
+            if (pendingIndex.document != null) {
+                EsGoodsIndex document = pendingIndex.document;
+                if (!pendingIndex.fields.isEmpty()) {
+                    BeanUtil.fillBeanWithMap(pendingIndex.fields, document, false);
+                }
+                if (!pendingIndex.promotions.isEmpty()) {
+                    document.setPromotionMapJson(this.mergePromotions(document, pendingIndex.promotions));
+                }
+                indexQueries.add(new IndexQueryBuilder().withId(id).withObject(document).build());
+                return;
+            }
+            EsGoodsIndex current = currentIndices.get(id);
+            if (current == null) {
+                return;
+            }
+            Document document = Document.create();
+            document.putAll(pendingIndex.fields);
+            if (!pendingIndex.promotions.isEmpty()) {
+                document.put(PROMOTION_MAP_FIELD, this.mergePromotions(current, pendingIndex.promotions));
+            }
+            updateQueries.add(UpdateQuery.builder(id).withDocument(document).build());
+        });
+
+        if (!deleteIds.isEmpty()) {
+            try {
+                elasticsearchOperations.delete(NativeQuery.builder().withQuery(q -> q.ids(i -> i.values(deleteIds))).build(), EsGoodsIndex.class);
+            } catch (Exception e) {
+                log.error("批量删除商品索引失败", e);
+                failed.putAll(this.subMap(batch, deleteIds));
+            }
+        }
+        if (!indexQueries.isEmpty()) {
+            try {
+                elasticsearchOperations.bulkIndex(indexQueries, EsGoodsIndex.class);
+            } catch (BulkFailureException e) {
+                log.error("批量写入商品索引部分失败：{}", e.getFailedDocuments().keySet());
+                failed.putAll(this.subMap(batch, e.getFailedDocuments().keySet()));
+            } catch (Exception e) {
+                log.error("批量写入商品索引失败", e);
+                failed.putAll(this.subMap(batch, indexQueries.stream().map(IndexQuery::getId).collect(Collectors.toList())));
+            }
+        }
+        if (!updateQueries.isEmpty()) {
+            try {
+                elasticsearchOperations.bulkUpdate(updateQueries, EsGoodsIndex.class);
+            } catch (BulkFailureException e) {
+                log.error("批量更新商品索引部分失败：{}", e.getFailedDocuments().keySet());
+                failed.putAll(this.subMap(batch, e.getFailedDocuments().keySet()));
+            } catch (Exception e) {
+                log.error("批量更新商品索引失败", e);
+                failed.putAll(this.subMap(batch, updateQueries.stream().map(UpdateQuery::getId).collect(Collectors.toList())));
+            }
+        }
+    }
+
+    /**
+     * 合并促销信息，值为null时删除对应促销
+     *
+     * @param goodsIndex 商品索引
+     * @param promotions 促销修改
+     * @return 合并后的促销信息json
+     */
+    private String mergePromotions(EsGoodsIndex goodsIndex, Map<String, Object> promotions) {
+        Map<String, Object> promotionMap = goodsIndex.getPromotionMapJson() == null ? new HashMap<>() : goodsIndex.getOriginPromotionMap();
+        promotions.forEach((key, promotion) -> {
+            if (promotion == null) {
+                promotionMap.remove(key);
+            } else {
+                promotionMap.put(key, promotion);
+            }
+        });
+        return JSONUtil.toJsonStr(promotionMap);
+    }
+
+    private Map<String, PendingIndex> subMap(Map<String, PendingIndex> batch, Collection<String> ids) {
+        Map<String, PendingIndex> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            PendingIndex pendingIndex = batch.get(id);
+            if (pendingIndex != null) {
+                result.put(id, pendingIndex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 待写入的修改
+     */
+    private static class PendingIndex {
+
+        /**
+         * 完整的索引文档
+         */
+        private EsGoodsIndex document;
+
+        /**
+         * 部分更新的字段
+         */
+        private final Map<String, Object> fields = new HashMap<>();
+
+        /**
+         * 促销修改，值为null表示删除
+         */
+        private final Map<String, Object> promotions = new LinkedHashMap<>();
+
+        /**
+         * 是否删除
+         */
+        private boolean delete;
+
+        /**
+         * 写入失败次数
+         */
+        private int attempts;
+
+        /**
+         * 等待写入完成的调用方
+         */
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+
+        void save(EsGoodsIndex goodsIndex) {
+            this.document = goodsIndex;
+            this.fields.clear();
+            this.promotions.clear();
+            this.delete = false;
+        }
+
+        void update(Map<String, Object> updateFields) {
+            if (!delete) {
+                this.fields.putAll(updateFields);
+            }
+        }
+
+        void putPromotion(String promotionKey, Object promotion) {
+            if (!delete) {
+                this.promotions.put(promotionKey, promotion);
+            }
+        }
+
+        void delete() {
+            this.document = null;
+            this.fields.clear();
+            this.promotions.clear();
+            this.delete = true;
+        }
+
+        /**
+         * 合并之后产生的修改
+         */
+        void absorb(PendingIndex newer) {
+            this.waiters.addAll(newer.waiters);
+            if (newer.delete) {
+                this.delete();
+            } else if (newer.document != null) {
+                this.save(newer.document);
+                this.fields.putAll(newer.fields);
+                this.promotions.putAll(newer.promotions);
+            } else {
+                this.update(newer.fields);
+                newer.promotions.forEach(this::putPromotion);
+            }
+        }
+    }
+}
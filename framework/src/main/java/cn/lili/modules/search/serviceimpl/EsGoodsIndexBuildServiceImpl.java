@@ -0,0 +1,143 @@
+package cn.lili.modules.search.serviceimpl;
+
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.json.JSONUtil;
+import cn.lili.modules.goods.entity.dos.*;
+import cn.lili.modules.goods.entity.dto.GoodsParamsDTO;
+import cn.lili.modules.goods.service.BrandService;
+import cn.lili.modules.goods.service.CategoryService;
+import cn.lili.modules.goods.service.ProductTranslationService;
+import cn.lili.modules.goods.service.StoreGoodsLabelService;
+import cn.lili.modules.promotion.service.PromotionService;
+import cn.lili.modules.search.entity.dos.EsGoodsIndex;
+import cn.lili.modules.search.service.EsGoodsIndexBuildService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 商品索引生成业务层实现
+ *
+ * @author Chopper
+ * @since 2024-03-23
+ */
+@Slf4j
+@Service
+public class EsGoodsIndexBuildServiceImpl implements EsGoodsIndexBuildService {
+
+    /**
+     * sku基础分数，同一商品下的sku依次递减
+     */
+    private static final int SKU_SOURCE = 100;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private BrandService brandService;
+
+    @Autowired
+    private ProductTranslationService productTranslationService;
+
+    @Autowired
+    private StoreGoodsLabelService storeGoodsLabelService;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Override
+    public List<EsGoodsIndex> buildGoodsIndex(Goods goods, List<GoodsSku> goodsSkus) {
+        List<EsGoodsIndex> esGoodsIndices = new ArrayList<>(goodsSkus.size());
+        if (goodsSkus.isEmpty()) {
+            return esGoodsIndices;
+        }
+        List<GoodsParamsDTO> goodsParamDTOS = null;
+        if (CharSequenceUtil.isNotEmpty(goods.getParams())) {
+            goodsParamDTOS = JSONUtil.toList(goods.getParams(), GoodsParamsDTO.class);
+        }
+        //同一商品的多语言名称、分类、品牌、店铺分类只查询一次
+        List<ProductTranslation> translations = productTranslationService.listBySpuId(goods.getId());
+        Map<String, String> categoryNamePaths = new HashMap<>();
+        Map<String, Optional<Brand>> brands = new HashMap<>();
+        Map<String, String> storeCategoryNamePaths = new HashMap<>();
+
+        int skuSource = SKU_SOURCE;
+        for (GoodsSku goodsSku : goodsSkus) {
+            EsGoodsIndex goodsIndex = goodsParamDTOS == null ? new EsGoodsIndex(goodsSku) : new EsGoodsIndex(goodsSku, goodsParamDTOS);
+            goodsIndex.setAuthFlag(goods.getAuthFlag());
+            goodsIndex.setMarketEnable(goods.getMarketEnable());
+            skuSource--;
+            if (skuSource <= 0) {
+                skuSource = 1;
+            }
+            goodsIndex.setSkuSource(skuSource);
+
+            for (ProductTranslation translation : translations) {
+                String lang = translation.getLanguageCode();
+                try {
+                    ReflectUtil.setFieldValue(goodsIndex, "title_" + lang, translation.getTitle());
+                } catch (Exception e) {
+                    log.warn("Failed to set multi-language field for goods {}: title_{}", goods.getId(), lang);
+                }
+            }
+
+            if (CharSequenceUtil.isNotEmpty(goodsIndex.getCategoryPath())) {
+                String categoryNamePath = categoryNamePaths.computeIfAbsent(goodsIndex.getCategoryPath(), this::getCategoryNamePath);
+                if (categoryNamePath != null) {
+                    goodsIndex.setCategoryNamePath(categoryNamePath);
+                }
+            }
+            if (goodsIndex.getBrandId() != null) {
+                brands.computeIfAbsent(goodsIndex.getBrandId(), brandId -> Optional.ofNullable(brandService.getById(brandId)))
+                        .ifPresent(brand -> {
+                            goodsIndex.setBrandName(brand.getName());
+                            goodsIndex.setBrandUrl(brand.getLogo());
+                        });
+            }
+            if (CharSequenceUtil.isNotEmpty(goodsIndex.getStoreCategoryPath())) {
+                String storeCategoryNamePath = storeCategoryNamePaths.computeIfAbsent(goodsIndex.getStoreCategoryPath(), this::getStoreCategoryNamePath);
+                if (storeCategoryNamePath != null) {
+                    goodsIndex.setStoreCategoryNamePath(storeCategoryNamePath);
+                }
+            }
+            if (goodsIndex.getOriginPromotionMap() == null || goodsIndex.getOriginPromotionMap().isEmpty()) {
+                Map<String, Object> goodsCurrentPromotionMap = promotionService.getGoodsSkuPromotionMap(goodsIndex.getStoreId(), goodsIndex.getId());
+                goodsIndex.setPromotionMapJson(JSONUtil.toJsonStr(goodsCurrentPromotionMap));
+            }
+            esGoodsIndices.add(goodsIndex);
+        }
+        return esGoodsIndices;
+    }
+
+    /**
+     * 获取分类名称路径
+     *
+     * @param categoryPath 分类路径
+     * @return 分类名称路径，分类不存在时返回null
+     */
+    private String getCategoryNamePath(String categoryPath) {
+        List<Category> categories = categoryService.listByIdsOrderByLevel(Arrays.asList(categoryPath.split(",")));
+        if (categories.isEmpty()) {
+            return null;
+        }
+        return ArrayUtil.join(categories.stream().map(Category::getName).toArray(), ",");
+    }
+
+    /**
+     * 获取店铺分类名称路径
+     *
+     * @param storeCategoryPath 店铺分类路径
+     * @return 店铺分类名称路径，分类不存在时返回null
+     */
+    private String getStoreCategoryNamePath(String storeCategoryPath) {
+        List<StoreGoodsLabel> storeGoodsLabels = storeGoodsLabelService.listByStoreIds(Arrays.asList(storeCategoryPath.split(",")));
+        if (storeGoodsLabels.isEmpty()) {
+            return null;
+        }
+        return ArrayUtil.join(storeGoodsLabels.stream().map(StoreGoodsLabel::getLabelName).toArray(), ",");
+    }
+}
@@ -1,6 +1,20 @@
 package cn.lili.modules.search.serviceimpl;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.json.JSONUtil;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.elasticsearch.config.ElasticsearchProperties;
+import cn.lili.modules.goods.entity.dos.Goods;
+import cn.lili.modules.goods.service.GoodsService;
+import cn.lili.modules.search.service.EsGoodsIndexBatchService;
+import cn.lili.modules.search.service.EsGoodsIndexBuildService;
 import cn.lili.common.enums.PromotionTypeEnum;
 import cn.lili.modules.goods.entity.dos.GoodsSku;
 import cn.lili.modules.goods.entity.dto.GoodsParamsDTO;
@@ -15,11 +29,31 @@ import cn.lili.modules.goods.entity.enums.GoodsAuthEnum;
 import cn.lili.modules.goods.entity.enums.GoodsStatusEnum;
 import cn.lili.modules.goods.mapper.GoodsSkuMapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * 商品索引业务层实现 (Restored for Spring Boot 3 / ES 8.x)
@@ -31,12 +65,52 @@ import java.util.*;
 @Service
 public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements EsGoodsIndexService {
 
+    /**
+     * 重建索引锁
+     */
+    private static final String INIT_INDEX_LOCK = CachePrefix.INIT_INDEX_FLAG.getPrefix() + "LOCK";
+
+    private static final String INIT_INDEX_RUNNING = "RUNNING";
+
+    private static final String INIT_INDEX_COMPLETE = "COMPLETE";
+
+    private static final String INIT_INDEX_FAILED = "FAILED";
+
+    /**
+     * 重建索引期间修改的skuId
+     */
+    private static final String INIT_INDEX_CHANGED = CachePrefix.INIT_INDEX_FLAG.getPrefix() + "CHANGED";
+
     @Autowired
     private GoodsSkuMapper goodsSkuMapper;
 
     @Autowired
     private Cache<Object> cache;
 
+    @Autowired
+    private RedissonClient redisson;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    @Autowired
+    private ElasticsearchProperties elasticsearchProperties;
+
+    @Autowired
+    @Lazy
+    private GoodsService goodsService;
+
+    @Autowired
+    @Lazy
+    private EsGoodsIndexBuildService esGoodsIndexBuildService;
+
+    @Autowired
+    @Lazy
+    private EsGoodsIndexBatchService esGoodsIndexBatchService;
+
     @Override
     public Boolean deleteGoodsDown() {
         // Implementation for deleting off-shelf goods
@@ -55,62 +129,25 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
 
     @Override
     public void init() {
-        // Run in a new thread to avoid blocking
-        new Thread(() -> {
-            try {
-                // Remove complete flag
-                cache.remove(CachePrefix.INIT_INDEX_FLAG.getPrefix());
-
-                // Get all PASS and UPPER goods
-                List<GoodsSku> goodsSkus = goodsSkuMapper.selectList(new LambdaQueryWrapper<GoodsSku>()
-                        .eq(GoodsSku::getMarketEnable, GoodsStatusEnum.UPPER.name())
-                        .eq(GoodsSku::getAuthFlag, GoodsAuthEnum.PASS.name())
-                        .eq(GoodsSku::getDeleteFlag, false));
-
-                long total = goodsSkus.size();
-                long current = 0;
-
-                // Clear previous progress
-                cache.remove(CachePrefix.INIT_INDEX_PROCESS.getPrefix());
-
-                List<EsGoodsIndex> esGoodsIndices = new ArrayList<>();
-                for (GoodsSku sku : goodsSkus) {
-                    esGoodsIndices.add(new EsGoodsIndex(sku));
-                    current++;
-                    
-                    // Update progress every 10 items to reduce cache load
-                    if (current % 10 == 0 || current == total) {
-                        cache.put(CachePrefix.INIT_INDEX_PROCESS.getPrefix(), current + "/" + total);
-                    }
-                }
-
-                // Batch save to ES
-                if (!esGoodsIndices.isEmpty()) {
-                    elasticsearchOperations.save(esGoodsIndices);
-                }
-
-                // Set complete flag
-                cache.put(CachePrefix.INIT_INDEX_FLAG.getPrefix(), "COMPLETE");
-                log.info("ES Indexing complete: {} items indexed", total);
-            } catch (Exception e) {
-                log.error("ES Indexing failed", e);
-                cache.put(CachePrefix.INIT_INDEX_FLAG.getPrefix(), "FAILED");
-            }
-        }).start();
+        if (redisson.getLock(INIT_INDEX_LOCK).isLocked()) {
+            throw new ServiceException(ResultCode.INDEX_BUILDING);
+        }
+        executorManager.execute(ExecutorEnum.INDEX, this::reindex);
     }
 
     @Override
     public Map<String, Long> getProgress() {
         Map<String, Long> map = new HashMap<>();
         Object progress = cache.get(CachePrefix.INIT_INDEX_PROCESS.getPrefix());
-        if (progress != null && progress.toString().contains("/")) {
-            String[] parts = progress.toString().split("/");
-            map.put("total", Long.parseLong(parts[1]));
-            map.put("current", Long.parseLong(parts[0]));
+        if (progress instanceof Map) {
+            Map<?, ?> progressMap = (Map<?, ?>) progress;
+            map.put("total", Convert.toLong(progressMap.get("total"), 0L));
+            map.put("current", Convert.toLong(progressMap.get("current"), 0L));
+            map.put("failed", Convert.toLong(progressMap.get("failed"), 0L));
         } else {
             // If no progress found, check if it's already complete
             Object flag = cache.get(CachePrefix.INIT_INDEX_FLAG.getPrefix());
-            if ("COMPLETE".equals(flag)) {
+            if (INIT_INDEX_COMPLETE.equals(flag)) {
                 map.put("total", 100L);
                 map.put("current", 100L);
             } else {
@@ -121,28 +158,310 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
         return map;
     }
 
+    @Override
+    public void recordChange(Collection<String> skuIds) {
+        if (skuIds == null || skuIds.isEmpty() || !INIT_INDEX_RUNNING.equals(cache.get(CachePrefix.INIT_INDEX_FLAG.getPrefix()))) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForSet().add(INIT_INDEX_CHANGED, skuIds.toArray(new String[0]));
+        } catch (Exception e) {
+            log.error("记录重建索引期间修改的商品索引失败：{}", skuIds, e);
+        }
+    }
+
+    /**
+     * 全量重建索引
+     * <p>
+     * 按sku id分页读取，多线程生成索引并批量写入新版本索引，全部生成、写入成功后将别名切换到新索引，
+     * 再将重建期间修改过的sku按数据库重新生成写入新索引。切换前失败时删除新索引，原索引不受影响
+     */
+    private void reindex() {
+        RLock lock = redisson.getLock(INIT_INDEX_LOCK);
+        if (!lock.tryLock()) {
+            log.warn("ES索引正在生成，忽略本次重建");
+            return;
+        }
+        ElasticsearchProperties.Reindex config = elasticsearchProperties.getReindex();
+        String alias = elasticsearchOperations.getIndexCoordinatesFor(EsGoodsIndex.class).getIndexName();
+        String indexName = alias + "_" + DateUtil.format(new Date(), DatePattern.PURE_DATETIME_PATTERN);
+        //已提交未完成的批次达到上限时读取线程等待，读取速度受写入速度限制
+        Semaphore permits = new Semaphore(config.getQueueCapacity());
+        AtomicLong current = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        boolean switched = false;
+        try {
+            stringRedisTemplate.delete(INIT_INDEX_CHANGED);
+            cache.put(CachePrefix.INIT_INDEX_FLAG.getPrefix(), INIT_INDEX_RUNNING);
+            long total = goodsSkuMapper.selectCount(this.reindexQueryWrapper());
+            this.updateProgress(total, current, failed);
+
+            IndexOperations indexOps = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+            Settings settings = indexOps.createSettings(EsGoodsIndex.class);
+            settings.put("index.number_of_shards", elasticsearchProperties.getIndex().getNumberOfShards());
+            settings.put("index.number_of_replicas", elasticsearchProperties.getIndex().getNumberOfReplicas());
+            indexOps.create(settings, indexOps.createMapping(EsGoodsIndex.class));
+
+            String lastId = null;
+            while (true) {
+                LambdaQueryWrapper<GoodsSku> queryWrapper = this.reindexQueryWrapper();
+                queryWrapper.gt(lastId != null, GoodsSku::getId, lastId);
+                queryWrapper.orderByAsc(GoodsSku::getId);
+                queryWrapper.last("limit " + config.getPageSize());
+                List<GoodsSku> goodsSkus = goodsSkuMapper.selectList(queryWrapper);
+                if (goodsSkus.isEmpty()) {
+                    break;
+                }
+                lastId = goodsSkus.get(goodsSkus.size() - 1).getId();
+                permits.acquire();
+                executorManager.execute(ExecutorEnum.INDEX_REBUILD, () -> {
+                    try {
+                        this.reindexPage(indexName, goodsSkus, failed);
+                    } catch (Exception e) {
+                        log.error("生成{}条sku索引失败", goodsSkus.size(), e);
+                        failed.addAndGet(goodsSkus.size());
+                    } finally {
+                        current.addAndGet(goodsSkus.size());
+                        this.updateProgress(total, current, failed);
+                        permits.release();
+                    }
+                });
+                if (goodsSkus.size() < config.getPageSize()) {
+                    break;
+                }
+            }
+            //等待已提交的批次完成
+            while (!permits.tryAcquire(config.getQueueCapacity(), 1, TimeUnit.MINUTES)) {
+                log.info("ES索引生成中：{}/{}", current.get(), total);
+            }
+            permits.release(config.getQueueCapacity());
+            if (failed.get() > 0) {
+                throw new ServiceException(ResultCode.ELASTICSEARCH_INDEX_INIT_ERROR);
+            }
+            indexOps.refresh();
+            this.switchAlias(alias, indexName);
+            switched = true;
+            this.replayChanges(indexName);
+            cache.put(CachePrefix.INIT_INDEX_FLAG.getPrefix(), INIT_INDEX_COMPLETE);
+            log.info("ES Indexing complete: {} items indexed into {}", current.get(), indexName);
+        } catch (Exception e) {
+            log.error("ES Indexing failed", e);
+            //别名已指向新索引时不能删除，否则将没有可用的商品索引
+            if (!switched) {
+                try {
+                    //等待已提交的批次结束后再删除，避免批量写入重新创建索引
+                    if (!permits.tryAcquire(config.getQueueCapacity(), 1, TimeUnit.MINUTES)) {
+                        log.warn("等待索引生成批次结束超时，直接删除索引{}", indexName);
+                    }
+                    elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).delete();
+                } catch (Exception ex) {
+                    log.error("删除未完成的索引{}失败", indexName, ex);
+                }
+            }
+            cache.put(CachePrefix.INIT_INDEX_FLAG.getPrefix(), INIT_INDEX_FAILED);
+        } finally {
+            stringRedisTemplate.delete(INIT_INDEX_CHANGED);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将重建期间修改过的sku按数据库重新生成写入新索引，已下架或删除的从新索引删除
+     *
+     * @param indexName 新索引名称
+     */
+    private void replayChanges(String indexName) {
+        int pageSize = elasticsearchProperties.getReindex().getPageSize();
+        AtomicLong failed = new AtomicLong();
+        while (true) {
+            List<String> skuIds = stringRedisTemplate.opsForSet().pop(INIT_INDEX_CHANGED, pageSize);
+            if (skuIds == null || skuIds.isEmpty()) {
+                break;
+            }
+            List<GoodsSku> goodsSkus = goodsSkuMapper.selectList(this.reindexQueryWrapper().in(GoodsSku::getId, skuIds));
+            if (!goodsSkus.isEmpty()) {
+                this.reindexPage(indexName, goodsSkus, failed);
+            }
+            Set<String> existIds = goodsSkus.stream().map(GoodsSku::getId).collect(Collectors.toSet());
+            List<String> deleteIds = skuIds.stream().filter(id -> !existIds.contains(id)).collect(Collectors.toList());
+            if (!deleteIds.isEmpty()) {
+                elasticsearchOperations.delete(NativeQuery.builder().withQuery(q -> q.ids(i -> i.values(deleteIds))).build(),
+                        EsGoodsIndex.class, IndexCoordinates.of(indexName));
+            }
+        }
+        if (failed.get() > 0) {
+            log.error("重建期间修改的商品索引有{}条写入新索引失败", failed.get());
+        }
+    }
+
+    /**
+     * 重建索引的sku查询条件，已上架、审核通过、未删除
+     */
+    private LambdaQueryWrapper<GoodsSku> reindexQueryWrapper() {
+        return new LambdaQueryWrapper<GoodsSku>()
+                .eq(GoodsSku::getMarketEnable, GoodsStatusEnum.UPPER.name())
+                .eq(GoodsSku::getAuthFlag, GoodsAuthEnum.PASS.name())
+                .eq(GoodsSku::getDeleteFlag, false);
+    }
+
+    /**
+     * 生成一页sku的索引并写入指定索引
+     *
+     * @param indexName 索引名称
+     * @param goodsSkus sku集合
+     * @param failed    写入失败数量
+     */
+    private void reindexPage(String indexName, List<GoodsSku> goodsSkus, AtomicLong failed) {
+        Map<String, List<GoodsSku>> goodsSkuMap = goodsSkus.stream()
+                .collect(Collectors.groupingBy(GoodsSku::getGoodsId, LinkedHashMap::new, Collectors.toList()));
+        Map<String, Goods> goodsMap = goodsService.listByIds(goodsSkuMap.keySet()).stream()
+                .collect(Collectors.toMap(Goods::getId, goods -> goods));
+        List<EsGoodsIndex> esGoodsIndices = new ArrayList<>(goodsSkus.size());
+        goodsSkuMap.forEach((goodsId, skus) -> {
+            Goods goods = goodsMap.get(goodsId);
+            if (goods == null) {
+                return;
+            }
+            try {
+                esGoodsIndices.addAll(esGoodsIndexBuildService.buildGoodsIndex(goods, skus));
+            } catch (Exception e) {
+                log.error("生成商品{}索引失败", goodsId, e);
+                failed.addAndGet(skus.size());
+            }
+        });
+        for (List<EsGoodsIndex> partition : CollUtil.split(esGoodsIndices, elasticsearchProperties.getReindex().getBulkSize())) {
+            if (!this.bulkIndex(indexName, partition)) {
+                failed.addAndGet(partition.size());
+            }
+        }
+    }
+
+    /**
+     * 批量写入索引，失败时只重试失败的文档
+     *
+     * @param indexName      索引名称
+     * @param esGoodsIndices 索引文档
+     * @return 是否全部写入成功
+     */
+    private boolean bulkIndex(String indexName, List<EsGoodsIndex> esGoodsIndices) {
+        List<IndexQuery> indexQueries = new ArrayList<>(esGoodsIndices.size());
+        for (EsGoodsIndex esGoodsIndex : esGoodsIndices) {
+            indexQueries.add(new IndexQueryBuilder().withId(esGoodsIndex.getId()).withObject(esGoodsIndex).build());
+        }
+        int retryTimes = elasticsearchProperties.getReindex().getRetryTimes();
+        for (int i = 0; ; i++) {
+            try {
+                elasticsearchOperations.bulkIndex(indexQueries, IndexCoordinates.of(indexName));
+                return true;
+            } catch (BulkFailureException e) {
+                Set<String> failedIds = e.getFailedDocuments().keySet();
+                indexQueries.removeIf(indexQuery -> !failedIds.contains(indexQuery.getId()));
+                if (i >= retryTimes) {
+                    log.error("批量写入索引失败，失败文档：{}", failedIds);
+                    return false;
+                }
+            } catch (Exception e) {
+                if (i >= retryTimes) {
+                    log.error("批量写入索引失败", e);
+                    return false;
+                }
+            }
+            //等待es恢复后重试
+            ThreadUtil.sleep(1000L << i);
+        }
+    }
+
+    /**
+     * 将别名切换到新索引，并清理多余的旧版本索引
+     *
+     * @param alias     别名
+     * @param indexName 新索引名称
+     */
+    private void switchAlias(String alias, String indexName) {
+        IndexOperations aliasOps = elasticsearchOperations.indexOps(IndexCoordinates.of(alias));
+        Set<String> oldIndices;
+        try {
+            oldIndices = aliasOps.getAliases(alias).keySet();
+        } catch (Exception e) {
+            //别名不存在
+            oldIndices = Collections.emptySet();
+        }
+        AliasActions aliasActions = new AliasActions();
+        if (oldIndices.isEmpty() && aliasOps.exists()) {
+            //旧版本直接使用别名作为索引名称，删除旧索引与创建别名在同一个操作中完成，失败时旧索引保留
+            log.warn("索引{}不是别名，删除后创建别名", alias);
+            aliasActions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(alias).build()));
+        } else if (!oldIndices.isEmpty()) {
+            aliasActions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(oldIndices.toArray(new String[0])).withAliases(alias).build()));
+        }
+        aliasActions.add(new AliasAction.Add(AliasActionParameters.builder().withIndices(indexName).withAliases(alias).build()));
+        aliasOps.alias(aliasActions);
+        log.info("索引别名{}已切换到{}，原索引{}", alias, indexName, oldIndices);
+
+        try {
+            this.cleanVersions(alias, indexName);
+        } catch (Exception e) {
+            log.error("清理旧版本索引失败", e);
+        }
+    }
+
+    /**
+     * 按名称中的时间排序，保留最近的旧版本索引用于回滚，删除更早的版本
+     *
+     * @param alias     别名
+     * @param indexName 当前索引名称
+     */
+    private void cleanVersions(String alias, String indexName) {
+        Pattern versionPattern = Pattern.compile(Pattern.quote(alias) + "_\\d{14}");
+        List<String> versions = elasticsearchOperations.indexOps(IndexCoordinates.of(alias + "_*")).getAliasesForIndex(alias + "_*")
+                .keySet().stream()
+                .filter(name -> !name.equals(indexName) && versionPattern.matcher(name).matches())
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        for (int i = elasticsearchProperties.getReindex().getRetainIndices(); i < versions.size(); i++) {
+            elasticsearchOperations.indexOps(IndexCoordinates.of(versions.get(i))).delete();
+            log.info("删除旧版本索引{}", versions.get(i));
+        }
+    }
+
+    /**
+     * 更新重建索引进度
+     */
+    private void updateProgress(long total, AtomicLong current, AtomicLong failed) {
+        Map<String, Long> progress = new HashMap<>(4);
+        progress.put("total", total);
+        progress.put("current", current.get());
+        progress.put("failed", failed.get());
+        cache.put(CachePrefix.INIT_INDEX_PROCESS.getPrefix(), progress);
+    }
+
     @Override
     public void initIndex() {
     }
 
     @Override
     public void addIndex(EsGoodsIndex goods) {
+        this.recordChange(Collections.singletonList(goods.getId()));
         elasticsearchOperations.save(goods);
     }
 
     @Override
     public void addIndex(List<EsGoodsIndex> goods) {
+        this.recordChange(goods.stream().map(EsGoodsIndex::getId).collect(Collectors.toList()));
         elasticsearchOperations.save(goods);
     }
 
     @Override
     public void updateIndex(EsGoodsIndex goods) {
+        this.recordChange(Collections.singletonList(goods.getId()));
         elasticsearchOperations.save(goods);
     }
 
     @Override
     public void updateIndex(String id, EsGoodsIndex goods) {
         goods.setId(id);
+        this.recordChange(Collections.singletonList(id));
         elasticsearchOperations.save(goods);
     }
 
@@ -153,6 +472,7 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
 
     @Override
     public void updateBulkIndex(List<EsGoodsIndex> goodsIndices) {
+        this.recordChange(goodsIndices.stream().map(EsGoodsIndex::getId).collect(Collectors.toList()));
         elasticsearchOperations.save(goodsIndices);
     }
 
@@ -162,18 +482,21 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
 
     @Override
     public void deleteIndexById(String id) {
-        elasticsearchOperations.delete(id, EsGoodsIndex.class);
+        //与批量写入走同一队列，避免先提交的写入在删除之后写回文档
+        esGoodsIndexBatchService.delete(Collections.singletonList(id));
     }
 
     @Override
     public void deleteIndexByIds(List<String> ids) {
-        for (String id : ids) {
-            this.deleteIndexById(id);
+        if (ids == null || ids.isEmpty()) {
+            return;
         }
+        esGoodsIndexBatchService.delete(ids);
     }
 
     @Override
     public void initIndex(List<EsGoodsIndex> goodsIndexList, boolean regeneratorIndex) {
+        this.recordChange(goodsIndexList.stream().map(EsGoodsIndex::getId).collect(Collectors.toList()));
         elasticsearchOperations.save(goodsIndexList);
     }
 
@@ -187,6 +510,7 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
             }
             promotionMap.put(key, promotion);
             index.setPromotionMapJson(JSONUtil.toJsonStr(promotionMap));
+            this.recordChange(Collections.singletonList(id));
             elasticsearchOperations.save(index);
         }
     }
@@ -222,6 +546,7 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
                 if (promotionMap != null && promotionMap.containsKey(promotionsKey)) {
                     promotionMap.remove(promotionsKey);
                     index.setPromotionMapJson(JSONUtil.toJsonStr(promotionMap));
+                    this.recordChange(Collections.singletonList(id));
                     elasticsearchOperations.save(index);
                 }
             }
@@ -241,6 +566,20 @@ public class EsGoodsIndexServiceImpl extends BaseElasticsearchService implements
         return elasticsearchOperations.get(id, EsGoodsIndex.class);
     }
 
+    @Override
+    public List<EsGoodsIndex> findByIds(List<String> ids) {
+        List<EsGoodsIndex> result = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        for (MultiGetItem<EsGoodsIndex> item : elasticsearchOperations.multiGet(NativeQuery.builder().withIds(ids).build(), EsGoodsIndex.class)) {
+            if (item.hasItem()) {
+                result.add(item.getItem());
+            }
+        }
+        return result;
+    }
+
     @Override
     public Map<String, Object> getPromotionMap(String id) {
         EsGoodsIndex index = findById(id);
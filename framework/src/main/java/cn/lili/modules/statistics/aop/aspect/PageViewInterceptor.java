@@ -1,15 +1,15 @@
 package cn.lili.modules.statistics.aop.aspect;
 
-import cn.lili.cache.Cache;
-import cn.lili.cache.CachePrefix;
 import cn.lili.common.context.ThreadContextHolder;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.common.utils.IpUtils;
 import cn.lili.common.utils.SpelUtil;
 import cn.lili.common.vo.ResultMessage;
 import cn.lili.modules.goods.entity.vos.GoodsSkuVO;
 import cn.lili.modules.statistics.aop.PageViewPoint;
 import cn.lili.modules.statistics.aop.enums.PageViewEnum;
-import cn.lili.modules.statistics.util.StatisticsSuffix;
+import cn.lili.modules.statistics.service.TrafficCounterService;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.AfterReturning;
@@ -34,9 +34,10 @@ import java.util.Map;
 public class PageViewInterceptor {
 
     @Autowired
-    private Cache cache;
-
+    private TrafficCounterService trafficCounterService;
 
+    @Autowired
+    private ExecutorManager executorManager;
 
     @AfterReturning(returning = "rvt", pointcut = "@annotation(cn.lili.modules.statistics.aop.PageViewPoint)")
     public void interceptor(JoinPoint point, Object rvt) {
@@ -71,21 +72,15 @@ public class PageViewInterceptor {
                 storeId = "-1";
         }
         String ip = IpUtils.getIpAddress(ThreadContextHolder.getHttpRequest());
-        try {
-            //PV 统计48小时过期 留下一定时间予以统计累计数据库
-            cache.incr(CachePrefix.PV.getPrefix() + StatisticsSuffix.suffix(), 60 * 60 * 48);
-
-            //平台UV统计
-            cache.cumulative(CachePrefix.UV.getPrefix() + StatisticsSuffix.suffix(), ip);
-
-            //PV 统计48小时过期 留下一定时间予以统计累计数据库
-            cache.incr(CachePrefix.STORE_PV.getPrefix() + StatisticsSuffix.suffix(storeId), 60 * 60 * 48);
-
-            //店铺UV 统计，则需要对id去重复，所以如下处理
-            cache.cumulative(CachePrefix.STORE_UV.getPrefix() + StatisticsSuffix.suffix(storeId), ip);
-        } catch (Exception e) {
-            log.error("页面出错", e);
-        }
+        String viewStoreId = storeId;
+        //平台及店铺的PV、UV在一次请求中写入按日划分的计数，异步写入不占用请求线程，繁忙时丢弃
+        executorManager.tryExecute(ExecutorEnum.STATISTICS, () -> {
+            try {
+                trafficCounterService.pageView(viewStoreId, ip);
+            } catch (Exception e) {
+                log.error("页面出错", e);
+            }
+        });
 
     }
 
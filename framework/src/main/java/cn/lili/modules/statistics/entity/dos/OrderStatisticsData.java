@@ -0,0 +1,73 @@
+package cn.lili.modules.statistics.entity.dos;
+
+import cn.lili.mybatis.BaseIdEntity;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 订单小时统计
+ * <p>
+ * 按店铺、小时、支付方式汇总订单及流水，由订单消息触发重新汇总对应的小时
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+@Data
+@TableName("li_s_order_statistics_data")
+@ApiModel(value = "订单小时统计")
+public class OrderStatisticsData extends BaseIdEntity {
+
+    private static final long serialVersionUID = 2871460285148309317L;
+
+    @ApiModelProperty(value = "店铺id")
+    private String storeId;
+
+    @ApiModelProperty(value = "店铺名称")
+    private String storeName;
+
+    @JsonFormat(timezone = "GMT+8", pattern = "yyyy-MM-dd HH:mm:ss")
+    @ApiModelProperty(value = "统计小时，为该小时的开始时间")
+    private Date statisticsTime;
+
+    @ApiModelProperty(value = "支付方式，未支付订单为空字符串")
+    private String paymentMethod;
+
+    @ApiModelProperty(value = "下单数量，按订单创建时间统计")
+    private Long orderNum;
+
+    @ApiModelProperty(value = "下单金额，按订单创建时间统计")
+    private Double orderPrice;
+
+    @ApiModelProperty(value = "已付款订单数量，按订单创建时间统计")
+    private Long paidOrderNum;
+
+    @ApiModelProperty(value = "已付款订单金额，按订单创建时间统计")
+    private Double paidOrderPrice;
+
+    @ApiModelProperty(value = "已付款订单运费，按订单创建时间统计")
+    private Double freightPrice;
+
+    @ApiModelProperty(value = "已付款订单优惠金额，按订单创建时间统计")
+    private Double discountPrice;
+
+    @ApiModelProperty(value = "付款流水数量，按流水时间统计")
+    private Long payNum;
+
+    @ApiModelProperty(value = "付款商品数量，按流水时间统计")
+    private Long payGoodsNum;
+
+    @ApiModelProperty(value = "付款金额，按流水时间统计")
+    private Double payPrice;
+
+    @ApiModelProperty(value = "退款流水数量，按流水时间统计")
+    private Long refundNum;
+
+    @ApiModelProperty(value = "退款金额，按流水时间统计")
+    private Double refundPrice;
+
+}
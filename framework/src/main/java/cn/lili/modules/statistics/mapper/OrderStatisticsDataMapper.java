@@ -0,0 +1,99 @@
+package cn.lili.modules.statistics.mapper;
+
+import cn.lili.modules.statistics.entity.dos.OrderStatisticsData;
+import cn.lili.modules.statistics.entity.vo.OrderStatisticsDataVO;
+import cn.lili.modules.statistics.entity.vo.StoreStatisticsDataVO;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 订单小时统计数据处理层
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+public interface OrderStatisticsDataMapper extends BaseMapper<OrderStatisticsData> {
+
+    /**
+     * 从订单表汇总下单及已付款订单
+     *
+     * @param queryWrapper 查询条件，条件字段为li_order的字段
+     * @return 汇总结果
+     */
+    @Select("SELECT store_id, MAX(store_name) AS store_name, IFNULL(payment_method,'') AS payment_method," +
+            " COUNT(0) AS order_num, IFNULL(SUM(flow_price),0) AS order_price," +
+            " SUM(CASE WHEN pay_status = 'PAID' THEN 1 ELSE 0 END) AS paid_order_num," +
+            " IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN flow_price ELSE 0 END),0) AS paid_order_price," +
+            " IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN freight_price ELSE 0 END),0) AS freight_price," +
+            " IFNULL(SUM(CASE WHEN pay_status = 'PAID' THEN discount_price ELSE 0 END),0) AS discount_price" +
+            " FROM li_order ${ew.customSqlSegment}")
+    List<OrderStatisticsData> aggregateOrder(@Param(Constants.WRAPPER) Wrapper<OrderStatisticsData> queryWrapper);
+
+    /**
+     * 从店铺流水表汇总付款及退款
+     *
+     * @param queryWrapper 查询条件，条件字段为li_store_flow的字段
+     * @return 汇总结果
+     */
+    @Select("SELECT store_id, MAX(store_name) AS store_name, IFNULL(payment_name,'') AS payment_method," +
+            " SUM(CASE WHEN flow_type = 'PAY' THEN 1 ELSE 0 END) AS pay_num," +
+            " IFNULL(SUM(CASE WHEN flow_type = 'PAY' THEN num ELSE 0 END),0) AS pay_goods_num," +
+            " IFNULL(SUM(CASE WHEN flow_type = 'PAY' THEN final_price ELSE 0 END),0) AS pay_price," +
+            " SUM(CASE WHEN flow_type = 'REFUND' THEN 1 ELSE 0 END) AS refund_num," +
+            " IFNULL(SUM(CASE WHEN flow_type = 'REFUND' THEN final_price ELSE 0 END),0) AS refund_price" +
+            " FROM li_store_flow ${ew.customSqlSegment}")
+    List<OrderStatisticsData> aggregateFlow(@Param(Constants.WRAPPER) Wrapper<OrderStatisticsData> queryWrapper);
+
+    /**
+     * 汇总小时统计
+     *
+     * @param queryWrapper 查询条件
+     * @return 汇总结果
+     */
+    @Select("SELECT IFNULL(SUM(order_num),0) AS order_num, IFNULL(SUM(order_price),0) AS order_price," +
+            " IFNULL(SUM(paid_order_num),0) AS paid_order_num, IFNULL(SUM(paid_order_price),0) AS paid_order_price," +
+            " IFNULL(SUM(freight_price),0) AS freight_price, IFNULL(SUM(discount_price),0) AS discount_price," +
+            " IFNULL(SUM(pay_num),0) AS pay_num, IFNULL(SUM(pay_goods_num),0) AS pay_goods_num, IFNULL(SUM(pay_price),0) AS pay_price," +
+            " IFNULL(SUM(refund_num),0) AS refund_num, IFNULL(SUM(refund_price),0) AS refund_price" +
+            " FROM li_s_order_statistics_data ${ew.customSqlSegment}")
+    OrderStatisticsData summary(@Param(Constants.WRAPPER) Wrapper<OrderStatisticsData> queryWrapper);
+
+    /**
+     * 按天汇总已付款订单金额
+     *
+     * @param queryWrapper 查询条件
+     * @return 每天的已付款订单金额
+     */
+    @Select("SELECT DATE_FORMAT(statistics_time,'%Y-%m-%d') AS create_time, SUM(paid_order_price) AS price" +
+            " FROM li_s_order_statistics_data ${ew.customSqlSegment}")
+    List<OrderStatisticsDataVO> dailyPaidPrice(@Param(Constants.WRAPPER) Wrapper<OrderStatisticsData> queryWrapper);
+
+    /**
+     * 按店铺汇总付款
+     *
+     * @param queryWrapper 查询条件
+     * @return 店铺付款统计
+     */
+    @Select("SELECT store_id AS storeId, MAX(store_name) AS storeName, SUM(pay_goods_num) AS num, SUM(pay_price) AS price" +
+            " FROM li_s_order_statistics_data ${ew.customSqlSegment}")
+    List<StoreStatisticsDataVO> storePayment(@Param(Constants.WRAPPER) Wrapper<OrderStatisticsData> queryWrapper);
+
+    /**
+     * 指定小时内有订单、流水或已有统计的店铺
+     *
+     * @param startTime 小时开始时间
+     * @param endTime   小时结束时间（不包含）
+     * @return 店铺id
+     */
+    @Select("SELECT store_id FROM li_order WHERE create_time >= #{startTime} AND create_time < #{endTime}" +
+            " UNION SELECT store_id FROM li_store_flow WHERE create_time >= #{startTime} AND create_time < #{endTime}" +
+            " UNION SELECT store_id FROM li_s_order_statistics_data WHERE statistics_time = #{startTime}")
+    List<String> activeStoreIds(@Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+}
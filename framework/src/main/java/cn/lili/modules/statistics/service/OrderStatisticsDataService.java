@@ -0,0 +1,79 @@
+package cn.lili.modules.statistics.service;
+
+import cn.lili.modules.statistics.entity.dos.OrderStatisticsData;
+import cn.lili.modules.statistics.entity.vo.OrderStatisticsDataVO;
+import cn.lili.modules.statistics.entity.vo.StoreStatisticsDataVO;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 订单小时统计业务层
+ * <p>
+ * 已结束的小时读取汇总数据，当前小时读取订单及流水表
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+public interface OrderStatisticsDataService extends IService<OrderStatisticsData> {
+
+    /**
+     * 重新汇总店铺指定时间所在小时的统计，同一店铺小时同时只有一个汇总执行
+     *
+     * @param storeId 店铺id
+     * @param time    时间
+     */
+    void refresh(String storeId, Date time);
+
+    /**
+     * 标记订单涉及的小时统计待汇总，包括订单创建及订单流水所在的小时
+     *
+     * @param orderSn 订单编号
+     */
+    void refreshOrder(String orderSn);
+
+    /**
+     * 汇总已标记的店铺小时，期间多次标记的只汇总一次
+     *
+     * @return 汇总的店铺小时数量
+     */
+    int refreshDirty();
+
+    /**
+     * 重新汇总所有店铺指定时间所在小时的统计
+     *
+     * @param time 时间
+     */
+    void refreshHour(Date time);
+
+    /**
+     * 汇总时间区间内的统计
+     *
+     * @param storeId   店铺id，为空时统计全部店铺
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return 汇总结果，不包含店铺及时间
+     */
+    OrderStatisticsData summary(String storeId, Date startTime, Date endTime);
+
+    /**
+     * 按天汇总已付款订单金额
+     *
+     * @param storeId   店铺id，为空时统计全部店铺
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return 有数据的日期及金额
+     */
+    List<OrderStatisticsDataVO> dailyPaidPrice(String storeId, Date startTime, Date endTime);
+
+    /**
+     * 店铺付款排行
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param num       数量
+     * @return 按付款金额倒序的店铺统计
+     */
+    List<StoreStatisticsDataVO> storePaymentRank(Date startTime, Date endTime, int num);
+}
@@ -0,0 +1,77 @@
+package cn.lili.modules.statistics.service;
+
+import cn.lili.modules.statistics.entity.dos.PlatformViewData;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 流量实时计数业务层
+ * <p>
+ * 页面浏览数按日写入hash，访客及在线会员写入按日、按分钟划分的HyperLogLog，
+ * 读取时只访问对应时间段的key，不扫描缓存
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+public interface TrafficCounterService {
+
+    /**
+     * 平台流量的店铺id
+     */
+    String PLATFORM_STORE_ID = "-1";
+
+    /**
+     * 记录一次页面浏览
+     *
+     * @param storeId 店铺id，平台页面为-1
+     * @param ip      访客ip
+     */
+    void pageView(String storeId, String ip);
+
+    /**
+     * 记录会员活跃，用于统计在线人数
+     *
+     * @param memberId 会员id
+     */
+    void memberActive(String memberId);
+
+    /**
+     * 当前在线人数，即最近一段时间内有请求的会员数
+     *
+     * @return 在线人数
+     */
+    Long online();
+
+    /**
+     * 时间区间内有请求的会员数
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间（不包含）
+     * @return 会员数
+     */
+    Long online(Date startTime, Date endTime);
+
+    /**
+     * 今日流量
+     *
+     * @param storeId 店铺id，为空时查询平台流量
+     * @return 今日流量
+     */
+    PlatformViewData today(String storeId);
+
+    /**
+     * 汇总指定日期的平台及店铺流量
+     *
+     * @param date 日期
+     * @return 流量数据，没有数据时为空集合
+     */
+    List<PlatformViewData> viewData(Date date);
+
+    /**
+     * 清除指定日期的流量计数
+     *
+     * @param date 日期
+     */
+    void clear(Date date);
+}
@@ -7,7 +7,6 @@ import cn.lili.common.security.enums.UserEnums;
 import cn.lili.common.utils.BeanUtil;
 import cn.lili.modules.goods.entity.enums.GoodsAuthEnum;
 import cn.lili.modules.goods.entity.enums.GoodsStatusEnum;
-import cn.lili.modules.order.order.entity.enums.FlowTypeEnum;
 import cn.lili.modules.order.order.entity.enums.OrderStatusEnum;
 import cn.lili.modules.order.trade.entity.enums.AfterSaleTypeEnum;
 import cn.lili.modules.statistics.entity.dto.GoodsStatisticsQueryParam;
@@ -17,9 +16,6 @@ import cn.lili.modules.statistics.entity.vo.*;
 import cn.lili.modules.statistics.service.*;
 import cn.lili.modules.statistics.util.StatisticsDateUtil;
 import cn.lili.modules.store.entity.enums.BillStatusEnum;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -97,6 +93,11 @@ public class IndexStatisticsServiceImpl implements IndexStatisticsService {
      */
     @Autowired
     private SeckillStatisticsService seckillStatisticsService;
+    /**
+     * 订单小时统计
+     */
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
 
     @Override
     public IndexNoticeVO indexNotice() {
@@ -233,22 +234,10 @@ public class IndexStatisticsServiceImpl implements IndexStatisticsService {
     @Override
     public List<StoreStatisticsDataVO> storeStatistics(StatisticsQueryParam statisticsQueryParam) {
 
-        QueryWrapper queryWrapper = Wrappers.query();
-
         Date[] dates = StatisticsDateUtil.getDateArray(statisticsQueryParam);
-        Date startTime = dates[0], endTime = dates[1];
-        queryWrapper.between("create_time", startTime, endTime);
-
-        queryWrapper.orderByDesc("price");
-
-        queryWrapper.groupBy("store_id,store_name ");
-
-        queryWrapper.eq("flow_type", FlowTypeEnum.PAY.name());
-
-        //查询前十条记录
-        Page page = new Page<StoreStatisticsDataVO>(1, 10);
 
-        return storeFlowStatisticsService.getStoreStatisticsData(page, queryWrapper);
+        //查询前十条记录，读取小时统计
+        return orderStatisticsDataService.storePaymentRank(dates[0], dates[1], 10);
     }
 
 
@@ -0,0 +1,405 @@
+package cn.lili.modules.statistics.serviceimpl;
+
+import cn.hutool.core.date.DateField;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.enums.ResultCode;
+import cn.lili.common.exception.ServiceException;
+import cn.lili.common.utils.CurrencyUtil;
+import cn.lili.modules.order.order.entity.dos.Order;
+import cn.lili.modules.order.order.entity.dos.StoreFlow;
+import cn.lili.modules.order.order.entity.enums.FlowTypeEnum;
+import cn.lili.modules.order.order.entity.enums.PayStatusEnum;
+import cn.lili.modules.order.order.service.OrderService;
+import cn.lili.modules.order.order.service.StoreFlowService;
+import cn.lili.modules.statistics.entity.dos.OrderStatisticsData;
+import cn.lili.modules.statistics.entity.vo.OrderStatisticsDataVO;
+import cn.lili.modules.statistics.entity.vo.StoreStatisticsDataVO;
+import cn.lili.modules.statistics.mapper.OrderStatisticsDataMapper;
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 订单小时统计业务层实现
+ * <p>
+ * 订单变化时只标记订单涉及的店铺小时，由定时任务合并后每个店铺小时汇总一次，
+ * 同一店铺小时的汇总通过分布式锁串行执行
+ *
+ * @author Chopper
+ * @since 2024-03-30
+ */
+@Slf4j
+@Service
+public class OrderStatisticsDataServiceImpl extends ServiceImpl<OrderStatisticsDataMapper, OrderStatisticsData> implements OrderStatisticsDataService {
+
+    private static final String CREATE_TIME_COLUMN = "create_time";
+
+    private static final String STORE_ID_COLUMN = "store_id";
+
+    private static final String STATISTICS_TIME_COLUMN = "statistics_time";
+
+    /**
+     * 待汇总的店铺小时，值为 店铺id_小时开始时间戳
+     */
+    private static final String DIRTY_KEY = CachePrefix.ORDER_STATISTICS.getPrefix() + "DIRTY";
+
+    /**
+     * 汇总中的店铺小时，汇总中断时下次优先汇总
+     */
+    private static final String PROCESSING_KEY = CachePrefix.ORDER_STATISTICS.getPrefix() + "PROCESSING";
+
+    /**
+     * 合并汇总任务锁
+     */
+    private static final String FLUSH_LOCK_KEY = CachePrefix.ORDER_STATISTICS.getPrefix() + "FLUSH_LOCK";
+
+    /**
+     * 每次取出的待汇总店铺小时数量
+     */
+    @Value("${lili.statistics.order.dirty-batch:100}")
+    private Integer dirtyBatch;
+
+    /**
+     * 等待同一店铺小时汇总锁的时间，单位秒
+     */
+    @Value("${lili.statistics.order.lock-wait-seconds:10}")
+    private Long lockWaitSeconds;
+
+    @Lazy
+    @Autowired
+    private OrderService orderService;
+
+    @Lazy
+    @Autowired
+    private StoreFlowService storeFlowService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RedissonClient redisson;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public void refresh(String storeId, Date time) {
+        if (CharSequenceUtil.isEmpty(storeId) || time == null) {
+            return;
+        }
+        Date startTime = DateUtil.beginOfHour(time);
+        //同一店铺小时的汇总串行执行，避免先读取的汇总结果覆盖后读取的
+        RLock lock = redisson.getLock(CachePrefix.ORDER_STATISTICS.getPrefix() + "LOCK_" + this.member(storeId, startTime));
+        try {
+            if (!lock.tryLock(lockWaitSeconds, TimeUnit.SECONDS)) {
+                throw new ServiceException(ResultCode.ERROR, "订单小时统计正在汇总：" + storeId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(ResultCode.ERROR);
+        }
+        try {
+            this.aggregate(storeId, startTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按订单及流水表重新汇总店铺一个小时的统计并替换
+     *
+     * @param storeId   店铺id
+     * @param startTime 小时开始时间
+     */
+    private void aggregate(String storeId, Date startTime) {
+        Date endTime = DateUtil.offset(startTime, DateField.HOUR_OF_DAY, 1);
+
+        //按支付方式合并订单及流水的汇总
+        Map<String, OrderStatisticsData> merged = new HashMap<>();
+        List<OrderStatisticsData> aggregated = new ArrayList<>();
+        aggregated.addAll(this.baseMapper.aggregateOrder(
+                this.rawWrapper(storeId, startTime, endTime, false).groupBy(STORE_ID_COLUMN, "payment_method")));
+        aggregated.addAll(this.baseMapper.aggregateFlow(
+                this.rawWrapper(storeId, startTime, endTime, false).groupBy(STORE_ID_COLUMN, "payment_name")));
+        for (OrderStatisticsData data : aggregated) {
+            OrderStatisticsData target = merged.computeIfAbsent(data.getPaymentMethod(), paymentMethod -> {
+                OrderStatisticsData statisticsData = this.empty();
+                statisticsData.setStoreId(storeId);
+                statisticsData.setStatisticsTime(startTime);
+                statisticsData.setPaymentMethod(paymentMethod);
+                return statisticsData;
+            });
+            if (target.getStoreName() == null) {
+                target.setStoreName(data.getStoreName());
+            }
+            this.add(target, data);
+        }
+
+        //替换该小时的统计，内部调用时注解事务不生效，因此使用编程式事务
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            this.remove(new LambdaQueryWrapper<OrderStatisticsData>()
+                    .eq(OrderStatisticsData::getStoreId, storeId)
+                    .eq(OrderStatisticsData::getStatisticsTime, startTime));
+            if (!merged.isEmpty()) {
+                this.saveBatch(merged.values());
+            }
+        });
+    }
+
+    @Override
+    public void refreshOrder(String orderSn) {
+        Order order = orderService.getBySn(orderSn);
+        if (order == null) {
+            return;
+        }
+        if (CharSequenceUtil.isEmpty(order.getStoreId())) {
+            return;
+        }
+        Set<String> members = new HashSet<>();
+        members.add(this.member(order.getStoreId(), DateUtil.beginOfHour(order.getCreateTime())));
+        storeFlowService.list(new LambdaQueryWrapper<StoreFlow>()
+                        .select(StoreFlow::getCreateTime)
+                        .eq(StoreFlow::getOrderSn, orderSn))
+                .stream().map(StoreFlow::getCreateTime).filter(Objects::nonNull)
+                .forEach(createTime -> members.add(this.member(order.getStoreId(), DateUtil.beginOfHour(createTime))));
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, members.toArray(new String[0]));
+    }
+
+    @Override
+    public int refreshDirty() {
+        RLock lock = redisson.getLock(FLUSH_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            boolean failed = false;
+            while (!failed) {
+                //上次汇总中断时，优先重新汇总
+                Set<String> members = stringRedisTemplate.opsForSet().members(PROCESSING_KEY);
+                if (members == null || members.isEmpty()) {
+                    List<String> popped = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, dirtyBatch);
+                    if (popped == null || popped.isEmpty()) {
+                        return total;
+                    }
+                    stringRedisTemplate.opsForSet().add(PROCESSING_KEY, popped.toArray(new String[0]));
+                    members = new HashSet<>(popped);
+                }
+                for (String member : members) {
+                    int split = member.lastIndexOf('_');
+                    try {
+                        this.refresh(member.substring(0, split), new Date(Long.parseLong(member.substring(split + 1))));
+                        total++;
+                    } catch (Exception e) {
+                        log.error("订单小时统计汇总异常：{}", member, e);
+                        //放回待汇总，由下次任务重试
+                        stringRedisTemplate.opsForSet().add(DIRTY_KEY, member);
+                        failed = true;
+                    }
+                    stringRedisTemplate.opsForSet().remove(PROCESSING_KEY, member);
+                }
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String member(String storeId, Date hour) {
+        return storeId + "_" + hour.getTime();
+    }
+
+    @Override
+    public void refreshHour(Date time) {
+        Date startTime = DateUtil.beginOfHour(time);
+        Date endTime = DateUtil.offset(startTime, DateField.HOUR_OF_DAY, 1);
+        for (String storeId : this.baseMapper.activeStoreIds(startTime, endTime)) {
+            try {
+                this.refresh(storeId, startTime);
+            } catch (Exception e) {
+                log.error("订单小时统计汇总异常，店铺：{}，时间：{}", storeId, startTime, e);
+            }
+        }
+    }
+
+    @Override
+    public OrderStatisticsData summary(String storeId, Date startTime, Date endTime) {
+        OrderStatisticsData result = this.empty();
+        Date boundary = DateUtil.beginOfHour(new Date());
+        //已结束的小时
+        if (startTime.before(boundary)) {
+            Date rollupEnd = endTime.before(boundary) ? endTime : boundary;
+            this.add(result, this.baseMapper.summary(this.rollupWrapper(storeId, startTime, rollupEnd, endTime.before(boundary))));
+        }
+        //当前小时
+        if (!endTime.before(boundary)) {
+            Date rawStart = startTime.before(boundary) ? boundary : startTime;
+            this.baseMapper.aggregateOrder(this.rawWrapper(storeId, rawStart, endTime, true)).forEach(i -> this.add(result, i));
+            this.baseMapper.aggregateFlow(this.rawWrapper(storeId, rawStart, endTime, true)).forEach(i -> this.add(result, i));
+        }
+        return result;
+    }
+
+    @Override
+    public List<OrderStatisticsDataVO> dailyPaidPrice(String storeId, Date startTime, Date endTime) {
+        List<OrderStatisticsDataVO> result = new ArrayList<>();
+        Date boundary = DateUtil.beginOfHour(new Date());
+        if (startTime.before(boundary)) {
+            Date rollupEnd = endTime.before(boundary) ? endTime : boundary;
+            QueryWrapper<OrderStatisticsData> queryWrapper = this.rollupWrapper(storeId, startTime, rollupEnd, endTime.before(boundary));
+            queryWrapper.groupBy("DATE_FORMAT(statistics_time,'%Y-%m-%d')");
+            result.addAll(this.baseMapper.dailyPaidPrice(queryWrapper));
+        }
+        if (!endTime.before(boundary)) {
+            Date rawStart = startTime.before(boundary) ? boundary : startTime;
+            QueryWrapper<OrderStatisticsData> queryWrapper = this.rawWrapper(storeId, rawStart, endTime, true);
+            queryWrapper.eq("pay_status", PayStatusEnum.PAID.name());
+            double price = this.baseMapper.aggregateOrder(queryWrapper).stream()
+                    .mapToDouble(i -> i.getPaidOrderPrice() == null ? 0D : i.getPaidOrderPrice()).sum();
+            if (price > 0) {
+                Date day = DateUtil.beginOfDay(rawStart);
+                OrderStatisticsDataVO today = result.stream().filter(i -> day.equals(i.getCreateTime())).findFirst().orElse(null);
+                if (today == null) {
+                    today = new OrderStatisticsDataVO();
+                    today.setCreateTime(new Date(day.getTime()));
+                    today.setPrice(0D);
+                    result.add(today);
+                }
+                today.setPrice(CurrencyUtil.add(today.getPrice() == null ? 0D : today.getPrice(), price));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<StoreStatisticsDataVO> storePaymentRank(Date startTime, Date endTime, int num) {
+        Map<String, StoreStatisticsDataVO> stores = new HashMap<>();
+        Date boundary = DateUtil.beginOfHour(new Date());
+        if (startTime.before(boundary)) {
+            Date rollupEnd = endTime.before(boundary) ? endTime : boundary;
+            QueryWrapper<OrderStatisticsData> queryWrapper = this.rollupWrapper(null, startTime, rollupEnd, endTime.before(boundary));
+            queryWrapper.gt("pay_num", 0);
+            queryWrapper.groupBy(STORE_ID_COLUMN);
+            for (StoreStatisticsDataVO store : this.baseMapper.storePayment(queryWrapper)) {
+                stores.put(store.getStoreId(), store);
+            }
+        }
+        if (!endTime.before(boundary)) {
+            Date rawStart = startTime.before(boundary) ? boundary : startTime;
+            QueryWrapper<OrderStatisticsData> queryWrapper = this.rawWrapper(null, rawStart, endTime, true);
+            queryWrapper.eq("flow_type", FlowTypeEnum.PAY.name());
+            queryWrapper.groupBy(STORE_ID_COLUMN);
+            for (OrderStatisticsData data : this.baseMapper.aggregateFlow(queryWrapper)) {
+                StoreStatisticsDataVO store = stores.computeIfAbsent(data.getStoreId(), storeId -> {
+                    StoreStatisticsDataVO storeStatisticsDataVO = new StoreStatisticsDataVO();
+                    storeStatisticsDataVO.setStoreId(storeId);
+                    storeStatisticsDataVO.setStoreName(data.getStoreName());
+                    storeStatisticsDataVO.setNum("0");
+                    storeStatisticsDataVO.setPrice(0D);
+                    return storeStatisticsDataVO;
+                });
+                store.setNum(String.valueOf(Long.parseLong(CharSequenceUtil.blankToDefault(store.getNum(), "0")) + data.getPayGoodsNum()));
+                store.setPrice(CurrencyUtil.add(store.getPrice() == null ? 0D : store.getPrice(), data.getPayPrice()));
+            }
+        }
+        return stores.values().stream()
+                .sorted(Comparator.comparing((StoreStatisticsDataVO i) -> i.getPrice() == null ? 0D : i.getPrice()).reversed())
+                .limit(num)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 订单及流水表的查询条件，两个表的店铺及时间字段名相同
+     *
+     * @param includeEnd 是否包含结束时间
+     */
+    private QueryWrapper<OrderStatisticsData> rawWrapper(String storeId, Date startTime, Date endTime, boolean includeEnd) {
+        QueryWrapper<OrderStatisticsData> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq(CharSequenceUtil.isNotEmpty(storeId), STORE_ID_COLUMN, storeId);
+        queryWrapper.ge(CREATE_TIME_COLUMN, startTime);
+        if (includeEnd) {
+            queryWrapper.le(CREATE_TIME_COLUMN, endTime);
+        } else {
+            queryWrapper.lt(CREATE_TIME_COLUMN, endTime);
+        }
+        return queryWrapper;
+    }
+
+    /**
+     * 小时统计的查询条件
+     *
+     * @param includeEnd 结束时间所在的小时是否包含在内
+     */
+    private QueryWrapper<OrderStatisticsData> rollupWrapper(String storeId, Date startTime, Date endTime, boolean includeEnd) {
+        QueryWrapper<OrderStatisticsData> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq(CharSequenceUtil.isNotEmpty(storeId), STORE_ID_COLUMN, storeId);
+        queryWrapper.ge(STATISTICS_TIME_COLUMN, DateUtil.beginOfHour(startTime));
+        if (includeEnd) {
+            queryWrapper.le(STATISTICS_TIME_COLUMN, endTime);
+        } else {
+            queryWrapper.lt(STATISTICS_TIME_COLUMN, endTime);
+        }
+        return queryWrapper;
+    }
+
+    private OrderStatisticsData empty() {
+        OrderStatisticsData data = new OrderStatisticsData();
+        data.setOrderNum(0L);
+        data.setOrderPrice(0D);
+        data.setPaidOrderNum(0L);
+        data.setPaidOrderPrice(0D);
+        data.setFreightPrice(0D);
+        data.setDiscountPrice(0D);
+        data.setPayNum(0L);
+        data.setPayGoodsNum(0L);
+        data.setPayPrice(0D);
+        data.setRefundNum(0L);
+        data.setRefundPrice(0D);
+        return data;
+    }
+
+    /**
+     * 累加统计，汇总结果中不存在的字段为null
+     */
+    private void add(OrderStatisticsData target, OrderStatisticsData source) {
+        if (source == null) {
+            return;
+        }
+        target.setOrderNum(target.getOrderNum() + this.value(source.getOrderNum()));
+        target.setOrderPrice(CurrencyUtil.add(target.getOrderPrice(), this.value(source.getOrderPrice())));
+        target.setPaidOrderNum(target.getPaidOrderNum() + this.value(source.getPaidOrderNum()));
+        target.setPaidOrderPrice(CurrencyUtil.add(target.getPaidOrderPrice(), this.value(source.getPaidOrderPrice())));
+        target.setFreightPrice(CurrencyUtil.add(target.getFreightPrice(), this.value(source.getFreightPrice())));
+        target.setDiscountPrice(CurrencyUtil.add(target.getDiscountPrice(), this.value(source.getDiscountPrice())));
+        target.setPayNum(target.getPayNum() + this.value(source.getPayNum()));
+        target.setPayGoodsNum(target.getPayGoodsNum() + this.value(source.getPayGoodsNum()));
+        target.setPayPrice(CurrencyUtil.add(target.getPayPrice(), this.value(source.getPayPrice())));
+        target.setRefundNum(target.getRefundNum() + this.value(source.getRefundNum()));
+        target.setRefundPrice(CurrencyUtil.add(target.getRefundPrice(), this.value(source.getRefundPrice())));
+    }
+
+    private long value(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private double value(Double value) {
+        return value == null ? 0D : value;
+    }
+}
@@ -12,7 +12,6 @@ import cn.lili.modules.order.order.entity.dos.OrderItem;
 import cn.lili.modules.order.order.entity.dto.PriceDetailDTO;
 import cn.lili.modules.order.order.entity.enums.FlowTypeEnum;
 import cn.lili.modules.order.order.entity.enums.OrderTypeEnum;
-import cn.lili.modules.order.order.entity.enums.PayStatusEnum;
 import cn.lili.modules.order.order.entity.enums.RefundStatusEnum;
 import cn.lili.modules.order.order.entity.vo.OrderSimpleVO;
 import cn.lili.modules.order.order.service.OrderItemService;
@@ -21,6 +20,7 @@ import cn.lili.modules.statistics.entity.dto.StatisticsQueryParam;
 import cn.lili.modules.statistics.entity.vo.OrderOverviewVO;
 import cn.lili.modules.statistics.entity.vo.OrderStatisticsDataVO;
 import cn.lili.modules.statistics.mapper.OrderStatisticsMapper;
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
 import cn.lili.modules.statistics.service.OrderStatisticsService;
 import cn.lili.modules.statistics.service.PlatformViewService;
 import cn.lili.modules.statistics.service.StoreFlowStatisticsService;
@@ -59,6 +59,9 @@ public class OrderStatisticsServiceImpl extends ServiceImpl<OrderStatisticsMappe
     @Autowired
     private OrderItemService orderItemService;
 
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
+
     @Override
     public OrderOverviewVO overview(StatisticsQueryParam statisticsQueryParam) {
         Date[] dates = StatisticsDateUtil.getDateArray(statisticsQueryParam);
@@ -312,17 +315,9 @@ public class OrderStatisticsServiceImpl extends ServiceImpl<OrderStatisticsMappe
     @Override
     public List<OrderStatisticsDataVO> statisticsChart(StatisticsQueryParam statisticsQueryParam) {
         Date[] dates = StatisticsDateUtil.getDateArray(statisticsQueryParam);
-        QueryWrapper queryWrapper = new QueryWrapper();
-        // 已支付
-        queryWrapper.eq("pay_status", PayStatusEnum.PAID.name());
-        // 选择商家判定
-        queryWrapper.eq(StringUtils.isNotEmpty(statisticsQueryParam.getStoreId()), "store_id",
-                statisticsQueryParam.getStoreId());
-        // 查询时间区间
-        queryWrapper.between("create_time", dates[0], dates[1]);
-        // 格式化时间
-        queryWrapper.groupBy("DATE_FORMAT(create_time,'%Y-%m-%d')");
-        List<OrderStatisticsDataVO> orderStatisticsDataVOS = this.baseMapper.getOrderStatisticsData(queryWrapper);
+        // 已支付订单按天汇总，读取小时统计
+        List<OrderStatisticsDataVO> orderStatisticsDataVOS = orderStatisticsDataService.dailyPaidPrice(
+                statisticsQueryParam.getStoreId(), dates[0], dates[1]);
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(dates[0]);
 
@@ -6,7 +6,6 @@ import cn.lili.common.enums.ClientTypeEnum;
 import cn.lili.common.enums.ResultCode;
 import cn.lili.common.exception.ServiceException;
 import cn.lili.common.properties.StatisticsProperties;
-import cn.lili.common.security.enums.UserEnums;
 import cn.lili.common.utils.CurrencyUtil;
 import cn.lili.modules.member.entity.vo.MemberDistributionVO;
 import cn.lili.modules.statistics.entity.dos.PlatformViewData;
@@ -17,8 +16,8 @@ import cn.lili.modules.statistics.entity.vo.PlatformViewVO;
 import cn.lili.modules.statistics.mapper.PlatformViewMapper;
 import cn.lili.modules.statistics.service.MemberStatisticsService;
 import cn.lili.modules.statistics.service.PlatformViewService;
+import cn.lili.modules.statistics.service.TrafficCounterService;
 import cn.lili.modules.statistics.util.StatisticsDateUtil;
-import cn.lili.modules.statistics.util.StatisticsSuffix;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -58,6 +57,11 @@ public class PlatformViewServiceImpl extends ServiceImpl<PlatformViewMapper, Pla
      */
     @Autowired
     private Cache cache;
+    /**
+     * 流量计数
+     */
+    @Autowired
+    private TrafficCounterService trafficCounterService;
 
     @Override
     public Long online() {
@@ -66,8 +70,8 @@ public class PlatformViewServiceImpl extends ServiceImpl<PlatformViewMapper, Pla
         if (null != object) {
             return (Long) object;
         }
-        //这里统计的是有效的accessToken ，如果需要数据精确，需要调整accessToken的有效时间，开发人员建议2小时误差较为合适
-        Long num = Long.valueOf(cache.keys(CachePrefix.ACCESS_TOKEN.getPrefix(UserEnums.MEMBER) + "*").size());
+        //这里统计的是最近一段时间内有请求的会员，合并分钟活跃记录计数，不扫描accessToken
+        Long num = trafficCounterService.online();
         cache.put(CachePrefix.ONLINE_NUM.getPrefix(), num, statisticsProperties.getCurrentOnlineUpdate().longValue());
         return num;
     }
@@ -157,28 +161,11 @@ public class PlatformViewServiceImpl extends ServiceImpl<PlatformViewMapper, Pla
             switch (searchTypeEnum) {
                 case TODAY:
                     PlatformViewVO today = new PlatformViewVO();
-                    //查询 平台流量
-                    if (StringUtils.isEmpty(queryParam.getStoreId())) {
-                        //设置PV UV属性
-                        String pv = cache.getString(CachePrefix.PV.getPrefix() + StatisticsSuffix.suffix());
-                        if (pv == null) {
-                            pv = "0";
-                        }
-                        today.setPvNum(Long.valueOf(pv));
-                        today.setUvNum(cache.counter(CachePrefix.UV.getPrefix() + StatisticsSuffix.suffix()).longValue());
-                    }
-                    //店铺流量
-                    else {
-                        //设置PV UV属性
-
-                        String pv = cache.getString(CachePrefix.STORE_PV.getPrefix() + StatisticsSuffix.suffix(queryParam.getStoreId()));
-                        if (pv == null) {
-                            pv = "0";
-                        }
-                        today.setPvNum(Long.valueOf(pv));
-                        today.setUvNum(cache.counter(CachePrefix.STORE_UV.getPrefix() + StatisticsSuffix.suffix(queryParam.getStoreId())).longValue());
-                    }
-                    today.setDate(new Date());
+                    //店铺id为空时查询平台流量
+                    PlatformViewData todayData = trafficCounterService.today(queryParam.getStoreId());
+                    today.setPvNum(todayData.getPvNum());
+                    today.setUvNum(todayData.getUvNum());
+                    today.setDate(todayData.getDate());
                     result.add(today);
                     break;
                 case YESTERDAY:
@@ -231,10 +218,7 @@ public class PlatformViewServiceImpl extends ServiceImpl<PlatformViewMapper, Pla
         calendar.set(Calendar.MILLISECOND, 0);
         //如果是今天的统计，则从redis 中拿，否则从数据库中拿
         if (dates[0].equals(calendar.getTime())) {
-            if (StringUtils.isNotEmpty(queryParam.getStoreId())) {
-                return cache.counter(CachePrefix.UV.getPrefix() + StatisticsSuffix.suffix(queryParam.getStoreId())).intValue();
-            }
-            return cache.counter(CachePrefix.UV.getPrefix() + StatisticsSuffix.suffix()).intValue();
+            return trafficCounterService.today(queryParam.getStoreId()).getUvNum().intValue();
         } else {
             QueryWrapper queryWrapper = new QueryWrapper();
             queryWrapper.between("date", dates[0], dates[1]);
@@ -6,6 +6,7 @@ import cn.lili.common.security.enums.UserEnums;
 import cn.lili.common.utils.StringUtils;
 import cn.lili.modules.order.order.entity.dos.StoreFlow;
 import cn.lili.modules.order.order.entity.enums.FlowTypeEnum;
+import cn.lili.modules.statistics.entity.dos.OrderStatisticsData;
 import cn.lili.modules.statistics.entity.dto.GoodsStatisticsQueryParam;
 import cn.lili.modules.statistics.entity.dto.StatisticsQueryParam;
 import cn.lili.modules.statistics.entity.enums.StatisticsQuery;
@@ -14,6 +15,7 @@ import cn.lili.modules.statistics.entity.vo.GoodsStatisticsDataVO;
 import cn.lili.modules.statistics.entity.vo.OrderOverviewVO;
 import cn.lili.modules.statistics.entity.vo.StoreStatisticsDataVO;
 import cn.lili.modules.statistics.mapper.StoreFlowStatisticsMapper;
+import cn.lili.modules.statistics.service.OrderStatisticsDataService;
 import cn.lili.modules.statistics.service.OrderStatisticsService;
 import cn.lili.modules.statistics.service.StoreFlowStatisticsService;
 import cn.lili.modules.statistics.util.StatisticsDateUtil;
@@ -25,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +44,9 @@ public class StoreFlowStatisticsServiceImpl extends ServiceImpl<StoreFlowStatist
     @Autowired
     private OrderStatisticsService orderStatisticsService;
 
+    @Autowired
+    private OrderStatisticsDataService orderStatisticsDataService;
+
     @Override
     public List<GoodsStatisticsDataVO> getGoodsStatisticsData(GoodsStatisticsQueryParam goodsStatisticsQueryParam, Integer num) {
         //获取查询条件
@@ -71,33 +77,32 @@ public class StoreFlowStatisticsServiceImpl extends ServiceImpl<StoreFlowStatist
 
     @Override
     public Map<String, Object> getOrderStatisticsPrice() {
-        QueryWrapper queryWrapper = Wrappers.query();
-        //支付订单
-        queryWrapper.eq("flow_type", FlowTypeEnum.PAY.name());
-
         //商家查询，则增加商家判定
         AuthUser authUser = UserContext.getCurrentUser();
-        if (authUser.getRole().equals(UserEnums.STORE)) {
-            queryWrapper.eq("store_id", authUser.getStoreId());
-        }
-        //大于今天凌晨
-        queryWrapper.ge("create_time", cn.lili.common.utils.DateUtil.startOfTodDayTime());
-
-        queryWrapper.select("SUM(final_price) AS price , COUNT(0) AS num");
-        return this.getMap(queryWrapper);
+        String storeId = authUser.getRole().equals(UserEnums.STORE) ? authUser.getStoreId() : null;
+        //今天凌晨至今的支付订单
+        OrderStatisticsData statisticsData = orderStatisticsDataService.summary(storeId, cn.lili.common.utils.DateUtil.startOfTodDayTime(), new Date());
+        Map<String, Object> result = new HashMap<>(2);
+        result.put("price", statisticsData.getPayPrice());
+        result.put("num", statisticsData.getPayNum());
+        return result;
     }
 
 
     @Override
     public void overview(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam) {
+        //金额及数量读取小时统计，人数需要去重，仍查询订单及流水
+        OrderStatisticsData statisticsData = orderStatisticsDataService.summary(statisticsQueryParam.getStoreId(), dates[0], dates[1]);
+
         //下单统计
-        initOrder(dates, orderOverviewVO, statisticsQueryParam);
+        initOrder(dates, orderOverviewVO, statisticsQueryParam, statisticsData);
 
         //付款统计
-        initPayment(dates, orderOverviewVO, statisticsQueryParam);
+        initPayment(dates, orderOverviewVO, statisticsQueryParam, statisticsData);
 
         //退单统计
-        initAfterSale(dates, orderOverviewVO, statisticsQueryParam);
+        orderOverviewVO.setRefundOrderNum(statisticsData.getRefundNum());
+        orderOverviewVO.setRefundOrderPrice(statisticsData.getRefundPrice());
     }
 
     /**
@@ -105,26 +110,15 @@ public class StoreFlowStatisticsServiceImpl extends ServiceImpl<StoreFlowStatist
      *
      * @param dates
      * @param orderOverviewVO
+     * @param statisticsData  小时统计汇总
      */
-    private void initOrder(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam) {
-        //构建查询条件
-        QueryWrapper queryWrapper = Wrappers.query();
-        //时间区间
-        queryWrapper.between("create_time", dates[0], dates[1]);
-        //如果有店铺id传入，则查询店铺
-        if (StringUtils.isNotEmpty(statisticsQueryParam.getStoreId())) {
-            queryWrapper.eq("store_id", statisticsQueryParam.getStoreId());
-        }
-        //查询流水金额和订单数量
-        queryWrapper.select("SUM(flow_price) AS price , COUNT(0) AS num");
-        //获取查询结果
-        Map<String, Object> order = orderStatisticsService.getMap(queryWrapper);
+    private void initOrder(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam, OrderStatisticsData statisticsData) {
         //赋予订单数和流水金额
-        orderOverviewVO.setOrderNum(order != null && order.containsKey("num") ? Long.parseLong(order.get("num").toString()) : 0L);
-        orderOverviewVO.setOrderAmount(order != null && order.containsKey("price") ? Double.parseDouble(order.get("price").toString()) : 0L);
+        orderOverviewVO.setOrderNum(statisticsData.getOrderNum());
+        orderOverviewVO.setOrderAmount(statisticsData.getOrderPrice());
 
         //查询下单人数
-        queryWrapper = Wrappers.query();
+        QueryWrapper queryWrapper = Wrappers.query();
         //时间区间
         queryWrapper.between("create_time", dates[0], dates[1]);
         //如果有店铺id传入，则查询店铺
@@ -144,21 +138,12 @@ public class StoreFlowStatisticsServiceImpl extends ServiceImpl<StoreFlowStatist
      *
      * @param dates
      * @param orderOverviewVO
+     * @param statisticsData  小时统计汇总
      */
-    private void initPayment(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam) {
+    private void initPayment(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam, OrderStatisticsData statisticsData) {
         //付款订单数，付款金额
-        QueryWrapper queryWrapper = Wrappers.query();
-        queryWrapper.between("create_time", dates[0], dates[1]);
-        //如果有店铺id传入，则查询店铺
-        if (StringUtils.isNotEmpty(statisticsQueryParam.getStoreId())) {
-            queryWrapper.eq("store_id", statisticsQueryParam.getStoreId());
-        }
-        queryWrapper.select("SUM(final_price) AS price , COUNT(0) AS num");
-        queryWrapper.eq("flow_type", FlowTypeEnum.PAY.name());
-        Map payment = this.getMap(queryWrapper);
-
-        orderOverviewVO.setPaymentOrderNum(payment != null && payment.containsKey("num") ? Long.parseLong(payment.get("num").toString()) : 0L);
-        orderOverviewVO.setPaymentAmount(payment != null && payment.containsKey("price") ? Double.parseDouble(payment.get("price").toString()) : 0D);
+        orderOverviewVO.setPaymentOrderNum(statisticsData.getPayNum());
+        orderOverviewVO.setPaymentAmount(statisticsData.getPayPrice());
 
         //如果有店铺id传入，则查询店铺
         if (StringUtils.isNotEmpty(statisticsQueryParam.getStoreId())) {
@@ -168,29 +153,6 @@ public class StoreFlowStatisticsServiceImpl extends ServiceImpl<StoreFlowStatist
         }
     }
 
-    /**
-     * 订单统计-付款属性填充
-     *
-     * @param dates
-     * @param orderOverviewVO
-     */
-    private void initAfterSale(Date[] dates, OrderOverviewVO orderOverviewVO, StatisticsQueryParam statisticsQueryParam) {
-        //付款订单数，付款金额
-        QueryWrapper queryWrapper = Wrappers.query();
-        queryWrapper.between("create_time", dates[0], dates[1]);
-        queryWrapper.select("SUM(final_price) AS price , COUNT(0) AS num");
-        //如果有店铺id传入，则查询店铺
-        if (StringUtils.isNotEmpty(statisticsQueryParam.getStoreId())) {
-            queryWrapper.eq("store_id", statisticsQueryParam.getStoreId());
-        }
-        queryWrapper.eq("flow_type", FlowTypeEnum.REFUND.name());
-        Map payment = this.getMap(queryWrapper);
-
-        orderOverviewVO.setRefundOrderNum(payment != null && payment.containsKey("num") ? Long.parseLong(payment.get("num").toString()) : 0L);
-        orderOverviewVO.setRefundOrderPrice(payment != null && payment.containsKey("price") ? Double.parseDouble(payment.get("price").toString()) :
-                0D);
-    }
-
 
     /**
      * 组织查询条件
@@ -0,0 +1,227 @@
+package cn.lili.modules.statistics.serviceimpl;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUnit;
+import cn.hutool.core.date.DateUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.properties.StatisticsProperties;
+import cn.lili.modules.statistics.entity.dos.PlatformViewData;
+import cn.lili.modules.statistics.service.TrafficCounterService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流量实时计数业务层实现
+ *
+ * @author Chopper
+ * @since 2024-03-31
+ */
+@Slf4j
+@Service
+public class TrafficCounterServiceImpl implements TrafficCounterService {
+
+    /**
+     * 按日计数的保留天数，定时任务未执行时仍可补录
+     */
+    private static final long VIEW_TTL_DAYS = 3;
+
+    /**
+     * 分钟活跃会员的保留时间，需覆盖每小时在线人数统计的区间
+     */
+    private static final long ONLINE_TTL_MINUTES = 120;
+
+    /**
+     * 当前分钟已记录的会员，同一分钟内同一会员只写入一次
+     */
+    private volatile Set<String> activeMembers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * activeMembers 对应的分钟
+     */
+    private volatile long activeMinute;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private StatisticsProperties statisticsProperties;
+
+    @Override
+    public void pageView(String storeId, String ip) {
+        String day = day(new Date());
+        String pvKey = CachePrefix.VIEW_PV.getPrefix() + day;
+        String platformUvKey = uvKey(day, PLATFORM_STORE_ID);
+        String storeUvKey = PLATFORM_STORE_ID.equals(storeId) || StringUtils.isEmpty(storeId) ? null : uvKey(day, storeId);
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForHash().increment(pvKey, PLATFORM_STORE_ID, 1);
+                redisOperations.opsForHyperLogLog().add(platformUvKey, ip);
+                redisOperations.expire(pvKey, VIEW_TTL_DAYS, TimeUnit.DAYS);
+                redisOperations.expire(platformUvKey, VIEW_TTL_DAYS, TimeUnit.DAYS);
+                //店铺页面同时计入店铺流量
+                if (storeUvKey != null) {
+                    redisOperations.opsForHash().increment(pvKey, storeId, 1);
+                    redisOperations.opsForHyperLogLog().add(storeUvKey, ip);
+                    redisOperations.expire(storeUvKey, VIEW_TTL_DAYS, TimeUnit.DAYS);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void memberActive(String memberId) {
+        long minute = System.currentTimeMillis() / DateUnit.MINUTE.getMillis();
+        if (minute != activeMinute) {
+            synchronized (this) {
+                if (minute != activeMinute) {
+                    activeMembers = ConcurrentHashMap.newKeySet();
+                    activeMinute = minute;
+                }
+            }
+        }
+        if (!activeMembers.add(memberId)) {
+            return;
+        }
+        String key = onlineKey(minute);
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                    redisOperations.opsForHyperLogLog().add(key, memberId);
+                    redisOperations.expire(key, ONLINE_TTL_MINUTES + statisticsProperties.getOnlineMinutes(), TimeUnit.MINUTES);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            //写入失败时下次请求重试
+            activeMembers.remove(memberId);
+            log.error("记录会员活跃失败", e);
+        }
+    }
+
+    @Override
+    public Long online() {
+        long minute = System.currentTimeMillis() / DateUnit.MINUTE.getMillis();
+        return online(minute - statisticsProperties.getOnlineMinutes() + 1, minute + 1);
+    }
+
+    @Override
+    public Long online(Date startTime, Date endTime) {
+        return online(startTime.getTime() / DateUnit.MINUTE.getMillis(), endTime.getTime() / DateUnit.MINUTE.getMillis());
+    }
+
+    /**
+     * 分钟区间内的活跃会员数，多个key的PFCOUNT由redis合并后计数
+     *
+     * @param startMinute 开始分钟
+     * @param endMinute   结束分钟（不包含）
+     * @return 会员数
+     */
+    private Long online(long startMinute, long endMinute) {
+        if (endMinute <= startMinute) {
+            return 0L;
+        }
+        String[] keys = new String[(int) (endMinute - startMinute)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = onlineKey(startMinute + i);
+        }
+        return stringRedisTemplate.opsForHyperLogLog().size(keys);
+    }
+
+    @Override
+    public PlatformViewData today(String storeId) {
+        Date date = new Date();
+        String day = day(date);
+        String id = StringUtils.isEmpty(storeId) ? PLATFORM_STORE_ID : storeId;
+        String pvKey = CachePrefix.VIEW_PV.getPrefix() + day;
+        String uvKey = uvKey(day, id);
+        List<Object> values = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForHash().get(pvKey, id);
+                redisOperations.opsForHyperLogLog().size(uvKey);
+                return null;
+            }
+        });
+        PlatformViewData platformViewData = new PlatformViewData();
+        platformViewData.setStoreId(id);
+        platformViewData.setDate(date);
+        platformViewData.setPvNum(Convert.toLong(values.get(0), 0L));
+        platformViewData.setUvNum(Convert.toLong(values.get(1), 0L));
+        return platformViewData;
+    }
+
+    @Override
+    public List<PlatformViewData> viewData(Date date) {
+        String day = day(date);
+        Map<Object, Object> pvMap = stringRedisTemplate.opsForHash().entries(CachePrefix.VIEW_PV.getPrefix() + day);
+        List<PlatformViewData> result = new ArrayList<>(pvMap.size());
+        if (pvMap.isEmpty()) {
+            return result;
+        }
+        List<String> storeIds = new ArrayList<>(pvMap.size());
+        pvMap.keySet().forEach(storeId -> storeIds.add(storeId.toString()));
+        List<Object> uvValues = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                for (String storeId : storeIds) {
+                    redisOperations.opsForHyperLogLog().size(uvKey(day, storeId));
+                }
+                return null;
+            }
+        });
+        Date beginOfDay = DateUtil.beginOfDay(date);
+        for (int i = 0; i < storeIds.size(); i++) {
+            PlatformViewData platformViewData = new PlatformViewData();
+            platformViewData.setStoreId(storeIds.get(i));
+            platformViewData.setDate(beginOfDay);
+            platformViewData.setPvNum(Convert.toLong(pvMap.get(storeIds.get(i)), 0L));
+            platformViewData.setUvNum(Convert.toLong(uvValues.get(i), 0L));
+            result.add(platformViewData);
+        }
+        return result;
+    }
+
+    @Override
+    public void clear(Date date) {
+        String day = day(date);
+        String pvKey = CachePrefix.VIEW_PV.getPrefix() + day;
+        List<String> keys = new ArrayList<>();
+        stringRedisTemplate.opsForHash().keys(pvKey).forEach(storeId -> keys.add(uvKey(day, storeId.toString())));
+        keys.add(pvKey);
+        stringRedisTemplate.delete(keys);
+    }
+
+    private static String day(Date date) {
+        return DateUtil.format(date, DatePattern.PURE_DATE_PATTERN);
+    }
+
+    private static String uvKey(String day, String storeId) {
+        return CachePrefix.VIEW_UV.getPrefix() + day + "_" + storeId;
+    }
+
+    private static String onlineKey(long minute) {
+        return CachePrefix.ONLINE_MEMBER_MINUTE.getPrefix() + minute;
+    }
+}
@@ -51,6 +51,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * 店铺业务层实现
@@ -401,7 +402,9 @@ public class StoreServiceImpl extends ServiceImpl<StoreMapper, Store> implements
                 skuIdList.add(footPrint.getSkuId());
             }
         }
-        return goodsSkuService.getGoodsSkuByIdFromCache(skuIdList);
+        return goodsSkuService.getGoodsSkuByIdFromCache(skuIdList).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
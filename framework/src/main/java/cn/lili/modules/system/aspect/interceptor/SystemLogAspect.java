@@ -3,10 +3,11 @@ package cn.lili.modules.system.aspect.interceptor;
 import cn.lili.common.security.AuthUser;
 import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.UserEnums;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
 import cn.lili.common.utils.IpHelper;
 import cn.lili.common.utils.IpUtils;
 import cn.lili.common.utils.SpelUtil;
-import cn.lili.common.utils.ThreadPoolUtil;
 import cn.lili.modules.permission.entity.vo.SystemLogVO;
 import cn.lili.modules.permission.service.SystemLogService;
 import cn.lili.modules.system.aspect.annotation.SystemLogPoint;
@@ -44,6 +45,9 @@ public class SystemLogAspect {
     @Autowired
     private SystemLogService systemLogService;
 
+    @Autowired
+    private ExecutorManager executorManager;
+
     @Autowired
     private HttpServletRequest request;
 
@@ -123,7 +127,7 @@ public class SystemLogAspect {
             Long usedTime = endTime - beginTime;
             systemLogVO.setCostTime(usedTime.intValue());
             //调用线程保存
-            ThreadPoolUtil.getPool().execute(new SaveSystemLogThread(systemLogVO, systemLogService));
+            executorManager.execute(ExecutorEnum.LOG, new SaveSystemLogThread(systemLogVO, systemLogService));
 
 
             BEGIN_TIME_THREAD_LOCAL.remove();
@@ -16,6 +16,7 @@ import cn.lili.modules.system.entity.dos.Setting;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,25 +45,56 @@ public class MaollarTierServiceImpl implements MaollarTierService {
     // 扣除这部分是为了防止汇率波动导致应拨备金不足
     private static final BigDecimal SAFETY_BUFFER = new BigDecimal("0.99");
 
+    /**
+     * 档位数量，档位 n 取值 1 ~ MAX_TIER - 1
+     */
+    private static final int MAX_TIER = 50;
+
+    /**
+     * 档位表：各档位上限 (单位: UNIT)、积分赠送比例、基金拨备比例，启动时一次算好，查询时二分定位
+     */
+    private static final double[] THRESHOLDS = new double[MAX_TIER];
+    private static final double[] RATES = new double[MAX_TIER];
+    private static final double[] FUND_RATES = new double[MAX_TIER];
+
+    static {
+        for (int n = 0; n < MAX_TIER; n++) {
+            long threshold = calculateFibonacci(n);
+            THRESHOLDS[n] = threshold;
+            if (n > 0) {
+                RATES[n] = 1000.0 / (double) Math.max(1, threshold - calculateFibonacci(n - 1));
+                // 每达到一个里程碑降低 0.2%
+                // n=1 (0-100K) -> 10.0% - (1-1)*0.2% = 10.0%
+                // n=2 (100K-200K) -> 10.0% - (2-1)*0.2% = 9.8%
+                // n=3 (200K-300K) -> 10.0% - (3-1)*0.2% = 9.6%
+                FUND_RATES[n] = Math.max(0.005, 0.10 - (n - 1) * 0.002); // 设置 0.5% 为保底比例
+            }
+        }
+    }
+
     @Override
     public double getCurrentRate(double totalSalesUSD) {
         if (totalSalesUSD <= 0)
             return 1000.0;
-        double currentUnits = totalSalesUSD / UNIT;
-        int n = 1;
-        while (n < 50) {
-            long threshold = calculateFibonacci(n);
-            if (currentUnits <= (double) threshold) {
-                long prevThreshold = calculateFibonacci(n - 1);
-                long width = threshold - prevThreshold;
-                return 1000.0 / (double) Math.max(1, width);
-            }
-            n++;
+        int n = tierOf(totalSalesUSD / UNIT);
+        return n > 0 ? RATES[n] : 1.0;
+    }
+
+    /**
+     * 所属档位：上限不小于当前销售额的最小档位
+     *
+     * @param currentUnits 当前销售额 (单位: UNIT)
+     * @return 档位，超出全部档位时返回 -1
+     */
+    private static int tierOf(double currentUnits) {
+        int index = Arrays.binarySearch(THRESHOLDS, 1, MAX_TIER, currentUnits);
+        if (index < 0) {
+            index = -index - 1;
         }
-        return 1.0;
+        return index < MAX_TIER ? index : -1;
     }
 
-    private long calculateFibonacci(int n) {
+    private static long calculateFibonacci(int n) {
         if (n <= 0)
             return 0;
         if (n == 1)
@@ -99,21 +131,8 @@ public class MaollarTierServiceImpl implements MaollarTierService {
     public double getFundRate(double totalSalesUSD) {
         if (totalSalesUSD <= 0)
             return 0.10;
-        double currentUnits = totalSalesUSD / UNIT;
-        int n = 1;
-        while (n < 50) {
-            long threshold = calculateFibonacci(n);
-            if (currentUnits <= (double) threshold) {
-                // 每达到一个里程碑降低 0.2%
-                // n=1 (0-100K) -> 10.0% - (1-1)*0.2% = 10.0%
-                // n=2 (100K-200K) -> 10.0% - (2-1)*0.2% = 9.8%
-                // n=3 (200K-300K) -> 10.0% - (3-1)*0.2% = 9.6%
-                double rate = 0.10 - (n - 1) * 0.002;
-                return Math.max(0.005, rate); // 设置 0.5% 为保底比例
-            }
-            n++;
-        }
-        return 0.01;
+        int n = tierOf(totalSalesUSD / UNIT);
+        return n > 0 ? FUND_RATES[n] : 0.01;
     }
 
     @Override
@@ -131,19 +150,13 @@ public class MaollarTierServiceImpl implements MaollarTierService {
         Map<String, Object> result = new HashMap<>();
         result.put("totalSalesUSD", totalSalesUSD);
         double currentUnits = totalSalesUSD / UNIT;
-        int n = 1;
-        while (n < 50) {
-            long threshold = calculateFibonacci(n);
-            if (currentUnits <= (double) threshold) {
-                long prevThreshold = calculateFibonacci(n - 1);
-                double tierWidth = (double) (threshold - prevThreshold);
-                double progressInTier = (tierWidth <= 0) ? 1.0 : (currentUnits - prevThreshold) / tierWidth;
-                result.put("tier", n);
-                double remainingPoints = POINTS_PER_TIER * (1.0 - progressInTier) * MEOW_COIN_SCALE;
-                result.put("remainingPoints", Math.max(0, remainingPoints));
-                break;
-            }
-            n++;
+        int n = tierOf(currentUnits);
+        if (n > 0) {
+            double tierWidth = THRESHOLDS[n] - THRESHOLDS[n - 1];
+            double progressInTier = (tierWidth <= 0) ? 1.0 : (currentUnits - THRESHOLDS[n - 1]) / tierWidth;
+            result.put("tier", n);
+            double remainingPoints = POINTS_PER_TIER * (1.0 - progressInTier) * MEOW_COIN_SCALE;
+            result.put("remainingPoints", Math.max(0, remainingPoints));
         }
         result.put("pointsPerTier", POINTS_PER_TIER * MEOW_COIN_SCALE);
         result.put("decimals", 6);
@@ -156,19 +169,10 @@ public class MaollarTierServiceImpl implements MaollarTierService {
      */
     public void checkAndTriggerMilestone(double totalSalesUSD) {
         double currentUnits = totalSalesUSD / UNIT;
-        int expectedMilestone = 0;
-        
-        // 查找当前应达到的最高里程碑
-        int n = 1;
-        while (n < 50) {
-            long threshold = calculateFibonacci(n);
-            if (currentUnits >= (double) threshold) {
-                expectedMilestone = n;
-            } else {
-                break;
-            }
-            n++;
-        }
+
+        // 查找当前应达到的最高里程碑：上限不大于当前销售额的最大档位
+        int index = Arrays.binarySearch(THRESHOLDS, 1, MAX_TIER, currentUnits);
+        int expectedMilestone = index > 0 ? index : -index - 2;
         
         Setting setting = settingService.get(SettingEnum.MAOLLAR_MILESTONE_SETTING.name());
         MaollarMilestoneSetting milestoneSetting;
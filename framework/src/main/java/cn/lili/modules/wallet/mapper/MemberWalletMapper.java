@@ -3,6 +3,8 @@ package cn.lili.modules.wallet.mapper;
 
 import cn.lili.modules.wallet.entity.dos.MemberWallet;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * 会员预存款数据处理层
@@ -12,4 +14,37 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface MemberWalletMapper extends BaseMapper<MemberWallet> {
 
-}
\ No newline at end of file
+    /**
+     * 条件变动余额，变动后余额不能小于0
+     *
+     * @param memberId 会员id
+     * @param money    变动金额，正数增加，负数扣减
+     * @return 影响行数，0表示钱包不存在或余额不足
+     */
+    @Update("UPDATE li_member_wallet SET member_wallet = member_wallet + #{money} " +
+            "WHERE member_id = #{memberId} AND member_wallet + #{money} >= 0")
+    int changeWallet(@Param("memberId") String memberId, @Param("money") Double money);
+
+    /**
+     * 条件在余额与冻结金额之间转移，转移后两者均不能小于0
+     *
+     * @param memberId 会员id
+     * @param money    转移金额，正数由余额转入冻结金额，负数由冻结金额转回余额
+     * @return 影响行数，0表示钱包不存在或金额不足
+     */
+    @Update("UPDATE li_member_wallet SET member_wallet = member_wallet - #{money}, member_frozen_wallet = member_frozen_wallet + #{money} " +
+            "WHERE member_id = #{memberId} AND member_wallet - #{money} >= 0 AND member_frozen_wallet + #{money} >= 0")
+    int freezeWallet(@Param("memberId") String memberId, @Param("money") Double money);
+
+    /**
+     * 条件变动冻结金额，变动后冻结金额不能小于0
+     *
+     * @param memberId 会员id
+     * @param money    变动金额，正数增加，负数扣减
+     * @return 影响行数，0表示钱包不存在或冻结金额不足
+     */
+    @Update("UPDATE li_member_wallet SET member_frozen_wallet = member_frozen_wallet + #{money} " +
+            "WHERE member_id = #{memberId} AND member_frozen_wallet + #{money} >= 0")
+    int changeFrozenWallet(@Param("memberId") String memberId, @Param("money") Double money);
+
+}
@@ -24,4 +24,13 @@ public interface WalletLogService extends IService<WalletLog> {
      */
     IPage<WalletLog> depositLogPage(PageVO page, DepositQueryVO depositQueryVO);
 
-}
\ No newline at end of file
+    /**
+     * 记录钱包变动日志
+     * <p>
+     * 事务中的日志暂存，提交前批量写入，与余额变动同时提交或回滚；无事务时直接写入
+     *
+     * @param walletLog 钱包变动日志
+     */
+    void record(WalletLog walletLog);
+
+}
@@ -5,7 +5,6 @@ import cn.lili.common.exception.ServiceException;
 import cn.lili.common.properties.RocketmqCustomProperties;
 import cn.lili.common.security.AuthUser;
 import cn.lili.common.security.context.UserContext;
-import cn.lili.common.utils.CurrencyUtil;
 import cn.lili.common.utils.SnowFlake;
 import cn.lili.common.utils.StringUtils;
 import cn.lili.modules.member.entity.dos.Member;
@@ -31,7 +30,9 @@ import cn.lili.modules.wallet.service.MemberWithdrawApplyService;
 import cn.lili.modules.wallet.service.WalletLogService;
 import cn.lili.rocketmq.RocketmqSendCallbackBuilder;
 import cn.lili.rocketmq.tags.MemberTagsEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.google.gson.Gson;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
@@ -42,6 +43,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
+import java.util.function.IntSupplier;
 
 /**
  * 会员余额业务层实现
@@ -102,72 +104,56 @@ public class MemberWalletServiceImpl extends ServiceImpl<MemberWalletMapper, Mem
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean increaseWithdrawal(MemberWalletUpdateDTO memberWalletUpdateDTO) {
-        // 检测会员预存款讯息是否存在，如果不存在则新建
-        MemberWallet memberWallet = this.checkMemberWallet(memberWalletUpdateDTO.getMemberId());
-        // 余额变动
-        memberWallet
-                .setMemberWallet(CurrencyUtil.add(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney()));
-        memberWallet.setMemberFrozenWallet(
-                CurrencyUtil.sub(memberWallet.getMemberFrozenWallet(), memberWalletUpdateDTO.getMoney()));
-        this.updateById(memberWallet);
+        // 冻结金额转回余额
+        String memberName = this.update(memberWalletUpdateDTO.getMemberId(),
+                () -> this.baseMapper.freezeWallet(memberWalletUpdateDTO.getMemberId(), -memberWalletUpdateDTO.getMoney()));
+        if (memberName == null) {
+            throw new ServiceException(ResultCode.WALLET_WITHDRAWAL_FROZEN_AMOUNT_INSUFFICIENT);
+        }
         // 新增预存款日志
-        WalletLog walletLog = new WalletLog(memberWallet.getMemberName(), memberWalletUpdateDTO);
-        walletLogService.save(walletLog);
+        walletLogService.record(new WalletLog(memberName, memberWalletUpdateDTO));
         return true;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean increase(MemberWalletUpdateDTO memberWalletUpdateDTO) {
-        // 检测会员预存款讯息是否存在，如果不存在则新建
-        MemberWallet memberWallet = this.checkMemberWallet(memberWalletUpdateDTO.getMemberId());
         // 新增预存款
-        memberWallet
-                .setMemberWallet(CurrencyUtil.add(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney()));
-        this.baseMapper.updateById(memberWallet);
+        String memberName = this.update(memberWalletUpdateDTO.getMemberId(),
+                () -> this.baseMapper.changeWallet(memberWalletUpdateDTO.getMemberId(), memberWalletUpdateDTO.getMoney()));
+        if (memberName == null) {
+            return false;
+        }
         // 新增预存款日志
-        WalletLog walletLog = new WalletLog(memberWallet.getMemberName(), memberWalletUpdateDTO);
-        walletLogService.save(walletLog);
+        walletLogService.record(new WalletLog(memberName, memberWalletUpdateDTO));
         return true;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean reduce(MemberWalletUpdateDTO memberWalletUpdateDTO) {
-        // 检测会员预存款讯息是否存在，如果不存在则新建
-        MemberWallet memberWallet = this.checkMemberWallet(memberWalletUpdateDTO.getMemberId());
-        // 减少预存款，需要校验 如果不够扣减预存款
-        if (0 > CurrencyUtil.sub(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney())) {
+        // 减少预存款，余额不足时不扣减
+        String memberName = this.update(memberWalletUpdateDTO.getMemberId(),
+                () -> this.baseMapper.changeWallet(memberWalletUpdateDTO.getMemberId(), -memberWalletUpdateDTO.getMoney()));
+        if (memberName == null) {
             return false;
         }
-        memberWallet
-                .setMemberWallet(CurrencyUtil.sub(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney()));
-        // 保存记录
-        this.updateById(memberWallet);
         // 新增预存款日志
-        WalletLog walletLog = new WalletLog(memberWallet.getMemberName(), memberWalletUpdateDTO, true);
-        walletLogService.save(walletLog);
+        walletLogService.record(new WalletLog(memberName, memberWalletUpdateDTO, true));
         return true;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean reduceWithdrawal(MemberWalletUpdateDTO memberWalletUpdateDTO) {
-        // 检测会员预存款讯息是否存在，如果不存在则新建
-        MemberWallet memberWallet = this.checkMemberWallet(memberWalletUpdateDTO.getMemberId());
-        // 减少预存款，需要校验 如果不够扣减预存款
-        if (0 > CurrencyUtil.sub(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney())) {
+        // 余额转入冻结金额，余额不足时不扣减
+        String memberName = this.update(memberWalletUpdateDTO.getMemberId(),
+                () -> this.baseMapper.freezeWallet(memberWalletUpdateDTO.getMemberId(), memberWalletUpdateDTO.getMoney()));
+        if (memberName == null) {
             throw new ServiceException(ResultCode.WALLET_WITHDRAWAL_INSUFFICIENT);
         }
-        memberWallet
-                .setMemberWallet(CurrencyUtil.sub(memberWallet.getMemberWallet(), memberWalletUpdateDTO.getMoney()));
-        memberWallet.setMemberFrozenWallet(
-                CurrencyUtil.add(memberWallet.getMemberFrozenWallet(), memberWalletUpdateDTO.getMoney()));
-        // 修改余额
-        this.updateById(memberWallet);
         // 新增预存款日志
-        WalletLog walletLog = new WalletLog(memberWallet.getMemberName(), memberWalletUpdateDTO, true);
-        walletLogService.save(walletLog);
+        walletLogService.record(new WalletLog(memberName, memberWalletUpdateDTO, true));
         return true;
 
     }
@@ -175,21 +161,38 @@ public class MemberWalletServiceImpl extends ServiceImpl<MemberWalletMapper, Mem
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Boolean reduceFrozen(MemberWalletUpdateDTO memberWalletUpdateDTO) {
-        // 检测会员预存款讯息是否存在，如果不存在则新建
-        MemberWallet memberWallet = this.checkMemberWallet(memberWalletUpdateDTO.getMemberId());
-        // 校验此金额是否超过冻结金额
-        if (0 > CurrencyUtil.sub(memberWallet.getMemberFrozenWallet(), memberWalletUpdateDTO.getMoney())) {
+        // 扣减冻结金额，不能超过冻结金额
+        String memberName = this.update(memberWalletUpdateDTO.getMemberId(),
+                () -> this.baseMapper.changeFrozenWallet(memberWalletUpdateDTO.getMemberId(), -memberWalletUpdateDTO.getMoney()));
+        if (memberName == null) {
             throw new ServiceException(ResultCode.WALLET_WITHDRAWAL_FROZEN_AMOUNT_INSUFFICIENT);
         }
-        memberWallet.setMemberFrozenWallet(
-                CurrencyUtil.sub(memberWallet.getMemberFrozenWallet(), memberWalletUpdateDTO.getMoney()));
-        this.updateById(memberWallet);
         // 新增预存款日志
-        WalletLog walletLog = new WalletLog(memberWallet.getMemberName(), memberWalletUpdateDTO, true);
-        walletLogService.save(walletLog);
+        walletLogService.record(new WalletLog(memberName, memberWalletUpdateDTO, true));
         return true;
     }
 
+    /**
+     * 执行余额条件更新，由数据库在一条语句内完成校验和变动，并发变动无需先读后写
+     * 未更新时检测会员预存款是否存在，不存在则新建后重试一次
+     *
+     * @param memberId 会员id
+     * @param updater  条件更新，返回影响行数
+     * @return 更新成功返回会员名称，金额不足返回null
+     */
+    private String update(String memberId, IntSupplier updater) {
+        if (updater.getAsInt() > 0) {
+            MemberWallet memberWallet = this.getOne(new LambdaQueryWrapper<MemberWallet>()
+                    .select(MemberWallet::getMemberName).eq(MemberWallet::getMemberId, memberId), false);
+            return memberWallet == null || memberWallet.getMemberName() == null ? "" : memberWallet.getMemberName();
+        }
+        MemberWallet memberWallet = this.checkMemberWallet(memberId);
+        if (updater.getAsInt() > 0) {
+            return memberWallet.getMemberName();
+        }
+        return null;
+    }
+
     /**
      * 检测会员预存款是否存在，如果不存在则新建
      *
@@ -214,15 +217,10 @@ public class MemberWalletServiceImpl extends ServiceImpl<MemberWalletMapper, Mem
     public void setMemberWalletPassword(Member member, String password) {
         // 对密码进行加密
         String pwd = new BCryptPasswordEncoder().encode(password);
-        // 校验会员预存款是否存在
-        QueryWrapper<MemberWallet> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("member_id", member.getId());
-        MemberWallet memberWallet = this.getOne(queryWrapper);
-        // 如果 预存款信息不为空 执行设置密码
-        if (memberWallet != null) {
-            memberWallet.setWalletPassword(pwd);
-            this.updateById(memberWallet);
-        }
+        // 只更新密码，不覆盖并发修改的余额；预存款信息不存在时不更新
+        this.update(new LambdaUpdateWrapper<MemberWallet>()
+                .eq(MemberWallet::getMemberId, member.getId())
+                .set(MemberWallet::getWalletPassword, pwd));
     }
 
     @Override
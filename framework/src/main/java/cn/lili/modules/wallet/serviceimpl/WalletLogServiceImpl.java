@@ -11,8 +11,12 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * 预存款日志业务层实现
@@ -40,4 +44,37 @@ public class WalletLogServiceImpl extends ServiceImpl<WalletLogMapper, WalletLog
         //查询返回数据
         return this.page(PageUtil.initPage(page), depositLogQueryWrapper);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void record(WalletLog walletLog) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.save(walletLog);
+            return;
+        }
+        //同一事务共用一个暂存列表，挂起的外层事务不可见，REQUIRES_NEW 的内层事务单独写入
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingWalletLogs pendingWalletLogs) {
+                pendingWalletLogs.walletLogs.add(walletLog);
+                return;
+            }
+        }
+        PendingWalletLogs pendingWalletLogs = new PendingWalletLogs();
+        pendingWalletLogs.walletLogs.add(walletLog);
+        TransactionSynchronizationManager.registerSynchronization(pendingWalletLogs);
+    }
+
+    /**
+     * 事务内暂存的钱包变动日志，提交前批量写入
+     */
+    private class PendingWalletLogs implements TransactionSynchronization {
+
+        private final List<WalletLog> walletLogs = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!walletLogs.isEmpty()) {
+                saveBatch(walletLogs);
+            }
+        }
+    }
+}
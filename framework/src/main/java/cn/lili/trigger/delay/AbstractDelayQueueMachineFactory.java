@@ -1,12 +1,20 @@
 package cn.lili.trigger.delay;
 
-import cn.lili.cache.Cache;
 import cn.lili.common.utils.DateUtil;
+import cn.lili.trigger.util.DelayQueueTools;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 /**
  * 延时队列工厂
+ * <p>
+ * 任务按id分散到多个分片，每个分片由任务索引zset及任务内容hash组成，
+ * 分片数量需与消费端 lili.delay-queue.shards 配置一致
  *
  * @author paulG
  * @since 2020/11/7
@@ -14,25 +22,59 @@ import org.springframework.beans.factory.annotation.Autowired;
 @Slf4j
 public abstract class AbstractDelayQueueMachineFactory {
 
+    /**
+     * 分片数量
+     */
+    @Value("${lili.delay-queue.shards:4}")
+    private Integer shards;
+
     @Autowired
-    private Cache cache;
+    private StringRedisTemplate stringRedisTemplate;
 
     /**
-     * 插入任务id
+     * 插入任务
      *
      * @param jobId       任务id(队列内唯一)
+     * @param payload     任务内容
      * @param triggerTime 执行时间 时间戳（毫秒）
      * @return 是否插入成功
      */
-    public boolean addJob(String jobId, Long triggerTime) {
-
-        //redis 中排序时间
-        long delaySeconds = triggerTime / 1000;
-        //增加延时任务 参数依次为：队列名称、执行时间、任务id
-        boolean result = cache.zAdd(setDelayQueueName(), delaySeconds, jobId);
-        log.info("增加延时任务, 缓存key {}, 执行时间 {},任务id {}", setDelayQueueName(), DateUtil.toString(triggerTime), jobId);
-        return result;
+    public boolean addJob(String jobId, String payload, Long triggerTime) {
+        int shard = DelayQueueTools.shard(jobId, shards);
+        String indexKey = DelayQueueTools.indexKey(setDelayQueueName(), shard);
+        String payloadKey = DelayQueueTools.payloadKey(setDelayQueueName(), shard);
+        //先写入任务内容再写入索引，保证取出任务时内容已存在
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForHash().put(payloadKey, jobId, payload);
+                redisOperations.opsForZSet().add(indexKey, jobId, triggerTime);
+                return null;
+            }
+        });
+        log.info("增加延时任务, 缓存key {}, 执行时间 {},任务id {}", indexKey, DateUtil.toString(triggerTime), jobId);
+        return true;
+    }
 
+    /**
+     * 删除任务，已被消费端取出的任务由执行前的校验取消
+     *
+     * @param jobId 任务id
+     */
+    public void removeJob(String jobId) {
+        int shard = DelayQueueTools.shard(jobId, shards);
+        String indexKey = DelayQueueTools.indexKey(setDelayQueueName(), shard);
+        String payloadKey = DelayQueueTools.payloadKey(setDelayQueueName(), shard);
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForZSet().remove(indexKey, jobId);
+                redisOperations.opsForHash().delete(payloadKey, jobId);
+                return null;
+            }
+        });
     }
 
 
@@ -39,12 +39,14 @@ public class RocketmqTimerTrigger implements TimeTrigger {
         String uniqueKey = timeTriggerMsg.getUniqueKey();
         if (StringUtils.isEmpty(uniqueKey)) {
             uniqueKey = StringUtils.getRandStr(10);
+            //执行时按消息中的唯一key校验任务是否取消，需要一并写入
+            timeTriggerMsg.setUniqueKey(uniqueKey);
         }
         //执行任务key
         String generateKey = DelayQueueTools.generateKey(timeTriggerMsg.getTriggerExecutor(), timeTriggerMsg.getTriggerTime(), uniqueKey);
         this.cache.put(generateKey, 1);
-        //设置延时任务
-        if (Boolean.TRUE.equals(promotionDelayQueue.addJob(JSONUtil.toJsonStr(timeTriggerMsg), timeTriggerMsg.getTriggerTime()))) {
+        //设置延时任务，任务标识作为队列内的任务id
+        if (promotionDelayQueue.addJob(generateKey, JSONUtil.toJsonStr(timeTriggerMsg), timeTriggerMsg.getTriggerTime())) {
             log.info("延时任务标识： {}", generateKey);
             log.info("定时执行在【" + DateUtil.toString(timeTriggerMsg.getTriggerTime(), "yyyy-MM-dd HH:mm:ss") + "】，消费【" + timeTriggerMsg.getParam().toString() + "】");
         } else {
@@ -95,5 +97,10 @@ public class RocketmqTimerTrigger implements TimeTrigger {
         String generateKey = DelayQueueTools.generateKey(executorName, triggerTime, uniqueKey);
         log.info("删除延时任务{}", generateKey);
         this.cache.remove(generateKey);
+        promotionDelayQueue.removeJob(generateKey);
+        //升级前写入的任务
+        String legacyKey = DelayQueueTools.legacyKey(executorName, triggerTime, uniqueKey);
+        this.cache.remove(legacyKey);
+        promotionDelayQueue.removeJob(legacyKey);
     }
 }
@@ -28,7 +28,7 @@ public class DelayQueueTools {
 
 
     /**
-     * 生成延时任务标识key
+     * 生成延时任务标识key，同时作为延时队列内的任务id，直接拼接各字段以免不同任务互相覆盖
      *
      * @param executorName 执行器beanId
      * @param triggerTime  执行时间
@@ -36,7 +36,52 @@ public class DelayQueueTools {
      * @return 延时任务标识key
      */
     public static String generateKey(String executorName, Long triggerTime, String uniqueKey) {
+        return PREFIX + executorName + "_" + triggerTime + "_" + uniqueKey;
+    }
+
+    /**
+     * 升级前的延时任务标识key，取哈希值可能冲突，只用于识别及删除升级前写入的任务
+     *
+     * @param executorName 执行器beanId
+     * @param triggerTime  执行时间
+     * @param uniqueKey    自定义表示
+     * @return 延时任务标识key
+     */
+    public static String legacyKey(String executorName, Long triggerTime, String uniqueKey) {
         return PREFIX + (executorName + triggerTime + uniqueKey).hashCode();
     }
 
+    /**
+     * 延时任务所在分片
+     *
+     * @param jobId  任务id
+     * @param shards 分片数量
+     * @return 分片序号
+     */
+    public static int shard(String jobId, int shards) {
+        return Math.floorMod(jobId.hashCode(), shards);
+    }
+
+    /**
+     * 延时队列分片的任务索引key，zset结构，score为执行时间（毫秒）
+     *
+     * @param queueName 队列名称
+     * @param shard     分片序号
+     * @return 索引key
+     */
+    public static String indexKey(String queueName, int shard) {
+        return "{" + queueName + "_" + shard + "}_INDEX";
+    }
+
+    /**
+     * 延时队列分片的任务内容key，hash结构，与索引key在同一slot
+     *
+     * @param queueName 队列名称
+     * @param shard     分片序号
+     * @return 任务内容key
+     */
+    public static String payloadKey(String queueName, int shard) {
+        return "{" + queueName + "_" + shard + "}_PAYLOAD";
+    }
+
 }
@@ -0,0 +1,44 @@
+-- 领取优惠券，校验时间、发行数量及每人限领数量后扣减，并记录待入库的领取记录
+-- KEYS[1] 优惠券配额（hash：publish 发行数量，limit 每人限领，received 已领取，start/end 起止时间毫秒）
+-- KEYS[2] 会员已领取数量（hash），KEYS[3] 待入库的领取记录（list）
+-- ARGV[1] 会员id，ARGV[2] 当前时间（毫秒），ARGV[3] 领取记录，ARGV[4] 会员在数据库中的领取数量，未查询时为空
+-- 返回 1 领取成功，-1 配额未加载，-2 不在领取时间内，-3 数量不足，-4 超出限领数量，-5 会员领取数量未加载
+
+if redis.call("exists", KEYS[1]) == 0 then
+    return -1
+end
+
+local quota = redis.call("hmget", KEYS[1], "publish", "limit", "received", "start", "end")
+local publish = tonumber(quota[1])
+local limit = tonumber(quota[2])
+local received = tonumber(quota[3])
+local startTime = tonumber(quota[4])
+local endTime = tonumber(quota[5])
+local now = tonumber(ARGV[2])
+
+if startTime == 0 or now < startTime or (endTime > 0 and now > endTime) then
+    return -2
+end
+if publish > 0 and received >= publish then
+    return -3
+end
+
+-- 不限领时不记录会员领取数量
+if limit > 0 then
+    local have = redis.call("hget", KEYS[2], ARGV[1])
+    if not have then
+        if ARGV[4] == "" then
+            return -5
+        end
+        have = ARGV[4]
+        redis.call("hset", KEYS[2], ARGV[1], have)
+    end
+    if tonumber(have) >= limit then
+        return -4
+    end
+    redis.call("hincrby", KEYS[2], ARGV[1], 1)
+end
+
+redis.call("hincrby", KEYS[1], "received", 1)
+redis.call("rpush", KEYS[3], ARGV[3])
+return 1
@@ -0,0 +1,14 @@
+-- 定向发放入库后累加已加载的已领取数量，未加载的在加载时从数据库读取
+-- KEYS[1] 优惠券配额（hash），KEYS[2] 会员已领取数量（hash）
+-- ARGV[1] 发放总数量，ARGV[2..] 会员id、发放数量依次排列
+-- 返回 1
+
+if redis.call("exists", KEYS[1]) == 1 then
+    redis.call("hincrby", KEYS[1], "received", tonumber(ARGV[1]))
+end
+for i = 2, #ARGV, 2 do
+    if redis.call("hexists", KEYS[2], ARGV[i]) == 1 then
+        redis.call("hincrby", KEYS[2], ARGV[i], tonumber(ARGV[i + 1]))
+    end
+end
+return 1
@@ -0,0 +1,9 @@
+-- 加载优惠券配额，已领取数量为数据库中的数量加上待入库及处理中的领取记录数量
+-- 调用方需持有该优惠券的领取记录入库锁，保证没有正在入库的记录，处理中的记录为节点宕机遗留，按未入库计算
+-- KEYS[1] 优惠券配额（hash），KEYS[2] 待入库的领取记录（list），KEYS[3] 处理中的领取记录（list）
+-- ARGV[1] 发行数量，ARGV[2] 每人限领数量，ARGV[3] 开始时间（毫秒），ARGV[4] 结束时间（毫秒），ARGV[5] 数据库中的已领取数量
+-- 返回 已领取数量
+
+local received = tonumber(ARGV[5]) + redis.call("llen", KEYS[2]) + redis.call("llen", KEYS[3])
+redis.call("hset", KEYS[1], "publish", ARGV[1], "limit", ARGV[2], "start", ARGV[3], "end", ARGV[4], "received", received)
+return received
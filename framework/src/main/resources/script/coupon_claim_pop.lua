@@ -0,0 +1,13 @@
+-- 批量取出待入库的领取记录，移入处理中列表，入库提交后由调用方删除处理中列表
+-- 调用方需持有该优惠券的领取记录入库锁，且处理中列表为空
+-- KEYS[1] 待入库的领取记录（list），KEYS[2] 处理中的领取记录（list）
+-- ARGV[1] 单次数量
+-- 返回 领取记录
+
+local count = tonumber(ARGV[1])
+local items = redis.call("lrange", KEYS[1], 0, count - 1)
+if #items > 0 then
+    redis.call("ltrim", KEYS[1], #items, -1)
+    redis.call("rpush", KEYS[2], unpack(items))
+end
+return items
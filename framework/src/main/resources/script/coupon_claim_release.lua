@@ -0,0 +1,15 @@
+-- 领取所在事务回滚时释放领取，删除尚未入库的领取记录并回退已领取数量
+-- KEYS[1] 优惠券配额（hash），KEYS[2] 会员已领取数量（hash），KEYS[3] 待入库的领取记录（list）
+-- ARGV[1] 会员id，ARGV[2] 领取记录
+-- 返回 1 已释放，0 记录已取出入库，无法释放
+
+if redis.call("lrem", KEYS[3], 1, ARGV[2]) == 0 then
+    return 0
+end
+if redis.call("exists", KEYS[1]) == 1 then
+    redis.call("hincrby", KEYS[1], "received", -1)
+end
+if redis.call("hexists", KEYS[2], ARGV[1]) == 1 then
+    redis.call("hincrby", KEYS[2], ARGV[1], -1)
+end
+return 1
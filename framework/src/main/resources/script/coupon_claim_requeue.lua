@@ -0,0 +1,11 @@
+-- 将处理中的领取记录按原顺序放回待入库列表头部，用于入库失败及节点宕机遗留的记录
+-- 调用方需持有该优惠券的领取记录入库锁
+-- KEYS[1] 待入库的领取记录（list），KEYS[2] 处理中的领取记录（list）
+-- 返回 放回的数量
+
+local items = redis.call("lrange", KEYS[2], 0, -1)
+for i = #items, 1, -1 do
+    redis.call("lpush", KEYS[1], items[i])
+end
+redis.call("del", KEYS[2])
+return #items
@@ -0,0 +1,26 @@
+-- 批量取出即将到期的延时任务，取出的任务延长租约而不是直接删除，执行完成后再确认删除，
+-- 节点宕机时租约到期后任务会被其他节点重新取出
+-- KEYS[1] 任务索引（zset，score为执行时间毫秒），KEYS[2] 任务内容（hash）
+-- ARGV[1] 取出截止时间（毫秒），ARGV[2] 单次数量，ARGV[3] 当前时间（毫秒），ARGV[4] 租约时长（毫秒）
+-- 返回 任务id、执行时间、任务内容 依次排列的数组
+
+local items = redis.call("zrangebyscore", KEYS[1], "-inf", ARGV[1], "WITHSCORES", "LIMIT", 0, tonumber(ARGV[2]))
+local now = tonumber(ARGV[3])
+local lease = tonumber(ARGV[4])
+local result = {}
+
+for i = 1, #items, 2 do
+    local id = items[i]
+    local score = tonumber(items[i + 1])
+    local payload = redis.call("hget", KEYS[2], id)
+    if payload then
+        redis.call("zadd", KEYS[1], math.max(score, now) + lease, id)
+        table.insert(result, id)
+        table.insert(result, string.format("%d", score))
+        table.insert(result, payload)
+    else
+        -- 任务内容已删除，说明任务已取消
+        redis.call("zrem", KEYS[1], id)
+    end
+end
+return result
@@ -0,0 +1,21 @@
+-- GCRA限流，等价于平滑的滑动窗口，每个key只保存一个理论到达时间
+-- KEYS[1] 限流key
+-- ARGV[1] 周期内最大访问次数 ARGV[2] 周期，单位秒
+-- 返回0表示通过，大于0表示被拒绝，值为距离下次可访问的毫秒数
+redis.replicate_commands()
+local limit = tonumber(ARGV[1])
+local period = tonumber(ARGV[2]) * 1000
+local interval = period / limit
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local tat = tonumber(redis.call('get', KEYS[1]))
+if not tat or tat < now then
+    tat = now
+end
+local newTat = tat + interval
+local allowAt = newTat - period
+if allowAt > now then
+    return math.ceil(allowAt - now)
+end
+redis.call('set', KEYS[1], newTat, 'PX', math.ceil(newTat - now))
+return 0
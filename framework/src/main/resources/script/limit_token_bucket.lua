@@ -0,0 +1,24 @@
+-- 令牌桶限流，节点一次领取多个令牌在本地使用
+-- KEYS[1] 令牌桶key
+-- ARGV[1] 桶容量（周期内最大访问次数） ARGV[2] 周期，单位秒 ARGV[3] 本次领取的令牌数
+-- 返回实际领取的令牌数，令牌不足时领取剩余的全部整数令牌
+redis.replicate_commands()
+local capacity = tonumber(ARGV[1])
+local period = tonumber(ARGV[2]) * 1000
+local requested = tonumber(ARGV[3])
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if not tokens or not ts then
+    tokens = capacity
+    ts = now
+end
+-- 按经过的时间补充令牌
+tokens = math.min(capacity, tokens + (now - ts) * capacity / period)
+local granted = math.min(requested, math.floor(tokens))
+tokens = tokens - granted
+redis.call('hset', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+redis.call('pexpire', KEYS[1], period)
+return granted
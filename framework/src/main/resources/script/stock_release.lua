@@ -0,0 +1,17 @@
+-- 释放订单预占的库存
+-- KEYS[1] 预占记录key，KEYS[2...] 预占记录中的库存key，与预占记录使用同一个hash tag
+-- 返回 1 释放成功，0 预占记录不存在（已确认、已释放或从未预占）
+
+local reservation = KEYS[1]
+if redis.call("exists", reservation) == 0 then
+    return 0
+end
+
+for i = 2, #KEYS do
+    local num = redis.call("hget", reservation, KEYS[i])
+    if num then
+        redis.call("incrby", KEYS[i], num)
+    end
+end
+redis.call("del", reservation)
+return 1
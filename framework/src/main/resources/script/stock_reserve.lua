@@ -0,0 +1,27 @@
+-- 下单预占库存，整单所有库存一起扣减，任意一个库存不足则全部不扣减
+-- KEYS[1] 预占记录key，KEYS[2...] 库存key
+-- ARGV[1] 预占记录过期时间（秒），ARGV[2...] 与库存key对应的扣减数量
+-- 返回 1 预占成功，2 该订单已预占过，0 库存不足
+
+local reservation = KEYS[1]
+
+-- 同一订单重复预占直接返回，保证幂等
+if redis.call("exists", reservation) == 1 then
+    return 2
+end
+
+-- 先全部校验，再统一扣减，避免部分扣减后回滚
+for i = 2, #KEYS do
+    local stock = tonumber(redis.call("get", KEYS[i]))
+    if not stock or stock < tonumber(ARGV[i]) then
+        return 0
+    end
+end
+
+-- 扣减库存，并记录预占明细，用于释放
+for i = 2, #KEYS do
+    redis.call("decrby", KEYS[i], ARGV[i])
+    redis.call("hset", reservation, KEYS[i], ARGV[i])
+end
+redis.call("expire", reservation, ARGV[1])
+return 1
@@ -0,0 +1,72 @@
+package cn.lili.common.sensitive;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 敏感词过滤基准测试，对比原有的哈希桶过滤器与AC自动机匹配器
+ * <p>
+ * 运行方式：执行main方法
+ *
+ * @author Chopper
+ * @since 2024-03-28
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SensitiveWordsFilterBenchmark {
+
+    /**
+     * 敏感词数量
+     */
+    @Param({"1000", "10000"})
+    private int wordCount;
+
+    /**
+     * 包含敏感词的句子比例
+     */
+    @Param({"0", "5", "50"})
+    private int hitPercent;
+
+    private List<String> sentences;
+
+    private LegacySensitiveWordsFilter legacyFilter;
+
+    private SensitiveWordsMatcher matcher;
+
+    @Setup
+    public void setup() {
+        List<String> words = SensitiveWordsSamples.words(wordCount, 1L);
+        sentences = SensitiveWordsSamples.sentences(words, 1000, hitPercent, 2L);
+        legacyFilter = new LegacySensitiveWordsFilter();
+        legacyFilter.init(words);
+        matcher = SensitiveWordsMatcher.of(words);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String sentence : sentences) {
+            blackhole.consume(legacyFilter.filter(sentence, '*'));
+        }
+    }
+
+    @Benchmark
+    public void ahoCorasick(Blackhole blackhole) {
+        for (String sentence : sentences) {
+            blackhole.consume(matcher.filter(sentence, '*'));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SensitiveWordsFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
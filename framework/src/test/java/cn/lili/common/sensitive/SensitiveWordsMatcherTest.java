@@ -0,0 +1,72 @@
+package cn.lili.common.sensitive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 敏感词匹配器测试
+ *
+ * @author Chopper
+ * @since 2024-03-28
+ */
+public class SensitiveWordsMatcherTest {
+
+    @Test
+    public void testFilter() {
+        SensitiveWordsMatcher matcher = SensitiveWordsMatcher.of(Arrays.asList("色情", "色情电影", "电影院", "  赌博  ", "a", "ab", "fake bag"));
+        assertEquals("****哪家强", matcher.filter("色情电影哪家强", '*'));
+        assertEquals("去*****看", matcher.filter("去色情电影院看", '*'));
+        assertEquals("禁止**", matcher.filter("禁止赌博", '*'));
+        assertEquals("ab ********", matcher.filter("ab fake bag", '*'));
+        assertTrue(matcher.contains("电影院"));
+        assertFalse(matcher.contains("电影"));
+    }
+
+    @Test
+    public void testNoMatchReturnsSameInstance() {
+        SensitiveWordsMatcher matcher = SensitiveWordsMatcher.of(Collections.singletonList("色情"));
+        String sentence = "正常的商品名称 genuine leather";
+        assertSame(sentence, matcher.filter(sentence, '*'));
+        assertSame(sentence, SensitiveWordsMatcher.EMPTY.filter(sentence, '*'));
+        assertNull(matcher.filter(null, '*'));
+    }
+
+    @Test
+    public void testHotSwap() {
+        SensitiveWordsFilter.init(Collections.singletonList("色情"));
+        assertEquals("**", SensitiveWordsFilter.filter("色情"));
+        SensitiveWordsFilter.put("赌博");
+        assertEquals("****", SensitiveWordsFilter.filter("色情赌博"));
+        SensitiveWordsFilter.remove("色情");
+        assertEquals("色情**", SensitiveWordsFilter.filter("色情赌博"));
+        SensitiveWordsFilter.init(Collections.emptyList());
+        assertEquals("色情赌博", SensitiveWordsFilter.filter("色情赌博"));
+    }
+
+    /**
+     * 与原有过滤器对比：是否命中一致，原有过滤器替换的字符均被替换
+     */
+    @Test
+    public void testConsistentWithLegacyFilter() {
+        List<String> words = SensitiveWordsSamples.words(5000, 1L);
+        List<String> sentences = SensitiveWordsSamples.sentences(words, 5000, 30, 2L);
+        SensitiveWordsMatcher matcher = SensitiveWordsMatcher.of(words);
+        LegacySensitiveWordsFilter legacy = new LegacySensitiveWordsFilter();
+        legacy.init(words);
+        for (String sentence : sentences) {
+            String expected = legacy.filter(sentence, '*');
+            String actual = matcher.filter(sentence, '*');
+            assertEquals(!expected.equals(sentence), matcher.contains(sentence), sentence);
+            for (int i = 0; i < sentence.length(); i++) {
+                if (expected.charAt(i) == '*' && sentence.charAt(i) != '*') {
+                    assertEquals('*', actual.charAt(i), sentence);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cn.lili.common.sensitive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 敏感词测试数据，使用固定种子生成，保证每次运行一致
+ *
+ * @author Chopper
+ * @since 2024-03-28
+ */
+final class SensitiveWordsSamples {
+
+    private static final String[] ENGLISH_WORDS = {"cheap", "replica", "genuine", "leather", "wallet", "iphone", "case",
+            "free", "shipping", "discount", "casino", "bonus", "crypto", "wechat", "contact", "seller", "quality", "fast",
+            "delivery", "original", "fake", "brand", "sale", "hot", "new", "women", "men", "kids", "shoes", "bag"};
+
+    private SensitiveWordsSamples() {
+    }
+
+    /**
+     * 生成敏感词，中文词2到4个字，英文词为单词或单词组合
+     */
+    static List<String> words(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(4) == 0) {
+                String word = ENGLISH_WORDS[random.nextInt(ENGLISH_WORDS.length)];
+                words.add(random.nextBoolean() ? word : word + " " + ENGLISH_WORDS[random.nextInt(ENGLISH_WORDS.length)]);
+            } else {
+                words.add(chinese(random, 2 + random.nextInt(3)));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 生成句子，模拟商品名称、评价、聊天消息，按比例混入敏感词
+     */
+    static List<String> sentences(List<String> words, int count, int hitPercent, long seed) {
+        Random random = new Random(seed);
+        List<String> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder sentence = new StringBuilder();
+            int parts = 3 + random.nextInt(8);
+            for (int j = 0; j < parts; j++) {
+                if (random.nextBoolean()) {
+                    sentence.append(chinese(random, 2 + random.nextInt(6)));
+                } else {
+                    sentence.append(ENGLISH_WORDS[random.nextInt(ENGLISH_WORDS.length)]).append(' ');
+                }
+                if (random.nextInt(5) == 0) {
+                    sentence.append(random.nextBoolean() ? '，' : ',');
+                }
+            }
+            if (random.nextInt(100) < hitPercent) {
+                sentence.insert(random.nextInt(sentence.length() + 1), words.get(random.nextInt(words.size())));
+            }
+            sentences.add(sentence.toString());
+        }
+        return sentences;
+    }
+
+    /**
+     * 常用汉字范围内的随机汉字
+     */
+    private static String chinese(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (0x4E00 + random.nextInt(3500));
+        }
+        return new String(chars);
+    }
+}
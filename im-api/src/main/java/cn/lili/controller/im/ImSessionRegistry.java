@@ -0,0 +1,323 @@
+package cn.lili.controller.im;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import cn.lili.cache.CachePrefix;
+import cn.lili.common.thread.ExecutorEnum;
+import cn.lili.common.thread.ExecutorManager;
+import cn.lili.modules.im.entity.enums.MessageResultType;
+import cn.lili.modules.im.entity.vo.MessageVO;
+import com.alibaba.fastjson.JSON;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IM会话注册中心
+ * <p>
+ * 会话保存在本节点内存中，会话所在节点记录在redis中，
+ * 接收人连接在其他节点时，通过redis发布订阅转发到对应节点发送
+ *
+ * @author Chopper
+ * @since 2024-03-25
+ */
+@Slf4j
+@Component
+public class ImSessionRegistry {
+
+    /**
+     * 单个会话待发送消息上限，超过时丢弃消息，客户端可通过历史消息获取
+     */
+    private static final int MAX_PENDING_MESSAGES = 1000;
+
+    /**
+     * 当前节点id
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 本节点的会话
+     */
+    private final Map<String, SessionSender> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /**
+     * 会话路由过期时间，单位秒，节点异常下线时路由在此时间后失效
+     */
+    @Value("${lili.im.session-ttl-seconds:300}")
+    private Long sessionTtlSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ExecutorManager executorManager;
+
+    private ScheduledFuture<?> refreshTask;
+
+    @PostConstruct
+    public void init() {
+        Metrics.gauge("lili.im.sessions", sessionCount);
+        redisMessageListenerContainer.addMessageListener(this::onRoute, new ChannelTopic(getChannel(nodeId)));
+        //定时续期本节点会话的路由
+        long period = Math.max(1, sessionTtlSeconds / 3);
+        refreshTask = executorManager.scheduleWithFixedDelay(ExecutorEnum.NOTIFICATION, this::refreshRoutes, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshTask.cancel(false);
+        List<String> keys = new ArrayList<>();
+        sessions.keySet().forEach(sessionId -> keys.add(getRouteKey(sessionId)));
+        if (!keys.isEmpty()) {
+            stringRedisTemplate.delete(keys);
+        }
+    }
+
+    /**
+     * 注册会话，同一用户已在其他位置登录时通知旧会话下线
+     *
+     * @param sessionId 会话id，店铺为店铺id，会员为会员id
+     * @param session   会话
+     */
+    public void register(String sessionId, Session session) {
+        SessionSender old = sessions.put(sessionId, new SessionSender(session));
+        if (old != null) {
+            log.info("用户重复登陆，旧用户下线");
+            this.kick(old);
+        } else {
+            sessionCount.incrementAndGet();
+            String oldNode = stringRedisTemplate.opsForValue().get(getRouteKey(sessionId));
+            if (oldNode != null && !nodeId.equals(oldNode)) {
+                this.publish(oldNode, sessionId, null, true);
+            }
+        }
+        stringRedisTemplate.opsForValue().set(getRouteKey(sessionId), nodeId, sessionTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 注销会话，会话已被新连接替换时不处理
+     *
+     * @param sessionId 会话id
+     * @param session   会话
+     */
+    public void unregister(String sessionId, Session session) {
+        SessionSender sender = sessions.get(sessionId);
+        if (sender == null || sender.session != session || !sessions.remove(sessionId, sender)) {
+            return;
+        }
+        sessionCount.decrementAndGet();
+        String routeKey = getRouteKey(sessionId);
+        if (nodeId.equals(stringRedisTemplate.opsForValue().get(routeKey))) {
+            stringRedisTemplate.delete(routeKey);
+        }
+    }
+
+    /**
+     * 续期会话路由
+     *
+     * @param sessionId 会话id
+     */
+    public void touch(String sessionId) {
+        if (sessions.containsKey(sessionId)) {
+            stringRedisTemplate.opsForValue().set(getRouteKey(sessionId), nodeId, sessionTtlSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 发送消息，接收人不在本节点时转发到所在节点，不在线时不发送
+     *
+     * @param sessionId 会话id
+     * @param message   消息对象
+     */
+    public void send(String sessionId, MessageVO message) {
+        String text = JSON.toJSONString(message, true);
+        SessionSender sender = sessions.get(sessionId);
+        if (sender != null) {
+            sender.send(text);
+            return;
+        }
+        String node = stringRedisTemplate.opsForValue().get(getRouteKey(sessionId));
+        if (node != null && !nodeId.equals(node)) {
+            this.publish(node, sessionId, text, false);
+        }
+    }
+
+    /**
+     * 处理其他节点转发的消息
+     */
+    private void onRoute(Message message, byte[] pattern) {
+        try {
+            JSONObject route = JSONUtil.parseObj(new String(message.getBody(), StandardCharsets.UTF_8));
+            String sessionId = route.getStr("to");
+            SessionSender sender = sessions.get(sessionId);
+            if (sender == null) {
+                return;
+            }
+            if (Boolean.TRUE.equals(route.getBool("kick"))) {
+                if (sessions.remove(sessionId, sender)) {
+                    sessionCount.decrementAndGet();
+                }
+                this.kick(sender);
+            } else {
+                sender.send(route.getStr("text"));
+            }
+        } catch (Exception e) {
+            log.error("IM转发消息处理异常", e);
+        }
+    }
+
+    private void publish(String node, String sessionId, String text, boolean kick) {
+        JSONObject route = new JSONObject();
+        route.set("to", sessionId);
+        route.set("text", text);
+        route.set("kick", kick);
+        stringRedisTemplate.convertAndSend(getChannel(node), route.toString());
+    }
+
+    /**
+     * 通知旧会话下线并关闭
+     */
+    private void kick(SessionSender sender) {
+        sender.send(JSON.toJSONString(MessageVO.builder().messageResultType(MessageResultType.OFFLINE).result("用户异地登陆").build(), true));
+        sender.closeAfterSent();
+    }
+
+    private void refreshRoutes() {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> sessionIds = new ArrayList<>(sessions.keySet());
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                    for (String sessionId : sessionIds) {
+                        redisOperations.opsForValue().set(getRouteKey(sessionId), nodeId, sessionTtlSeconds, TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("IM会话路由续期异常", e);
+        }
+    }
+
+    private static String getRouteKey(String sessionId) {
+        return CachePrefix.IM_SESSION.getPrefix() + sessionId;
+    }
+
+    private static String getChannel(String nodeId) {
+        return CachePrefix.IM_SESSION.getPrefix() + "ROUTE_" + nodeId;
+    }
+
+    /**
+     * 会话消息发送
+     * <p>
+     * 异步发送，同一会话同一时间只能有一条消息在发送，其余消息排队，上一条发送完成后继续发送
+     */
+    private static class SessionSender {
+
+        private final Session session;
+
+        private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingSize = new AtomicInteger();
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private volatile boolean closing;
+
+        SessionSender(Session session) {
+            this.session = session;
+        }
+
+        void send(String text) {
+            if (pendingSize.incrementAndGet() > MAX_PENDING_MESSAGES) {
+                pendingSize.decrementAndGet();
+                log.warn("会话{}待发送消息过多，丢弃消息", session.getId());
+                return;
+            }
+            pending.offer(text);
+            this.drain();
+        }
+
+        void closeAfterSent() {
+            closing = true;
+            this.drain();
+        }
+
+        private void drain() {
+            if (!sending.compareAndSet(false, true)) {
+                return;
+            }
+            String text = pending.poll();
+            if (text == null) {
+                sending.set(false);
+                if (closing) {
+                    this.close();
+                } else if (!pending.isEmpty()) {
+                    //释放标记期间有新消息进入
+                    this.drain();
+                }
+                return;
+            }
+            pendingSize.decrementAndGet();
+            if (!session.isOpen()) {
+                pending.clear();
+                pendingSize.set(0);
+                sending.set(false);
+                return;
+            }
+            try {
+                session.getAsyncRemote().sendText(text, result -> {
+                    if (!result.isOK()) {
+                        log.error("IM消息发送失败", result.getException());
+                    }
+                    sending.set(false);
+                    this.drain();
+                });
+            } catch (Exception e) {
+                log.error("IM消息发送失败", e);
+                sending.set(false);
+                //继续发送队列中的消息，待关闭的会话在发送完后关闭
+                this.drain();
+            }
+        }
+
+        private void close() {
+            try {
+                session.close();
+            } catch (Exception e) {
+                log.error("关闭会话异常", e);
+            }
+        }
+    }
+}
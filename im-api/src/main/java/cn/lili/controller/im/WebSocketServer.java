@@ -7,17 +7,12 @@ import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.UserEnums;
 import cn.lili.modules.im.config.CustomSpringConfigurator;
 import cn.lili.modules.im.entity.dos.ImMessage;
-import cn.lili.modules.im.entity.dos.ImTalk;
 import cn.lili.modules.im.entity.enums.MessageResultType;
 import cn.lili.modules.im.entity.vo.MessageOperation;
 import cn.lili.modules.im.entity.vo.MessageVO;
-import cn.lili.modules.im.service.ImMessageService;
-import cn.lili.modules.im.service.ImTalkService;
+import cn.lili.modules.im.service.ImMessagePersistService;
 import com.alibaba.druid.util.StringUtils;
 import com.alibaba.fastjson.JSON;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
-import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnError;
 import jakarta.websocket.OnMessage;
@@ -41,14 +36,13 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class WebSocketServer {
     /**
-     * 在线人数 PS 注意，只能单节点，如果多节点部署需要自行寻找方案
+     * 会话注册中心，支持多节点部署
      */
-    private static ConcurrentHashMap<String, Session> sessionPools = new ConcurrentHashMap<>();
+    private final ImSessionRegistry imSessionRegistry;
     /**
-     * 消息服务
+     * 消息服务，查询时包含尚未写入的消息
      */
-    private final ImMessageService imMessageService;
-    private final ImTalkService imTalkService;
+    private final ImMessagePersistService imMessagePersistService;
     private final Cache cache;
 
     /**
@@ -63,29 +57,18 @@ public class WebSocketServer {
 
         String sessionId = UserEnums.STORE.equals(authUser.getRole()) ? authUser.getStoreId() : authUser.getId();
         // 如果已有会话，则进行下线提醒。
-        if (sessionPools.containsKey(sessionId)) {
-            log.info("用户重复登陆，旧用户下线");
-            Session oldSession = sessionPools.get(sessionId);
-            sendMessage(oldSession,
-                    MessageVO.builder().messageResultType(MessageResultType.OFFLINE).result("用户异地登陆").build());
-            try {
-                oldSession.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-        sessionPools.put(sessionId, session);
+        imSessionRegistry.register(sessionId, session);
     }
 
     /**
      * 关闭连接
      */
     @OnClose
-    public void onClose(@PathParam("accessToken") String accessToken) {
+    public void onClose(@PathParam("accessToken") String accessToken, Session session) {
         AuthUser authUser = UserContext.getAuthUser(accessToken);
         log.info("用户断开断开连接:{}", JSONUtil.toJsonStr(authUser));
         String sessionId = UserEnums.STORE.equals(authUser.getRole()) ? authUser.getStoreId() : authUser.getId();
-        sessionPools.remove(sessionId);
+        imSessionRegistry.unregister(sessionId, session);
     }
 
     /**
@@ -112,31 +95,27 @@ public class WebSocketServer {
         AuthUser authUser = UserContext.getAuthUser(accessToken);
         switch (messageOperation.getOperationType()) {
             case PING:
+                imSessionRegistry.touch(UserEnums.STORE.equals(authUser.getRole()) ? authUser.getStoreId() : authUser.getId());
                 break;
             case MESSAGE:
-                // 保存消息
+                // 保存消息，消息及最后消息信息异步批量写入
                 ImMessage imMessage = new ImMessage(messageOperation);
-                imMessageService.save(imMessage);
-                // 修改最后消息信息
-                imTalkService.update(new LambdaUpdateWrapper<ImTalk>().eq(ImTalk::getId, messageOperation.getTalkId())
-                        .set(ImTalk::getLastTalkMessage, messageOperation.getContext())
-                        .set(ImTalk::getLastTalkTime, imMessage.getCreateTime())
-                        .set(ImTalk::getLastMessageType, imMessage.getMessageType()));
+                imMessagePersistService.submit(imMessage);
                 // 发送消息
                 sendMessage(messageOperation.getTo(), new MessageVO(MessageResultType.MESSAGE, imMessage));
                 break;
             case READ:
                 if (!StringUtils.isEmpty(messageOperation.getContext())) {
-                    imMessageService.read(messageOperation.getTalkId(), accessToken);
+                    imMessagePersistService.read(messageOperation.getTalkId(), accessToken);
                 }
                 break;
             case UNREAD:
                 sendMessage(authUser.getId(),
-                        new MessageVO(MessageResultType.UN_READ, imMessageService.unReadMessages(accessToken)));
+                        new MessageVO(MessageResultType.UN_READ, imMessagePersistService.unReadMessages(accessToken)));
                 break;
             case HISTORY:
                 sendMessage(authUser.getId(), new MessageVO(MessageResultType.HISTORY,
-                        imMessageService.historyMessage(accessToken, messageOperation.getTo())));
+                        imMessagePersistService.historyMessage(accessToken, messageOperation.getTo())));
                 break;
             default:
                 break;
@@ -150,24 +129,7 @@ public class WebSocketServer {
      * @param message   消息对象
      */
     private void sendMessage(String sessionId, MessageVO message) {
-        Session session = sessionPools.get(sessionId);
-        sendMessage(session, message);
-    }
-
-    /**
-     * 发送消息
-     *
-     * @param session 会话
-     * @param message 消息对象
-     */
-    private void sendMessage(Session session, MessageVO message) {
-        if (session != null) {
-            try {
-                session.getBasicRemote().sendText(JSON.toJSONString(message, true));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        imSessionRegistry.send(sessionId, message);
     }
 
     /**
@@ -1,6 +1,7 @@
 package cn.lili.controller.passport;
 
 import cn.lili.cache.limit.annotation.LimitPoint;
+import cn.lili.cache.limit.enums.LimitAlgorithmEnums;
 import cn.lili.cache.limit.service.RateLimitService;
 import cn.lili.common.aop.annotation.DemoSite;
 import cn.lili.common.enums.ResultCode;
@@ -62,7 +63,8 @@ public class AdminUserManagerController {
     @Autowired
     private RateLimitService rateLimitService;
 
-    @LimitPoint(name = "manager_login_ip", prefix = "limit:", key = "manager:login:", period = 60, limit = 30)
+    @LimitPoint(name = "manager_login_ip", prefix = "limit:", key = "manager:login:", period = 60, limit = 30,
+            algorithm = LimitAlgorithmEnums.SLIDING_WINDOW)
     @PostMapping(value = "/login")
     @ApiOperation(value = "登录管理员")
     public ResultMessage<Token> login(@NotNull(message = "用户名不能为空") @RequestParam String username,
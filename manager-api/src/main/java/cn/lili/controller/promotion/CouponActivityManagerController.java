@@ -9,7 +9,9 @@ import cn.lili.modules.promotion.entity.dos.CouponActivity;
 import cn.lili.modules.promotion.entity.dos.CouponActivityItem;
 import cn.lili.modules.promotion.entity.dto.CouponActivityDTO;
 import cn.lili.modules.promotion.entity.vos.CouponActivityVO;
+import cn.lili.modules.promotion.entity.vos.CouponDistributionVO;
 import cn.lili.modules.promotion.service.CouponActivityService;
+import cn.lili.modules.promotion.service.CouponDistributionService;
 import cn.lili.mybatis.util.PageUtil;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.annotations.Api;
@@ -35,6 +37,9 @@ public class CouponActivityManagerController {
     @Autowired
     private CouponActivityService couponActivityService;
 
+    @Autowired
+    private CouponDistributionService couponDistributionService;
+
     @ApiOperation(value = "获取优惠券活动分页")
     @GetMapping
     public ResultMessage<IPage<CouponActivity>> getCouponActivityPage(PageVO page, CouponActivity couponActivity) {
@@ -48,6 +53,13 @@ public class CouponActivityManagerController {
         return ResultUtil.data(couponActivityService.getCouponActivityVO(couponActivityId));
     }
 
+    @ApiOperation(value = "获取优惠券活动定向发放进度")
+    @ApiImplicitParam(name = "couponActivityId", value = "优惠券活动ID", required = true, paramType = "path")
+    @GetMapping("/{couponActivityId}/distribution")
+    public ResultMessage<CouponDistributionVO> getDistribution(@PathVariable String couponActivityId) {
+        return ResultUtil.data(couponDistributionService.progress(couponActivityId));
+    }
+
     @ApiOperation(value = "添加优惠券活动")
     @PostMapping
     public ResultMessage<CouponActivity> addCouponActivity(@RequestBody(required = false) CouponActivityDTO couponActivityDTO) {
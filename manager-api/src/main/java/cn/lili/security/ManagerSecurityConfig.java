@@ -3,6 +3,7 @@ package cn.lili.security;
 import cn.lili.cache.Cache;
 import cn.lili.common.properties.IgnoredUrlsProperties;
 import cn.lili.common.security.CustomAccessDeniedHandler;
+import cn.lili.common.security.permission.PermissionMatcherCache;
 import cn.lili.modules.permission.service.MenuService;
 import cn.lili.modules.system.token.ManagerTokenGenerate;
 import lombok.extern.slf4j.Slf4j;
@@ -56,6 +57,9 @@ public class ManagerSecurityConfig {
     @Autowired
     private ManagerTokenGenerate managerTokenGenerate;
 
+    @Autowired
+    private PermissionMatcherCache permissionMatcherCache;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationManager authenticationManager)
             throws Exception {
@@ -73,7 +77,7 @@ public class ManagerSecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .exceptionHandling(exception -> exception.accessDeniedHandler(accessDeniedHandler))
                 .addFilterAt(new ManagerAuthenticationFilter(authenticationManager, menuService, managerTokenGenerate,
-                        cache), UsernamePasswordAuthenticationFilter.class);
+                        cache, permissionMatcherCache), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
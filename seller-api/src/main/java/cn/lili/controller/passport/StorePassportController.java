@@ -2,6 +2,7 @@ package cn.lili.controller.passport;
 
 
 import cn.lili.cache.limit.annotation.LimitPoint;
+import cn.lili.cache.limit.enums.LimitAlgorithmEnums;
 import cn.lili.cache.limit.service.RateLimitService;
 import cn.lili.common.aop.annotation.DemoSite;
 import cn.lili.common.enums.ResultCode;
@@ -58,7 +59,8 @@ public class StorePassportController {
             @ApiImplicitParam(name = "username", value = "用户名", required = true, paramType = "query"),
             @ApiImplicitParam(name = "password", value = "密码", required = true, paramType = "query")
     })
-    @LimitPoint(name = "store_login_ip", prefix = "limit:", key = "store:login:", period = 60, limit = 30)
+    @LimitPoint(name = "store_login_ip", prefix = "limit:", key = "store:login:", period = 60, limit = 30,
+            algorithm = LimitAlgorithmEnums.SLIDING_WINDOW)
     @PostMapping("/userLogin")
     public ResultMessage<Object> userLogin(@NotNull(message = "用户名不能为空") @RequestParam String username,
                                            @NotNull(message = "密码不能为空") @RequestParam String password,
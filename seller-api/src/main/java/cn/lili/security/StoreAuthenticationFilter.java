@@ -1,23 +1,20 @@
 package cn.lili.security;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import cn.lili.cache.Cache;
 import cn.lili.cache.CachePrefix;
 import cn.lili.common.security.AuthUser;
-import cn.lili.common.security.enums.PermissionEnum;
+import cn.lili.common.security.context.UserContext;
 import cn.lili.common.security.enums.SecurityEnum;
 import cn.lili.common.security.enums.UserEnums;
-import cn.lili.common.security.token.SecretKeyUtil;
+import cn.lili.common.security.permission.PermissionMatcher;
+import cn.lili.common.security.permission.PermissionMatcherCache;
 import cn.lili.common.utils.ResponseUtil;
 import cn.lili.modules.member.entity.dos.Clerk;
 import cn.lili.modules.member.service.ClerkService;
 import cn.lili.modules.member.service.StoreMenuRoleService;
 import cn.lili.modules.member.token.StoreTokenGenerate;
-import com.google.gson.Gson;
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.Jwts;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,7 +23,6 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
-import org.springframework.util.PatternMatchUtils;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.naming.NoPermissionException;
@@ -53,16 +49,20 @@ public class StoreAuthenticationFilter extends BasicAuthenticationFilter {
 
     private final ClerkService clerkService;
 
+    private final PermissionMatcherCache permissionMatcherCache;
+
     public StoreAuthenticationFilter(AuthenticationManager authenticationManager,
                                      StoreTokenGenerate storeTokenGenerate,
                                      StoreMenuRoleService storeMenuRoleService,
                                      ClerkService clerkService,
-                                     Cache cache) {
+                                     Cache cache,
+                                     PermissionMatcherCache permissionMatcherCache) {
         super(authenticationManager);
         this.storeTokenGenerate = storeTokenGenerate;
         this.storeMenuRoleService = storeMenuRoleService;
         this.clerkService = clerkService;
         this.cache = cache;
+        this.permissionMatcherCache = permissionMatcherCache;
     }
 
     @SneakyThrows
@@ -82,6 +82,7 @@ public class StoreAuthenticationFilter extends BasicAuthenticationFilter {
         if (authentication != null) {
             customAuthentication(request, response, authentication);
             SecurityContextHolder.getContext().setAuthentication(authentication);
+            request.setAttribute(UserContext.AUTH_USER_ATTRIBUTE, authentication.getDetails());
         }
         chain.doFilter(request, response);
     }
@@ -97,14 +98,8 @@ public class StoreAuthenticationFilter extends BasicAuthenticationFilter {
     private UsernamePasswordAuthenticationToken getAuthentication(String jwt, HttpServletResponse response) {
 
         try {
-            Claims claims
-                    = Jwts.parserBuilder()
-                    .setSigningKey(SecretKeyUtil.generalKeyByDecoders())
-                    .build()
-                    .parseClaimsJws(jwt).getBody();
-            //获取存储在claims中的用户信息
-            String json = claims.get(SecurityEnum.USER_CONTEXT.getValue()).toString();
-            AuthUser authUser = new Gson().fromJson(json, AuthUser.class);
+            //解析token中的用户信息，已验证过签名的token不重复验签
+            AuthUser authUser = UserContext.parseAuthUser(jwt);
     
             //校验redis中是否有权限
             if (cache.hasKey(CachePrefix.ACCESS_TOKEN.getPrefix(UserEnums.STORE, authUser.getId()) + jwt)) {
@@ -143,51 +138,25 @@ public class StoreAuthenticationFilter extends BasicAuthenticationFilter {
         if (Boolean.FALSE.equals(authUser.getIsSuper())) {
 
             String permissionCacheKey = CachePrefix.PERMISSION_LIST.getPrefix(UserEnums.STORE) + authUser.getId();
-            //获取缓存中的权限
-            Map<String, List<String>> permission =
-                    (Map<String, List<String>>) cache.get(permissionCacheKey);
-            if (permission == null || permission.isEmpty()) {
-                //根据会员id查询店员信息
-                Clerk clerk = clerkService.getClerkByMemberId(authUser.getId());
-                if (clerk != null) {
-                    permission = storeTokenGenerate.permissionList(storeMenuRoleService.findAllMenu(clerk.getId(), authUser.getId()));
-                    cache.put(permissionCacheKey, permission);
-                }
-            }
-            //获取数据(GET 请求)权限
-            if (request.getMethod().equals(RequestMethod.GET.name())) {
-                //如果用户的超级权限和查阅权限都不包含当前请求的api
-                if (match(permission.get(PermissionEnum.SUPER.name()), requestUrl)
-                        || match(permission.get(PermissionEnum.QUERY.name()), requestUrl)) {
-                } else {
-                    ResponseUtil.output(response, ResponseUtil.resultMap(false, 400, "权限不足"));
-                    log.error("当前请求路径：{},所拥有权限：{}", requestUrl, JSONUtil.toJsonStr(permission));
-                    throw new NoPermissionException("权限不足");
+            //获取编译后的权限，查看请求需要超级权限或查看权限，操作请求需要超级权限
+            PermissionMatcher permissionMatcher = permissionMatcherCache.get(permissionCacheKey, () -> {
+                Map<String, List<String>> permission = (Map<String, List<String>>) cache.get(permissionCacheKey);
+                if (permission == null || permission.isEmpty()) {
+                    //根据会员id查询店员信息
+                    Clerk clerk = clerkService.getClerkByMemberId(authUser.getId());
+                    if (clerk != null) {
+                        permission = storeTokenGenerate.permissionList(storeMenuRoleService.findAllMenu(clerk.getId(), authUser.getId()));
+                        cache.put(permissionCacheKey, permission);
+                    }
                 }
+                return permission;
+            });
+            if (!permissionMatcher.match(requestUrl, request.getMethod().equals(RequestMethod.GET.name()))) {
+                ResponseUtil.output(response, ResponseUtil.resultMap(false, 400, "权限不足"));
+                log.error("当前请求路径：{},请求方式：{},用户：{}，权限不足", requestUrl, request.getMethod(), authUser.getId());
+                throw new NoPermissionException("权限不足");
             }
-            //非get请求（数据操作） 判定鉴权
-            else {
-                if (!match(permission.get(PermissionEnum.SUPER.name()), requestUrl)) {
-                    ResponseUtil.output(response, ResponseUtil.resultMap(false, 400, "权限不足"));
-                    log.error("当前请求路径：{},所拥有权限：{}", requestUrl, JSONUtil.toJsonStr(permission));
-                    throw new NoPermissionException("权限不足");
-                }
-            }
-        }
-    }
-
-    /**
-     * 校验权限
-     *
-     * @param permissions 权限集合
-     * @param url         请求地址
-     * @return 是否拥有权限
-     */
-    boolean match(List<String> permissions, String url) {
-        if (permissions == null || permissions.isEmpty()) {
-            return false;
         }
-        return PatternMatchUtils.simpleMatch(permissions.toArray(new String[0]), url);
     }
 
 }
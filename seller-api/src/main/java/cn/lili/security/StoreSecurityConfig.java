@@ -3,6 +3,7 @@ package cn.lili.security;
 import cn.lili.cache.Cache;
 import cn.lili.common.properties.IgnoredUrlsProperties;
 import cn.lili.common.security.CustomAccessDeniedHandler;
+import cn.lili.common.security.permission.PermissionMatcherCache;
 import cn.lili.common.utils.SpringContextUtil;
 import cn.lili.modules.member.service.ClerkService;
 import cn.lili.modules.member.service.StoreMenuRoleService;
@@ -58,6 +59,9 @@ public class StoreSecurityConfig {
     @Autowired
     private ClerkService clerkService;
 
+    @Autowired
+    private PermissionMatcherCache permissionMatcherCache;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationManager authenticationManager)
             throws Exception {
@@ -77,7 +81,7 @@ public class StoreSecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .exceptionHandling(exception -> exception.accessDeniedHandler(accessDeniedHandler))
                 .addFilterAt(new StoreAuthenticationFilter(authenticationManager, storeTokenGenerate,
-                        storeMenuRoleService, clerkService, cache), UsernamePasswordAuthenticationFilter.class);
+                        storeMenuRoleService, clerkService, cache, permissionMatcherCache), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }